@@ -11,7 +11,11 @@
 
 package org.eclipse.birt.data.aggregation.impl;
 
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.core.DataException;
 
 /**
  * 
@@ -43,4 +47,35 @@ public abstract class AggrFunction implements IAggrFunction
 	{
 		return false;
 	}
+
+	/**
+	 * Gets the argument of the optional accuracy parameter, which is the
+	 * tolerated relative error of an approximate aggregation.
+	 * 
+	 * @param accuracy
+	 * @return the accuracy between 0 and 1, or null if the aggregation should
+	 *         be calculated exactly
+	 * @throws DataException
+	 */
+	static Double getAccuracy( Object accuracy ) throws DataException
+	{
+		if ( accuracy == null
+				|| ( accuracy instanceof String && ( (String) accuracy ).trim( )
+						.length( ) == 0 ) )
+			return null;
+		Double value = null;
+		try
+		{
+			value = DataTypeUtil.toDouble( accuracy );
+		}
+		catch ( BirtException e )
+		{
+		}
+		if ( value == null
+				|| value.isNaN( ) || value.doubleValue( ) <= 0
+				|| value.doubleValue( ) >= 1 )
+			throw DataException.wrap( new AggrException( ResourceConstants.INVALID_ACCURACY_ARGUMENT,
+					accuracy ) );
+		return value;
+	}
 }
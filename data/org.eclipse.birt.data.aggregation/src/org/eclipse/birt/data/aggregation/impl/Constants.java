@@ -28,5 +28,7 @@ public class Constants
 	public static final String MAXLENGTH__DISPLAY_NAME=Messages.getString( "TotalConcatenate.param.maxLength" );
 	public static final String SHOWALLVALUES_NAME="Showallvalues";
 	public static final String SHOWALLVALUES_DISPLAY_NAME=Messages.getString( "TotalConcatenate.param.showAllValues" );
+	public static final String ACCURACY_NAME = "Accuracy";//$NON-NLS-1$
+	public static final String ACCURACY_DISPLAY_NAME = Messages.getString( "Constants.Accuracy" ); //$NON-NLS-1$
 	
 }
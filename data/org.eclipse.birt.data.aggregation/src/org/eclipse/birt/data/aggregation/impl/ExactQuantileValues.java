@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Arrays;
+
+/**
+ * Keeps all the values in a primitive array, the value at a rank is selected
+ * by partitioning the array instead of sorting it.
+ */
+public class ExactQuantileValues extends QuantileValues
+{
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private double[] values = new double[INITIAL_CAPACITY];
+	private int count;
+
+	/*
+	 * @see org.eclipse.birt.data.aggregation.impl.QuantileValues#add(double)
+	 */
+	public void add( double value )
+	{
+		if ( count == values.length )
+			values = Arrays.copyOf( values, count * 2 );
+		values[count++] = value;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.aggregation.impl.QuantileValues#getCount()
+	 */
+	public long getCount( )
+	{
+		return count;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.aggregation.impl.QuantileValues#getValue(long)
+	 */
+	public double getValue( long rank )
+	{
+		assert rank >= 0 && rank < count;
+		int k = (int) rank;
+		int left = 0;
+		int right = count - 1;
+		while ( left < right )
+		{
+			double pivot = values[( left + right ) >>> 1];
+			int i = left;
+			int j = right;
+			while ( i <= j )
+			{
+				while ( Double.compare( values[i], pivot ) < 0 )
+					i++;
+				while ( Double.compare( values[j], pivot ) > 0 )
+					j--;
+				if ( i <= j )
+				{
+					double value = values[i];
+					values[i++] = values[j];
+					values[j--] = value;
+				}
+			}
+			// values[left..j] <= pivot <= values[i..right]
+			if ( k <= j )
+				right = j;
+			else if ( k >= i )
+				left = i;
+			else
+				break;
+		}
+		return values[k];
+	}
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Date;
+
+/**
+ * Estimates the count of distinct values with HyperLogLog, in memory of
+ * 2^precision bytes whatever the count of values is. A value is hashed to 64
+ * bits, the first bits select a register, which keeps the maximum position of
+ * the first one bit in the remaining bits. The count is estimated from the
+ * histogram of the registers by the estimator of Ertl, which needs no bias
+ * correction for small or large counts.
+ * <p>
+ * Two estimators of the same precision can be merged, the merged one
+ * estimates the count of distinct values of both.
+ */
+public class HyperLogLog
+{
+
+	private static final int MIN_PRECISION = 4;
+	private static final int MAX_PRECISION = 18;
+
+	private int precision;
+	private byte[] registers;
+
+	/**
+	 * @param accuracy
+	 *            the tolerated standard error of the estimate relative to the
+	 *            count, between 0 and 1
+	 */
+	public HyperLogLog( double accuracy )
+	{
+		assert accuracy > 0 && accuracy < 1;
+		// the standard error is about 1.04 / sqrt( 2^precision )
+		double registerCount = ( 1.04 / accuracy ) * ( 1.04 / accuracy );
+		this.precision = (int) Math.max( MIN_PRECISION,
+				Math.min( MAX_PRECISION,
+						Math.ceil( Math.log( registerCount ) / Math.log( 2 ) ) ) );
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Adds a value, the values are distinct as defined by their equals method.
+	 *
+	 * @param value
+	 *            a value which is not null
+	 */
+	public void add( Object value )
+	{
+		long hash = hash( value );
+		int index = (int) ( hash >>> ( 64 - precision ) );
+		// the position of the first one bit of the remaining bits, the bit
+		// after the remaining bits stops the count of the zero bits
+		int rank = Long.numberOfLeadingZeros( ( hash << precision )
+				| ( 1L << ( precision - 1 ) ) ) + 1;
+		if ( registers[index] < rank )
+			registers[index] = (byte) rank;
+	}
+
+	/**
+	 * Adds the values of another estimator of the same precision.
+	 *
+	 * @param hll
+	 */
+	public void merge( HyperLogLog hll )
+	{
+		assert hll.precision == precision;
+		for ( int i = 0; i < registers.length; i++ )
+		{
+			if ( registers[i] < hll.registers[i] )
+				registers[i] = hll.registers[i];
+		}
+	}
+
+	/**
+	 * @return the estimated count of distinct values
+	 */
+	public long getEstimate( )
+	{
+		int q = 64 - precision;
+		int[] histogram = new int[q + 2];
+		for ( int i = 0; i < registers.length; i++ )
+		{
+			histogram[registers[i]]++;
+		}
+		double m = registers.length;
+		double z = m * tau( 1 - histogram[q + 1] / m );
+		for ( int k = q; k >= 1; k-- )
+		{
+			z = 0.5 * ( z + histogram[k] );
+		}
+		z += m * sigma( histogram[0] / m );
+		return Math.round( m * m / ( 2 * Math.log( 2 ) ) / z );
+	}
+
+	private static double sigma( double x )
+	{
+		if ( x == 1 )
+			return Double.POSITIVE_INFINITY;
+		double y = 1;
+		double z = x;
+		double previous;
+		do
+		{
+			x *= x;
+			previous = z;
+			z += x * y;
+			y += y;
+		} while ( z != previous );
+		return z;
+	}
+
+	private static double tau( double x )
+	{
+		if ( x == 0 || x == 1 )
+			return 0;
+		double y = 1;
+		double z = 1 - x;
+		double previous;
+		do
+		{
+			x = Math.sqrt( x );
+			previous = z;
+			y *= 0.5;
+			z -= ( 1 - x ) * ( 1 - x ) * y;
+		} while ( z != previous );
+		return z / 3;
+	}
+
+	/**
+	 * Hashes a value to 64 bits, the equal values have the same hash.
+	 *
+	 * @param value
+	 * @return
+	 */
+	static long hash( Object value )
+	{
+		long hash;
+		if ( value instanceof String )
+		{
+			String s = (String) value;
+			// FNV-1a over the chars, the hash code of a string has 32 bits
+			// only
+			hash = 0xcbf29ce484222325L;
+			for ( int i = 0; i < s.length( ); i++ )
+			{
+				hash ^= s.charAt( i );
+				hash *= 0x100000001b3L;
+			}
+		}
+		else if ( value instanceof Long
+				|| value instanceof Integer || value instanceof Short
+				|| value instanceof Byte )
+		{
+			hash = ( (Number) value ).longValue( );
+		}
+		else if ( value instanceof Double )
+		{
+			hash = Double.doubleToLongBits( ( (Double) value ).doubleValue( ) );
+		}
+		else if ( value instanceof Date )
+		{
+			hash = ( (Date) value ).getTime( );
+		}
+		else
+		{
+			hash = value.hashCode( );
+		}
+		// the values of different classes are not equal
+		hash ^= (long) value.getClass( ).getName( ).hashCode( ) << 32;
+		// the finalizer of MurmurHash3 spreads the bits
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb53fe1a85ec9L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An approximate summary of the values of a group, whose size does not grow
+ * with the count of values. It is a KLL sketch: the values are kept in levels,
+ * a value at level h stands for 2^h values. When a level is full, it is sorted
+ * and every other value of it is moved to the next level, the lower levels
+ * having the smaller capacities. The values to move are chosen alternately
+ * instead of randomly, so the result of the same values is always the same.
+ * <p>
+ * Two sketches can be merged, the merged sketch summarizes the values of both.
+ */
+public class QuantileSketch extends QuantileValues
+{
+
+	private static final double CAPACITY_RATIO = 2D / 3D;
+	private static final int MIN_CAPACITY = 2;
+	private static final int MIN_K = 8;
+	private static final int INITIAL_LEVEL_SIZE = 16;
+
+	private int k;
+	private long count;
+
+	private double[][] levels = new double[0][];
+	private int[] levelSizes = new int[0];
+	private boolean[] compactOdd = new boolean[0];
+	private int size;
+	private int capacity;
+
+	// the values in ascending order and their accumulated weights, which are
+	// populated when the values are got
+	private double[] sortedValues;
+	private long[] accumulatedWeights;
+
+	/**
+	 * @param accuracy
+	 *            the tolerated error of the ranks as a fraction of the count
+	 *            of values, between 0 and 1
+	 */
+	public QuantileSketch( double accuracy )
+	{
+		assert accuracy > 0 && accuracy < 1;
+		this.k = (int) Math.max( MIN_K, Math.min( Integer.MAX_VALUE / 2,
+				Math.ceil( 2 / accuracy ) ) );
+		addLevel( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.aggregation.impl.QuantileValues#add(double)
+	 */
+	public void add( double value )
+	{
+		append( 0, value );
+		count++;
+		sortedValues = null;
+		compress( );
+	}
+
+	/**
+	 * Adds the values summarized by another sketch.
+	 *
+	 * @param sketch
+	 */
+	public void merge( QuantileSketch sketch )
+	{
+		for ( int h = 0; h < sketch.levels.length; h++ )
+		{
+			while ( h >= levels.length )
+				addLevel( );
+			for ( int i = 0; i < sketch.levelSizes[h]; i++ )
+				append( h, sketch.levels[h][i] );
+		}
+		count += sketch.count;
+		sortedValues = null;
+		compress( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.aggregation.impl.QuantileValues#getCount()
+	 */
+	public long getCount( )
+	{
+		return count;
+	}
+
+	/**
+	 * @return the count of values kept by the sketch
+	 */
+	public int getSize( )
+	{
+		return size;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.aggregation.impl.QuantileValues#getValue(long)
+	 */
+	public double getValue( long rank )
+	{
+		assert rank >= 0 && rank < count;
+		if ( sortedValues == null )
+			sort( );
+		int low = 0;
+		int high = sortedValues.length - 1;
+		while ( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if ( accumulatedWeights[middle] > rank )
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		return sortedValues[low];
+	}
+
+	private void sort( )
+	{
+		// equal values are kept once with the sum of their weights
+		TreeMap<Double, Long> weights = new TreeMap<Double, Long>( );
+		for ( int h = 0; h < levels.length; h++ )
+		{
+			long weight = 1L << h;
+			for ( int i = 0; i < levelSizes[h]; i++ )
+			{
+				Double value = Double.valueOf( levels[h][i] );
+				Long sum = weights.get( value );
+				weights.put( value, Long.valueOf( sum == null ? weight
+						: sum.longValue( ) + weight ) );
+			}
+		}
+		sortedValues = new double[weights.size( )];
+		accumulatedWeights = new long[weights.size( )];
+		long accumulated = 0;
+		int i = 0;
+		for ( Iterator<Map.Entry<Double, Long>> it = weights.entrySet( )
+				.iterator( ); it.hasNext( ); i++ )
+		{
+			Map.Entry<Double, Long> entry = it.next( );
+			accumulated += entry.getValue( ).longValue( );
+			sortedValues[i] = entry.getKey( ).doubleValue( );
+			accumulatedWeights[i] = accumulated;
+		}
+	}
+
+	private void append( int level, double value )
+	{
+		if ( levelSizes[level] == levels[level].length )
+			levels[level] = Arrays.copyOf( levels[level],
+					levels[level].length * 2 );
+		levels[level][levelSizes[level]++] = value;
+		size++;
+	}
+
+	/**
+	 * Compacts the lowest full levels until the sketch is within its
+	 * capacity.
+	 */
+	private void compress( )
+	{
+		while ( size >= capacity )
+		{
+			int h = 0;
+			while ( levelSizes[h] < getCapacity( h ) )
+				h++;
+			if ( h + 1 == levels.length )
+				addLevel( );
+			compact( h );
+		}
+	}
+
+	/**
+	 * Moves every other value of a level to the next level. An odd value is
+	 * kept in the level.
+	 *
+	 * @param h
+	 */
+	private void compact( int h )
+	{
+		double[] level = levels[h];
+		int levelSize = levelSizes[h];
+		Arrays.sort( level, 0, levelSize );
+		int kept = levelSize % 2;
+		int offset = compactOdd[h] ? 1 : 0;
+		compactOdd[h] = !compactOdd[h];
+		for ( int i = kept + offset; i < levelSize; i += 2 )
+		{
+			append( h + 1, level[i] );
+		}
+		size -= levelSize - kept;
+		levelSizes[h] = kept;
+	}
+
+	private int getCapacity( int h )
+	{
+		return Math.max( MIN_CAPACITY,
+				(int) Math.ceil( k * Math.pow( CAPACITY_RATIO, levels.length - 1 - h ) ) );
+	}
+
+	private void addLevel( )
+	{
+		int length = levels.length + 1;
+		levels = Arrays.copyOf( levels, length );
+		levels[length - 1] = new double[INITIAL_LEVEL_SIZE];
+		levelSizes = Arrays.copyOf( levelSizes, length );
+		compactOdd = Arrays.copyOf( compactOdd, length );
+		capacity = 0;
+		for ( int h = 0; h < length; h++ )
+		{
+			capacity += getCapacity( h );
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * The values of a group from which the value at a given rank is got, used by
+ * the median, percentile and quartile aggregations. The values are either kept
+ * exactly, or summarized by a sketch of bounded size if an accuracy is given.
+ */
+public abstract class QuantileValues
+{
+
+	/**
+	 * Creates the values of a group.
+	 *
+	 * @param accuracy
+	 *            the argument of the optional accuracy parameter, which is the
+	 *            tolerated error of the ranks as a fraction of the count of
+	 *            values. The values are kept exactly if it is null or blank.
+	 * @return
+	 * @throws DataException
+	 */
+	public static QuantileValues newInstance( Object accuracy )
+			throws DataException
+	{
+		Double value = AggrFunction.getAccuracy( accuracy );
+		if ( value == null )
+			return new ExactQuantileValues( );
+		return new QuantileSketch( value.doubleValue( ) );
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value
+	 */
+	public abstract void add( double value );
+
+	/**
+	 * @return the count of added values
+	 */
+	public abstract long getCount( );
+
+	/**
+	 * Gets the value at the given rank of the added values in ascending order,
+	 * in the order of <code>Double.compare</code>.
+	 *
+	 * @param rank
+	 *            the rank from 0 to getCount( ) - 1
+	 * @return
+	 */
+	public abstract double getValue( long rank );
+}
@@ -56,13 +56,19 @@ public class TotalCountDistinct extends AggrFunction
 	 */
 	public IParameterDefn[] getParameterDefn( )
 	{
-		// 1 argument
+		// 1 argument, and the accuracy of the approximate count
 		return new IParameterDefn[]{
 			new ParameterDefn( Constants.EXPRESSION_NAME,
 					Constants.EXPRESSION_DISPLAY_NAME,
 					false,
 					true,
 					SupportedDataTypes.ANY,
+					"" ),//$NON-NLS-1$
+			new ParameterDefn( Constants.ACCURACY_NAME,
+					Constants.ACCURACY_DISPLAY_NAME,
+					true,
+					false,
+					SupportedDataTypes.CALCULATABLE,
 					"" )//$NON-NLS-1$
 		};
 	}
@@ -75,21 +81,38 @@ public class TotalCountDistinct extends AggrFunction
 	private static class MyAccumulator extends SummaryAccumulator
     {
         private Set set;
+        // estimates the count instead of the set if an accuracy is given
+        private HyperLogLog hll;
+        private boolean started;
         private boolean hasNullValue = false;
         
         public void start()
         {
             super.start();
-            set = new HashSet();
+            set = null;
+            hll = null;
+            started = false;
             this.hasNullValue = false;
         }
         
         public void onRow( Object[] args ) throws DataException
         {
         	assert(args.length>0);
+        	if ( !started )
+        	{
+        		Double accuracy = getAccuracy( args.length > 1 ? args[1] : null );
+        		if ( accuracy == null )
+        			set = new HashSet( );
+        		else
+        			hll = new HyperLogLog( accuracy.doubleValue( ) );
+        		started = true;
+        	}
         	if(args[0] instanceof Comparable)
         	{
-        		set.add(args[0]);
+        		if ( hll != null )
+        			hll.add( args[0] );
+        		else
+        			set.add(args[0]);
         	}
         	else
         	{
@@ -111,7 +134,12 @@ public class TotalCountDistinct extends AggrFunction
          */
         public Object getSummaryValue()
         {
-            return Integer.valueOf( set.size( ) + ( this.hasNullValue ? 1 : 0 ) );
+            int count = 0;
+            if ( hll != null )
+            	count = (int) Math.min( Integer.MAX_VALUE, hll.getEstimate( ) );
+            else if ( set != null )
+            	count = set.size( );
+            return Integer.valueOf( count + ( this.hasNullValue ? 1 : 0 ) );
         }
     }
 
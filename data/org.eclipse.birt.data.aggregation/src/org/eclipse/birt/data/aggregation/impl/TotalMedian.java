@@ -13,10 +13,6 @@
  */
 package org.eclipse.birt.data.aggregation.impl;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
@@ -75,6 +71,12 @@ public class TotalMedian extends AggrFunction
 					false,
 					true,
 					SupportedDataTypes.CALCULATABLE,
+					"" ),//$NON-NLS-1$
+			new ParameterDefn( Constants.ACCURACY_NAME,
+					Constants.ACCURACY_DISPLAY_NAME,
+					true,
+					false,
+					SupportedDataTypes.CALCULATABLE,
 					"" )//$NON-NLS-1$
 		};
 	}
@@ -91,7 +93,7 @@ public class TotalMedian extends AggrFunction
 
     private static class MyAccumulator extends SummaryAccumulator
     {
-        private List list;
+        private QuantileValues values;
 
         private Object ret = null;
 
@@ -103,7 +105,7 @@ public class TotalMedian extends AggrFunction
         public void start()
         {
             super.start();
-            list = new ArrayList();
+            values = null;
             ret = null;
         }
 
@@ -115,31 +117,35 @@ public class TotalMedian extends AggrFunction
         public void onRow( Object[] args ) throws DataException
 		{
 			assert ( args.length > 0 );
+			if ( values == null )
+			{
+				// the values are summarized approximately if an accuracy is
+				// given
+				values = QuantileValues.newInstance( args.length > 1 ? args[1]
+						: null );
+			}
 			if ( args[0] != null )
 			{
-				list.add( calculator.getTypedObject( args[0] ) );
+				values.add( ( (Double) calculator.getTypedObject( args[0] ) ).doubleValue( ) );
 			}
 		}
 
         public void finish( ) throws DataException
 		{
-			int size = list.size( );
+			long size = values == null ? 0 : values.getCount( );
 			if ( size > 0 )
 			{
-				Object[] values = list.toArray( );
-				Arrays.sort( values );
-
 				if ( size % 2 == 0 )
 				{
-					Object d1 = values[size / 2 - 1];
-					Object d2 = values[size / 2];
+					Object d1 = Double.valueOf( values.getValue( size / 2 - 1 ) );
+					Object d2 = Double.valueOf( values.getValue( size / 2 ) );
 					ret = calculator.divide(
 							calculator.add( calculator.getTypedObject( d1 ), calculator.getTypedObject( d2 ) ),
 							calculator.getTypedObject( 2 ) );
 				}
 				else
 				{
-					ret = calculator.getTypedObject( values[size / 2] );
+					ret = calculator.getTypedObject( Double.valueOf( values.getValue( size / 2 ) ) );
 				}
 			}
 			super.finish( );
@@ -13,11 +13,13 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.eclipse.birt.data.aggregation.impl.RunningAccumulator;
 import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.ICloseListener;
 import org.eclipse.birt.data.engine.cache.BasicCachedArray;
+import org.eclipse.birt.data.engine.cache.TopNSelector;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
@@ -41,6 +43,12 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 	private static Boolean falseValue = Boolean.FALSE;
 	private String tempDir;
 	
+	// the top or bottom rows selected in the first pass if N is known in
+	// advance, instead of caching all the values
+	private TopNSelector selector;
+	private int rowIndex;
+	private int[] targetIndexes;
+	
 	public BaseTopBottomAccumulator( )
 	{
 		if ( DataEngineThreadLocal.getInstance( ).getPathManager( ) != null )
@@ -74,7 +82,13 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 			cachedValues = new BasicCachedListExt( tempDir );
 			N = -1;
 		}
-		else
+		else if ( selector != null )
+		{
+			this.targetIndexes = selector.getRowIndexes( );
+			this.selector = null;
+			this.cachedValues = null;
+		}
+		else if ( targetIndexes == null )
 		{
 			this.targetValue = this.getTargetValueIndex();
 		}
@@ -119,6 +133,18 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 		assert ( args.length == 2 );
 		if( passNo == 1)
 		{	
+			if ( N == -1 )
+			{
+				if( args.length < 2 ) 
+					throw new DataException(ResourceConstants.INVALID_TOP_BOTTOM_N_ARGUMENT);
+				N = populateNValue( args[1] );
+				selector = newSelector( N );
+			}
+			if ( selector != null )
+			{
+				selector.add( args[0], rowIndex++ );
+				return;
+			}
 			if ( args[0] != null )
 			{
 				cachedValues.add( args[0] );
@@ -126,12 +152,6 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 			{
 				cachedValues.add( RankAggregationUtil.getNullObject( ) );
 			}
-			if ( N == -1 )
-			{
-				if( args.length < 2 ) 
-					throw new DataException(ResourceConstants.INVALID_TOP_BOTTOM_N_ARGUMENT);
-				N = populateNValue( args[1] );
-			}
 		}else
 		{
 			this.currentIndex ++;
@@ -145,6 +165,11 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 	 */
 	private Boolean populateValue( )
 	{
+		if ( targetIndexes != null )
+		{
+			return Arrays.binarySearch( targetIndexes, currentIndex ) >= 0
+					? trueValue : falseValue;
+		}
 		for( int i = 0; i < this.targetValue.length( ); i++ )
 		{
 			if ( this.currentIndex == ( (Integer) this.targetValue.get( i ) ).intValue( ) )
@@ -161,6 +186,18 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 	 */
 	protected abstract int getNextIndex( ) throws DataException;
 	
+	/**
+	 * Creates the selector of the top or bottom rows in the first pass, if N is
+	 * the count of rows, which is known before all the values are visited.
+	 * 
+	 * @param N
+	 * @return the selector, or null if all the values should be cached
+	 */
+	protected TopNSelector newSelector( double N )
+	{
+		return null;
+	}
+	
 	/**
 	 * Populate the N value get from argument.
 	 * 
@@ -13,8 +13,11 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.cache.TopNSelector;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
 /**
  * The common parent Accumulator used by Top/Bottom N aggregations.  
@@ -50,4 +53,47 @@ public abstract class NAccumulator extends BaseTopBottomAccumulator
 	{
 		return (int)( N < 0 ? 0 : N );
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#newSelector(double)
+	 */
+	protected TopNSelector newSelector( double N )
+	{
+		int n = adjustNValue( N );
+		if ( n > TopNSelector.MAX_SIZE )
+			return null;
+		final boolean top = isTop( );
+		return new TopNSelector( n ) {
+
+			// the same order as the values are selected by getNextIndex( )
+			protected boolean isBefore( Object value1, int rowIndex1,
+					Object value2, int rowIndex2 ) throws DataException
+			{
+				if ( value1 == null && value2 == null )
+					return top ? rowIndex1 > rowIndex2 : rowIndex1 < rowIndex2;
+				if ( value1 == null || value2 == null )
+					return top ? value2 == null : value1 == null;
+				if ( isLess( top ? value2 : value1, top ? value1 : value2 ) )
+					return true;
+				if ( isLess( top ? value1 : value2, top ? value2 : value1 ) )
+					return false;
+				return rowIndex1 < rowIndex2;
+			}
+		};
+	}
+
+	private static boolean isLess( Object value1, Object value2 )
+			throws DataException
+	{
+		return Boolean.valueOf( ScriptEvalUtil.evalConditionalExpr( value1,
+				IConditionalExpression.OP_LT,
+				value2,
+				null ).toString( ) ).booleanValue( );
+	}
+
+	/**
+	 * @return true for the top N values, false for the bottom N values
+	 */
+	protected abstract boolean isTop( );
 }
@@ -11,10 +11,8 @@
 
 package org.eclipse.birt.data.aggregation.impl.rank;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.impl.QuantileValues;
 import org.eclipse.birt.data.aggregation.impl.SummaryAccumulator;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -31,13 +29,15 @@ import org.eclipse.birt.data.engine.core.DataException;
  * 			ad = a[k]+(f*(a[k+1]-a[k])) //Then we can calculate out the adjustment:
  * 			result = a[k] + ad;
  * 
+ * The optional third argument is the accuracy, if it is given the values are
+ * summarized approximately by a sketch instead of being kept.
  */
 abstract class PercentileAccumulator extends SummaryAccumulator
 {
 
 	//
 	private Double pct;
-	private List cachedValues;
+	private QuantileValues cachedValues;
 
 	public PercentileAccumulator( ICalculator calc )
 	{
@@ -52,7 +52,7 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 		super.start( );
 
 		pct = -1D;
-		cachedValues = new ArrayList( );
+		cachedValues = null;
 	}
 
 	/*
@@ -62,12 +62,17 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	 */
 	public void onRow( Object[] args ) throws DataException
 	{
-		assert ( args.length == 2 );
+		assert ( args.length >= 2 );
+		if ( cachedValues == null )
+		{
+			cachedValues = QuantileValues.newInstance( args.length > 2
+					? args[2] : null );
+		}
 		if ( args[0] != null )
 		{
 			Number d = calculator.add( calculator.getTypedObject( 0 ), calculator.getTypedObject( args[0] ) );
 			if ( d != null )
-				cachedValues.add( d );
+				cachedValues.add( d.doubleValue( ) );
 		}
 		if ( pct == -1 )
 		{
@@ -85,24 +90,23 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	 */
 	public Object getSummaryValue( ) throws DataException
 	{
-		Object[] sortedObjs = this.cachedValues.toArray( );
-		if ( sortedObjs.length == 0 )
+		if ( this.cachedValues == null || this.cachedValues.getCount( ) == 0 )
 		{
 			return null;
 		}
-		RankAggregationUtil.sortArray( sortedObjs );
-		double n = pct * ( sortedObjs.length - 1 ) + 1;
-		int k = (int) Math.floor( n );
+		double n = pct * ( cachedValues.getCount( ) - 1 ) + 1;
+		long k = (long) Math.floor( n );
 		double fraction = n - k;
+		Double lower = Double.valueOf( cachedValues.getValue( k - 1 ) );
 
 		Number adjustment = 0;
 		if ( fraction != 0 )
 		{
 			adjustment = calculator.multiply( calculator.getTypedObject( fraction ),
-					calculator.subtract( calculator.getTypedObject( sortedObjs[k] ), calculator.getTypedObject( sortedObjs[k - 1] ) ) );
+					calculator.subtract( calculator.getTypedObject( Double.valueOf( cachedValues.getValue( k ) ) ), calculator.getTypedObject( lower ) ) );
 		}
 
-		return calculator.add( calculator.getTypedObject( sortedObjs[k - 1] ), calculator.getTypedObject( adjustment ) );
+		return calculator.add( calculator.getTypedObject( lower ), calculator.getTypedObject( adjustment ) );
 	}
 
 }
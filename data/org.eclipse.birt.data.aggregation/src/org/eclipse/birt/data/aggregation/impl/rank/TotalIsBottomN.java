@@ -52,6 +52,16 @@ public class TotalIsBottomN extends BaseTopBottomAggregation
 		{
 			return RankAggregationUtil.getNextBottomIndex( cachedValues );
 		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.aggregation.impl.rank.NAccumulator#isTop()
+		 */
+		protected boolean isTop( )
+		{
+			return false;
+		}
 	}
 
 	/*
@@ -53,6 +53,16 @@ public class TotalIsTopN extends BaseTopBottomAggregation
 		{
 			return RankAggregationUtil.getNextTopIndex( cachedValues );
 		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.aggregation.impl.rank.NAccumulator#isTop()
+		 */
+		protected boolean isTop( )
+		{
+			return true;
+		}
 	}
 
 	/*
@@ -79,7 +79,13 @@ public class TotalPercentile extends AggrFunction
 						true,
 						SupportedDataTypes.CALCULATABLE,
 						"" ), //$NON-NLS-1$
-				new ParameterDefn( "percentage", Messages.getString( "TotalPercentile.param.percentage" ), false, false, SupportedDataTypes.CALCULATABLE, "" ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				new ParameterDefn( "percentage", Messages.getString( "TotalPercentile.param.percentage" ), false, false, SupportedDataTypes.CALCULATABLE, "" ), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				new ParameterDefn( Constants.ACCURACY_NAME,
+						Constants.ACCURACY_DISPLAY_NAME,
+						true,
+						false,
+						SupportedDataTypes.CALCULATABLE,
+						"" ) //$NON-NLS-1$
 		};
 	}
 
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.aggregation;
+
+import java.util.Date;
+
+import org.eclipse.birt.data.aggregation.impl.HyperLogLog;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the estimation of the count of distinct values.
+ */
+public class HyperLogLogTest
+{
+
+	@Test
+	public void testEstimate( ) throws Exception
+	{
+		int[] counts = new int[]{
+				0, 1, 10, 1000, 20000, 50000, 1000000
+		};
+		for ( int i = 0; i < counts.length; i++ )
+		{
+			HyperLogLog hll = new HyperLogLog( 0.01 );
+			for ( int j = 0; j < counts[i]; j++ )
+			{
+				hll.add( Integer.valueOf( j ) );
+				// the duplicate values are not counted
+				hll.add( Integer.valueOf( j ) );
+			}
+			assertEstimate( counts[i], hll.getEstimate( ) );
+		}
+	}
+
+	@Test
+	public void testValueTypes( ) throws Exception
+	{
+		HyperLogLog hll = new HyperLogLog( 0.01 );
+		for ( int j = 0; j < 10000; j++ )
+		{
+			hll.add( "customer" + j );
+			hll.add( Double.valueOf( j ) );
+			hll.add( new Date( j ) );
+		}
+		assertEstimate( 30000, hll.getEstimate( ) );
+	}
+
+	@Test
+	public void testMerge( ) throws Exception
+	{
+		HyperLogLog hll1 = new HyperLogLog( 0.01 );
+		HyperLogLog hll2 = new HyperLogLog( 0.01 );
+		for ( int j = 0; j < 200000; j++ )
+		{
+			// the values of both overlap
+			if ( j < 150000 )
+				hll1.add( Long.valueOf( j ) );
+			if ( j >= 50000 )
+				hll2.add( Long.valueOf( j ) );
+		}
+		hll1.merge( hll2 );
+		assertEstimate( 200000, hll1.getEstimate( ) );
+	}
+
+	private static void assertEstimate( long count, long estimate )
+	{
+		// three times of the standard error
+		assertTrue( "count " + count + " estimate " + estimate,
+				Math.abs( estimate - count ) <= Math.max( 1, count * 0.03 ) );
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.aggregation;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.eclipse.birt.data.aggregation.impl.ExactQuantileValues;
+import org.eclipse.birt.data.aggregation.impl.QuantileSketch;
+import org.eclipse.birt.data.aggregation.impl.QuantileValues;
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the values from which the median, percentile and quartile are got.
+ */
+public class QuantileValuesTest
+{
+
+	@Test
+	public void testExact( ) throws Exception
+	{
+		Random random = new Random( 0 );
+		double[] values = new double[10001];
+		QuantileValues quantiles = QuantileValues.newInstance( null );
+		assertTrue( quantiles instanceof ExactQuantileValues );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			// many equal values
+			values[i] = random.nextInt( 1000 );
+			quantiles.add( values[i] );
+		}
+		Arrays.sort( values );
+		assertEquals( values.length, quantiles.getCount( ) );
+		for ( int rank = 0; rank < values.length; rank += 97 )
+		{
+			assertEquals( values[rank], quantiles.getValue( rank ), 0 );
+		}
+		assertEquals( values[0], quantiles.getValue( 0 ), 0 );
+		assertEquals( values[values.length - 1],
+				quantiles.getValue( values.length - 1 ),
+				0 );
+	}
+
+	@Test
+	public void testSketch( ) throws Exception
+	{
+		double accuracy = 0.01;
+		int count = 1000000;
+		QuantileSketch sketch = (QuantileSketch) QuantileValues.newInstance( Double.valueOf( accuracy ) );
+		for ( int i = 0; i < count; i++ )
+		{
+			// a permutation of 0 .. count - 1, so the value is its rank
+			sketch.add( ( i * 7919L ) % count );
+		}
+		assertEquals( count, sketch.getCount( ) );
+		// the size does not grow with the count of values
+		assertTrue( sketch.getSize( ) < 1000 );
+		assertRankError( sketch, count, accuracy );
+	}
+
+	@Test
+	public void testMerge( ) throws Exception
+	{
+		double accuracy = 0.01;
+		int count = 200000;
+		QuantileSketch sketch1 = new QuantileSketch( accuracy );
+		QuantileSketch sketch2 = new QuantileSketch( accuracy );
+		for ( int i = 0; i < count; i++ )
+		{
+			long value = ( i * 7919L ) % count;
+			if ( value % 3 == 0 )
+				sketch1.add( value );
+			else
+				sketch2.add( value );
+		}
+		sketch1.merge( sketch2 );
+		assertEquals( count, sketch1.getCount( ) );
+		assertRankError( sketch1, count, accuracy );
+	}
+
+	@Test
+	public void testSmallSketch( ) throws Exception
+	{
+		// the values are kept exactly until the sketch is full
+		QuantileSketch sketch = new QuantileSketch( 0.1 );
+		double[] values = new double[]{
+				5, 3, 9, 1, 7
+		};
+		for ( int i = 0; i < values.length; i++ )
+		{
+			sketch.add( values[i] );
+		}
+		Arrays.sort( values );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			assertEquals( values[i], sketch.getValue( i ), 0 );
+		}
+	}
+
+	@Test
+	public void testInvalidAccuracy( ) throws Exception
+	{
+		assertTrue( QuantileValues.newInstance( " " ) instanceof ExactQuantileValues );
+		Object[] accuracies = new Object[]{
+				Double.valueOf( 0 ),
+				Double.valueOf( 1 ),
+				Double.valueOf( -0.1 ),
+				"abc"
+		};
+		for ( int i = 0; i < accuracies.length; i++ )
+		{
+			try
+			{
+				QuantileValues.newInstance( accuracies[i] );
+				fail( "invalid accuracy " + accuracies[i] );
+			}
+			catch ( DataException e )
+			{
+			}
+		}
+	}
+
+	private static void assertRankError( QuantileValues quantiles, int count,
+			double accuracy )
+	{
+		for ( int i = 0; i <= 100; i++ )
+		{
+			long rank = (long) ( ( count - 1 ) * ( i / 100D ) );
+			// the value of a rank is the rank itself
+			double error = Math.abs( quantiles.getValue( rank ) - rank );
+			assertTrue( "rank " + rank + " error " + error,
+					error <= accuracy * count );
+		}
+	}
+}
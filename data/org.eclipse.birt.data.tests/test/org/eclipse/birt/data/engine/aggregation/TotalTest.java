@@ -1086,6 +1086,47 @@ public class TotalTest {
 		assertEquals( 9D, ret );
 	}
 	
+	@Test
+    public void testTotalCountDistinct() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("countdistinct");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_COUNTDISTINCT_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(2, ag.getParameterDefn().length);
+        assertTrue(!ag.getParameterDefn()[0].isOptional());
+        assertTrue(ag.getParameterDefn()[1].isOptional());
+
+        ac.start();
+        for(int i=0; i<doubleArray2.length; i++)
+        {
+            ac.onRow(new Object[]{new Double(doubleArray2[i])});
+        }
+        ac.onRow(new Object[]{null});
+        ac.finish();
+        assertEquals(Integer.valueOf(11), ac.getValue());
+
+        // the count is estimated if an accuracy is given
+        ac.start();
+        for(int i=0; i<100000; i++)
+        {
+            ac.onRow(new Object[]{"customer" + (i % 50000), new Double(0.01)});
+        }
+        ac.finish();
+        int count = ((Integer) ac.getValue()).intValue();
+        assertTrue(Math.abs(count - 50000) < 50000 * 0.03);
+
+        try
+        {
+            ac.start();
+            ac.onRow(new Object[]{"customer", new Double(1.5)});
+            fail("should not arrive here");
+        }
+        catch ( DataException e )
+        {
+        }
+    }
+
 	@Test
     public void testTotalMedian() throws Exception
     {
@@ -1093,8 +1134,9 @@ public class TotalTest {
         Accumulator ac = ag.newAccumulator();
         assertEquals(IBuildInAggregation.TOTAL_MEDIAN_FUNC, ag.getName());
         assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
-        assertEquals(1, ag.getParameterDefn().length);
+        assertEquals(2, ag.getParameterDefn().length);
         assertTrue(!ag.getParameterDefn()[0].isOptional());
+        assertTrue(ag.getParameterDefn()[1].isOptional());
 
         ac.start();
         for(int i=0; i<doubleArray1.length; i++)
@@ -1112,6 +1154,15 @@ public class TotalTest {
         ac.finish();
         assertEquals(new Double(3.5), ac.getValue());
 
+        // the values are kept exactly by a sketch until it is full
+        ac.start();
+        for(int i=0; i<doubleArray2.length; i++)
+        {
+            ac.onRow(new Object[]{new Double(doubleArray2[i]), new Double(0.01)});
+        }
+        ac.finish();
+        assertEquals(new Double(3.5), ac.getValue());
+
         ac.start();
         for(int i=0; i<str1.length; i++)
         {
@@ -2070,9 +2121,10 @@ public class TotalTest {
         Accumulator ac = ag.newAccumulator();
         assertEquals(IBuildInAggregation.TOTAL_PERCENTILE_FUNC, ag.getName());
         assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
-        assertEquals(2, ag.getParameterDefn().length);
+        assertEquals(3, ag.getParameterDefn().length);
         assertTrue(!ag.getParameterDefn()[0].isOptional());
         assertFalse(ag.getParameterDefn( )[1].isOptional());
+        assertTrue(ag.getParameterDefn( )[2].isOptional( ));
 
         ac.start();
         for(int i=0; i<doubleArray3.length; i++)
@@ -2119,6 +2171,25 @@ public class TotalTest {
         value = ac.getValue( );
         assertEquals(value, new Double( 17.5 ));
 
+        ac.start();
+        for(int i=0; i<doubleArray3.length; i++)
+        {
+            ac.onRow(new Object[]{doubleArray3[i], new Double(0.35), new Double(0.01)});
+        }
+        ac.finish();
+        value = ac.getValue( );
+        assertEquals(value, new Double( 17.5 ));
+
+        try
+        {
+            ac.start();
+            ac.onRow(new Object[]{doubleArray3[0], new Double(0.35), new Double(2)});
+            fail("should not arrive here");
+        }
+        catch ( DataException e )
+        {
+        }
+
         try{
              ac.start();
              for(int i=0; i<doubleArray3.length; i++)
@@ -2175,9 +2246,10 @@ public class TotalTest {
         Accumulator ac = ag.newAccumulator();
         assertEquals(IBuildInAggregation.TOTAL_QUARTILE_FUNC, ag.getName());
         assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
-        assertEquals(2, ag.getParameterDefn().length);
+        assertEquals(3, ag.getParameterDefn().length);
         assertTrue(!ag.getParameterDefn()[0].isOptional());
         assertFalse( ag.getParameterDefn( )[1].isOptional( ) );
+        assertTrue(ag.getParameterDefn( )[2].isOptional( ));
 
         ac.start();
         for(int i=0; i<doubleArray3.length; i++)
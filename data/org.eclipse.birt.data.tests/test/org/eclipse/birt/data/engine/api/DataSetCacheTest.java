@@ -230,6 +230,47 @@ public class DataSetCacheTest extends APITestCase
 		myDataEngine.shutdown( );
 	}
 	
+	/**
+	 * Test the rows are cached while they are streamed to a simple query, and
+	 * the rows are limited by the cache row count as if they were loaded from
+	 * the cache
+	 * 
+	 * @throws BirtException
+	 */
+	@Test
+    public void testCacheWhileStreaming( ) throws BirtException
+	{
+		this.dataSet.setCacheRowCount( 4 );
+		this.dataSet.addFilter( new FilterDefinition( new ScriptExpression( "true" ) ) );
+		DataEngineImpl myDataEngine = newDataEngine( );
+		QueryDefinition qd = newReportQuery( );
+		rowBeArray = getRowExpr( );
+		totalBeArray = new IBaseExpression[0];
+		prepareExprNameAndQuery( rowBeArray, totalBeArray, qd );
+
+		List streamed = new ArrayList( );
+		IQueryResults qr = myDataEngine.prepare( qd, appContextMap ).execute( null );
+		IResultIterator ri = qr.getResultIterator( );
+		while ( ri.next( ) )
+		{
+			streamed.add( ri.getValue( rowBeNames[1] ) );
+		}
+		qr.close( );
+		assertEquals( 4, streamed.size( ) );
+		assertTrue( getDataSetCacheManager( myDataEngine ).doesLoadFromCache( ) );
+
+		List loaded = new ArrayList( );
+		qr = myDataEngine.prepare( qd, appContextMap ).execute( null );
+		ri = qr.getResultIterator( );
+		while ( ri.next( ) )
+		{
+			loaded.add( ri.getValue( rowBeNames[1] ) );
+		}
+		qr.close( );
+		assertEquals( streamed, loaded );
+		myDataEngine.shutdown( );
+	}
+	
 	/**
 	 * Test the feature of enable cache
 	 * @throws Exception
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the selection of the first N rows by a bounded heap.
+ */
+public class TopNSelectorTest
+{
+	/**
+	 * Selects the rows of the largest values, and the earlier rows of equal
+	 * values.
+	 */
+	private static class TopSelector extends TopNSelector
+	{
+		int comparisons;
+
+		TopSelector( int n )
+		{
+			super( n );
+		}
+
+		protected boolean isBefore( Object value1, int rowIndex1,
+				Object value2, int rowIndex2 ) throws DataException
+		{
+			comparisons++;
+			int result = ( (Integer) value1 ).compareTo( (Integer) value2 );
+			return result > 0 || ( result == 0 && rowIndex1 < rowIndex2 );
+		}
+	}
+
+	private static int[] selectBySort( final int[] values, int n )
+	{
+		List<Integer> rows = new ArrayList<Integer>( );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			rows.add( Integer.valueOf( i ) );
+		}
+		Collections.sort( rows, new Comparator<Integer>( ) {
+
+			public int compare( Integer row1, Integer row2 )
+			{
+				// stable sort keeps earlier rows of equal values first
+				return values[row2.intValue( )] - values[row1.intValue( )];
+			}
+		} );
+		int[] result = new int[Math.min( n, values.length )];
+		for ( int i = 0; i < result.length; i++ )
+		{
+			result[i] = rows.get( i ).intValue( );
+		}
+		Arrays.sort( result );
+		return result;
+	}
+
+	@Test
+	public void testSelect( ) throws Exception
+	{
+		Random random = new Random( 0 );
+		int[] values = new int[10000];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			// many equal values
+			values[i] = random.nextInt( 100 );
+		}
+		int[] sizes = new int[]{
+				0, 1, 10, 2000, 10000, 20000
+		};
+		for ( int j = 0; j < sizes.length; j++ )
+		{
+			TopSelector selector = new TopSelector( sizes[j] );
+			for ( int i = 0; i < values.length; i++ )
+			{
+				selector.add( Integer.valueOf( values[i] ), i );
+			}
+			assertEquals( Math.min( sizes[j], values.length ), selector.size( ) );
+			assertTrue( Arrays.equals( selectBySort( values, sizes[j] ),
+					selector.getRowIndexes( ) ) );
+		}
+	}
+
+	@Test
+	public void testRejectByRoot( ) throws Exception
+	{
+		// the rows after the first N are rejected by one comparison each
+		TopSelector selector = new TopSelector( 10 );
+		for ( int i = 0; i < 10; i++ )
+		{
+			selector.add( Integer.valueOf( 100 + i ), i );
+		}
+		int comparisons = selector.comparisons;
+		for ( int i = 10; i < 1010; i++ )
+		{
+			selector.add( Integer.valueOf( i % 100 ), i );
+		}
+		assertEquals( comparisons + 1000, selector.comparisons );
+		int[] expected = new int[10];
+		for ( int i = 0; i < 10; i++ )
+		{
+			expected[i] = i;
+		}
+		assertTrue( Arrays.equals( expected, selector.getRowIndexes( ) ) );
+	}
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSourceDesign;
+import org.eclipse.birt.data.engine.impl.DataSetCacheUtil;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the JVM level data set cache of CacheMapManager.
+ */
+public class CacheMapManagerTest
+{
+	private ScriptDataSourceDesign dataSource;
+	private IResultClass resultClass;
+	private DataSetCacheConfig config;
+
+	@Before
+	public void cacheMapManagerSetUp( ) throws Exception
+	{
+		dataSource = new ScriptDataSourceDesign( "source" );
+		List columns = new ArrayList( );
+		columns.add( new ResultFieldMetadata( 1,
+				"A",
+				"A",
+				String.class,
+				String.class.getName( ),
+				false ) );
+		resultClass = new ResultClass( columns );
+		config = DataSetCacheConfig.getInstacne( DataSetCacheConfig.DataSetCacheMode.IN_MEMORY,
+				100,
+				null );
+		new CacheMapManager( true ).resetForTest( );
+	}
+
+	@After
+	public void cacheMapManagerTearDown( )
+	{
+		CacheMapManager.setJVMLevelCacheMaxSize( 0 );
+		new CacheMapManager( true ).resetForTest( );
+	}
+
+	private DataSourceAndDataSet getKey( String dataSetName )
+	{
+		return getKey( dataSetName, null );
+	}
+
+	private DataSourceAndDataSet getKey( String dataSetName, String contextKey )
+	{
+		return DataSourceAndDataSet.newInstance( dataSource,
+				new ScriptDataSetDesign( dataSetName, "source" ),
+				null,
+				null,
+				false,
+				contextKey );
+	}
+
+	/**
+	 * Saves a data set of the given row count into cache.
+	 */
+	private IDataSetCacheObject save( CacheMapManager manager,
+			DataSourceAndDataSet key, int rowCount, long timeToLive )
+			throws Exception
+	{
+		assertTrue( manager.doesSaveToCache( key, config ) );
+		MemoryDataSetCacheObject cacheObject = (MemoryDataSetCacheObject) manager.getSavedCacheObject( key );
+		cacheObject.setResultClass( resultClass );
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			cacheObject.populateResult( new ResultObject( resultClass,
+					new Object[]{
+						"value" + i
+					} ) );
+		}
+		manager.saveFinishOnCache( key, cacheObject, timeToLive );
+		return cacheObject;
+	}
+
+	@Test
+	public void testLoadFromCache( ) throws Exception
+	{
+		CacheMapManager manager = new CacheMapManager( true );
+		DataSourceAndDataSet key = getKey( "set" );
+		assertFalse( manager.doesLoadFromCache( key, 10 ) );
+		IDataSetCacheObject cacheObject = save( manager, key, 5, 0 );
+		assertTrue( CacheMapManager.getJVMLevelCacheSize( ) > 0 );
+
+		// another session loads the data set cached by the first one
+		CacheMapManager another = new CacheMapManager( true );
+		assertTrue( another.doesLoadFromCache( getKey( "set" ), 10 ) );
+		another.loadStart( key );
+		assertSame( cacheObject, another.getloadedCacheObject( key ) );
+		another.loadFinishOnCache( key );
+		assertSame( resultClass, another.getCachedResultClass( key ) );
+
+		assertEquals( 1, CacheMapManager.getJVMLevelCacheHitCount( ) );
+		assertEquals( 1, CacheMapManager.getJVMLevelCacheMissCount( ) );
+
+		another.clearCache( key );
+		assertFalse( another.doesLoadFromCache( key, 10 ) );
+		assertEquals( 0, CacheMapManager.getJVMLevelCacheSize( ) );
+	}
+
+	@Test
+	public void testEviction( ) throws Exception
+	{
+		CacheMapManager manager = new CacheMapManager( true );
+		save( manager, getKey( "set1" ), 10, 0 );
+		long size = CacheMapManager.getJVMLevelCacheSize( );
+		save( manager, getKey( "set2" ), 10, 0 );
+		// set1 is used after set2, so set2 is the least recently used one
+		assertTrue( manager.doesLoadFromCache( getKey( "set1" ), 10 ) );
+		manager.loadStart( getKey( "set1" ) );
+		manager.loadFinishOnCache( getKey( "set1" ) );
+
+		CacheMapManager.setJVMLevelCacheMaxSize( size * 2 + size / 2 );
+		save( manager, getKey( "set3" ), 10, 0 );
+		assertEquals( 1, CacheMapManager.getJVMLevelCacheEvictionCount( ) );
+		assertTrue( CacheMapManager.getJVMLevelCacheSize( ) <= size * 2
+				+ size / 2 );
+		assertFalse( manager.doesLoadFromCache( getKey( "set2" ), 10 ) );
+		assertTrue( manager.doesLoadFromCache( getKey( "set1" ), 10 ) );
+		assertTrue( manager.doesLoadFromCache( getKey( "set3" ), 10 ) );
+
+		// the data sets being loaded are kept
+		manager.loadStart( getKey( "set1" ) );
+		manager.loadStart( getKey( "set3" ) );
+		CacheMapManager.setJVMLevelCacheMaxSize( size );
+		save( manager, getKey( "set4" ), 10, 0 );
+		assertEquals( 1, CacheMapManager.getJVMLevelCacheEvictionCount( ) );
+		manager.loadFinishOnCache( getKey( "set1" ) );
+		manager.loadFinishOnCache( getKey( "set3" ) );
+	}
+
+	@Test
+	public void testTimeToLive( ) throws Exception
+	{
+		CacheMapManager manager = new CacheMapManager( true );
+		save( manager, getKey( "set1" ), 1, 1 );
+		save( manager, getKey( "set2" ), 1, 60000 );
+		Thread.sleep( 10 );
+		assertFalse( manager.doesLoadFromCache( getKey( "set1" ), 10 ) );
+		assertTrue( manager.doesLoadFromCache( getKey( "set2" ), 10 ) );
+	}
+
+	@Test
+	public void testSingleFlight( ) throws Exception
+	{
+		final CacheMapManager manager = new CacheMapManager( true );
+		final CacheMapManager another = new CacheMapManager( true );
+		final DataSourceAndDataSet key = getKey( "set" );
+		assertFalse( manager.doesLoadFromCache( key, 10 ) );
+		assertTrue( manager.doesSaveToCache( key, config ) );
+		// the data set is populated by the first manager only
+		assertFalse( another.doesSaveToCache( key, config ) );
+
+		final boolean[] loaded = new boolean[1];
+		Thread thread = new Thread( ) {
+
+			public void run( )
+			{
+				loaded[0] = another.doesLoadFromCache( key, 10 );
+			}
+		};
+		thread.start( );
+		Thread.sleep( 50 );
+		assertTrue( thread.isAlive( ) );
+		save( manager, key, 5, 0 );
+		thread.join( 10000 );
+		assertFalse( thread.isAlive( ) );
+		assertTrue( loaded[0] );
+	}
+
+	@Test
+	public void testFailedPopulation( ) throws Exception
+	{
+		CacheMapManager manager = new CacheMapManager( true );
+		CacheMapManager another = new CacheMapManager( true );
+		DataSourceAndDataSet key = getKey( "set" );
+		assertTrue( manager.doesSaveToCache( key, config ) );
+		// removing the data set which fails to be saved ends the population
+		manager.clearCache( key );
+		assertFalse( another.doesLoadFromCache( key, 10 ) );
+		assertTrue( another.doesSaveToCache( key, config ) );
+	}
+
+	@Test
+	public void testAbortedPopulation( ) throws Exception
+	{
+		final CacheMapManager manager = new CacheMapManager( true );
+		final CacheMapManager another = new CacheMapManager( true );
+		final DataSourceAndDataSet key = getKey( "set" );
+		assertTrue( manager.doesSaveToCache( key, config ) );
+
+		final boolean[] loaded = new boolean[]{
+			true
+		};
+		Thread thread = new Thread( ) {
+
+			public void run( )
+			{
+				loaded[0] = another.doesLoadFromCache( key, 10 );
+			}
+		};
+		thread.start( );
+		Thread.sleep( 50 );
+		assertTrue( thread.isAlive( ) );
+		// the data set fails before it is cached, the waiting manager goes on
+		// without waiting for the timeout and queries the data set itself
+		manager.saveAbortOnCache( key );
+		thread.join( 10000 );
+		assertFalse( thread.isAlive( ) );
+		assertFalse( loaded[0] );
+		assertNull( manager.getSavedCacheObject( key ) );
+		assertTrue( another.doesSaveToCache( key, config ) );
+	}
+
+	@Test
+	public void testQueryCoalescing( ) throws Exception
+	{
+		Map appContext = new HashMap( );
+		assertNull( DataSetCacheUtil.getQueryCoalescingContextKey( appContext ) );
+		appContext.put( DataEngine.QUERY_COALESCING_TIME, "5" );
+		assertEquals( 5000, DataSetCacheUtil.getQueryCoalescingTime( appContext ) );
+		assertNull( DataSetCacheUtil.getQueryCoalescingContextKey( appContext ) );
+
+		appContext.put( DataEngine.QUERY_COALESCING_CONTEXT_KEYS, "user, role" );
+		appContext.put( "user", "tom" );
+		String tomKey = DataSetCacheUtil.getQueryCoalescingContextKey( appContext );
+		appContext.put( "user", "jerry" );
+		String jerryKey = DataSetCacheUtil.getQueryCoalescingContextKey( appContext );
+		assertNotNull( tomKey );
+		assertFalse( tomKey.equals( jerryKey ) );
+		assertEquals( -1, tomKey.indexOf( "tom" ) );
+
+		// the result is shared by the sessions of the same context only
+		CacheMapManager manager = new CacheMapManager( true );
+		DataSetCacheConfig coalescing = DataSetCacheConfig.getQueryCoalescingInstance( 5000 );
+		assertTrue( manager.doesSaveToCache( getKey( "set", tomKey ), coalescing ) );
+		IDataSetCacheObject cacheObject = manager.getSavedCacheObject( getKey( "set",
+				tomKey ) );
+		assertTrue( cacheObject instanceof MemoryDataSetCacheObject );
+		( (MemoryDataSetCacheObject) cacheObject ).setResultClass( resultClass );
+		( (MemoryDataSetCacheObject) cacheObject ).populateResult( new ResultObject( resultClass,
+				new Object[]{
+					"value"
+				} ) );
+		manager.saveFinishOnCache( getKey( "set", tomKey ),
+				cacheObject,
+				coalescing.getTimeToLive( ) );
+
+		CacheMapManager another = new CacheMapManager( true );
+		assertTrue( another.doesLoadFromCache( getKey( "set", tomKey ), 10 ) );
+		assertFalse( another.doesLoadFromCache( getKey( "set", jerryKey ), 10 ) );
+		assertFalse( another.doesLoadFromCache( getKey( "set" ), 10 ) );
+	}
+
+	@Test
+	public void testQueryCoalescingWithoutContextKeys( ) throws Exception
+	{
+		DataEngineContext context = new DataEngineContext( DataEngineContext.DIRECT_PRESENTATION,
+				null,
+				null,
+				null,
+				null,
+				null );
+		ScriptDataSetDesign dataSet = new ScriptDataSetDesign( "set", "source" );
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.QUERY_COALESCING_TIME, "5" );
+		// the results would be shared by all the users
+		assertNull( DataSetCacheUtil.getJVMDataSetCacheConfig( appContext,
+				context,
+				dataSet ) );
+		appContext.put( DataEngine.QUERY_COALESCING_CONTEXT_KEYS, " , " );
+		assertNull( DataSetCacheUtil.getQueryCoalescingContextKey( appContext ) );
+		assertNull( DataSetCacheUtil.getJVMDataSetCacheConfig( appContext,
+				context,
+				dataSet ) );
+
+		appContext.put( DataEngine.QUERY_COALESCING_CONTEXT_KEYS, "user" );
+		DataSetCacheConfig coalescing = DataSetCacheUtil.getJVMDataSetCacheConfig( appContext,
+				context,
+				dataSet );
+		assertNotNull( coalescing );
+		assertEquals( 5000, coalescing.getTimeToLive( ) );
+	}
+
+	@Test
+	public void testClearContextCache( ) throws Exception
+	{
+		CacheMapManager manager = new CacheMapManager( true );
+		save( manager, getKey( "set1", "engine1" ), 1, 0 );
+		save( manager, getKey( "set2", "engine1" ), 1, 0 );
+		save( manager, getKey( "set1", "engine2" ), 1, 0 );
+		assertTrue( manager.doesLoadFromCache( getKey( "set2", "engine1" ), 10 ) );
+		manager.loadStart( getKey( "set2", "engine1" ) );
+
+		CacheMapManager.clearContextCache( "engine1" );
+		assertFalse( manager.doesLoadFromCache( getKey( "set1", "engine1" ), 10 ) );
+		assertFalse( manager.doesLoadFromCache( getKey( "set2", "engine1" ), 10 ) );
+		assertTrue( manager.doesLoadFromCache( getKey( "set1", "engine2" ), 10 ) );
+		// the data set being loaded can still be read
+		assertNotNull( manager.getloadedCacheObject( getKey( "set2", "engine1" ) ) );
+		manager.loadFinishOnCache( getKey( "set2", "engine1" ) );
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test ColumnarRowStore and ColumnarMemoryCache
+ */
+public class ColumnarMemoryCacheTest
+{
+	private IResultClass resultClass;
+
+	@Before
+	public void columnarMemoryCacheSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"intCol",
+				"intCol",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer",
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"doubleCol",
+				"doubleCol",
+				DataType.getClass( DataType.DOUBLE_TYPE ),
+				"Double",
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 3,
+				"stringCol",
+				"stringCol",
+				DataType.getClass( DataType.STRING_TYPE ),
+				"String",
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 4,
+				"dateCol",
+				"dateCol",
+				Timestamp.class,
+				"Timestamp",
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 5,
+				"computedCol",
+				"computedCol",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				"Integer",
+				true ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	private IResultObject newRow( int i ) throws DataException
+	{
+		Timestamp time = new Timestamp( 1000000L * i );
+		time.setNanos( i );
+		return new ResultObject( resultClass, new Object[]{
+				i % 3 == 0 ? null : Integer.valueOf( i ),
+				Double.valueOf( i * 1.5 ),
+				"group" + ( i % 4 ),
+				time,
+				null
+		} );
+	}
+
+	/**
+	 * Values are kept as they were added.
+	 */
+	@Test
+	public void testValues( ) throws DataException
+	{
+		ColumnarRowStore store = new ColumnarRowStore( resultClass );
+		for ( int i = 0; i < 100; i++ )
+			store.add( newRow( i ) );
+
+		assertEquals( 100, store.getRowCount( ) );
+		for ( int i = 0; i < 100; i++ )
+		{
+			IResultObject expected = newRow( i );
+			IResultObject row = store.getRow( i );
+			for ( int j = 1; j <= resultClass.getFieldCount( ); j++ )
+				assertEquals( expected.getFieldValue( j ), row.getFieldValue( j ) );
+			assertEquals( expected, row );
+			assertEquals( expected.getFieldValue( "stringCol" ),
+					row.getFieldValue( "stringCol" ) );
+		}
+	}
+
+	/**
+	 * A value which does not fit the declared type is still kept.
+	 */
+	@Test
+	public void testMixedTypes( ) throws DataException
+	{
+		ColumnarRowStore store = new ColumnarRowStore( resultClass );
+		store.add( newRow( 1 ) );
+		store.add( new ResultObject( resultClass, new Object[]{
+				new BigDecimal( "12.5" ), null, null, new Date( 5 ), null
+		} ) );
+		store.add( newRow( 2 ) );
+
+		assertEquals( Integer.valueOf( 1 ), store.getRow( 0 ).getFieldValue( 1 ) );
+		assertEquals( new BigDecimal( "12.5" ), store.getRow( 1 ).getFieldValue( 1 ) );
+		assertEquals( new Date( 5 ), store.getRow( 1 ).getFieldValue( 4 ) );
+		assertNull( store.getRow( 1 ).getFieldValue( 2 ) );
+		assertEquals( Integer.valueOf( 2 ), store.getRow( 2 ).getFieldValue( 1 ) );
+		assertEquals( newRow( 2 ).getFieldValue( 4 ), store.getRow( 2 ).getFieldValue( 4 ) );
+	}
+
+	/**
+	 * Custom field values are written back to the columns.
+	 */
+	@Test
+	public void testSetCustomFieldValue( ) throws DataException
+	{
+		ColumnarRowStore store = new ColumnarRowStore( resultClass );
+		for ( int i = 0; i < 10; i++ )
+			store.add( newRow( i ) );
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( store,
+				resultClass,
+				null );
+		while ( cache.next( ) )
+		{
+			IResultObject row = cache.getCurrentResult( );
+			row.setCustomFieldValue( "computedCol",
+					Integer.valueOf( cache.getCurrentIndex( ) * 10 ) );
+		}
+		cache.moveTo( 7 );
+		assertEquals( Integer.valueOf( 70 ),
+				cache.getCurrentResult( ).getFieldValue( 5 ) );
+
+		try
+		{
+			cache.getCurrentResult( ).setCustomFieldValue( 1, Integer.valueOf( 0 ) );
+			fail( "Should not arrive here" );
+		}
+		catch ( DataException e )
+		{
+		}
+	}
+
+	/**
+	 * Sort is stable and the cache iterates in sorted order.
+	 */
+	@Test
+	public void testSort( ) throws DataException
+	{
+		ColumnarRowStore store = new ColumnarRowStore( resultClass );
+		for ( int i = 0; i < 1000; i++ )
+			store.add( newRow( i ) );
+
+		Comparator comparator = new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				try
+				{
+					return ( (String) ( (IResultObject) o1 ).getFieldValue( 3 ) ).compareTo( (String) ( (IResultObject) o2 ).getFieldValue( 3 ) );
+				}
+				catch ( DataException e )
+				{
+					return 0;
+				}
+			}
+		};
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( store,
+				resultClass,
+				comparator );
+		assertEquals( 1000, cache.getCount( ) );
+
+		String lastGroup = null;
+		double lastValue = -1;
+		IResultObject row;
+		while ( ( row = cache.fetch( ) ) != null )
+		{
+			String group = (String) row.getFieldValue( 3 );
+			double value = ( (Double) row.getFieldValue( 2 ) ).doubleValue( );
+			if ( lastGroup != null )
+			{
+				assertTrue( lastGroup.compareTo( group ) <= 0 );
+				if ( lastGroup.equals( group ) )
+					assertTrue( lastValue < value );
+			}
+			lastGroup = group;
+			lastValue = value;
+		}
+		assertEquals( 1000, cache.getCurrentIndex( ) );
+	}
+
+	/**
+	 * Materialized result objects are used when rows spill to disk.
+	 */
+	@Test
+	public void testToResultObjects( ) throws DataException
+	{
+		ColumnarRowStore store = new ColumnarRowStore( resultClass );
+		for ( int i = 0; i < 20; i++ )
+			store.add( newRow( i ) );
+		IResultObject[] rows = store.toResultObjects( );
+		assertEquals( 20, rows.length );
+		for ( int i = 0; i < 20; i++ )
+			assertEquals( newRow( i ), rows[i] );
+	}
+
+	/**
+	 * Columnar store should take much less memory than result objects.
+	 */
+	@Test
+	public void testMemorySize( ) throws DataException
+	{
+		ColumnarRowStore store = new ColumnarRowStore( resultClass );
+		SizeOfUtil sizeOfUtil = new SizeOfUtil( resultClass );
+		long rowSize = 0;
+		for ( int i = 0; i < 10000; i++ )
+		{
+			IResultObject row = newRow( i );
+			store.add( row );
+			rowSize += sizeOfUtil.sizeOf( row );
+		}
+		assertTrue( store.getMemorySize( ) > 0 );
+		assertTrue( store.getMemorySize( ) * 2 < rowSize );
+	}
+}
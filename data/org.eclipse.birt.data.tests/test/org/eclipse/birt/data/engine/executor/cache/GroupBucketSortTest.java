@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the sort which gathers rows into groups by hashing.
+ */
+public class GroupBucketSortTest
+{
+	private IResultClass resultClass;
+
+	@Before
+	public void groupBucketSortSetUp( ) throws Exception
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"group1",
+				"group1",
+				String.class,
+				String.class.getName( ),
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"group2",
+				"group2",
+				Object.class,
+				Object.class.getName( ),
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 3,
+				"seq",
+				"seq",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	/**
+	 * Compares the rows by the first columns, the first groupKeyCount of which
+	 * are group keys. The second column is descending.
+	 */
+	private static class RowComparator implements IGroupKeyComparator
+	{
+		private int keyCount;
+		private int groupKeyCount;
+
+		RowComparator( int keyCount, int groupKeyCount )
+		{
+			this.keyCount = keyCount;
+			this.groupKeyCount = groupKeyCount;
+		}
+
+		public int compare( Object o1, Object o2 )
+		{
+			return compareSortKeys( getSortKeys( (IResultObject) o1 ),
+					getSortKeys( (IResultObject) o2 ) );
+		}
+
+		public Object[] getSortKeys( IResultObject row )
+		{
+			Object[] keys = new Object[keyCount];
+			try
+			{
+				for ( int i = 0; i < keyCount; i++ )
+					keys[i] = row.getFieldValue( i + 1 );
+			}
+			catch ( DataException e )
+			{
+				throw new IllegalStateException( e );
+			}
+			return keys;
+		}
+
+		public int compareSortKeys( Object[] keys1, Object[] keys2 )
+		{
+			try
+			{
+				for ( int i = 0; i < keyCount; i++ )
+				{
+					int result = ScriptEvalUtil.compare( keys1[i], keys2[i] );
+					if ( result != 0 )
+						return i == 1 ? -result : result;
+				}
+				return 0;
+			}
+			catch ( DataException e )
+			{
+				throw new IllegalStateException( e );
+			}
+		}
+
+		public int getGroupKeyCount( )
+		{
+			return groupKeyCount;
+		}
+	}
+
+	private IResultObject[] newRows( int count, Random random )
+	{
+		IResultObject[] rows = new IResultObject[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			int group = random.nextInt( 20 );
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					group == 0 ? null : "g" + ( group % 7 ),
+					group == 1 ? null : new BigDecimal( group % 3 + "."
+							+ ( i % 2 == 0 ? "0" : "00" ) ),
+					Integer.valueOf( random.nextInt( 50 ) )
+			} );
+		}
+		return rows;
+	}
+
+	/**
+	 * Rows gathered into groups are in the same order as the stable sort
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameAsStableSort( ) throws Exception
+	{
+		Random random = new Random( 0 );
+		int[][] keyCounts = new int[][]{
+				{
+						1, 1
+				}, {
+						2, 2
+				}, {
+						2, 1
+				}, {
+						3, 2
+				}, {
+						3, 1
+				}
+		};
+		for ( int i = 0; i < keyCounts.length; i++ )
+		{
+			RowComparator comparator = new RowComparator( keyCounts[i][0],
+					keyCounts[i][1] );
+			IResultObject[] rows = newRows( 5000, random );
+			IResultObject[] expected = (IResultObject[]) rows.clone( );
+			Arrays.sort( expected, comparator );
+
+			assertTrue( GroupBucketSort.sort( rows, rows.length, comparator ) );
+			for ( int j = 0; j < rows.length; j++ )
+				assertSame( expected[j], rows[j] );
+		}
+	}
+
+	/**
+	 * Only the distinct group keys are counted as groups
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGroupCount( ) throws Exception
+	{
+		GroupBucketSort bucketSort = GroupBucketSort.newInstance( new RowComparator( 2,
+				2 ),
+				0 );
+		IResultObject[] rows = newRows( 3000, new Random( 1 ) );
+		for ( int i = 0; i < rows.length; i++ )
+			assertTrue( bucketSort.add( rows[i] ) );
+		assertEquals( 3000, bucketSort.getRowCount( ) );
+		// 7 strings and null, by 3 decimals and null
+		assertTrue( bucketSort.getGroupCount( ) <= 32 );
+		assertEquals( 3000, bucketSort.getOrder( ).length );
+	}
+
+	/**
+	 * Group keys of different classes are not gathered
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMixedClasses( ) throws Exception
+	{
+		IResultObject[] rows = new IResultObject[]{
+				new ResultObject( resultClass, new Object[]{
+						"a", Integer.valueOf( 1 ), Integer.valueOf( 0 )
+				} ),
+				new ResultObject( resultClass, new Object[]{
+						"a", new Double( 1 ), Integer.valueOf( 1 )
+				} )
+		};
+		IResultObject[] copy = (IResultObject[]) rows.clone( );
+		assertFalse( GroupBucketSort.sort( rows,
+				rows.length,
+				new RowComparator( 2, 2 ) ) );
+		assertTrue( Arrays.equals( copy, rows ) );
+	}
+
+	/**
+	 * A comparator without group keys is not supported
+	 */
+	@Test
+	public void testNoGroupKeys( )
+	{
+		assertNull( GroupBucketSort.newInstance( new RowComparator( 2, 0 ), 10 ) );
+		assertNull( GroupBucketSort.newInstance( null, 10 ) );
+	}
+}
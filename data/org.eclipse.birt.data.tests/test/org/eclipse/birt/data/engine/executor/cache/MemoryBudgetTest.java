@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test MemoryBudget
+ */
+public class MemoryBudgetTest
+{
+	/**
+	 * Memory consumer used in test
+	 */
+	private static class Consumer implements IMemoryConsumer
+	{
+		private boolean spillable;
+		private int spillCount;
+
+		Consumer( boolean spillable )
+		{
+			this.spillable = spillable;
+		}
+
+		public boolean spill( ) throws DataException
+		{
+			if ( !spillable )
+				return false;
+			spillCount++;
+			return true;
+		}
+	}
+
+	/**
+	 * Without limit nothing is spilled
+	 *
+	 * @throws DataException
+	 */
+	@Test
+	public void testNoLimit( ) throws DataException
+	{
+		MemoryBudget budget = new MemoryBudget( 0 );
+		Consumer c1 = new Consumer( true );
+		Consumer c2 = new Consumer( true );
+		assertTrue( budget.update( c1, 1000 ) );
+		assertTrue( budget.update( c2, 2000 ) );
+		assertTrue( budget.update( c1, 1500 ) );
+		assertEquals( 3500, budget.getUsedMemorySize( ) );
+		assertEquals( 3500, budget.getPeakMemorySize( ) );
+
+		budget.remove( c2 );
+		assertEquals( 1500, budget.getUsedMemorySize( ) );
+		assertEquals( 0, budget.getMemorySize( c2 ) );
+		assertEquals( 0, c1.spillCount + c2.spillCount );
+	}
+
+	/**
+	 * The largest other consumer is spilled first
+	 *
+	 * @throws DataException
+	 */
+	@Test
+	public void testSpillLargest( ) throws DataException
+	{
+		MemoryBudget budget = new MemoryBudget( 1000 );
+		Consumer small = new Consumer( true );
+		Consumer large = new Consumer( true );
+		Consumer current = new Consumer( true );
+		assertTrue( budget.update( small, 200 ) );
+		assertTrue( budget.update( large, 600 ) );
+		assertTrue( budget.update( current, 300 ) );
+
+		assertEquals( 0, small.spillCount );
+		assertEquals( 1, large.spillCount );
+		assertEquals( 0, current.spillCount );
+		assertEquals( 500, budget.getUsedMemorySize( ) );
+		assertEquals( 1, budget.getSpillCount( ) );
+		assertEquals( 1100, budget.getPeakMemorySize( ) );
+	}
+
+	/**
+	 * Consumers which refuse to spill are skipped, and the reporting consumer
+	 * is told to release its memory when it is the largest one
+	 *
+	 * @throws DataException
+	 */
+	@Test
+	public void testRefuseSpill( ) throws DataException
+	{
+		MemoryBudget budget = new MemoryBudget( 1000 );
+		Consumer refusing = new Consumer( false );
+		Consumer spillable = new Consumer( true );
+		Consumer current = new Consumer( true );
+		assertTrue( budget.update( refusing, 500 ) );
+		assertTrue( budget.update( spillable, 450 ) );
+		assertTrue( budget.update( current, 400 ) );
+		assertEquals( 1, spillable.spillCount );
+		assertEquals( 900, budget.getUsedMemorySize( ) );
+
+		assertFalse( budget.update( current, 800 ) );
+		assertEquals( 0, current.spillCount );
+		assertEquals( 1300, budget.getUsedMemorySize( ) );
+	}
+}
@@ -65,6 +65,44 @@ public class SizeOfUtilTest {
 //		}
 	}
 
+	/**
+	 * BigDecimal size depends on its precision
+	 */
+	@Test
+	public void testBigDecimalSize( )
+	{
+		int small = org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.sizeOf( new BigDecimal( "12.5" ) );
+		int large = org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.sizeOf( new BigDecimal( "1111111111111111111111111111" ) );
+		int larger = org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.sizeOf( new BigDecimal( "11111111111111111111111111111111111111111111111111" ) );
+		assertTrue( small < large );
+		assertTrue( large < larger );
+	}
+
+	/**
+	 * After warm up, only sampled rows are measured
+	 * 
+	 * @throws DataException
+	 */
+	@Test
+	public void testSampledSize( ) throws DataException
+	{
+		ResultObject smallRow = getResultObject( 3, 3 );
+		int smallSize = sizeOfUtil.sizeOf( smallRow );
+		for ( int i = 1; i < 100; i++ )
+			assertEquals( smallSize, sizeOfUtil.sizeOf( smallRow ) );
+
+		// the 101st row is not sampled, average size is used
+		Object[] fields = new Object[8];
+		for ( int i = 0; i < fields.length; i++ )
+			fields[i] = smallRow.getFieldValue( i + 1 );
+		fields[2] = new BigDecimal( "11111111111111111111111111111111111111111111111111" );
+		ResultObject largeRow = new ResultObject( resultClass, fields );
+		assertEquals( smallSize, sizeOfUtil.sizeOf( largeRow ) );
+
+		// string and byte array fields are always measured
+		assertTrue( sizeOfUtil.sizeOf( getResultObject( 30, 3 ) ) > smallSize );
+	}
+
 	/**
 	 * @throws DataException
 	 */
@@ -101,14 +139,14 @@ public class SizeOfUtilTest {
 	 */
 	private void runWithJDK18( ) throws DataException
 	{
-		assertEquals( 520, sizeOfUtil.sizeOf( getResultObject( 1, 1 ) ) );
-		assertEquals( 528, sizeOfUtil.sizeOf( getResultObject( 3, 3 ) ) );
-		assertEquals( 536, sizeOfUtil.sizeOf( getResultObject( 3, 7 ) ) );
-		assertEquals( 536, sizeOfUtil.sizeOf( getResultObject( 5, 8 ) ) );
-		assertEquals( 552, sizeOfUtil.sizeOf( getResultObject( 12, 7 ) ) );
-		assertEquals( 544, sizeOfUtil.sizeOf( getResultObject( 7, 12 ) ) );
-		assertEquals( 576, sizeOfUtil.sizeOf( getResultObject( 18, 22 ) ) );
-		assertEquals( 632, sizeOfUtil.sizeOf( getResultObject( 38, 42 ) ) );
+		assertEquals( 424, sizeOfUtil.sizeOf( getResultObject( 1, 1 ) ) );
+		assertEquals( 432, sizeOfUtil.sizeOf( getResultObject( 3, 3 ) ) );
+		assertEquals( 440, sizeOfUtil.sizeOf( getResultObject( 3, 7 ) ) );
+		assertEquals( 440, sizeOfUtil.sizeOf( getResultObject( 5, 8 ) ) );
+		assertEquals( 456, sizeOfUtil.sizeOf( getResultObject( 12, 7 ) ) );
+		assertEquals( 448, sizeOfUtil.sizeOf( getResultObject( 7, 12 ) ) );
+		assertEquals( 480, sizeOfUtil.sizeOf( getResultObject( 18, 22 ) ) );
+		assertEquals( 536, sizeOfUtil.sizeOf( getResultObject( 38, 42 ) ) );
 
 		assertEquals( 192, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
 				2, 4, 6, 7
@@ -119,10 +157,10 @@ public class SizeOfUtilTest {
 		assertEquals( 256, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 7, new int[]{
 				2, 7
 		} ) ) );
-		assertEquals( 472, sizeOfUtil.sizeOf( getResultObjectWithNull( 5, 8, new int[]{
+		assertEquals( 376, sizeOfUtil.sizeOf( getResultObjectWithNull( 5, 8, new int[]{
 				3, 6
 		} ) ) );
-		assertEquals( 464, sizeOfUtil.sizeOf( getResultObjectWithNull( 12, 7, new int[]{
+		assertEquals( 368, sizeOfUtil.sizeOf( getResultObjectWithNull( 12, 7, new int[]{
 				1, 4, 5
 		} ) ) );
 	}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.impl.DataEngineImpl;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the spill of SmartCache by the memory budget of its session.
+ */
+public class SmartCacheTest
+{
+	private static final int ROW_COUNT = 1000;
+
+	private DataEngineImpl dataEngine;
+	private DataEngineSession session;
+	private IResultClass resultClass;
+
+	@Before
+	public void smartCacheSetUp( ) throws Exception
+	{
+		dataEngine = new DataEngineImpl( DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION,
+				null,
+				null,
+				null ) );
+		session = dataEngine.getSession( );
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"col1",
+				"col1",
+				DataType.getClass( DataType.STRING_TYPE ),
+				"String" /* nativeTypeName */,
+				true ) );
+		resultClass = new ResultClass( columnsList );
+	}
+
+	@After
+	public void smartCacheTearDown( )
+	{
+		dataEngine.shutdown( );
+	}
+
+	/**
+	 * A memory cache spilled by another thread keeps its rows and position
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSpill( ) throws Exception
+	{
+		SmartCache cache = newSmartCache( );
+		MemoryBudget budget = session.getMemoryBudget( );
+		long memorySize = budget.getMemorySize( cache );
+		assertTrue( memorySize > 0 );
+
+		cache.moveTo( ROW_COUNT / 2 );
+		spill( budget, memorySize );
+		assertEquals( 1, budget.getSpillCount( ) );
+		assertEquals( 0, budget.getMemorySize( cache ) );
+		assertFalse( cache.spill( ) );
+
+		assertEquals( ROW_COUNT, cache.getCount( ) );
+		assertEquals( ROW_COUNT / 2, cache.getCurrentIndex( ) );
+		assertEquals( "value" + ROW_COUNT / 2,
+				cache.getCurrentResult( ).getFieldValue( 1 ) );
+		for ( int i = ROW_COUNT / 2 + 1; i < ROW_COUNT; i++ )
+		{
+			assertTrue( cache.next( ) );
+			assertEquals( "value" + i, cache.getCurrentResult( )
+					.getFieldValue( 1 ) );
+		}
+		assertFalse( cache.next( ) );
+		cache.reset( );
+		assertTrue( cache.next( ) );
+		assertEquals( "value0", cache.getCurrentResult( ).getFieldValue( 1 ) );
+		cache.close( );
+	}
+
+	/**
+	 * The rows are read without a break while another thread spills the cache
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentSpill( ) throws Exception
+	{
+		final SmartCache cache = newSmartCache( );
+		final MemoryBudget budget = session.getMemoryBudget( );
+		final long memorySize = budget.getMemorySize( cache );
+		final Exception[] error = new Exception[1];
+		Thread thread = new Thread( ) {
+
+			public void run( )
+			{
+				try
+				{
+					spill( budget, memorySize );
+				}
+				catch ( Exception e )
+				{
+					error[0] = e;
+				}
+			}
+		};
+		thread.start( );
+		for ( int pass = 0; pass < 5; pass++ )
+		{
+			for ( int i = 0; i < ROW_COUNT; i++ )
+			{
+				cache.moveTo( i );
+				assertEquals( "value" + i, cache.getCurrentResult( )
+						.getFieldValue( 1 ) );
+			}
+		}
+		thread.join( 10000 );
+		assertFalse( thread.isAlive( ) );
+		assertNull( error[0] );
+		assertEquals( 1, budget.getSpillCount( ) );
+		assertEquals( ROW_COUNT, cache.getCount( ) );
+		cache.close( );
+	}
+
+	/**
+	 * Exceeds the budget by a smaller consumer of another cache, so that the
+	 * smart cache is the largest consumer to be spilled.
+	 */
+	private static void spill( MemoryBudget budget, long memorySize )
+			throws DataException
+	{
+		budget.setMemoryLimit( memorySize + 1 );
+		budget.update( new IMemoryConsumer( ) {
+
+			public boolean spill( )
+			{
+				return false;
+			}
+		}, memorySize / 2 + 1 );
+	}
+
+	private SmartCache newSmartCache( ) throws DataException
+	{
+		final int[] index = new int[]{
+			-1
+		};
+		IRowResultSet rowResultSet = new IRowResultSet( ) {
+
+			public IResultClass getMetaData( )
+			{
+				return resultClass;
+			}
+
+			public IResultObject next( )
+			{
+				if ( index[0] + 1 >= ROW_COUNT )
+					return null;
+				index[0]++;
+				return new ResultObject( resultClass, new Object[]{
+					"value" + index[0]
+				} );
+			}
+
+			public int getIndex( )
+			{
+				return index[0];
+			}
+		};
+		// the memory of a cache is measured only with a memory buffer size
+		return new SmartCache( new CacheRequest( 0,
+				null,
+				null,
+				null,
+				false,
+				Long.MAX_VALUE ), rowResultSet, resultClass, session );
+	}
+}
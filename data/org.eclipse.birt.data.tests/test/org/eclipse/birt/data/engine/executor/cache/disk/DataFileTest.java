@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the block format of spill files written by DataFileWriter and read by
+ * DataFileReader.
+ */
+public class DataFileTest
+{
+	private static final Class[] TYPES = new Class[]{
+			Integer.class,
+			Double.class,
+			BigDecimal.class,
+			Date.class,
+			java.sql.Date.class,
+			Time.class,
+			Timestamp.class,
+			Boolean.class,
+			String.class,
+			byte[].class,
+			int[].class,
+			Object.class
+	};
+
+	private IResultClass resultClass;
+	private ResultObjectUtil resultObjectUtil;
+	private File file;
+
+	@Before
+	public void dataFileSetUp( ) throws Exception
+	{
+		List columnsList = new ArrayList( );
+		for ( int i = 0; i < TYPES.length; i++ )
+		{
+			columnsList.add( new ResultFieldMetadata( i + 1,
+					"col" + i,
+					"col" + i,
+					TYPES[i],
+					TYPES[i].getName( ),
+					false ) );
+		}
+		// blob values are declared as IBlob in real result sets
+		( (ResultFieldMetadata) columnsList.get( 9 ) ).setDataType( org.eclipse.datatools.connectivity.oda.IBlob.class );
+		resultClass = new ResultClass( columnsList );
+		resultObjectUtil = ResultObjectUtil.newInstance( resultClass, null );
+		file = File.createTempFile( DataFileTest.class.getSimpleName( ), null );
+	}
+
+	@After
+	public void dataFileTearDown( )
+	{
+		file.delete( );
+	}
+
+	private IResultObject newRow( int i )
+	{
+		Timestamp timestamp = new Timestamp( 1500000000000L + i * 1000L );
+		timestamp.setNanos( 123456789 );
+		Object[] values = new Object[]{
+				Integer.valueOf( i * 7 - 5000 ),
+				new Double( i % 3 == 0 ? i : i / 7.0 ),
+				i % 2 == 0 ? new BigDecimal( "12.3" + i )
+						: new BigDecimal( "123456789012345678901234567890." + i ),
+				new Date( 1000000L * i ),
+				new java.sql.Date( 1500000000000L + i * 86400000L ),
+				new Time( 3600000L + i ),
+				timestamp,
+				Boolean.valueOf( i % 2 == 0 ),
+				i % 5 == 0 ? "\u4e2d\u6587" + i : "group" + ( i % 10 ),
+				new byte[]{
+						(byte) i, 1, 2
+				},
+				new int[]{
+						i, -i
+				},
+				"object" + i
+		};
+		// nulls are spread over all the columns
+		values[i % values.length] = null;
+		return new ResultObject( resultClass, values );
+	}
+
+	private void assertRow( int i, IResultObject row ) throws DataException
+	{
+		IResultObject expected = newRow( i );
+		for ( int j = 1; j <= TYPES.length; j++ )
+		{
+			Object expectedValue = expected.getFieldValue( j );
+			Object value = row.getFieldValue( j );
+			if ( expectedValue instanceof byte[] )
+				assertTrue( Arrays.equals( (byte[]) expectedValue, (byte[]) value ) );
+			else if ( expectedValue instanceof int[] )
+				assertTrue( Arrays.equals( (int[]) expectedValue, (int[]) value ) );
+			else if ( expectedValue instanceof java.sql.Date )
+				assertEquals( expectedValue.toString( ), value.toString( ) );
+			else
+				assertEquals( expectedValue, value );
+		}
+	}
+
+	/**
+	 * Rows written in several calls are read back in several calls
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadWrite( ) throws Exception
+	{
+		int rowCount = 20000;
+		DataFileWriter writer = DataFileWriter.newInstance( file,
+				resultObjectUtil );
+		IResultObject[] rows = new IResultObject[1000];
+		for ( int i = 0; i < rowCount; i += rows.length )
+		{
+			for ( int j = 0; j < rows.length; j++ )
+				rows[j] = newRow( i + j );
+			writer.write( rows, 100, rows.length - 100 );
+			writer.write( rows, 100 );
+		}
+		writer.close( );
+
+		DataFileReader reader = DataFileReader.newInstance( file,
+				resultObjectUtil );
+		for ( int i = 0; i < rowCount; i += rows.length )
+		{
+			IResultObject[] result = reader.read( rows.length - 100 );
+			for ( int j = 0; j < result.length; j++ )
+				assertRow( i + 100 + j, result[j] );
+			result = reader.read( 100 );
+			for ( int j = 0; j < result.length; j++ )
+				assertRow( i + j, result[j] );
+		}
+		try
+		{
+			reader.read( 1 );
+			fail( "Should not arrive here" );
+		}
+		catch ( IOException e )
+		{
+		}
+		reader.close( );
+	}
+
+	/**
+	 * Repetitive values take little space
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCompactSize( ) throws Exception
+	{
+		int rowCount = 10000;
+		DataFileWriter writer = DataFileWriter.newInstance( file,
+				resultObjectUtil );
+		IResultObject[] rows = new IResultObject[rowCount];
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					Integer.valueOf( i ),
+					new Double( 100 ),
+					new BigDecimal( "99.95" ),
+					new Date( 1000L * i ),
+					null,
+					null,
+					null,
+					Boolean.TRUE,
+					"category" + ( i % 20 ),
+					null,
+					null,
+					null
+			} );
+		}
+		writer.write( rows, rowCount );
+		writer.close( );
+		assertTrue( file.length( ) < rowCount * 4 );
+
+		DataFileReader reader = DataFileReader.newInstance( file,
+				resultObjectUtil );
+		IResultObject[] result = reader.read( rowCount );
+		for ( int i = 0; i < rowCount; i++ )
+			assertEquals( rows[i], result[i] );
+		reader.close( );
+	}
+
+	/**
+	 * A file of other columns is not accepted
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSchemaMismatch( ) throws Exception
+	{
+		DataFileWriter writer = DataFileWriter.newInstance( file,
+				resultObjectUtil );
+		writer.write( new IResultObject[]{
+			newRow( 1 )
+		}, 1 );
+		writer.close( );
+
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"col",
+				"col",
+				String.class,
+				String.class.getName( ),
+				false ) );
+		DataFileReader reader = DataFileReader.newInstance( file,
+				ResultObjectUtil.newInstance( new ResultClass( columnsList ),
+						null ) );
+		try
+		{
+			reader.read( 1 );
+			fail( "Should not arrive here" );
+		}
+		catch ( DataException e )
+		{
+		}
+		reader.close( );
+	}
+
+	/**
+	 * Compressed blocks are restored exactly
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testBlockCompressor( ) throws IOException
+	{
+		Random random = new Random( 0 );
+		BlockCompressor compressor = new BlockCompressor( );
+		for ( int round = 0; round < 50; round++ )
+		{
+			int length = random.nextInt( 70000 );
+			byte[] src = new byte[length];
+			int alphabet = 1 + random.nextInt( 255 );
+			for ( int i = 0; i < length; i++ )
+			{
+				if ( i > 100 && random.nextInt( 4 ) == 0 )
+					src[i] = src[i - 1 - random.nextInt( 100 )];
+				else
+					src[i] = (byte) random.nextInt( alphabet );
+			}
+			byte[] compressed = new byte[length + length / 255 + 16];
+			int compressedLength = compressor.compress( src,
+					length,
+					compressed,
+					compressed.length );
+			assertTrue( compressedLength >= 0 );
+
+			byte[] restored = new byte[length];
+			BlockCompressor.decompress( compressed,
+					compressedLength,
+					restored,
+					length );
+			assertTrue( Arrays.equals( src, restored ) );
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.ISortKeyComparator;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the parallel sort of rows, and the merge of sorted row files.
+ */
+public class ParallelSortTest
+{
+	private IResultClass resultClass;
+	private SortTaskExecutor executor;
+	private MergeTempFileUtil tempFileUtil;
+	private File tempDir;
+
+	@Before
+	public void parallelSortSetUp( ) throws Exception
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"key",
+				"key",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"seq",
+				"seq",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		resultClass = new ResultClass( columnsList );
+		executor = SortTaskExecutor.newInstance( 4 );
+		tempDir = File.createTempFile( ParallelSortTest.class.getSimpleName( ),
+				null );
+		tempDir.delete( );
+		tempFileUtil = new MergeTempFileUtil( tempDir.getPath( ),
+				ResultObjectUtil.newInstance( resultClass, null ) );
+	}
+
+	@After
+	public void parallelSortTearDown( )
+	{
+		executor.shutdown( );
+		tempFileUtil.clearTempDir( );
+	}
+
+	private IResultObject newRow( int key, int seq )
+	{
+		return new ResultObject( resultClass, new Object[]{
+				Integer.valueOf( key ), Integer.valueOf( seq )
+		} );
+	}
+
+	private static int getInt( IResultObject row, int index )
+			throws DataException
+	{
+		return ( (Integer) row.getFieldValue( index ) ).intValue( );
+	}
+
+	/**
+	 * Compare rows by the first column only, descending.
+	 */
+	private static class KeyComparator implements ISortKeyComparator
+	{
+
+		public int compare( Object o1, Object o2 )
+		{
+			return compareSortKeys( getSortKeys( (IResultObject) o1 ),
+					getSortKeys( (IResultObject) o2 ) );
+		}
+
+		public Object[] getSortKeys( IResultObject row )
+		{
+			try
+			{
+				return new Object[]{
+					row.getFieldValue( 1 )
+				};
+			}
+			catch ( DataException e )
+			{
+				throw new IllegalStateException( e );
+			}
+		}
+
+		public int compareSortKeys( Object[] keys1, Object[] keys2 )
+		{
+			return ( (Integer) keys2[0] ).compareTo( (Integer) keys1[0] );
+		}
+	}
+
+	private IResultObject[] newRows( int count, int keyRange, Random random )
+	{
+		IResultObject[] rows = new IResultObject[count];
+		for ( int i = 0; i < count; i++ )
+			rows[i] = newRow( random.nextInt( keyRange ), i );
+		return rows;
+	}
+
+	/**
+	 * Rows are sorted by descending key, and equal keys keep their sequence.
+	 */
+	private void assertSorted( IResultObject[] rows, int count )
+			throws DataException
+	{
+		for ( int i = 1; i < count; i++ )
+		{
+			int key1 = getInt( rows[i - 1], 1 );
+			int key2 = getInt( rows[i], 1 );
+			assertTrue( key1 >= key2 );
+			if ( key1 == key2 )
+				assertTrue( getInt( rows[i - 1], 2 ) < getInt( rows[i], 2 ) );
+		}
+	}
+
+	/**
+	 * Parallel sort gets the same result as serial sort
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSortSelf( ) throws Exception
+	{
+		Random random = new Random( 0 );
+		MergeSortUtil mergeSortUtil = MergeSortUtil.getUtil( new KeyComparator( ) );
+		int[] counts = new int[]{
+				0, 1, 100, 8192 * 2, 8192 * 3 + 7, 100000
+		};
+		for ( int i = 0; i < counts.length; i++ )
+		{
+			IResultObject[] rows = newRows( counts[i], 500, random );
+			IResultObject[] expected = (IResultObject[]) rows.clone( );
+			mergeSortUtil.sortSelf( expected );
+
+			mergeSortUtil.sortSelf( rows, rows.length, executor );
+			assertSorted( rows, rows.length );
+			assertTrue( Arrays.equals( expected, rows ) );
+		}
+	}
+
+	/**
+	 * A part of an array is sorted with a plain comparator
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSortTaskExecutor( ) throws Exception
+	{
+		Random random = new Random( 1 );
+		Integer[] values = new Integer[70000];
+		for ( int i = 0; i < values.length; i++ )
+			values[i] = Integer.valueOf( random.nextInt( ) );
+		Integer[] expected = (Integer[]) values.clone( );
+		Arrays.sort( expected, 0, 60000 );
+
+		executor.sort( values, 60000, new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				return ( (Integer) o1 ).compareTo( (Integer) o2 );
+			}
+		} );
+		assertTrue( Arrays.equals( expected, values ) );
+	}
+
+	/**
+	 * Sorted files are merged by the loser tree, with or without reading ahead
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMergeRowFiles( ) throws Exception
+	{
+		Random random = new Random( 2 );
+		MergeSortUtil mergeSortUtil = MergeSortUtil.getUtil( new KeyComparator( ) );
+		int[] fileCounts = new int[]{
+				1, 2, 3, 7, 64
+		};
+		for ( int i = 0; i < fileCounts.length; i++ )
+		{
+			for ( int readAhead = 0; readAhead < 2; readAhead++ )
+			{
+				int seq = 0;
+				List allRows = new ArrayList( );
+				IRowIterator[] rowIterators = new IRowIterator[fileCounts[i]];
+				for ( int j = 0; j < rowIterators.length; j++ )
+				{
+					// the sequence grows with the files, so that merged rows
+					// of equal keys are still ordered by sequence
+					IResultObject[] rows = new IResultObject[random.nextInt( 300 )];
+					for ( int k = 0; k < rows.length; k++ )
+						rows[k] = newRow( random.nextInt( 50 ), seq++ );
+					mergeSortUtil.sortSelf( rows );
+					allRows.addAll( Arrays.asList( rows ) );
+
+					RowFile rowFile = tempFileUtil.newTempFile( j % 2 == 0 ? 0
+							: 10 );
+					rowFile.writeRows( rows, rows.length );
+					rowFile.endWrite( );
+					rowIterators[j] = readAhead == 0 ? (IRowIterator) rowFile
+							: new ReadAheadRowIterator( rowFile, executor, 16 );
+				}
+
+				MergeSortRowFiles merged = new MergeSortRowFiles( rowIterators,
+						mergeSortUtil );
+				for ( int round = 0; round < 2; round++ )
+				{
+					IResultObject[] result = new IResultObject[allRows.size( )];
+					for ( int k = 0; k < result.length; k++ )
+					{
+						result[k] = merged.fetch( );
+						assertNotNull( result[k] );
+					}
+					assertNull( merged.fetch( ) );
+					assertNull( merged.fetch( ) );
+					assertSorted( result, result.length );
+					merged.reset( );
+				}
+				merged.close( );
+			}
+		}
+	}
+}
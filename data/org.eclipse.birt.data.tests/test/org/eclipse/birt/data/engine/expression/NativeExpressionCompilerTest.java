@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.expression;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.IRFactory;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ast.ScriptNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the evaluation of simple expressions without the script engine.
+ */
+public class NativeExpressionCompilerTest
+{
+	private static final String[] NAMES = new String[]{
+			"A", "B", "S", "N", "T", "D"
+	};
+
+	private Context cx;
+	private Scriptable scope;
+	private IResultObject row;
+
+	@Before
+	public void nativeExpressionCompilerSetUp( ) throws Exception
+	{
+		Object[] values = new Object[]{
+				Integer.valueOf( 3 ),
+				new BigDecimal( "2.5" ),
+				"abc",
+				null,
+				Boolean.TRUE,
+				new Date( 0 )
+		};
+		List columns = new ArrayList( );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			Class type = i == 3 ? String.class : values[i].getClass( );
+			columns.add( new ResultFieldMetadata( i + 1,
+					NAMES[i],
+					NAMES[i],
+					type,
+					type.getName( ),
+					false ) );
+		}
+		row = new ResultObject( new ResultClass( columns ), values );
+
+		cx = Context.enter( );
+		scope = cx.initStandardObjects( );
+		Scriptable jsRow = cx.newObject( scope );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			Object value = JavascriptEvalUtil.convertToJavascriptValue( values[i],
+					scope );
+			jsRow.put( NAMES[i], jsRow, value );
+			jsRow.put( i + 1, jsRow, value );
+		}
+		scope.put( "row", scope, jsRow );
+	}
+
+	@After
+	public void nativeExpressionCompilerTearDown( )
+	{
+		Context.exit( );
+	}
+
+	private NativeExpression compile( String expression )
+	{
+		CompilerEnvirons compilerEnv = new CompilerEnvirons( );
+		compilerEnv.initFromContext( cx );
+		Parser p = new Parser( compilerEnv, cx.getErrorReporter( ) );
+		ScriptNode tree = new IRFactory( compilerEnv ).transformTree( p.parse( expression,
+				null,
+				0 ) );
+		return new NativeExpressionCompiler( "row" ).compile( tree );
+	}
+
+	private Object evaluate( String expression )
+	{
+		NativeExpression expr = compile( expression );
+		assertNotNull( expression, expr );
+		return expr.evaluate( row );
+	}
+
+	private static Object normalize( Object value )
+	{
+		if ( value instanceof Number )
+			return new Double( ( (Number) value ).doubleValue( ) );
+		if ( value instanceof CharSequence )
+			return value.toString( );
+		return value;
+	}
+
+	/**
+	 * The values are the same as those of the script engine
+	 */
+	@Test
+	public void testSameAsScriptEngine( )
+	{
+		String[] expressions = new String[]{
+				"row.A * row[\"B\"]",
+				"row.A + row.B - 1",
+				"row.A / 0",
+				"row.A % 2",
+				"row.A + row.S",
+				"row.S + 1.5",
+				"row.N + 1",
+				"row.N + row.S",
+				"-row.A",
+				"+row.S",
+				"row.A > 2 && row.S != null",
+				"row.N == null",
+				"row.N === null",
+				"row.N == 0",
+				"row.A == \"3\"",
+				"row.A === 3",
+				"row.A !== row.B",
+				"!row.T",
+				"row.T + 1",
+				"row.S < \"abd\"",
+				"row.S >= \"abc\"",
+				"row.B <= 2.5",
+				"row.N || row.S",
+				"row.N && row.S",
+				"row.A > 5 ? row.S : row.N",
+				"row[1] + row[2]"
+		};
+		for ( int i = 0; i < expressions.length; i++ )
+		{
+			Object expected = JavascriptEvalUtil.convertJavascriptValue( cx.evaluateString( scope,
+					expressions[i],
+					null,
+					0,
+					null ) );
+			assertEquals( expressions[i],
+					normalize( expected ),
+					normalize( evaluate( expressions[i] ) ) );
+		}
+	}
+
+	/**
+	 * The functions of BirtMath and BirtStr
+	 */
+	@Test
+	public void testFunctions( )
+	{
+		assertEquals( new Double( 3 ), evaluate( "BirtMath.round(row.B)" ) );
+		assertEquals( new Double( 2.6 ),
+				evaluate( "BirtMath.roundUp(row.B + 0.01, 1)" ) );
+		assertEquals( new Double( 2 ), evaluate( "BirtMath.roundDown(row.B)" ) );
+		assertEquals( new Double( 1 ), evaluate( "BirtMath.mod(row.A, 2)" ) );
+		assertEquals( new BigDecimal( "5.5" ),
+				evaluate( "BirtMath.add(row.A, row.B)" ) );
+		assertEquals( new Double( -1 ),
+				evaluate( "BirtMath.safeDivide(row.A, 0, -1)" ) );
+		assertEquals( "ABC", evaluate( "BirtStr.toUpper(row.S)" ) );
+		assertEquals( "a b", evaluate( "BirtStr.trim(\"  a   b \")" ) );
+		assertEquals( "ab", evaluate( "BirtStr.left(row.S, 2)" ) );
+		assertEquals( "c", evaluate( "BirtStr.right(row.S)" ) );
+		assertEquals( "abc3", evaluate( "BirtStr.concat(row.S, row.A)" ) );
+		assertNull( evaluate( "BirtStr.toLower(row.N)" ) );
+
+		// errors are reported by the script engine
+		assertSame( NativeExpression.NOT_EVALUATED,
+				evaluate( "BirtStr.left(row.S, -1)" ) );
+		assertSame( NativeExpression.NOT_EVALUATED,
+				evaluate( "BirtMath.mod(row.A, 0)" ) );
+	}
+
+	/**
+	 * Values of other types are evaluated by the script engine
+	 */
+	@Test
+	public void testNotEvaluated( )
+	{
+		assertSame( NativeExpression.NOT_EVALUATED, evaluate( "row.D + 1" ) );
+		assertSame( NativeExpression.NOT_EVALUATED,
+				evaluate( "row.UNKNOWN == null" ) );
+		assertSame( NativeExpression.NOT_EVALUATED,
+				evaluate( "row.A > 1 && row.D" ) );
+		// the operand which is not evaluated does not matter
+		assertEquals( Boolean.FALSE, evaluate( "row.A > 5 && row.D" ) );
+		assertEquals( "abc", evaluate( "row.A > 5 ? row.D : row.S" ) );
+	}
+
+	/**
+	 * Expressions which are not supported are left to the script engine
+	 */
+	@Test
+	public void testNotCompiled( )
+	{
+		assertNull( compile( "row.S.length" ) );
+		assertNull( compile( "row.A.toFixed(2)" ) );
+		assertNull( compile( "var x = row.A; x * 2" ) );
+		assertNull( compile( "Total.sum(row.A) * 2" ) );
+		assertNull( compile( "row[0] + 1" ) );
+		assertNull( compile( "row.__rownum + 1" ) );
+		assertNull( compile( "row._outer.A + 1" ) );
+		assertNull( compile( "dataSetRow.A + 1" ) );
+		assertNull( compile( "BirtMath.round(row.A, 1, 2)" ) );
+		assertNull( compile( "BirtDateTime.year(row.D) + 1" ) );
+		assertNull( compile( "row.A > 1 ? x : 0" ) );
+	}
+}
@@ -28,6 +28,7 @@ import org.eclipse.birt.data.engine.api.querydefn.GroupDefinition;
 import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
 import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
 import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.expression.AggregateExpression;
 
 import com.ibm.icu.util.Calendar;
@@ -929,6 +930,205 @@ public class AggregationTest extends APITestCase
 		outputQueryResult( executeQuery( query ), cols );
 		checkOutputFile( );
 	}
+
+	/**
+	 * Test the aggregations of different pass rounds which share the passes
+	 * over the result set. The running total depends on a single pass
+	 * aggregation and is calculated in the second pass of the rank, the city
+	 * rank depends on a single pass aggregation and is a multiple passes
+	 * aggregation itself, and the rank total depends on a multiple passes
+	 * aggregation. The values are the same as when every round made its own
+	 * passes.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testMultiplePassRounds( ) throws Exception
+	{
+		QueryDefinition query = newMultiplePassRoundsQuery( );
+
+		String[] cities = new String[]{
+				"HONG KONG", "LONDON", "NEW YORK"
+		};
+		double[] cityTotals = new double[]{
+				1202.88, 596.8, 875.94
+		};
+		double[] runningTotals = new double[]{
+				1202.88, 1799.68, 2675.62
+		};
+		double[] medians = new double[]{
+				98, 27.1, 25.99
+		};
+		int[] rankTotals = new int[]{
+				63, 113, 119
+		};
+		int[] cityRanks = new int[]{
+				1, 3, 2
+		};
+		int[] ranks = new int[]{
+				6, 18, 24, 15,
+				13, 9, 20, 1, 20, 2, 11, 13, 8, 16,
+				7, 17, 10, 3, 3, 12, 5, 20, 23, 19
+		};
+		int[] cityRowCounts = new int[]{
+				4, 10, 10
+		};
+
+		assertMultiplePassRounds( executeQuery( query ),
+				cities,
+				cityTotals,
+				runningTotals,
+				medians,
+				rankTotals,
+				cityRanks,
+				ranks,
+				cityRowCounts );
+	}
+
+	/**
+	 * Test the aggregations of different pass rounds are calculated again in
+	 * the shared passes after a filter on an aggregation removes a group.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testMultiplePassRoundsWithFilter( ) throws Exception
+	{
+		QueryDefinition query = newMultiplePassRoundsQuery( );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "row[\"cityTotal\"]",
+				IConditionalExpression.OP_GT,
+				"700" ) ) );
+
+		String[] cities = new String[]{
+				"HONG KONG", "NEW YORK"
+		};
+		double[] cityTotals = new double[]{
+				1202.88, 875.94
+		};
+		double[] runningTotals = new double[]{
+				1202.88, 2078.82
+		};
+		double[] medians = new double[]{
+				98, 25.99
+		};
+		int[] rankTotals = new int[]{
+				36, 68
+		};
+		int[] cityRanks = new int[]{
+				1, 2
+		};
+		int[] ranks = new int[]{
+				4, 10, 14, 8,
+				5, 9, 6, 1, 1, 7, 3, 12, 13, 11
+		};
+		int[] cityRowCounts = new int[]{
+				4, 10
+		};
+
+		assertMultiplePassRounds( executeQuery( query ),
+				cities,
+				cityTotals,
+				runningTotals,
+				medians,
+				rankTotals,
+				cityRanks,
+				ranks,
+				cityRowCounts );
+	}
+
+	/**
+	 * @return a query grouped by city, with aggregations of four pass rounds
+	 * @throws DataException
+	 */
+	private QueryDefinition newMultiplePassRoundsQuery( ) throws DataException
+	{
+		QueryDefinition query = newReportQuery( );
+
+		GroupDefinition g1 = new GroupDefinition( "G1" );
+		g1.setKeyExpression( "row[\"city\"]" );
+		query.addGroup( g1 );
+
+		query.addBinding( new Binding( "city",
+				new ScriptExpression( "dataSetRow[\"CITY\"]" ) ) );
+		query.addBinding( new Binding( "price",
+				new ScriptExpression( "dataSetRow[\"PRICE\"]" ) ) );
+
+		// pass 0
+		IBinding b = new Binding( "cityTotal" );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_SUM_FUNC );
+		b.addArgument( new ScriptExpression( "row[\"price\"]" ) );
+		b.addAggregateOn( "G1" );
+		query.addBinding( b );
+
+		// pass 0
+		b = new Binding( "median" );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_PERCENTILE_FUNC );
+		b.addArgument( new ScriptExpression( "row[\"price\"]" ) );
+		b.addArgument( new ScriptExpression( "0.5" ) );
+		b.addAggregateOn( "G1" );
+		query.addBinding( b );
+
+		// passes 0 and 1
+		b = new Binding( "rank" );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_RANK_FUNC );
+		b.addArgument( new ScriptExpression( "row[\"price\"]" ) );
+		query.addBinding( b );
+
+		// pass 1
+		b = new Binding( "runningTotal" );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_RUNNINGSUM_FUNC );
+		b.addArgument( new ScriptExpression( "row[\"cityTotal\"]" ) );
+		query.addBinding( b );
+
+		// passes 1 and 2
+		b = new Binding( "cityRank" );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_RANK_FUNC );
+		b.addArgument( new ScriptExpression( "row[\"cityTotal\"]" ) );
+		b.addArgument( new ScriptExpression( "false" ) );
+		query.addBinding( b );
+
+		// pass 2
+		b = new Binding( "rankTotal" );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_SUM_FUNC );
+		b.addArgument( new ScriptExpression( "row[\"rank\"]" ) );
+		b.addAggregateOn( "G1" );
+		query.addBinding( b );
+
+		return query;
+	}
+
+	private void assertMultiplePassRounds( IResultIterator it,
+			String[] cities, double[] cityTotals, double[] runningTotals,
+			double[] medians, int[] rankTotals, int[] cityRanks, int[] ranks,
+			int[] cityRowCounts ) throws Exception
+	{
+		int row = 0;
+		for ( int i = 0; i < cities.length; i++ )
+		{
+			for ( int j = 0; j < cityRowCounts[i]; j++ )
+			{
+				assertTrue( it.next( ) );
+				assertEquals( cities[i], it.getValue( "city" ) );
+				assertEquals( cityTotals[i],
+						( (Number) it.getValue( "cityTotal" ) ).doubleValue( ),
+						0.001 );
+				assertEquals( runningTotals[i],
+						( (Number) it.getValue( "runningTotal" ) ).doubleValue( ),
+						0.001 );
+				assertEquals( medians[i],
+						( (Number) it.getValue( "median" ) ).doubleValue( ),
+						0.001 );
+				assertEquals( rankTotals[i],
+						( (Number) it.getValue( "rankTotal" ) ).intValue( ) );
+				assertEquals( cityRanks[i],
+						( (Number) it.getValue( "cityRank" ) ).intValue( ) );
+				assertEquals( ranks[row++],
+						( (Number) it.getValue( "rank" ) ).intValue( ) );
+			}
+		}
+		assertFalse( it.next( ) );
+		it.close( );
+	}
 }
 
 class CancelDataEngineThread extends Thread 
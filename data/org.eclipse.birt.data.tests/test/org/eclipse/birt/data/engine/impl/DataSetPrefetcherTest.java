@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IDataQueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ComputedColumn;
+import org.eclipse.birt.data.engine.api.querydefn.InputParameterBinding;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSourceDesign;
+import org.eclipse.birt.data.engine.api.querydefn.ParameterDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.api.script.IBaseDataSetEventHandler;
+import org.eclipse.birt.data.engine.api.script.IBaseDataSourceEventHandler;
+import org.eclipse.birt.data.engine.api.script.IOptionalEventHandler;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the analysis of the data sets which can be fetched in advance.
+ */
+public class DataSetPrefetcherTest
+{
+	private OdaDataSourceDesign dataSource;
+	private OdaDataSetDesign dataSet;
+	private QueryDefinition query;
+
+	@Before
+	public void dataSetPrefetcherSetUp( )
+	{
+		dataSource = new OdaDataSourceDesign( "source" );
+		dataSet = new OdaDataSetDesign( "set", "source" );
+		dataSet.setQueryText( "select * from T" );
+		query = new QueryDefinition( );
+		query.setDataSetName( "set" );
+	}
+
+	@Test
+	public void testIndependentQuery( )
+	{
+		assertTrue( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		// a nested query is independent if it is not bound to outer rows
+		QueryDefinition nested = new QueryDefinition( query );
+		nested.setDataSetName( "set" );
+		assertTrue( DataSetPrefetcher.isIndependent( nested, dataSet, dataSource ) );
+		nested.addInputParamBinding( new InputParameterBinding( "p",
+				new ScriptExpression( "row._outer[\"A\"]" ) ) );
+		assertFalse( DataSetPrefetcher.isIndependent( nested, dataSet, dataSource ) );
+	}
+
+	@Test
+	public void testDependentDataSet( )
+	{
+		dataSet.addParameter( new ParameterDefinition( "p", DataType.STRING_TYPE ) );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		dataSet = new OdaDataSetDesign( "set", "source" );
+		dataSet.addComputedColumn( new ComputedColumn( "C", "params[\"p\"]" ) );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		dataSet = new OdaDataSetDesign( "set", "source" );
+		dataSet.setBeforeOpenScript( "this.queryText = params[\"p\"]" );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		dataSet = new OdaDataSetDesign( "set", "source" );
+		dataSource.setBeforeOpenScript( "this.setExtensionProperty(\"u\", params[\"u\"])" );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		assertFalse( DataSetPrefetcher.isIndependent( query,
+				new ScriptDataSetDesign( "set", "source" ),
+				dataSource ) );
+	}
+
+	@Test
+	public void testEventHandler( )
+	{
+		// a Java event handler may set the query text or the credentials
+		dataSet.setEventHandler( (IBaseDataSetEventHandler) newEventHandler( IBaseDataSetEventHandler.class ) );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		dataSet = new OdaDataSetDesign( "set", "source" );
+		dataSource.setEventHandler( (IBaseDataSourceEventHandler) newEventHandler( IBaseDataSourceEventHandler.class ) );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+	}
+
+	@Test
+	public void testOptionalEventHandler( )
+	{
+		// the report engine sets a script executor on every data set and data
+		// source, which has nothing to handle without scripts or handler classes
+		dataSet.setEventHandler( (IBaseDataSetEventHandler) newEventHandler( IBaseDataSetEventHandler.class,
+				false ) );
+		dataSource.setEventHandler( (IBaseDataSourceEventHandler) newEventHandler( IBaseDataSourceEventHandler.class,
+				false ) );
+		assertTrue( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		dataSet.setEventHandler( (IBaseDataSetEventHandler) newEventHandler( IBaseDataSetEventHandler.class,
+				true ) );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+
+		dataSet.setEventHandler( (IBaseDataSetEventHandler) newEventHandler( IBaseDataSetEventHandler.class,
+				false ) );
+		dataSource.setEventHandler( (IBaseDataSourceEventHandler) newEventHandler( IBaseDataSourceEventHandler.class,
+				true ) );
+		assertFalse( DataSetPrefetcher.isIndependent( query, dataSet, dataSource ) );
+	}
+
+	private static Object newEventHandler( Class type )
+	{
+		return Proxy.newProxyInstance( type.getClassLoader( ),
+				new Class[]{
+					type
+				},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						return null;
+					}
+				} );
+	}
+
+	private static Object newEventHandler( Class type, final boolean hasHandlers )
+	{
+		return Proxy.newProxyInstance( type.getClassLoader( ),
+				new Class[]{
+						type, IOptionalEventHandler.class
+				},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						if ( method.getName( ).equals( "hasHandlers" ) ) //$NON-NLS-1$
+							return Boolean.valueOf( hasHandlers );
+						return null;
+					}
+				} );
+	}
+
+	@Test
+	public void testNotEnabled( )
+	{
+		DataSetPrefetcher prefetcher = new DataSetPrefetcher( null );
+		prefetcher.register( new IDataQueryDefinition[]{
+			query
+		} );
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.DATA_SET_PREFETCH, "0" );
+		prefetcher.start( appContext );
+		assertNull( prefetcher.getCacheConfig( "set" ) );
+		assertNull( prefetcher.getContextKey( "set" ) );
+		appContext.put( DataEngine.DATA_SET_PREFETCH, "4" );
+		assertEquals( 4, DataSetCacheUtil.getDataSetPrefetchCount( appContext ) );
+	}
+}
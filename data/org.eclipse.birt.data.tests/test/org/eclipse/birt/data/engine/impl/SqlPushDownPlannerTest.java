@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.querydefn.Binding;
+import org.eclipse.birt.data.engine.api.querydefn.ColumnDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ConditionalExpression;
+import org.eclipse.birt.data.engine.api.querydefn.FilterDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.GroupDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the translation of filters, sorts and aggregations into SQL.
+ */
+public class SqlPushDownPlannerTest
+{
+	private static final String SQL = "select ID, NAME, AMOUNT, YEAR from ORDERS where STATUS = ?";
+	private static final String WRAPPED = "SELECT * FROM ( " + SQL + "\n) BIRT_PUSHDOWN";
+
+	private OdaDataSetDesign dataSet;
+	private QueryDefinition query;
+
+	@Before
+	public void sqlPushDownPlannerSetUp( ) throws Exception
+	{
+		dataSet = new OdaDataSetDesign( "orders" );
+		dataSet.setQueryText( SQL );
+		dataSet.addResultSetHint( newColumn( "ID", DataType.INTEGER_TYPE, 1 ) );
+		dataSet.addResultSetHint( newColumn( "NAME", DataType.STRING_TYPE, 2 ) );
+		dataSet.addResultSetHint( newColumn( "AMOUNT", DataType.DECIMAL_TYPE, 3 ) );
+		dataSet.addResultSetHint( newColumn( "YEAR", DataType.INTEGER_TYPE, 4 ) );
+		query = new QueryDefinition( );
+		query.setDataSetName( "orders" );
+	}
+
+	private static ColumnDefinition newColumn( String name, int dataType,
+			int position )
+	{
+		ColumnDefinition column = new ColumnDefinition( name );
+		column.setDataType( dataType );
+		column.setColumnPosition( position );
+		return column;
+	}
+
+	private static ColumnDefinition newColumn( String name, String nativeName,
+			int dataType, int position )
+	{
+		ColumnDefinition column = newColumn( name, dataType, position );
+		column.setColumnNativeName( nativeName );
+		return column;
+	}
+
+	/**
+	 * An aggregation binding whose arguments are not looked up in the
+	 * aggregations of the platform.
+	 */
+	private static class AggregationBinding extends Binding
+	{
+		AggregationBinding( String name, String function, String expr )
+				throws DataException
+		{
+			super( name, new ScriptExpression( expr ) );
+			setAggrFunction( function );
+		}
+
+		public List getArguments( )
+		{
+			return new ArrayList( );
+		}
+	}
+
+	private String rewrite( )
+	{
+		return new SqlPushDownPlanner( dataSet, query ).rewrite( SQL );
+	}
+
+	/**
+	 * Comparisons with literals are translated, and null values are kept as
+	 * the data engine keeps them
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFilters( ) throws Exception
+	{
+		dataSet.addFilter( new FilterDefinition( new ConditionalExpression( "row[\"AMOUNT\"]",
+				IConditionalExpression.OP_LT,
+				"100.5" ) ) );
+		query.addBinding( new Binding( "name",
+				new ScriptExpression( "dataSetRow[\"NAME\"]" ) ) );
+		List values = new ArrayList( );
+		values.add( "\"a'b\"" );
+		values.add( "'c'" );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "row[\"name\"]",
+				IConditionalExpression.OP_IN,
+				values ) ) );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"YEAR\"]",
+				IConditionalExpression.OP_BETWEEN,
+				"2000",
+				"2010" ) ) );
+		assertEquals( WRAPPED
+				+ " WHERE (AMOUNT < 100.5 OR AMOUNT IS NULL)"
+				+ " AND NAME IN ('a''b', 'c')"
+				+ " AND YEAR BETWEEN 2000 AND 2010", rewrite( ) );
+	}
+
+	/**
+	 * Conditions which the data engine evaluates differently are left to the
+	 * data engine
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUntranslatedFilters( ) throws Exception
+	{
+		// strings are only compared for equality
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"NAME\"]",
+				IConditionalExpression.OP_GT,
+				"\"m\"" ) ) );
+		// a number compared with a string
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"ID\"]",
+				IConditionalExpression.OP_EQ,
+				"\"1\"" ) ) );
+		// not a column reference
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"ID\"] + 1",
+				IConditionalExpression.OP_EQ,
+				"2" ) ) );
+		// aggregations are computed on the filtered rows
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"ID\"]",
+				IConditionalExpression.OP_EQ,
+				"2" ), false ) );
+		query.addFilter( new FilterDefinition( new ScriptExpression( "dataSetRow[\"ID\"] == 2" ) ) );
+		assertNull( rewrite( ) );
+
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"NAME\"]",
+				IConditionalExpression.OP_NOT_NULL ) ) );
+		assertEquals( WRAPPED + " WHERE NAME IS NOT NULL", rewrite( ) );
+	}
+
+	/**
+	 * A number with a leading zero is an octal literal in script, which is
+	 * not the same number in SQL
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOctalLiterals( ) throws Exception
+	{
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "row[\"x\"]",
+				IConditionalExpression.OP_EQ,
+				"010" ) ) );
+		query.addBinding( new Binding( "x",
+				new ScriptExpression( "dataSetRow[\"ID\"]" ) ) );
+		assertNull( rewrite( ) );
+
+		query = new QueryDefinition( );
+		query.setDataSetName( dataSet.getName( ) );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"ID\"]",
+				IConditionalExpression.OP_BETWEEN,
+				"0",
+				"10.05" ) ) );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"AMOUNT\"]",
+				IConditionalExpression.OP_GT,
+				"-0.5e-3" ) ) );
+		assertEquals( WRAPPED
+				+ " WHERE ID BETWEEN 0 AND 10.05 AND AMOUNT > -0.5e-3", rewrite( ) );
+	}
+
+	/**
+	 * Nothing is pushed down if the fetched rows are limited or changed
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnsupportedDataSets( ) throws Exception
+	{
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"ID\"]",
+				IConditionalExpression.OP_EQ,
+				"2" ) ) );
+		assertEquals( WRAPPED + " WHERE ID = 2", rewrite( ) );
+
+		assertNull( new SqlPushDownPlanner( dataSet, query ).rewrite( SQL
+				+ " order by ID" ) );
+		assertNull( new SqlPushDownPlanner( dataSet, query ).rewrite( SQL
+				+ "; delete from ORDERS" ) );
+
+		dataSet.setRowFetchLimit( 10 );
+		assertNull( rewrite( ) );
+		dataSet.setRowFetchLimit( 0 );
+
+		dataSet.setOnFetchScript( "row[\"ID\"] = 1;" );
+		assertNull( rewrite( ) );
+	}
+
+	/**
+	 * The group and sort keys are ordered in the database
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOrderBy( ) throws Exception
+	{
+		GroupDefinition group = new GroupDefinition( "year" );
+		group.setKeyExpression( "dataSetRow[\"YEAR\"]" );
+		group.setSortDirection( GroupDefinition.SORT_DESC );
+		query.addGroup( group );
+		SortDefinition sort = new SortDefinition( );
+		sort.setExpression( "dataSetRow[\"NAME\"]" );
+		query.addSort( sort );
+		assertEquals( WRAPPED + " ORDER BY YEAR DESC, NAME", rewrite( ) );
+	}
+
+	/**
+	 * A query which only consumes SUM, MIN and MAX is grouped in the database
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGroupBy( ) throws Exception
+	{
+		GroupDefinition group = new GroupDefinition( "year" );
+		group.setKeyExpression( "row[\"year\"]" );
+		query.addGroup( group );
+		query.setUsesDetails( false );
+		query.addBinding( new Binding( "year",
+				new ScriptExpression( "dataSetRow[\"YEAR\"]" ) ) );
+		Binding total = new AggregationBinding( "total",
+				"SUM",
+				"dataSetRow[\"AMOUNT\"]" );
+		total.addAggregateOn( "year" );
+		query.addBinding( total );
+		query.addBinding( new AggregationBinding( "first",
+				"MIN",
+				"dataSetRow[\"ID\"]" ) );
+		query.addBinding( new Binding( "label",
+				new ScriptExpression( "row[\"year\"] + \": \" + row[\"total\"]" ) ) );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "row[\"year\"]",
+				IConditionalExpression.OP_GE,
+				"2000" ) ) );
+		assertEquals( "SELECT MIN(ID) ID, MAX(NAME) NAME, SUM(AMOUNT) AMOUNT, YEAR FROM ( "
+				+ SQL
+				+ "\n) BIRT_PUSHDOWN WHERE YEAR >= 2000 GROUP BY YEAR ORDER BY YEAR",
+				rewrite( ) );
+
+		// count of rows is changed by grouping
+		query.addBinding( new AggregationBinding( "count",
+				"COUNT",
+				"dataSetRow[\"ID\"]" ) );
+		assertEquals( WRAPPED + " WHERE YEAR >= 2000 ORDER BY YEAR", rewrite( ) );
+	}
+
+	/**
+	 * Rows are not grouped if a binding or filter uses the values of rows
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoGroupBy( ) throws Exception
+	{
+		GroupDefinition group = new GroupDefinition( "year" );
+		group.setKeyExpression( "dataSetRow[\"YEAR\"]" );
+		query.addGroup( group );
+		query.setUsesDetails( false );
+		query.addBinding( new AggregationBinding( "total",
+				"SUM",
+				"dataSetRow[\"AMOUNT\"]" ) );
+		query.addBinding( new Binding( "name",
+				new ScriptExpression( "dataSetRow[\"NAME\"]" ) ) );
+		assertEquals( WRAPPED + " ORDER BY YEAR", rewrite( ) );
+
+		query.getBindings( ).remove( "name" );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"AMOUNT\"]",
+				IConditionalExpression.OP_GT,
+				"0" ) ) );
+		assertEquals( WRAPPED + " WHERE AMOUNT > 0 ORDER BY YEAR", rewrite( ) );
+	}
+
+	/**
+	 * The SQL refers to the columns of the query by their native names, not by
+	 * the names of the result set
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAliasedColumns( ) throws Exception
+	{
+		dataSet = new OdaDataSetDesign( "orders" );
+		dataSet.setQueryText( SQL );
+		dataSet.addResultSetHint( newColumn( "OrderId", "ID", DataType.INTEGER_TYPE, 1 ) );
+		dataSet.addResultSetHint( newColumn( "Customer", "NAME", DataType.STRING_TYPE, 2 ) );
+		dataSet.addResultSetHint( newColumn( "Amount", "AMOUNT", DataType.DECIMAL_TYPE, 3 ) );
+		dataSet.addResultSetHint( newColumn( "Year", "YEAR", DataType.INTEGER_TYPE, 4 ) );
+
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"Customer\"]",
+				IConditionalExpression.OP_EQ,
+				"\"a\"" ) ) );
+		SortDefinition sort = new SortDefinition( );
+		sort.setExpression( "dataSetRow[\"Amount\"]" );
+		query.addSort( sort );
+		assertEquals( WRAPPED + " WHERE NAME = 'a' ORDER BY AMOUNT", rewrite( ) );
+
+		query = new QueryDefinition( );
+		query.setDataSetName( "orders" );
+		GroupDefinition group = new GroupDefinition( "year" );
+		group.setKeyExpression( "dataSetRow[\"Year\"]" );
+		query.addGroup( group );
+		query.setUsesDetails( false );
+		query.addBinding( new AggregationBinding( "total",
+				"SUM",
+				"dataSetRow[\"Amount\"]" ) );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"Year\"]",
+				IConditionalExpression.OP_BETWEEN,
+				"2000",
+				"2010" ) ) );
+		assertEquals( "SELECT MAX(ID) ID, MAX(NAME) NAME, SUM(AMOUNT) AMOUNT, YEAR FROM ( "
+				+ SQL
+				+ "\n) BIRT_PUSHDOWN WHERE YEAR BETWEEN 2000 AND 2010 GROUP BY YEAR ORDER BY YEAR",
+				rewrite( ) );
+
+		// a native name which is not an identifier is not referred to
+		dataSet = new OdaDataSetDesign( "orders" );
+		dataSet.setQueryText( SQL );
+		dataSet.addResultSetHint( newColumn( "Year", "order year", DataType.INTEGER_TYPE, 1 ) );
+		query = new QueryDefinition( );
+		query.setDataSetName( "orders" );
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"Year\"]",
+				IConditionalExpression.OP_EQ,
+				"2000" ) ) );
+		assertNull( rewrite( ) );
+	}
+
+	/**
+	 * The query is only rewritten when it is enabled for a JDBC data set
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPushDownToSql( ) throws Exception
+	{
+		query.addFilter( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"ID\"]",
+				IConditionalExpression.OP_EQ,
+				"2" ) ) );
+		Map appContext = new HashMap( );
+		assertNull( OdaQueryOptimizationUtil.pushDownToSql( SqlPushDownPlanner.JDBC_DATA_SOURCE_ID,
+				SqlPushDownPlanner.JDBC_DATA_SET_TYPE,
+				SQL,
+				dataSet,
+				query,
+				appContext ) );
+		appContext.put( DataEngine.SQL_PUSH_DOWN, "true" );
+		assertEquals( WRAPPED + " WHERE ID = 2",
+				OdaQueryOptimizationUtil.pushDownToSql( SqlPushDownPlanner.JDBC_DATA_SOURCE_ID,
+						SqlPushDownPlanner.JDBC_DATA_SET_TYPE,
+						SQL,
+						dataSet,
+						query,
+						appContext ) );
+		assertNull( OdaQueryOptimizationUtil.pushDownToSql( "org.eclipse.birt.report.data.oda.xml",
+				SqlPushDownPlanner.JDBC_DATA_SET_TYPE,
+				SQL,
+				dataSet,
+				query,
+				appContext ) );
+	}
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.document;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.birt.core.archive.RAFileInputStream;
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.impl.document.util.ExprDataResultSet1;
+import org.eclipse.birt.data.engine.impl.document.viewing.ExprMetaInfo;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the expression values saved by RowSaveUtil are read back the same,
+ * whether they are saved in rows or in column chunks.
+ */
+public class RowSaveUtilTest
+{
+
+	public static final int ROW_COUNT = 2500;
+
+	private File rowFile;
+	private File rowLenFile;
+
+	@Before
+	public void setUp( ) throws Exception
+	{
+		rowFile = File.createTempFile( "exprValue", null );
+		rowLenFile = File.createTempFile( "exprRowLen", null );
+	}
+
+	@After
+	public void tearDown( ) throws Exception
+	{
+		rowFile.delete( );
+		rowLenFile.delete( );
+	}
+
+	@Test
+	public void testColumnChunks( ) throws Exception
+	{
+		save( rowFile, rowLenFile, VersionManager.VERSION_4_2_4 );
+		long columnarLength = rowFile.length( );
+		assertRows( VersionManager.VERSION_4_2_4 );
+
+		save( rowFile, rowLenFile, VersionManager.VERSION_4_2_3 );
+		assertRows( VersionManager.VERSION_4_2_3 );
+		// the values of a column are alike, which are compressed well
+		assertTrue( columnarLength < rowFile.length( ) / 2 );
+	}
+
+	/**
+	 * Save ROW_COUNT rows of the columns id, name and amount. Every 100th row
+	 * is missing, every 7th amount is null and the amount of row 1234 is an
+	 * exception.
+	 *
+	 * @param rowFile
+	 * @param rowLenFile
+	 * @param version
+	 * @throws Exception
+	 */
+	public static void save( File rowFile, File rowLenFile, int version )
+			throws Exception
+	{
+		Set exprNames = new LinkedHashSet( );
+		exprNames.add( "id" );
+		exprNames.add( "name" );
+		exprNames.add( "amount" );
+		Map types = new HashMap( );
+		types.put( "id", Integer.valueOf( DataType.INTEGER_TYPE ) );
+		types.put( "name", Integer.valueOf( DataType.STRING_TYPE ) );
+		types.put( "amount", Integer.valueOf( DataType.DOUBLE_TYPE ) );
+
+		RowSaveUtil saveUtil = new RowSaveUtil( ROW_COUNT,
+				new FileOutputStream( rowFile ),
+				new FileOutputStream( rowLenFile ),
+				exprNames,
+				new HashMap( ),
+				types,
+				version );
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			// the rows in between are not saved
+			if ( i % 100 == 99 )
+				continue;
+			Map values = new HashMap( );
+			values.put( "id", Integer.valueOf( i ) );
+			values.put( "name", "name" + ( i % 10 ) );
+			values.put( "amount", i % 7 == 0 ? null : new Double( i / 4 ) );
+			if ( i == 1234 )
+				values.put( "amount", new BirtException( "error" ) );
+			saveUtil.saveExprValue( i, values );
+		}
+		saveUtil.saveFinish( ROW_COUNT );
+	}
+
+	private void assertRows( int version ) throws Exception
+	{
+		ExprMetaInfo[] metas = new ExprMetaInfo[]{
+				newMeta( "id", DataType.INTEGER_TYPE ),
+				newMeta( "name", DataType.STRING_TYPE ),
+				newMeta( "amount", DataType.ANY_TYPE )
+		};
+		RandomAccessFile rowRaf = new RandomAccessFile( rowFile, "r" );
+		RandomAccessFile rowLenRaf = new RandomAccessFile( rowLenFile, "r" );
+		ExprDataResultSet1 resultSet = new ExprDataResultSet1( new RAFileInputStream( rowRaf,
+				0,
+				rowFile.length( ) ),
+				new RAFileInputStream( rowLenRaf, 0, rowLenFile.length( ) ),
+				metas,
+				version,
+				null );
+		try
+		{
+			assertEquals( ROW_COUNT, resultSet.getCount( ) );
+			for ( int i = 0; i < ROW_COUNT; i++ )
+			{
+				IResultObject row = resultSet.next( );
+				assertNotNull( row );
+				if ( i % 100 == 99 )
+				{
+					assertNull( row.getFieldValue( "id" ) );
+					continue;
+				}
+				assertEquals( Integer.valueOf( i ), row.getFieldValue( "id" ) );
+				assertEquals( "name" + ( i % 10 ), row.getFieldValue( "name" ) );
+				if ( i == 1234 )
+					assertTrue( row.getFieldValue( "amount" ) instanceof DataException );
+				else
+					assertEquals( i % 7 == 0 ? null : new Double( i / 4 ),
+							row.getFieldValue( "amount" ) );
+			}
+			assertNull( resultSet.next( ) );
+		}
+		finally
+		{
+			resultSet.close( );
+			rowRaf.close( );
+			rowLenRaf.close( );
+		}
+	}
+
+	private static ExprMetaInfo newMeta( String name, int dataType )
+	{
+		ExprMetaInfo meta = new ExprMetaInfo( );
+		meta.setName( name );
+		meta.setDataType( dataType );
+		return meta;
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.document.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.archive.RAFileInputStream;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.document.RowSaveUtilTest;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the values of a column are read one chunk at a time, only when they
+ * are got.
+ */
+public class ExprDataReader3Test
+{
+
+	private static final int CHUNK_SIZE = 1024;
+
+	private File rowFile;
+	private File rowLenFile;
+	private RandomAccessFile rowRaf;
+	private RandomAccessFile rowLenRaf;
+	private CountingInputStream rowExprsIs;
+	private ExprDataReader3 reader;
+
+	@Before
+	public void setUp( ) throws Exception
+	{
+		rowFile = File.createTempFile( "exprValue", null );
+		rowLenFile = File.createTempFile( "exprRowLen", null );
+		RowSaveUtilTest.save( rowFile, rowLenFile, VersionManager.VERSION_4_2_4 );
+
+		rowRaf = new RandomAccessFile( rowFile, "r" );
+		rowLenRaf = new RandomAccessFile( rowLenFile, "r" );
+		rowExprsIs = new CountingInputStream( rowRaf, rowFile.length( ) );
+		RAFileInputStream rowLenIs = new RAFileInputStream( rowLenRaf,
+				0,
+				rowLenFile.length( ) );
+		assertTrue( ExprDataReader3.isColumnar( rowLenIs,
+				VersionManager.VERSION_4_2_4 ) );
+		reader = new ExprDataReader3( null, rowExprsIs, rowLenIs, null, null );
+		// only the chunks read after the directory are counted
+		rowExprsIs.seeks.clear( );
+	}
+
+	@After
+	public void tearDown( ) throws Exception
+	{
+		reader.close( );
+		rowRaf.close( );
+		rowLenRaf.close( );
+		rowFile.delete( );
+		rowLenFile.delete( );
+	}
+
+	@Test
+	public void testUnreferencedColumns( ) throws Exception
+	{
+		assertEquals( RowSaveUtilTest.ROW_COUNT, reader.getCount( ) );
+		for ( int i = 0; i < RowSaveUtilTest.ROW_COUNT; i++ )
+		{
+			assertTrue( reader.next( ) );
+			Map row = reader.getRowValue( );
+			if ( i % 100 == 99 )
+			{
+				assertFalse( row.containsKey( "id" ) );
+				assertNull( row.get( "id" ) );
+				continue;
+			}
+			assertEquals( Integer.valueOf( i ), row.get( "id" ) );
+		}
+		assertFalse( reader.next( ) );
+		// one chunk of the id column is read for every chunk of rows
+		assertEquals( 3, rowExprsIs.seeks.size( ) );
+	}
+
+	@Test
+	public void testChunkBoundaries( ) throws Exception
+	{
+		reader.moveTo( CHUNK_SIZE - 1 );
+		assertEquals( Integer.valueOf( CHUNK_SIZE - 1 ),
+				reader.getRowValue( ).get( "id" ) );
+		assertEquals( "name3", reader.getRowValue( ).get( "name" ) );
+		assertEquals( 2, rowExprsIs.seeks.size( ) );
+
+		reader.moveTo( CHUNK_SIZE );
+		assertEquals( Integer.valueOf( CHUNK_SIZE ),
+				reader.getRowValue( ).get( "id" ) );
+		assertEquals( "name4", reader.getRowValue( ).get( "name" ) );
+		assertEquals( 4, rowExprsIs.seeks.size( ) );
+
+		reader.moveTo( 1234 );
+		assertTrue( reader.getRowValue( ).get( "amount" ) instanceof DataException );
+		reader.moveTo( 1235 );
+		assertEquals( new Double( 1235 / 4 ),
+				reader.getRowValue( ).get( "amount" ) );
+		reader.moveTo( 1239 );
+		assertNull( reader.getRowValue( ).get( "amount" ) );
+		// the values of the same chunk are not read again
+		assertEquals( 5, rowExprsIs.seeks.size( ) );
+	}
+
+	@Test
+	public void testMoveTo( ) throws Exception
+	{
+		reader.moveTo( RowSaveUtilTest.ROW_COUNT - 2 );
+		assertEquals( 0, rowExprsIs.seeks.size( ) );
+		assertEquals( Integer.valueOf( RowSaveUtilTest.ROW_COUNT - 2 ),
+				reader.getRowValue( ).get( "id" ) );
+		// the chunks moved over are not read
+		assertEquals( 1, rowExprsIs.seeks.size( ) );
+		assertTrue( rowExprsIs.seeks.get( 0 ).longValue( ) > rowFile.length( ) / 2 );
+
+		reader.moveTo( RowSaveUtilTest.ROW_COUNT - 1 );
+		assertNull( reader.getRowValue( ).get( "id" ) );
+		assertFalse( reader.next( ) );
+		assertEquals( 1, rowExprsIs.seeks.size( ) );
+		try
+		{
+			reader.moveTo( 0 );
+			fail( );
+		}
+		catch ( DataException e )
+		{
+		}
+	}
+
+	@Test
+	public void testChunkRanges( ) throws Exception
+	{
+		assertEquals( 3, reader.getChunkCount( ) );
+		assertEquals( CHUNK_SIZE, reader.getChunkSize( ) );
+		assertArrayEquals( new Object[]{
+				Integer.valueOf( 0 ), Integer.valueOf( CHUNK_SIZE - 1 )
+		}, reader.getChunkRange( "id", 0 ) );
+		assertArrayEquals( new Object[]{
+				Integer.valueOf( 2 * CHUNK_SIZE ),
+				Integer.valueOf( RowSaveUtilTest.ROW_COUNT - 2 )
+		}, reader.getChunkRange( "id", 2 ) );
+		assertArrayEquals( new Object[]{
+				"name0", "name9"
+		}, reader.getChunkRange( "name", 1 ) );
+		// the null values are left out of the range
+		assertArrayEquals( new Object[]{
+				new Double( 0 ), new Double( ( CHUNK_SIZE - 1 ) / 4 )
+		}, reader.getChunkRange( "amount", 0 ) );
+		// an exception has no place in the range
+		assertNull( reader.getChunkRange( "amount", 1 ) );
+		assertNull( reader.getChunkRange( "unknown", 0 ) );
+		// the ranges are read with the directory, not with the values
+		assertEquals( 0, rowExprsIs.seeks.size( ) );
+	}
+
+	/**
+	 * Records the positions seeked to, before every column chunk is read.
+	 */
+	private static class CountingInputStream extends RAFileInputStream
+	{
+		List<Long> seeks = new ArrayList<Long>( );
+
+		CountingInputStream( RandomAccessFile file, long length )
+				throws IOException
+		{
+			super( file, 0, length );
+		}
+
+		public void seek( long localPos ) throws IOException
+		{
+			seeks.add( Long.valueOf( localPos ) );
+			super.seek( localPos );
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.querydefn.Binding;
+import org.eclipse.birt.data.engine.api.querydefn.ConditionalExpression;
+import org.eclipse.birt.data.engine.api.querydefn.FilterDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the rows selected by the sorted index of a column are the rows of which
+ * the values pass the filters.
+ */
+public class DataSetSortedIndexTest
+{
+
+	@Test
+	public void testBitmapIntSet( )
+	{
+		BitmapIntSet set = new BitmapIntSet( );
+		assertTrue( set.isEmpty( ) );
+		set.addAll( new int[]{
+				3, 64, 1000, 63
+		} );
+		assertEquals( 4, set.size( ) );
+		assertTrue( set.contains( 64 ) );
+		assertFalse( set.contains( 65 ) );
+		assertFalse( set.contains( 100000 ) );
+		assertRows( set, 3, 63, 64, 1000 );
+
+		BitmapIntSet other = new BitmapIntSet( );
+		other.addAll( new int[]{
+				64, 1000, 5000
+		} );
+		BitmapIntSet union = new BitmapIntSet( );
+		union.or( set );
+		union.or( other );
+		assertRows( union, 3, 63, 64, 1000, 5000 );
+		set.and( other );
+		assertRows( set, 64, 1000 );
+	}
+
+	@Test
+	public void testNumberIndex( ) throws Exception
+	{
+		DataSetSortedIndex index = new DataSetSortedIndex( Arrays.asList( new Object[]{
+				Integer.valueOf( 5 ),
+				null,
+				Double.valueOf( 2.5 ),
+				Integer.valueOf( 5 ),
+				"text",
+				Integer.valueOf( 9 ),
+				Long.valueOf( 7 )
+		} ) );
+		assertRows( index.getUnindexedRows( ), 1, 4, 6 );
+		assertEquals( 3, index.getAllKeyValues( ).length );
+		assertRows( index.getKeyIndex( Double.valueOf( 5 ),
+				IConditionalExpression.OP_EQ ), 0, 3 );
+		assertRows( index.getKeyIndex( Integer.valueOf( 5 ),
+				IConditionalExpression.OP_LT ), 2 );
+		assertRows( index.getKeyIndex( Integer.valueOf( 5 ),
+				IConditionalExpression.OP_LE ), 0, 2, 3 );
+		assertRows( index.getKeyIndex( Integer.valueOf( 5 ),
+				IConditionalExpression.OP_GT ), 5 );
+		assertRows( index.getKeyIndex( Double.valueOf( 4.5 ),
+				IConditionalExpression.OP_GE ), 0, 3, 5 );
+		assertRows( index.getKeyIndex( Arrays.asList( new Object[]{
+				Integer.valueOf( 3 ), Integer.valueOf( 9 )
+		} ), IConditionalExpression.OP_BETWEEN ), 0, 3, 5 );
+		assertRows( index.getKeyIndex( Arrays.asList( new Object[]{
+				Double.valueOf( 2.5 ), Integer.valueOf( 9 ), Integer.valueOf( 4 )
+		} ), IConditionalExpression.OP_IN ), 2, 5 );
+		assertFalse( index.supportKey( "5" ) );
+		assertTrue( index.supportKey( Float.valueOf( 5 ) ) );
+
+		// the saved index is the same
+		ByteArrayOutputStream baos = new ByteArrayOutputStream( );
+		DataOutputStream dos = new DataOutputStream( baos );
+		index.save( dos );
+		dos.close( );
+		DataSetSortedIndex loaded = new DataSetSortedIndex( new DataInputStream( new ByteArrayInputStream( baos.toByteArray( ) ) ) );
+		assertRows( loaded.getUnindexedRows( ), 1, 4, 6 );
+		assertRows( loaded.getKeyIndex( Integer.valueOf( 5 ),
+				IConditionalExpression.OP_LE ), 0, 2, 3 );
+	}
+
+	@Test
+	public void testStringIndex( ) throws Exception
+	{
+		List values = new ArrayList( );
+		for ( int i = 0; i < 1000; i++ )
+		{
+			values.add( i % 100 == 0 ? null : "name" + ( i % 10 ) );
+		}
+		DataSetSortedIndex index = new DataSetSortedIndex( values );
+		assertEquals( 10, index.getAllKeyValues( ).length );
+		assertEquals( 10, index.getUnindexedRows( ).size( ) );
+		assertEquals( 100, index.getKeyIndex( "name3",
+				IConditionalExpression.OP_EQ ).size( ) );
+		assertEquals( 0, index.getKeyIndex( "name35",
+				IConditionalExpression.OP_EQ ).size( ) );
+		assertEquals( 290, index.getKeyIndex( "name3",
+				IConditionalExpression.OP_LT ).size( ) );
+		assertFalse( index.supportKey( Integer.valueOf( 3 ) ) );
+	}
+
+	@Test
+	public void testIndexFilter( ) throws Exception
+	{
+		DataSetSortedIndex index = new DataSetSortedIndex( Arrays.asList( new Object[]{
+				Integer.valueOf( 1 ),
+				Integer.valueOf( 2 ),
+				null,
+				Integer.valueOf( 3 ),
+				Integer.valueOf( 4 )
+		} ) );
+
+		IndexFilter filter = IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"id\"]",
+				IConditionalExpression.OP_BETWEEN,
+				"2",
+				"3.5" ) ),
+				null,
+				null );
+		assertEquals( "id", filter.getColumnName( ) );
+		// the null is selected to be filtered
+		assertRows( filter.selectRows( index ), 1, 2, 3 );
+
+		List operands = new ArrayList( );
+		operands.add( new ScriptExpression( "4" ) );
+		operands.add( new ScriptExpression( "1" ) );
+		filter = IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "dataSetRow[\"id\"]",
+				IConditionalExpression.OP_IN,
+				operands ) ),
+				null,
+				null );
+		assertRows( filter.selectRows( index ), 0, 2, 4 );
+
+		// a string is not compared with the numbers by the index
+		filter = IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"id\"]",
+				IConditionalExpression.OP_EQ,
+				"'2'" ) ),
+				null,
+				null );
+		assertNull( filter.selectRows( index ) );
+
+		// the operand is not a literal
+		assertNull( IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"id\"]",
+				IConditionalExpression.OP_EQ,
+				"params[\"p\"]" ) ),
+				null,
+				null ) );
+		assertNull( IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"id\"] + 1",
+				IConditionalExpression.OP_EQ,
+				"2" ) ),
+				null,
+				null ) );
+	}
+
+	@Test
+	public void testQueryIndexFilter( ) throws Exception
+	{
+		Map<String, IBinding> bindings = new HashMap<String, IBinding>( );
+		bindings.put( "b1", new Binding( "b1",
+				new ScriptExpression( "dataSetRow[\"name\"]" ) ) );
+		IBinding total = new Binding( "total",
+				new ScriptExpression( "dataSetRow[\"amount\"]" ) );
+		total.setAggrFunction( "SUM" );
+		bindings.put( "total", total );
+		IBinding b2 = new Binding( "b2",
+				new ScriptExpression( "dataSetRow[\"amount\"]" ) );
+		b2.setDataType( DataType.STRING_TYPE );
+		bindings.put( "b2", b2 );
+
+		IndexFilter filter = IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"b1\"]",
+				IConditionalExpression.OP_GE,
+				"\"name5\"" ) ),
+				bindings,
+				null );
+		assertEquals( "name", filter.getColumnName( ) );
+		assertEquals( Arrays.asList( new Object[]{
+			"name5"
+		} ), filter.getOperands( ) );
+		// the strings are compared by the collator
+		assertNull( IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"b1\"]",
+				IConditionalExpression.OP_GE,
+				"\"name5\"" ) ),
+				bindings,
+				String.CASE_INSENSITIVE_ORDER ) );
+		assertNull( IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"total\"]",
+				IConditionalExpression.OP_GT,
+				"100" ) ),
+				bindings,
+				null ) );
+
+		// the values are converted to strings by the binding
+		filter = IndexFilter.newInstance( new FilterDefinition( new ConditionalExpression( "row[\"b2\"]",
+				IConditionalExpression.OP_EQ,
+				"\"100\"" ) ),
+				bindings,
+				null );
+		assertFalse( filter.comparesValuesOf( Integer.class ) );
+		assertTrue( filter.comparesValuesOf( String.class ) );
+	}
+
+	@Test
+	public void testRowIndexReference( ) throws Exception
+	{
+		assertTrue( IndexFilter.refersToRowIndex( new ScriptExpression( "row.__rownum % 2" ),
+				null ) );
+		assertTrue( IndexFilter.refersToRowIndex( new ScriptExpression( "row[0] + row[\"id\"]" ),
+				null ) );
+		assertTrue( IndexFilter.refersToRowIndex( new ConditionalExpression( "dataSetRow[\"id\"]",
+				IConditionalExpression.OP_LT,
+				"dataSetRow[ 0 ]" ),
+				null ) );
+		assertFalse( IndexFilter.refersToRowIndex( new ScriptExpression( "row[10] + row[\"id\"]" ),
+				null ) );
+		assertFalse( IndexFilter.refersToRowIndex( new ConditionalExpression( "row[\"id\"]",
+				IConditionalExpression.OP_EQ,
+				"2" ),
+				null ) );
+
+		// a query filter on a binding of the row index
+		Map<String, IBinding> bindings = new HashMap<String, IBinding>( );
+		bindings.put( "index", new Binding( "index",
+				new ScriptExpression( "row.__rownum + 1" ) ) );
+		bindings.put( "position", new Binding( "position",
+				new ScriptExpression( "row[\"index\"]" ) ) );
+		bindings.put( "id", new Binding( "id",
+				new ScriptExpression( "dataSetRow[\"id\"]" ) ) );
+		assertTrue( IndexFilter.refersToRowIndex( new ConditionalExpression( "row[\"position\"]",
+				IConditionalExpression.OP_LE,
+				"10" ),
+				bindings ) );
+		assertFalse( IndexFilter.refersToRowIndex( new ConditionalExpression( "row[\"id\"]",
+				IConditionalExpression.OP_LE,
+				"10" ),
+				bindings ) );
+	}
+
+	private static void assertRows( IOrderedIntSet set, int... rows )
+	{
+		assertEquals( rows.length, set.size( ) );
+		IOrderedIntSetIterator it = set.iterator( );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			assertTrue( it.hasNext( ) );
+			assertEquals( rows[i], it.next( ) );
+		}
+		assertFalse( it.hasNext( ) );
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the compressed int set has the same ints as a sorted set, in both the
+ * sparse and the dense chunks.
+ */
+public class RoaringIntSetTest
+{
+
+	@Test
+	public void testAddAndContains( ) throws Exception
+	{
+		RoaringIntSet set = new RoaringIntSet( );
+		assertTrue( set.isEmpty( ) );
+		set.addAll( new int[]{
+				70000, 3, 65535, 65536, 3, 0
+		} );
+		assertEquals( 5, set.size( ) );
+		assertTrue( set.contains( 65535 ) );
+		assertTrue( set.contains( 65536 ) );
+		assertFalse( set.contains( 4 ) );
+		assertFalse( set.contains( -1 ) );
+		assertFalse( set.contains( 200000 ) );
+		assertSame( new TreeSet<Integer>( Arrays.asList( new Integer[]{
+				0, 3, 65535, 65536, 70000
+		} ) ), set );
+	}
+
+	@Test
+	public void testDenseChunk( ) throws Exception
+	{
+		// a chunk of more than 4096 ints is kept in a bitmap
+		RoaringIntSet set = new RoaringIntSet( );
+		SortedSet<Integer> expected = new TreeSet<Integer>( );
+		for ( int i = 0; i < 60000; i += 3 )
+		{
+			set.add( i );
+			expected.add( Integer.valueOf( i ) );
+		}
+		set.add( 100000 );
+		expected.add( Integer.valueOf( 100000 ) );
+		assertSame( expected, set );
+		assertSame( expected, RoaringIntSet.valueOf( set.toByteArray( ) ) );
+		// the bitmap takes 1 bit an int of the chunk
+		assertTrue( set.toByteArray( ).length < 10000 );
+	}
+
+	@Test
+	public void testAndOr( ) throws Exception
+	{
+		Random random = new Random( 1 );
+		for ( int round = 0; round < 20; round++ )
+		{
+			int bound = round % 2 == 0 ? 300000 : 70000;
+			int count1 = random.nextInt( 20000 );
+			int count2 = random.nextInt( 20000 );
+			RoaringIntSet set1 = new RoaringIntSet( );
+			RoaringIntSet set2 = new RoaringIntSet( );
+			SortedSet<Integer> expected1 = new TreeSet<Integer>( );
+			SortedSet<Integer> expected2 = new TreeSet<Integer>( );
+			for ( int i = 0; i < count1; i++ )
+			{
+				int value = random.nextInt( bound );
+				set1.add( value );
+				expected1.add( Integer.valueOf( value ) );
+			}
+			for ( int i = 0; i < count2; i++ )
+			{
+				int value = random.nextInt( bound );
+				set2.add( value );
+				expected2.add( Integer.valueOf( value ) );
+			}
+			assertSame( expected1, set1 );
+
+			RoaringIntSet union = RoaringIntSet.valueOf( set1.toByteArray( ) );
+			union.or( set2 );
+			SortedSet<Integer> expectedUnion = new TreeSet<Integer>( expected1 );
+			expectedUnion.addAll( expected2 );
+			assertSame( expectedUnion, union );
+
+			set1.and( set2 );
+			expected1.retainAll( expected2 );
+			assertSame( expected1, set1 );
+			assertSame( expected1, RoaringIntSet.valueOf( set1.toByteArray( ) ) );
+		}
+	}
+
+	private static void assertSame( SortedSet<Integer> expected,
+			RoaringIntSet set )
+	{
+		assertEquals( expected.size( ), set.size( ) );
+		assertEquals( expected.isEmpty( ), set.isEmpty( ) );
+		IOrderedIntSetIterator it = set.iterator( );
+		for ( Iterator<Integer> values = expected.iterator( ); values.hasNext( ); )
+		{
+			assertTrue( it.hasNext( ) );
+			assertEquals( values.next( ).intValue( ), it.next( ) );
+		}
+		assertFalse( it.hasNext( ) );
+	}
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.api.IJoinCondition;
+import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.JoinCondition;
+import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.MemoryCache;
+import org.eclipse.birt.data.engine.executor.cache.ResultSetCache;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the hash join of joint data sets.
+ */
+public class HashJointDataSetPopulatorTest
+{
+	private static final int[] JOIN_TYPES = new int[]{
+			IJointDataSetDesign.INNER_JOIN,
+			IJointDataSetDesign.LEFT_OUTER_JOIN,
+			IJointDataSetDesign.RIGHT_OUTER_JOIN,
+			IJointDataSetDesign.FULL_OUTER_JOIN
+	};
+
+	private static IResultClass newResultClass( String prefix )
+			throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				prefix + "key",
+				prefix + "key",
+				Object.class,
+				Object.class.getName( ),
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				prefix + "seq",
+				prefix + "seq",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		return new ResultClass( columnsList );
+	}
+
+	/**
+	 * An iterator which only provides its cache and result class.
+	 */
+	private static IResultIterator newIterator( final ResultSetCache cache,
+			final IResultClass resultClass )
+	{
+		return (IResultIterator) Proxy.newProxyInstance( IResultIterator.class.getClassLoader( ),
+				new Class[]{
+					IResultIterator.class
+				},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						if ( method.getName( ).equals( "getResultSetCache" ) )
+							return cache;
+						if ( method.getName( ).equals( "getResultClass" ) )
+							return resultClass;
+						throw new UnsupportedOperationException( method.getName( ) );
+					}
+				} );
+	}
+
+	/**
+	 * Matches the first column of the current rows of two caches.
+	 */
+	private static class KeyMatcher implements IJoinConditionMatcher
+	{
+		private ResultSetCache left;
+		private ResultSetCache right;
+
+		KeyMatcher( ResultSetCache left, ResultSetCache right )
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		public boolean match( ) throws DataException
+		{
+			return compare( getCompareValue( true ), getCompareValue( false ) ) == 0;
+		}
+
+		public int compare( Object[] lObjects, Object[] rObjects )
+				throws DataException
+		{
+			return JointDataSetUtil.compare( lObjects[0], rObjects[0] );
+		}
+
+		public Object[] getCompareValue( boolean isLeft ) throws DataException
+		{
+			ResultSetCache cache = isLeft ? left : right;
+			return new Object[]{
+				cache.getCurrentResult( ).getFieldValue( 1 )
+			};
+		}
+	}
+
+	private static IResultObject[] newRows( IResultClass resultClass,
+			int count, Random random )
+	{
+		IResultObject[] rows = new IResultObject[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			int value = random.nextInt( count );
+			Object key;
+			switch ( random.nextInt( 5 ) )
+			{
+				case 0 :
+					key = null;
+					break;
+				case 1 :
+					key = new Double( value );
+					break;
+				case 2 :
+					key = String.valueOf( value );
+					break;
+				default :
+					key = Integer.valueOf( value );
+			}
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					key, Integer.valueOf( i )
+			} );
+		}
+		return rows;
+	}
+
+	private static String toString( IResultObject leftRow,
+			IResultObject rightRow ) throws DataException
+	{
+		return ( leftRow == null ? "-" : leftRow.getFieldValue( 2 ) )
+				+ "," + ( rightRow == null ? "-" : rightRow.getFieldValue( 2 ) );
+	}
+
+	/**
+	 * Join rows by nested loops.
+	 */
+	private static List expectedJoin( IResultObject[] leftRows,
+			IResultObject[] rightRows, int joinType ) throws DataException
+	{
+		List result = new ArrayList( );
+		boolean[] rightMatched = new boolean[rightRows.length];
+		for ( int i = 0; i < leftRows.length; i++ )
+		{
+			boolean leftMatched = false;
+			for ( int j = 0; j < rightRows.length; j++ )
+			{
+				if ( JointDataSetUtil.compare( leftRows[i].getFieldValue( 1 ),
+						rightRows[j].getFieldValue( 1 ) ) == 0 )
+				{
+					result.add( toString( leftRows[i], rightRows[j] ) );
+					leftMatched = true;
+					rightMatched[j] = true;
+				}
+			}
+			if ( !leftMatched
+					&& ( joinType == IJointDataSetDesign.LEFT_OUTER_JOIN || joinType == IJointDataSetDesign.FULL_OUTER_JOIN ) )
+				result.add( toString( leftRows[i], null ) );
+		}
+		for ( int j = 0; j < rightRows.length; j++ )
+		{
+			if ( !rightMatched[j]
+					&& ( joinType == IJointDataSetDesign.RIGHT_OUTER_JOIN || joinType == IJointDataSetDesign.FULL_OUTER_JOIN ) )
+				result.add( toString( null, rightRows[j] ) );
+		}
+		Collections.sort( result );
+		return result;
+	}
+
+	private static List hashJoin( IResultObject[] leftRows,
+			IResultClass leftClass, IResultObject[] rightRows,
+			IResultClass rightClass, int joinType, long memoryLimit )
+			throws DataException
+	{
+		ResultSetCache leftCache = new MemoryCache( leftRows, leftClass, null );
+		ResultSetCache rightCache = new MemoryCache( rightRows,
+				rightClass,
+				null );
+		List columnsList = new ArrayList( );
+		for ( int i = 1; i <= 2; i++ )
+			columnsList.add( leftClass.getFieldMetaData( i ) );
+		for ( int i = 1; i <= 2; i++ )
+			columnsList.add( rightClass.getFieldMetaData( i ) );
+		JointResultMetadata meta = new JointResultMetadata( new ResultClass( columnsList ),
+				new int[]{
+						JointResultMetadata.COLUMN_TYPE_LEFT,
+						JointResultMetadata.COLUMN_TYPE_LEFT,
+						JointResultMetadata.COLUMN_TYPE_RIGHT,
+						JointResultMetadata.COLUMN_TYPE_RIGHT
+				},
+				new int[]{
+						1, 2, 1, 2
+				} );
+
+		HashJointDataSetPopulator populator = new HashJointDataSetPopulator( newIterator( leftCache,
+				leftClass ),
+				newIterator( rightCache, rightClass ),
+				meta,
+				new KeyMatcher( leftCache, rightCache ),
+				joinType,
+				0,
+				memoryLimit );
+		List result = new ArrayList( );
+		IResultObject row;
+		while ( ( row = populator.next( ) ) != null )
+		{
+			result.add( ( row.getFieldValue( 2 ) == null ? "-"
+					: row.getFieldValue( 2 ) )
+					+ ","
+					+ ( row.getFieldValue( 4 ) == null ? "-"
+							: row.getFieldValue( 4 ) ) );
+		}
+		assertNull( populator.next( ) );
+		Collections.sort( result );
+		return result;
+	}
+
+	/**
+	 * All the join types get the same rows as nested loops, with either data
+	 * set as the build data set, in memory or in partitions
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testJoinTypes( ) throws Exception
+	{
+		Random random = new Random( 0 );
+		IResultClass leftClass = newResultClass( "left" );
+		IResultClass rightClass = newResultClass( "right" );
+		int[][] counts = new int[][]{
+				{
+						300, 500
+				}, {
+						500, 300
+				}, {
+						0, 100
+				}, {
+						100, 0
+				}
+		};
+		long[] memoryLimits = new long[]{
+				0, 2000
+		};
+		for ( int i = 0; i < counts.length; i++ )
+		{
+			IResultObject[] leftRows = newRows( leftClass,
+					counts[i][0],
+					random );
+			IResultObject[] rightRows = newRows( rightClass,
+					counts[i][1],
+					random );
+			for ( int j = 0; j < JOIN_TYPES.length; j++ )
+			{
+				List expected = expectedJoin( leftRows, rightRows, JOIN_TYPES[j] );
+				for ( int k = 0; k < memoryLimits.length; k++ )
+				{
+					assertEquals( expected, hashJoin( leftRows,
+							leftClass,
+							rightRows,
+							rightClass,
+							JOIN_TYPES[j],
+							memoryLimits[k] ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rows of the probe data set are matched in their original order
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testProbeOrder( ) throws Exception
+	{
+		IResultClass leftClass = newResultClass( "left" );
+		IResultClass rightClass = newResultClass( "right" );
+		IResultObject[] leftRows = new IResultObject[10];
+		for ( int i = 0; i < leftRows.length; i++ )
+			leftRows[i] = new ResultObject( leftClass, new Object[]{
+					Integer.valueOf( 9 - i ), Integer.valueOf( i )
+			} );
+		IResultObject[] rightRows = new IResultObject[]{
+				new ResultObject( rightClass, new Object[]{
+						Integer.valueOf( 3 ), Integer.valueOf( 0 )
+				} ),
+				new ResultObject( rightClass, new Object[]{
+						Integer.valueOf( 7 ), Integer.valueOf( 1 )
+				} )
+		};
+		ResultSetCache leftCache = new MemoryCache( leftRows, leftClass, null );
+		ResultSetCache rightCache = new MemoryCache( rightRows,
+				rightClass,
+				null );
+		List columnsList = new ArrayList( );
+		columnsList.add( leftClass.getFieldMetaData( 2 ) );
+		columnsList.add( rightClass.getFieldMetaData( 2 ) );
+		HashJointDataSetPopulator populator = new HashJointDataSetPopulator( newIterator( leftCache,
+				leftClass ),
+				newIterator( rightCache, rightClass ),
+				new JointResultMetadata( new ResultClass( columnsList ),
+						new int[]{
+								JointResultMetadata.COLUMN_TYPE_LEFT,
+								JointResultMetadata.COLUMN_TYPE_RIGHT
+						},
+						new int[]{
+								2, 2
+						} ),
+				new KeyMatcher( leftCache, rightCache ),
+				IJointDataSetDesign.LEFT_OUTER_JOIN,
+				0,
+				0 );
+		for ( int i = 0; i < leftRows.length; i++ )
+		{
+			IResultObject row = populator.next( );
+			assertEquals( Integer.valueOf( i ), row.getFieldValue( 1 ) );
+			if ( i == 2 )
+				assertEquals( Integer.valueOf( 1 ), row.getFieldValue( 2 ) );
+			else if ( i == 6 )
+				assertEquals( Integer.valueOf( 0 ), row.getFieldValue( 2 ) );
+			else
+				assertNull( row.getFieldValue( 2 ) );
+		}
+		assertNull( populator.next( ) );
+	}
+
+	/**
+	 * Only equal join conditions can be joined by hash join
+	 */
+	@Test
+	public void testIsEquiJoin( ) throws Exception
+	{
+		List conditions = new ArrayList( );
+		assertFalse( JointDataSetUtil.isEquiJoin( conditions ) );
+		conditions.add( new JoinCondition( new ScriptExpression( "row[\"a\"]" ),
+				new ScriptExpression( "row[\"b\"]" ),
+				IJoinCondition.OP_EQ ) );
+		assertTrue( JointDataSetUtil.isEquiJoin( conditions ) );
+	}
+}
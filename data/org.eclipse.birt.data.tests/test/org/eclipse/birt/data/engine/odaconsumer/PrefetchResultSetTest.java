@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.odaconsumer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.impl.DataSetCacheUtil;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.IClob;
+import org.eclipse.datatools.connectivity.oda.IResultSet;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the result set whose rows are fetched in background.
+ */
+public class PrefetchResultSetTest
+{
+	private IResultClass resultClass;
+
+	@Before
+	public void prefetchResultSetSetUp( ) throws Exception
+	{
+		resultClass = getResultClass( Integer.class );
+	}
+
+	private static IResultClass getResultClass( Class type )
+			throws DataException
+	{
+		List columns = new ArrayList( );
+		columns.add( new ResultFieldMetadata( 1,
+				"A",
+				"A",
+				type,
+				type.getName( ),
+				false ) );
+		return new ResultClass( columns );
+	}
+
+	/**
+	 * A driver result set of the given count of rows, which fails at the row
+	 * of failAt if it is not negative.
+	 */
+	private static class DriverResultSet implements InvocationHandler
+	{
+		private int rowCount;
+		private int failAt;
+		private int row;
+		private boolean closed;
+		private List<Thread> threads = new ArrayList<Thread>( );
+
+		DriverResultSet( int rowCount, int failAt )
+		{
+			this.rowCount = rowCount;
+			this.failAt = failAt;
+		}
+
+		IResultSet newInstance( )
+		{
+			return (IResultSet) Proxy.newProxyInstance( getClass( ).getClassLoader( ),
+					new Class[]{
+						IResultSet.class
+					},
+					this );
+		}
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( closed )
+				throw new OdaException( "closed" );
+			if ( name.equals( "next" ) )
+			{
+				threads.add( Thread.currentThread( ) );
+				if ( row == failAt )
+					throw new OdaException( "failed" );
+				return Boolean.valueOf( ++row <= rowCount );
+			}
+			if ( name.equals( "getInt" ) )
+				return Integer.valueOf( row );
+			if ( name.equals( "wasNull" ) )
+				return Boolean.FALSE;
+			if ( name.equals( "close" ) )
+			{
+				closed = true;
+				return null;
+			}
+			throw new UnsupportedOperationException( name );
+		}
+	}
+
+	@Test
+	public void testFetch( ) throws Exception
+	{
+		DriverResultSet driver = new DriverResultSet( 1000, -1 );
+		PrefetchResultSet rs = new PrefetchResultSet( new ResultSet( driver.newInstance( ),
+				resultClass ),
+				100 );
+		for ( int i = 1; i <= 1000; i++ )
+		{
+			IResultObject row = rs.fetch( );
+			assertEquals( Integer.valueOf( i ), row.getFieldValue( 1 ) );
+			assertEquals( i, rs.getRowPosition( ) );
+		}
+		assertNull( rs.fetch( ) );
+		assertNull( rs.fetch( ) );
+		rs.close( );
+		assertTrue( driver.closed );
+		// the rows are fetched by another thread
+		assertFalse( driver.threads.contains( Thread.currentThread( ) ) );
+	}
+
+	@Test
+	public void testError( ) throws Exception
+	{
+		DriverResultSet driver = new DriverResultSet( 1000, 150 );
+		PrefetchResultSet rs = new PrefetchResultSet( new ResultSet( driver.newInstance( ),
+				resultClass ),
+				10 );
+		for ( int i = 1; i <= 150; i++ )
+		{
+			assertNotNull( rs.fetch( ) );
+		}
+		try
+		{
+			rs.fetch( );
+			fail( "the error of the driver is expected" );
+		}
+		catch ( DataException e )
+		{
+		}
+		rs.close( );
+	}
+
+	@Test
+	public void testStop( ) throws Exception
+	{
+		DriverResultSet driver = new DriverResultSet( 100000, -1 );
+		PrefetchResultSet rs = new PrefetchResultSet( new ResultSet( driver.newInstance( ),
+				resultClass ),
+				100 );
+		assertNotNull( rs.fetch( ) );
+		rs.cancel( );
+		int count = 1;
+		while ( rs.fetch( ) != null )
+		{
+			count++;
+		}
+		assertTrue( count < 100000 );
+		rs.close( );
+		assertTrue( driver.closed );
+		assertTrue( driver.row < 100000 );
+	}
+
+	@Test
+	public void testCanPrefetch( ) throws Exception
+	{
+		DriverResultSet driver = new DriverResultSet( 0, -1 );
+		assertTrue( PrefetchResultSet.canPrefetch( new ResultSet( driver.newInstance( ),
+				resultClass ) ) );
+		assertFalse( PrefetchResultSet.canPrefetch( new ResultSet( driver.newInstance( ),
+				getResultClass( IClob.class ) ) ) );
+	}
+
+	@Test
+	public void testPrefetchSize( ) throws Exception
+	{
+		Map appContext = new HashMap( );
+		assertEquals( 0, DataSetCacheUtil.getOdaPrefetchSize( appContext ) );
+		appContext.put( DataEngine.ODA_PREFETCH_SIZE, " 500 " );
+		assertEquals( 500, DataSetCacheUtil.getOdaPrefetchSize( appContext ) );
+		appContext.put( DataEngine.ODA_PREFETCH_SIZE, Integer.valueOf( -5 ) );
+		assertEquals( 0, DataSetCacheUtil.getOdaPrefetchSize( appContext ) );
+		// a bad value does not prefetch
+		appContext.put( DataEngine.ODA_PREFETCH_SIZE, "many" );
+		assertEquals( 0, DataSetCacheUtil.getOdaPrefetchSize( appContext ) );
+	}
+}
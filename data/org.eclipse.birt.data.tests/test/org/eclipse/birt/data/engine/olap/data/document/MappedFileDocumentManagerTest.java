@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the document objects read by the memory mapped document manager are the
+ * objects saved by the file document manager.
+ */
+
+public class MappedFileDocumentManagerTest
+{
+	private static final String MANAGER_NAME = "mappedTest";
+	private static final int ROW_COUNT = 5000;
+	private String dirName;
+
+	@Before
+	public void mappedFileDocumentManagerSetUp( ) throws Exception
+	{
+		dirName = System.getProperty( "java.io.tmpdir" );
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( dirName,
+				MANAGER_NAME );
+		// the blocks of the two objects are interleaved in the data file
+		IDocumentObject ints = documentManager.createDocumentObject( "ints" );
+		IDocumentObject mixed = documentManager.createDocumentObject( "mixed" );
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			ints.writeInt( i );
+			mixed.writeString( "name" + i );
+			mixed.writeDouble( i / 2.0 );
+			mixed.writeBytes( new Bytes( new byte[]{
+					(byte) i, 1, 2
+			} ) );
+		}
+		mixed.writeBigDecimal( new BigDecimal( "12.5" ) );
+		mixed.writeDate( new Date( 1000L ) );
+		mixed.writeObject( Integer.valueOf( 7 ) );
+		ints.close( );
+		mixed.close( );
+		documentManager.createDocumentObject( "empty" ).close( );
+		documentManager.flush( );
+		documentManager.close( );
+	}
+
+	@Test
+	public void testRead( ) throws Exception
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.loadMappedFileDocumentManager( dirName,
+				MANAGER_NAME );
+		assertTrue( documentManager.exist( "ints" ) );
+		assertFalse( documentManager.exist( "other" ) );
+		assertNull( documentManager.openDocumentObject( "other" ) );
+
+		IDocumentObject ints = documentManager.openDocumentObject( "ints" );
+		assertEquals( ROW_COUNT * 4L, ints.length( ) );
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			assertEquals( i, ints.readInt( ) );
+		}
+		try
+		{
+			ints.readInt( );
+			fail( );
+		}
+		catch ( EOFException e )
+		{
+		}
+		// an int split across two blocks
+		ints.seek( 4094 );
+		byte[] bytes = new byte[4];
+		assertEquals( 4, ints.read( bytes, 0, 4 ) );
+		assertEquals( 3, bytes[0] );
+		assertEquals( (byte) 0xff, bytes[1] );
+		assertEquals( 0, bytes[2] );
+		ints.seek( 4092 );
+		assertEquals( 1023, ints.readInt( ) );
+		ints.seek( 4096 * 3 + 8 );
+		assertEquals( 3074, ints.readInt( ) );
+		ints.close( );
+
+		IDocumentObject mixed = documentManager.openDocumentObject( "mixed" );
+		for ( int i = 0; i < ROW_COUNT; i++ )
+		{
+			assertEquals( "name" + i, mixed.readString( ) );
+			assertEquals( i / 2.0, mixed.readDouble( ), 0 );
+			assertEquals( new Bytes( new byte[]{
+					(byte) i, 1, 2
+			} ), mixed.readBytes( ) );
+		}
+		assertEquals( new BigDecimal( "12.5" ), mixed.readBigDecimal( ) );
+		assertEquals( new Date( 1000L ), mixed.readDate( ) );
+		assertEquals( Integer.valueOf( 7 ), mixed.readObject( ) );
+		assertEquals( -1, mixed.read( bytes, 0, 1 ) );
+		mixed.close( );
+
+		IDocumentObject empty = documentManager.openDocumentObject( "empty" );
+		assertEquals( 0, empty.length( ) );
+		assertEquals( -1, empty.read( bytes, 0, 1 ) );
+		empty.close( );
+		documentManager.close( );
+	}
+
+	@Test
+	public void testConcurrentRead( ) throws Exception
+	{
+		final IDocumentManager documentManager = DocumentManagerFactory.loadMappedFileDocumentManager( dirName,
+				MANAGER_NAME );
+		final Throwable[] errors = new Throwable[4];
+		Thread[] threads = new Thread[errors.length];
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			final int index = i;
+			threads[i] = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						IDocumentObject ints = documentManager.openDocumentObject( "ints" );
+						for ( int j = index; j < ROW_COUNT; j += 7 )
+						{
+							ints.seek( j * 4L );
+							assertEquals( j, ints.readInt( ) );
+						}
+						ints.close( );
+					}
+					catch ( Throwable e )
+					{
+						errors[index] = e;
+					}
+				}
+			};
+			threads[i].start( );
+		}
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			threads[i].join( );
+			assertNull( errors[i] );
+		}
+		documentManager.close( );
+	}
+
+	@Test
+	public void testReadOnly( ) throws Exception
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.loadMappedFileDocumentManager( dirName,
+				MANAGER_NAME );
+		try
+		{
+			documentManager.openDocumentObject( "ints" ).writeInt( 1 );
+			fail( );
+		}
+		catch ( UnsupportedOperationException e )
+		{
+		}
+		documentManager.close( );
+	}
+
+	@Test(expected = IOException.class)
+	public void testClosed( ) throws Exception
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.loadMappedFileDocumentManager( dirName,
+				MANAGER_NAME );
+		documentManager.close( );
+		documentManager.openDocumentObject( "ints" );
+	}
+}
@@ -98,6 +98,8 @@ public class CubeAggregationTest extends BaseTestCase
 	private DimLevel dimLevel11 = new DimLevel("dimension1","level11");
 	private DimLevel dimLevel12 = new DimLevel("dimension1","level12");
 	
+	private static final int CUBE3_ROW_COUNT = 3000;
+	
 	private CubeMaterializer materializer;
 	private ScriptContext cx = null;
 	private DataEngineImpl engine = null; 
@@ -452,6 +454,168 @@ public class CubeAggregationTest extends BaseTestCase
 			resultSet[i].close( );
 		}
 	}
+	@Test
+    public void testCube1AggregationInParallel( ) throws IOException, DataException, BirtException
+	{
+		// the stacks of the aggregations are calculated by several threads
+		IAggregationResultSet[] expected = executeAggregationInParallel( "cube1", 1, 0 );
+		IAggregationResultSet[] resultSet = executeAggregationInParallel( "cube1", 4, 0 );
+		
+		// the sums of measure1 by level21
+		assertEquals( 3, resultSet[0].length( ) );
+		resultSet[0].seek( 0 );
+		assertEquals( "1", resultSet[0].getLevelKeyValue( 0 )[0] );
+		assertEquals( new Double( 6 ), resultSet[0].getAggregationValue( 0 ) );
+		resultSet[0].seek( 2 );
+		assertEquals( "3", resultSet[0].getLevelKeyValue( 0 )[0] );
+		assertEquals( new Double( 38 ), resultSet[0].getAggregationValue( 0 ) );
+		assertSameAggregationResultSets( expected, resultSet );
+	}
+	
+	@Test
+    public void testCube3AggregationInParallel( ) throws IOException, DataException, BirtException
+	{
+		// the stacks and the results are saved to disk when the memory is short
+		createCube3( );
+		IAggregationResultSet[] expected = executeAggregationInParallel( "cube3", 1, 100000 );
+		IAggregationResultSet[] resultSet = executeAggregationInParallel( "cube3", 4, 100000 );
+		
+		// the grand total
+		assertEquals( 1, resultSet[2].length( ) );
+		resultSet[2].seek( 0 );
+		assertEquals( Integer.valueOf( CUBE3_ROW_COUNT ),
+				resultSet[2].getAggregationValue( resultSet[2].getAggregationIndex( "count" ) ) );
+		assertEquals( Integer.valueOf( 12 ),
+				resultSet[2].getAggregationValue( resultSet[2].getAggregationIndex( "max" ) ) );
+		assertEquals( 5, resultSet[0].length( ) );
+		assertEquals( CUBE3_ROW_COUNT / 3, resultSet[1].length( ) );
+		assertSameAggregationResultSets( expected, resultSet );
+	}
+	
+	private void assertSameAggregationResultSets(
+			IAggregationResultSet[] expected, IAggregationResultSet[] resultSet )
+			throws IOException
+	{
+		assertEquals( expected.length, resultSet.length );
+		for ( int i = 0; i < resultSet.length; i++ )
+		{
+			assertEquals( expected[i].length( ), resultSet[i].length( ) );
+			assertEquals( expected[i].getLevelCount( ), resultSet[i].getLevelCount( ) );
+			assertEquals( expected[i].getAggregationCount( ),
+					resultSet[i].getAggregationCount( ) );
+			for ( int j = 0; j < resultSet[i].length( ); j++ )
+			{
+				expected[i].seek( j );
+				resultSet[i].seek( j );
+				for ( int k = 0; k < resultSet[i].getLevelCount( ); k++ )
+				{
+					assertTrue( Arrays.equals( expected[i].getLevelKeyValue( k ),
+							resultSet[i].getLevelKeyValue( k ) ) );
+				}
+				for ( int k = 0; k < resultSet[i].getAggregationCount( ); k++ )
+				{
+					assertEquals( expected[i].getAggregationValue( k ),
+							resultSet[i].getAggregationValue( k ) );
+				}
+			}
+			expected[i].close( );
+			resultSet[i].close( );
+		}
+	}
+	
+	private IAggregationResultSet[] executeAggregationInParallel( String cubeName,
+			int parallelism, long memoryCacheSize ) throws IOException,
+			DataException, BirtException
+	{
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper( 
+				CubeQueryExecutorHelper.loadCube( cubeName, documentManager, new StopSign( ) ), new ComputedMeasureHelper( ), null );
+		cubeQueryExcutorHelper.setSortParallelism( parallelism );
+		cubeQueryExcutorHelper.setMemoryCacheSize( memoryCacheSize );
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[]{
+				new AggregationFunctionDefinition( "sum", "measure1", IBuildInAggregation.TOTAL_SUM_FUNC ),
+				new AggregationFunctionDefinition( "max", "measure1", IBuildInAggregation.TOTAL_MAX_FUNC ),
+				new AggregationFunctionDefinition( "min", "measure1", IBuildInAggregation.TOTAL_MIN_FUNC ),
+				new AggregationFunctionDefinition( "count", "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC ),
+				new AggregationFunctionDefinition( "ave", "measure1", IBuildInAggregation.TOTAL_AVE_FUNC ),
+				new AggregationFunctionDefinition( "first", "measure1", IBuildInAggregation.TOTAL_FIRST_FUNC ),
+				new AggregationFunctionDefinition( "last", "measure1", IBuildInAggregation.TOTAL_LAST_FUNC ),
+				new AggregationFunctionDefinition( "countDistinct", "measure1", IBuildInAggregation.TOTAL_COUNTDISTINCT_FUNC ),
+				new AggregationFunctionDefinition( "sum2", "measure2", IBuildInAggregation.TOTAL_SUM_FUNC )
+		};
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC}, funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_DESC}, funcitons );
+		aggregations[2] = new AggregationDefinition( null, null, funcitons );
+		aggregations[3] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_DESC}, funcitons );
+		return cubeQueryExcutorHelper.execute( aggregations, new StopSign( ) );
+	}
+	
+	/**
+	 * Creates a cube of which the fact table has more rows than the buffers
+	 * of the sorted stacks.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private void createCube3( ) throws IOException, BirtException
+	{
+		int memberCount = CUBE3_ROW_COUNT / 3;
+		Object[] col11 = new Object[memberCount];
+		Object[] col12 = new Object[memberCount];
+		for ( int i = 0; i < memberCount; i++ )
+		{
+			col11[i] = String.valueOf( i % 7 );
+			col12[i] = Integer.valueOf( i );
+		}
+		Dimension[] dimensions = new Dimension[2];
+		DimensionForTest iterator = new DimensionForTest( new String[]{
+				"col11", "col12"
+		} );
+		iterator.setLevelMember( 0, col11 );
+		iterator.setLevelMember( 1, col12 );
+		ILevelDefn[] levelDefs = new ILevelDefn[2];
+		levelDefs[0] = new LevelDefinition( "level11", new String[]{"col11"}, null );
+		levelDefs[1] = new LevelDefinition( "level12", new String[]{"col12"}, null );
+		dimensions[0] = (Dimension) DimensionFactory.createDimension( "dimension1", documentManager, iterator, levelDefs, false, new StopSign() );
+		
+		iterator = new DimensionForTest( new String[]{
+			"level21"
+		} );
+		iterator.setLevelMember( 0, new Object[]{
+				"0", "1", "2", "3", "4"
+		} );
+		levelDefs = new ILevelDefn[1];
+		levelDefs[0] = new LevelDefinition( "level21", new String[]{"level21"}, null );
+		dimensions[1] = (Dimension) DimensionFactory.createDimension( "dimension2", documentManager, iterator, levelDefs, false, new StopSign() );
+		
+		Object[] factCol12 = new Object[CUBE3_ROW_COUNT];
+		Object[] factLevel21 = new Object[CUBE3_ROW_COUNT];
+		Object[] measure1 = new Object[CUBE3_ROW_COUNT];
+		Object[] measure2 = new Object[CUBE3_ROW_COUNT];
+		for ( int i = 0; i < CUBE3_ROW_COUNT; i++ )
+		{
+			factCol12[i] = Integer.valueOf( i % memberCount );
+			factLevel21[i] = String.valueOf( i % 5 );
+			measure1[i] = Integer.valueOf( i % 13 );
+			measure2[i] = Double.valueOf( i % 17 );
+		}
+		DimensionForTest factTable = new DimensionForTest( new String[]{
+				"col12", "level21", "measure1", "measure2"
+		} );
+		factTable.setLevelMember( 0, factCol12 );
+		factTable.setLevelMember( 1, factLevel21 );
+		factTable.setLevelMember( 2, measure1 );
+		factTable.setLevelMember( 3, measure2 );
+		Cube cube = new Cube( "cube3", documentManager );
+		cube.create( CubeUtility.getKeyColNames( dimensions ), dimensions, factTable, new String[]{
+				"measure1", "measure2"
+		}, new StopSign( ) );
+		documentManager.flush( );
+	}
+	
 	@Test
     public void testCube1AggregationWithFunctionFilter( ) throws IOException, DataException, BirtException
 	{
@@ -16,7 +16,9 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -27,6 +29,7 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.IHierarchy;
 import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.Traversalor;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
@@ -569,6 +572,255 @@ public class FactTableHelperTest {
 		System.out.println( "Finish iterator... time: "  + (System.currentTimeMillis( ) - startTime)/1000);
 	}
 	
+	/**
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testParallelFactTableSave( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager1 = DocumentManagerFactory.createFileDocumentManager( );
+		IDocumentManager documentManager2 = DocumentManagerFactory.createFileDocumentManager( );
+		List documents1 = saveBigFactTable( documentManager1, 1 );
+		List documents2 = saveBigFactTable( documentManager2, 4 );
+		assertTrue( documents1.size( ) > 1 );
+		assertEquals( documents1.size( ), documents2.size( ) );
+		for ( int i = 0; i < documents1.size( ); i++ )
+		{
+			assertTrue( Arrays.equals( (byte[]) documents1.get( i ),
+					(byte[]) documents2.get( i ) ) );
+		}
+		documentManager1.close( );
+		documentManager2.close( );
+	}
+
+	/**
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testSegmentStatistics( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		saveBigFactTable( documentManager, 1 );
+		FactTable factTable = new FactTableAccessor( documentManager ).load( NamingUtil.getFactTableName( "bigThreeDimensions" ),
+				new StopSign( ) );
+		assertTrue( factTable.getSegmentCount( ) > 1 );
+
+		// every segment has the statistics of its rows
+		List segments = new ArrayList( );
+		int rowCount = 0;
+		IDocumentObject nameList = documentManager.openDocumentObject( NamingUtil.getFTSUListName( factTable.getName( ) ) );
+		while ( nameList.getFilePointer( ) < nameList.length( ) )
+		{
+			String FTSUName = nameList.readString( );
+			SegmentStatistics statistics = factTable.getSegmentStatistics( FTSUName );
+			assertNotNull( statistics );
+			for ( int i = 0; i < 3; i++ )
+			{
+				assertTrue( statistics.getMinPosition( i ) <= statistics.getMaxPosition( i ) );
+			}
+			assertEquals( statistics.getMinPosition( 0 )
+					* statistics.getMinPosition( 1 )
+					* statistics.getMinPosition( 2 ),
+					statistics.getMinMeasure( 0 ).intValue( ) );
+			rowCount += statistics.getRowCount( );
+			segments.add( FTSUName );
+		}
+		nameList.close( );
+		assertEquals( 100 * 100 * 10, rowCount );
+
+		String[] dimensionNames = new String[]{
+				"dimension1", "dimension3"
+		};
+		IDiskArray[] dimensionPosition = new IDiskArray[2];
+		dimensionPosition[0] = new BufferedPrimitiveDiskArray( );
+		dimensionPosition[0].add( Integer.valueOf( 5 ) );
+		dimensionPosition[0].add( Integer.valueOf( 50 ) );
+		dimensionPosition[1] = new BufferedPrimitiveDiskArray( );
+		dimensionPosition[1].add( Integer.valueOf( 3 ) );
+		assertEquals( 200,
+				countRows( new FactTableRowIterator( factTable,
+						dimensionNames,
+						dimensionPosition,
+						new StopSign( ) ) ) );
+
+		// the segments of which the positions of dimension3 are out of the
+		// selection are skipped
+		Map statisticsMap = new HashMap( );
+		for ( int i = 0; i < segments.size( ); i++ )
+		{
+			SegmentStatistics statistics = factTable.getSegmentStatistics( (String) segments.get( i ) );
+			SegmentStatistics narrowed = new SegmentStatistics( 3, 2 );
+			narrowed.addRow( new int[]{
+					statistics.getMinPosition( 0 ),
+					statistics.getMinPosition( 1 ),
+					5
+			}, new Object[2] );
+			narrowed.addRow( new int[]{
+					statistics.getMaxPosition( 0 ),
+					statistics.getMaxPosition( 1 ),
+					9
+			}, new Object[2] );
+			assertNull( narrowed.getMinMeasure( 0 ) );
+			statisticsMap.put( segments.get( i ), narrowed );
+		}
+		factTable.setSegmentStatistics( statisticsMap );
+		assertEquals( 0,
+				countRows( new FactTableRowIterator( factTable,
+						dimensionNames,
+						dimensionPosition,
+						new StopSign( ) ) ) );
+		documentManager.close( );
+	}
+
+	/**
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testSegmentBitmapIndex( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		saveBigFactTable( documentManager, 1 );
+		FactTable factTable = new FactTableAccessor( documentManager ).load( NamingUtil.getFactTableName( "bigThreeDimensions" ),
+				new StopSign( ) );
+
+		// the rows of every segment are indexed
+		IDocumentObject nameList = documentManager.openDocumentObject( NamingUtil.getFTSUListName( factTable.getName( ) ) );
+		while ( nameList.getFilePointer( ) < nameList.length( ) )
+		{
+			String FTSUName = nameList.readString( );
+			IDocumentObject indexObject = documentManager.openDocumentObject( NamingUtil.getFTSUIndexName( FTSUName ) );
+			assertNotNull( indexObject );
+			SegmentBitmapIndex index = SegmentBitmapIndex.load( indexObject );
+			indexObject.close( );
+			assertEquals( factTable.getSegmentStatistics( FTSUName )
+					.getRowCount( ), index.getRowCount( ) );
+		}
+		nameList.close( );
+
+		String[] dimensionNames = new String[]{
+				"dimension1", "dimension2", "dimension3"
+		};
+		int[][] positions = new int[][]{
+				{
+						5, 50, 99
+				}, {
+						7, 70
+				}, {
+					3
+				}
+		};
+		IDiskArray[] dimensionPosition = new IDiskArray[3];
+		for ( int i = 0; i < dimensionPosition.length; i++ )
+		{
+			dimensionPosition[i] = new BufferedPrimitiveDiskArray( );
+			for ( int j = 0; j < positions[i].length; j++ )
+			{
+				dimensionPosition[i].add( Integer.valueOf( positions[i][j] ) );
+			}
+		}
+		FactTableRowIterator iterator = new FactTableRowIterator( factTable,
+				dimensionNames,
+				dimensionPosition,
+				new StopSign( ) );
+		int count = 0;
+		while ( iterator.next( ) )
+		{
+			int position1 = iterator.getDimensionPosition( 0 );
+			int position2 = iterator.getDimensionPosition( 1 );
+			int position3 = iterator.getDimensionPosition( 2 );
+			assertTrue( position1 == 5 || position1 == 50 || position1 == 99 );
+			assertTrue( position2 == 7 || position2 == 70 );
+			assertEquals( 3, position3 );
+			assertEquals( Integer.valueOf( position1 * position2 * position3 ),
+					iterator.getMeasure( 0 ) );
+			count++;
+		}
+		iterator.close( );
+		assertEquals( 6, count );
+		documentManager.close( );
+	}
+
+	private static int countRows( FactTableRowIterator iterator )
+			throws IOException, BirtException
+	{
+		int count = 0;
+		while ( iterator.next( ) )
+		{
+			count++;
+		}
+		iterator.close( );
+		return count;
+	}
+
+	/**
+	 * Saves the fact table of the big data set, and reads the documents of the
+	 * fact table.
+	 */
+	private List saveBigFactTable( IDocumentManager documentManager,
+			int parallelism ) throws IOException, BirtException
+	{
+		Dimension[] dimensions = new Dimension[3];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			String name = "dimension" + ( i + 1 );
+			DimensionForTest iterator = new DimensionForTest( new String[]{
+				name
+			} );
+			int[] data = new int[BigLevelsAndFactTableDataset.dimensionPositionLength[i]];
+			for ( int j = 0; j < data.length; j++ )
+			{
+				data[j] = j;
+			}
+			iterator.setLevelMember( 0, data );
+			ILevelDefn[] levelDefs = new ILevelDefn[]{
+				new LevelDefinition( name, new String[]{
+					name
+				}, null )
+			};
+			dimensions[i] = (Dimension) DimensionFactory.createDimension( name,
+					documentManager,
+					iterator,
+					levelDefs,
+					false,
+					new StopSign( ) );
+		}
+		String[] measureColumnName = new String[]{
+				"measure1", "measure2"
+		};
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.setParallelism( parallelism );
+		FactTable factTable = factTableConstructor.saveFactTable( NamingUtil.getFactTableName( "bigThreeDimensions" ),
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				new BigLevelsAndFactTableDataset( ),
+				dimensions,
+				measureColumnName,
+				new StopSign( ) );
+
+		List result = new ArrayList( );
+		IDocumentObject nameList = documentManager.openDocumentObject( NamingUtil.getFTSUListName( factTable.getName( ) ) );
+		while ( nameList.getFilePointer( ) < nameList.length( ) )
+		{
+			IDocumentObject documentObject = documentManager.openDocumentObject( nameList.readString( ) );
+			byte[] bytes = new byte[(int) documentObject.length( )];
+			int pos = 0;
+			while ( pos < bytes.length )
+			{
+				pos += documentObject.read( bytes, pos, bytes.length - pos );
+			}
+			documentObject.close( );
+			result.add( bytes );
+		}
+		nameList.close( );
+		return result;
+	}
+	
 	private static String[] distinct( String[] sValues )
 	{
 		Arrays.sort( sValues );
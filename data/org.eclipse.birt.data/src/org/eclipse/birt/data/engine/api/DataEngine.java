@@ -66,6 +66,22 @@ abstract public class DataEngine
 	 */
 	public static String DATA_SET_CACHE_ROW_LIMIT = "org.eclipse.birt.data.cache.RowLimit";
 
+	/**
+	 * Indicates the maximum total size of the data sets kept by the JVM level
+	 * data set cache. The unit is MB. When the total size exceeds this
+	 * setting, the least recently used data sets which are not being loaded
+	 * are removed from the cache. If this setting is 0, the size is not
+	 * limited. The setting applies to the whole JVM.
+	 */
+	public static String DATA_SET_CACHE_MAX_SIZE = "org.eclipse.birt.data.cache.MaxSize";
+
+	/**
+	 * Indicates how long a data set saved into the JVM level data set cache
+	 * can be reused. The unit is second. If this setting is 0 or not set, the
+	 * cached data set does not expire.
+	 */
+	public static String DATA_SET_CACHE_TIME_TO_LIVE = "org.eclipse.birt.data.cache.TimeToLive";
+
 	/**
 	 * Indicate the size of data cached for each result set.We only accept non-negative integer as input, 
 	 * the unit of which would be MB. 
@@ -73,12 +89,88 @@ abstract public class DataEngine
 	 */
 	public static String MEMORY_BUFFER_SIZE = "org.eclipse.birt.data.query.ResultBufferSize";
 	
+	/**
+	 * Indicate the total size of data cached in memory by all the result sets
+	 * of one data engine session. The unit is MB. When the total size exceeds
+	 * this setting, the largest cache is moved to disk. If this setting is 0
+	 * or not set, only the per result set limit of MEMORY_BUFFER_SIZE applies.
+	 */
+	public static String SESSION_MEMORY_BUFFER_SIZE = "org.eclipse.birt.data.query.SessionResultBufferSize";
+	
 	/**
 	 * This setting allow the administrator to set a limit on the amount of data that a query against 
 	 * a data object is allowed to access. Queries should be aborted with error if it exceeds this limit.
 	 */
 	public static String MAX_DATA_OBJECT_ROWS = "org.eclipse.birt.data.query.MaxDataObjectRows";
 	
+	/**
+	 * Indicates whether rows cached in memory should be kept column by column
+	 * with primitive arrays and dictionary encoded strings, instead of one
+	 * object per row. Accepts "true" or "false", the default is false.
+	 */
+	public static String COLUMNAR_MEMORY_CACHE = "org.eclipse.birt.data.query.ColumnarMemoryCache";
+	
+	/**
+	 * Indicates whether rows are gathered into groups by hashing the group
+	 * key values, so that only the distinct group keys are sorted instead of
+	 * all the rows. Accepts "true" or "false", the default is true.
+	 */
+	public static String HASH_GROUPING = "org.eclipse.birt.data.query.HashGrouping";
+	
+	/**
+	 * Indicates whether joint data sets of equal join conditions are joined by
+	 * hash join, which does not sort the joined data sets. The rows are then
+	 * returned in the order of the larger data set instead of the order of
+	 * join keys. Accepts "true" or "false", the default is false.
+	 */
+	public static String HASH_JOIN = "org.eclipse.birt.data.query.HashJoin";
+	
+	/**
+	 * Indicates whether the filters, sorts and aggregations which can be
+	 * translated into SQL are pushed down into the queries of JDBC data sets.
+	 * Accepts "true" or "false", the default is false.
+	 */
+	public static String SQL_PUSH_DOWN = "org.eclipse.birt.data.query.SqlPushDown";
+	
+	/**
+	 * Indicates the maximum count of rows fetched from an ODA result set in
+	 * background, ahead of the rows being processed, so that the latency of
+	 * the data source overlaps with the processing. If this setting is 0 or
+	 * not set, the rows are fetched when they are processed.
+	 */
+	public static String ODA_PREFETCH_SIZE = "org.eclipse.birt.data.query.OdaPrefetchSize";
+	
+	/**
+	 * Indicates the time in seconds during which the result of a data set is
+	 * shared by the identical queries of all the data engine sessions. The
+	 * data set is executed once for the queries of the same data source, data
+	 * set design and parameter values, the other queries wait for it and read
+	 * the result from the JVM level memory cache. It does not apply if data
+	 * set cache is configured otherwise or disabled. If this setting is 0 or
+	 * not set, or QUERY_COALESCING_CONTEXT_KEYS is not set, the queries are
+	 * not coalesced.
+	 */
+	public static String QUERY_COALESCING_TIME = "org.eclipse.birt.data.query.CoalescingTime";
+	
+	/**
+	 * The comma separated names of the app context entries, such as the user
+	 * name and roles, which must be equal for the sessions to share the result
+	 * of a data set by query coalescing. The queries are not coalesced unless
+	 * this setting lists at least one entry.
+	 */
+	public static String QUERY_COALESCING_CONTEXT_KEYS = "org.eclipse.birt.data.query.CoalescingContextKeys";
+	
+	/**
+	 * Indicates the maximum count of data sets fetched concurrently in advance
+	 * for the registered queries of a report. Only the ODA data sets without
+	 * parameters, computed columns, filters and scripts, which are used by
+	 * queries that do not depend on outer rows, are fetched in advance. The
+	 * rows are kept in memory until the data engine is shut down. If this
+	 * setting is 0 or not set, the data sets are fetched when the queries
+	 * are executed.
+	 */
+	public static String DATA_SET_PREFETCH = "org.eclipse.birt.data.query.DataSetPrefetch";
+	
 	
 	public static String DATA_SET_CACHE_DELTA_FILE = "org.eclipse.birt.data.cache.DeltaFile";
 	
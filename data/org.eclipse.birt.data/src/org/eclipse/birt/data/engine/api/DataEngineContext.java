@@ -98,6 +98,15 @@ public class DataEngineContext
 	private int cacheOption;
 	private int cacheCount;
 
+	/** count of threads used by disk based sorting */
+	private int sortParallelism = 1;
+
+	/** count of threads used by building cubes */
+	private int cubeBuildParallelism = 1;
+
+	/** count of threads used by sorting and calculating cube query stacks */
+	private int cubeQuerySortParallelism = 1;
+
 	private String tmpDir = PropertySecurity.getSystemProperty( "java.io.tmpdir" ); //$NON-NLS-1$
 	private ClassLoader classLoader;
 	
@@ -618,6 +627,78 @@ public class DataEngineContext
 		DataEngineThreadLocal.getInstance( ).getPathManager( ).setTempPath( getTmpdir( ) );
 	}
 
+	/**
+	 * Set the count of threads which sort large data sets on disk. The default
+	 * value 1 means sorting is done in the calling thread only, and a value
+	 * less than 1 means the count of available processors is used.
+	 * 
+	 * @param parallelism
+	 */
+	public void setSortParallelism( int parallelism )
+	{
+		if ( parallelism < 1 )
+			parallelism = Runtime.getRuntime( ).availableProcessors( );
+		this.sortParallelism = parallelism;
+	}
+
+	/**
+	 * @return the count of threads which sort large data sets on disk
+	 */
+	public int getSortParallelism( )
+	{
+		return this.sortParallelism;
+	}
+
+	/**
+	 * Set the count of threads which sort the fact table rows of a cube and
+	 * find their dimension positions when the cube is built. The default value
+	 * 1 means the cube is built in the calling thread only, and a value less
+	 * than 1 means the count of available processors is used. The saved cube
+	 * is the same whatever the count is.
+	 * 
+	 * @param parallelism
+	 */
+	public void setCubeBuildParallelism( int parallelism )
+	{
+		if ( parallelism < 1 )
+			parallelism = Runtime.getRuntime( ).availableProcessors( );
+		this.cubeBuildParallelism = parallelism;
+	}
+
+	/**
+	 * @return the count of threads which build the fact table of a cube
+	 */
+	public int getCubeBuildParallelism( )
+	{
+		return this.cubeBuildParallelism;
+	}
+
+	/**
+	 * Set the count of threads which sort the fact rows of a cube query by
+	 * their aggregation levels, and calculate the independent aggregations
+	 * once the rows are sorted. The fact table is always scanned by the
+	 * calling thread. The default value 1 means the rows are sorted and
+	 * aggregated in the calling thread only, and a value less than 1 means
+	 * the count of available processors is used.
+	 * 
+	 * @param parallelism
+	 */
+	public void setCubeQuerySortParallelism( int parallelism )
+	{
+		if ( parallelism < 1 )
+			parallelism = Runtime.getRuntime( ).availableProcessors( );
+		this.cubeQuerySortParallelism = parallelism;
+	}
+
+	/**
+	 * @return the count of threads which sort and calculate the fact rows of
+	 *         a cube query
+	 */
+	public int getCubeQuerySortParallelism( )
+	{
+		return this.cubeQuerySortParallelism;
+	}
+
 	public void setDataEngineOption( int option )
 	{
 		this.generationOption = option;
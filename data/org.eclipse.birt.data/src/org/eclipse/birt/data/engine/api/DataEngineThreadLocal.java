@@ -39,6 +39,27 @@ public class DataEngineThreadLocal
 		return  closeHolder.get( );
 	}
 	
+	/**
+	 * Shares the close listener of another thread, so that the objects created
+	 * by a task of that thread are closed with the other objects of it.
+	 * 
+	 * @param closeListener
+	 */
+	public void setCloseListener( CloseListenerManager closeListener )
+	{
+		closeHolder.set( closeListener );
+	}
+	
+	/**
+	 * Shares the temporary path of another thread.
+	 * 
+	 * @param pathManager
+	 */
+	public void setPathManager( TempPathManager pathManager )
+	{
+		this.pathManager.set( pathManager );
+	}
+	
 	public void removeCloseListener( )
 	{
 		closeHolder.remove( );
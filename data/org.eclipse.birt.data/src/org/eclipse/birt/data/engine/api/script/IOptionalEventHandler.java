@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.api.script;
+
+/**
+ * An event handler of a data set or a data source which may have nothing to
+ * handle. The report engine sets such a handler on every data set and data
+ * source it defines, which runs the event scripts and the Java event handler
+ * class of the element only if the element has any.
+ */
+public interface IOptionalEventHandler
+{
+	/**
+	 * @return whether the handler runs any event script or Java event handler
+	 */
+	public boolean hasHandlers( );
+}
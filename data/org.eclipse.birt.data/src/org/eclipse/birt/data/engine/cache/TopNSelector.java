@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+import java.util.Arrays;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * Selects the first N rows in the order of their values while the rows are
+ * visited. The selected rows are kept in a bounded heap whose root is the row
+ * selected last, so a row which is not selected is rejected by one comparison,
+ * instead of keeping all the values and searching the first N of them
+ * afterwards.
+ */
+public abstract class TopNSelector
+{
+	/**
+	 * The maximum N of which the selected rows are kept in memory, the callers
+	 * are expected to use a disk based selection for a larger N.
+	 */
+	public static final int MAX_SIZE = 100000;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int n;
+	private int size;
+	private Object[] values;
+	private int[] rowIndexes;
+
+	/**
+	 * @param n
+	 *            the count of rows to select
+	 */
+	public TopNSelector( int n )
+	{
+		assert n >= 0 && n <= MAX_SIZE;
+		this.n = n;
+		int capacity = Math.min( n, INITIAL_CAPACITY );
+		this.values = new Object[capacity];
+		this.rowIndexes = new int[capacity];
+	}
+
+	/**
+	 * Visits a row.
+	 *
+	 * @param value
+	 *            the value by which the rows are ordered
+	 * @param rowIndex
+	 *            the index of the row
+	 * @throws DataException
+	 */
+	public void add( Object value, int rowIndex ) throws DataException
+	{
+		if ( size < n )
+		{
+			if ( size == values.length )
+			{
+				int capacity = Math.min( n, size * 2 );
+				values = Arrays.copyOf( values, capacity );
+				rowIndexes = Arrays.copyOf( rowIndexes, capacity );
+			}
+			values[size] = value;
+			rowIndexes[size] = rowIndex;
+			siftUp( size++ );
+		}
+		else if ( n > 0 && isBefore( value, rowIndex, values[0], rowIndexes[0] ) )
+		{
+			values[0] = value;
+			rowIndexes[0] = rowIndex;
+			siftDown( 0 );
+		}
+	}
+
+	/**
+	 * @return the count of selected rows
+	 */
+	public int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * @return the indexes of the selected rows in ascending order
+	 */
+	public int[] getRowIndexes( )
+	{
+		int[] result = Arrays.copyOf( rowIndexes, size );
+		Arrays.sort( result );
+		return result;
+	}
+
+	/**
+	 * Whether a row is selected before another one. The order should be total,
+	 * for example the rows of equal values are ordered by their indexes.
+	 *
+	 * @param value1
+	 * @param rowIndex1
+	 * @param value2
+	 * @param rowIndex2
+	 * @return
+	 * @throws DataException
+	 */
+	protected abstract boolean isBefore( Object value1, int rowIndex1,
+			Object value2, int rowIndex2 ) throws DataException;
+
+	private void siftUp( int index ) throws DataException
+	{
+		while ( index > 0 )
+		{
+			int parent = ( index - 1 ) / 2;
+			if ( !isBefore( values[parent],
+					rowIndexes[parent],
+					values[index],
+					rowIndexes[index] ) )
+				break;
+			swap( index, parent );
+			index = parent;
+		}
+	}
+
+	private void siftDown( int index ) throws DataException
+	{
+		while ( true )
+		{
+			int last = index;
+			for ( int child = index * 2 + 1; child <= index * 2 + 2
+					&& child < size; child++ )
+			{
+				if ( isBefore( values[last],
+						rowIndexes[last],
+						values[child],
+						rowIndexes[child] ) )
+					last = child;
+			}
+			if ( last == index )
+				return;
+			swap( index, last );
+			index = last;
+		}
+	}
+
+	private void swap( int index1, int index2 )
+	{
+		Object value = values[index1];
+		values[index1] = values[index2];
+		values[index2] = value;
+		int rowIndex = rowIndexes[index1];
+		rowIndexes[index1] = rowIndexes[index2];
+		rowIndexes[index2] = rowIndex;
+	}
+}
@@ -13,6 +13,8 @@ package org.eclipse.birt.data.engine.core.security;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -36,4 +38,32 @@ public class ThreadSecurity
 			}
 		} );
 	}
+
+	/**
+	 * Create a factory of daemon threads, which are named by the prefix and a
+	 * sequence number.
+	 * 
+	 * @param namePrefix
+	 * @return
+	 */
+	public static ThreadFactory createThreadFactory( final String namePrefix )
+	{
+		final AtomicInteger threadNumber = new AtomicInteger( 1 );
+		return new ThreadFactory( ) {
+
+			public Thread newThread( final Runnable runnable )
+			{
+				return AccessController.doPrivileged( new PrivilegedAction<Thread>( ) {
+
+					public Thread run( )
+					{
+						Thread thread = new Thread( runnable, namePrefix
+								+ "-" + threadNumber.getAndIncrement( ) ); //$NON-NLS-1$
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+			}
+		};
+	}
 }
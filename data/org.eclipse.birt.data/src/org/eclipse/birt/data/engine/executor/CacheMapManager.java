@@ -10,15 +10,12 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.executor;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.DataSetCacheMap.CacheEntry;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 
 /**
@@ -26,18 +23,23 @@ import org.eclipse.birt.data.engine.odi.IResultClass;
  */
 public class CacheMapManager
 {
+	// the time to wait for a cached data set which is being loaded or populated
+	private static final long WAIT_TIMEOUT = 60000;
+	
 	/**
 	 * Please notice that we must use static variable here for the sharing of
 	 * cached data set would be cross data set session.
 	 */
-	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new HashMap( ) );
-	private static Map<DataSourceAndDataSet, Integer> lockedDataSetCacheMap = Collections.synchronizedMap( new HashMap( ) );	
+	private static DataSetCacheMap JVMLevelCacheMap = new DataSetCacheMap( );
 	
-	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
+	private DataSetCacheMap cacheMap;
 	// use this field temporarily keep the data set object need to be saved in
 	// cache. After the data set result has been cached, saved data set object
 	// into cachedMap
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> tempDataSetCacheMap;
+	// the entries being loaded, which are kept even if they are removed from
+	// the cache map in the meanwhile
+	private Map<DataSourceAndDataSet, CacheEntry> loadingEntryMap;
 	
 	private boolean useJVMLevelCache;
 	
@@ -59,92 +61,88 @@ public class CacheMapManager
 		}
 		else
 		{
-			cacheMap = new HashMap( );
+			cacheMap = new DataSetCacheMap( );
 		}
-		tempDataSetCacheMap = new HashMap<DataSourceAndDataSet, IDataSetCacheObject>( );
+		tempDataSetCacheMap = new ConcurrentHashMap<DataSourceAndDataSet, IDataSetCacheObject>( );
+		loadingEntryMap = new ConcurrentHashMap<DataSourceAndDataSet, CacheEntry>( );
 	}
 	
 	/**
-	 * @param appContext 
-	 * @param collection 
-	 * @param baseDataSetDesign 
-	 * @param baseDataSourceDesign 
+	 * Checks whether the data set needs to be saved into cache. A data set of
+	 * JVM level cache is populated by one manager at a time, it is not saved
+	 * by the others.
+	 * 
+	 * @param dsAndDs
+	 * @param dscc
 	 * @return
 	 * @throws DataException 
 	 */
 	boolean doesSaveToCache( DataSourceAndDataSet dsAndDs,
 			DataSetCacheConfig dscc) throws DataException
 	{		
-		synchronized ( cacheMap )
+		CacheEntry entry = cacheMap.get( dsAndDs );
+		if ( entry != null )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
-			if (cacheObject != null)
-			{
-				return cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
-			}
-			else
-			{
-				if( !tempDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					IDataSetCacheObject dsco = dscc.createDataSetCacheObject( );
-					tempDataSetCacheMap.put( dsAndDs, dsco );					
-				}
-				return true;
-			}
+			return entry.getCacheObject( ).needUpdateCache( dscc.getCacheCapability( ) );
+		}
+		if ( tempDataSetCacheMap.containsKey( dsAndDs ) )
+		{
+			return true;
 		}
+		if ( useJVMLevelCache && !cacheMap.startPopulation( dsAndDs, this ) )
+		{
+			return false;
+		}
+		tempDataSetCacheMap.put( dsAndDs, dscc.createDataSetCacheObject( ) );
+		return true;
 	}
 	
 	/**
+	 * Checks whether the data set can be loaded from cache. If the data set is
+	 * being populated by another manager, waits until it has been cached.
+	 * 
 	 * @param dsAndDs
 	 * @return
 	 */
 	boolean doesLoadFromCache( DataSourceAndDataSet dsAndDs, int requiredCapability )
 	{
-		synchronized ( cacheMap )
+		CacheEntry entry = cacheMap.get( dsAndDs );
+		if ( entry == null
+				&& useJVMLevelCache
+				&& cacheMap.awaitPopulation( dsAndDs, this, WAIT_TIMEOUT ) )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
-			if (cacheObject != null)
+			entry = cacheMap.get( dsAndDs );
+		}
+		if ( entry == null )
+		{
+			cacheMap.recordMiss( );
+			return false;
+		}
+		boolean reusable = !entry.isExpired( System.currentTimeMillis( ) )
+				&& entry.getCacheObject( ).isCachedDataReusable( requiredCapability );
+		if ( !reusable )
+		{
+			if ( useJVMLevelCache )
 			{
-				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
-				if ( !reusable )
-				{
-					if ( useJVMLevelCache )
-					{
-						synchronized ( lockedDataSetCacheMap )
-						{
-							if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-							{
-								try
-								{
-									// waiting for 60s
-									lockedDataSetCacheMap.wait( 60000 );
-								}
-								catch ( InterruptedException e )
-								{
-								}
-								lockedDataSetCacheMap.remove( dsAndDs );
-							}
-						}
-					}
-					cacheObject.release( );
-					tempDataSetCacheMap.remove( dsAndDs );
-					cacheMap.remove( dsAndDs );
-				}
-				else
-				if ( this.useJVMLevelCache )
-				{
-					if ( !lockedDataSetCacheMap.containsKey( dsAndDs ) )
-					{
-						lockedDataSetCacheMap.put( dsAndDs, 0 );
-					}
-				}
-				return reusable;
+				entry.awaitUnlocked( WAIT_TIMEOUT );
 			}
-			else
+			if ( cacheMap.remove( dsAndDs, entry ) )
 			{
-				return false;
+				entry.release( );
 			}
+			tempDataSetCacheMap.remove( dsAndDs );
+			cacheMap.recordMiss( );
 		}
+		else
+		{
+			if ( useJVMLevelCache )
+			{
+				entry.lock( );
+			}
+			cacheMap.touch( entry );
+			cacheMap.recordHit( );
+		}
+		return reusable;
 	}
 	
 	/**
@@ -152,18 +150,39 @@ public class CacheMapManager
 	 */
 	IDataSetCacheObject getSavedCacheObject( DataSourceAndDataSet dsAndDs )
 	{	
-		synchronized ( cacheMap )
+		return tempDataSetCacheMap.get( dsAndDs );
+	}
+	
+	/**
+	 * @param dsAndDs
+	 * @param dsco
+	 * @param timeToLive
+	 *            the time in milliseconds the cached data set can be reused, 0
+	 *            for unlimited
+	 */
+	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
+			IDataSetCacheObject dsco, long timeToLive )
+	{
+		cacheMap.put( dsAndDs, dsco, timeToLive );
+		if ( useJVMLevelCache )
 		{
-			return tempDataSetCacheMap.get( dsAndDs );
+			cacheMap.finishPopulation( dsAndDs, this );
 		}
 	}
 	
-	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
-			IDataSetCacheObject dsco )
+	/**
+	 * Gives up saving the data set into cache, used when the data set fails
+	 * before it is cached, so that the other managers which wait for it stop
+	 * waiting and query it themselves.
+	 * 
+	 * @param dsAndDs
+	 */
+	void saveAbortOnCache( DataSourceAndDataSet dsAndDs )
 	{
-		synchronized ( cacheMap )
+		tempDataSetCacheMap.remove( dsAndDs );
+		if ( useJVMLevelCache )
 		{
-			cacheMap.put( dsAndDs, dsco );
+			cacheMap.finishPopulation( dsAndDs, this );
 		}
 	}
 	
@@ -173,13 +192,11 @@ public class CacheMapManager
 	{
 		if ( this.useJVMLevelCache )
 		{
-			synchronized ( lockedDataSetCacheMap )
+			CacheEntry entry = cacheMap.get( dsAndDs );
+			if ( entry != null )
 			{
-				if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					Integer count = lockedDataSetCacheMap.get( dsAndDs );
-					lockedDataSetCacheMap.put( dsAndDs, count + 1 );
-				}
+				entry.loadStart( );
+				loadingEntryMap.put( dsAndDs, entry );
 			}
 		}
 	}
@@ -190,21 +207,14 @@ public class CacheMapManager
 	{
 		if( this.useJVMLevelCache )
 		{
-			synchronized ( lockedDataSetCacheMap )
+			CacheEntry entry = loadingEntryMap.remove( dsAndDs );
+			if ( entry == null )
 			{
-				if( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					Integer count = lockedDataSetCacheMap.get( dsAndDs );
-					if( count<=1 )
-					{
-						lockedDataSetCacheMap.remove( dsAndDs );
-						lockedDataSetCacheMap.notifyAll( );
-					}
-					else
-					{
-						lockedDataSetCacheMap.put( dsAndDs, count-1 );
-					}
-				}
+				entry = cacheMap.get( dsAndDs );
+			}
+			if ( entry != null )
+			{
+				entry.loadFinish( );
 			}
 		}
 	}
@@ -215,7 +225,12 @@ public class CacheMapManager
 	 */
 	IDataSetCacheObject getloadedCacheObject( DataSourceAndDataSet dsAndDs )
 	{	
-		return (IDataSetCacheObject) cacheMap.get( dsAndDs );
+		CacheEntry entry = loadingEntryMap.get( dsAndDs );
+		if ( entry == null )
+		{
+			entry = cacheMap.get( dsAndDs );
+		}
+		return entry == null ? null : entry.getCacheObject( );
 	}
 	
 	/**
@@ -224,23 +239,40 @@ public class CacheMapManager
 	 */
 	void clearCache( DataSourceAndDataSet dsAndDs )
 	{
-		List cacheObjects = new ArrayList( );
-		synchronized ( cacheMap )
+		for ( DataSourceAndDataSet key : cacheMap.keySet( ) )
+		{
+			if ( key.isDataSourceDataSetEqual( dsAndDs, false ) )
+			{
+				CacheEntry entry = cacheMap.get( key );
+				if ( entry != null && cacheMap.remove( key, entry ) )
+				{
+					entry.retire( );
+				}
+			}
+		}
+		for ( DataSourceAndDataSet key : tempDataSetCacheMap.keySet( ) )
 		{
-			Object key = getKey(dsAndDs);
-			while ( key != null )
+			if ( key.isDataSourceDataSetEqual( dsAndDs, false ) )
 			{
-				cacheObjects.add( cacheMap.remove( key ) );
 				tempDataSetCacheMap.remove( key );
-				key = getKey(dsAndDs);
+				if ( useJVMLevelCache )
+				{
+					cacheMap.finishPopulation( key, this );
+				}
 			}
 		}
-		for ( int i = 0; i < cacheObjects.size( ); i++ )
+	}
+	
+	/**
+	 * Wakes up the other managers which wait for the data sets populated by
+	 * this manager, used when the data engine is shut down.
+	 */
+	void finishPopulations( )
+	{
+		if ( useJVMLevelCache )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
-			cacheObject.release( );
+			cacheMap.finishPopulations( this );
 		}
-
 	}
 	
 	/**
@@ -248,11 +280,9 @@ public class CacheMapManager
 	 */
 	void resetForTest( )
 	{
-		synchronized ( this )
-		{
-			cacheMap.clear( );
-			tempDataSetCacheMap.clear( );
-		}
+		cacheMap.reset( );
+		tempDataSetCacheMap.clear( );
+		loadingEntryMap.clear( );
 	}
 	
 	/**
@@ -267,15 +297,15 @@ public class CacheMapManager
 	IResultClass getCachedResultClass( DataSourceAndDataSet dsAndDs )
 			throws DataException
 	{
-		IDataSetCacheObject cacheObject = null;
-		Object key = getKey( dsAndDs );
+		CacheEntry entry = null;
+		DataSourceAndDataSet key = getKey( dsAndDs );
 		if ( key != null )
 		{
-			cacheObject = (IDataSetCacheObject)cacheMap.get( key );
+			entry = cacheMap.get( key );
 		}
-		if (cacheObject != null)
+		if ( entry != null )
 		{
-			return cacheObject.getResultClass( );
+			return entry.getCacheObject( ).getResultClass( );
 		}
 		else
 		{
@@ -288,77 +318,122 @@ public class CacheMapManager
 	 * @param dsAndDs
 	 * @return
 	 */
-	private Object getKey ( DataSourceAndDataSet dsAndDs )
+	private DataSourceAndDataSet getKey ( DataSourceAndDataSet dsAndDs )
 	{
-		synchronized ( cacheMap )
+		for ( DataSourceAndDataSet temp : cacheMap.keySet( ) )
 		{
-			for ( Iterator it = cacheMap.keySet( ).iterator( ); it.hasNext( ); )
+			if ( temp.isDataSourceDataSetEqual( dsAndDs, false ) )
 			{
-				DataSourceAndDataSet temp = (DataSourceAndDataSet) it.next( );
-				if ( temp.isDataSourceDataSetEqual( dsAndDs, false ) )
-				{
-					return temp;
-				}
+				return temp;
 			}
-			return null;
 		}
+		return null;
 	}
 	
 	public static void clearCache( Set<String> cacheIDs ) 
 	{
-		List<IDataSetCacheObject> removed = new ArrayList<IDataSetCacheObject>( );
-		
-		Object[] keyArray = JVMLevelCacheMap.keySet( ).toArray( new DataSourceAndDataSet[]{} );
-		for( Object dsAndDs : keyArray )
+		for( DataSourceAndDataSet dsAndDs : JVMLevelCacheMap.keySet( ) )
 		{
-			if( cacheIDs.contains( ((DataSourceAndDataSet)dsAndDs).getCacheScopeID( ) ))
+			if( cacheIDs.contains( dsAndDs.getCacheScopeID( ) ))
 			{
-				// here we do not use while clause to avoid thread suspending if
-				// cached is not properly closed.
-				synchronized ( lockedDataSetCacheMap ) 
+				CacheEntry entry = JVMLevelCacheMap.get( dsAndDs );
+				if ( entry == null )
+					continue;
+				// here we do not wait without timeout to avoid thread
+				// suspending if cached is not properly closed.
+				entry.awaitUnlocked( WAIT_TIMEOUT );
+				if ( JVMLevelCacheMap.remove( dsAndDs, entry ) )
 				{
-		          if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-		          {
-		             try
-					 {
-		            	 //waiting for 60s
-		              	lockedDataSetCacheMap.wait( 60000 );
-					 }
-					 catch ( InterruptedException e )
-					 {
-					 }
-		             lockedDataSetCacheMap.remove( dsAndDs );
-			      }
+					entry.release( );
 				}
-				IDataSetCacheObject cacheObj = (IDataSetCacheObject) JVMLevelCacheMap.remove( dsAndDs );
-				if( cacheObj != null )
-					removed.add( cacheObj );
-				
 			}
 		}
-		
-		for( IDataSetCacheObject dataSetCacheObject : removed )
+	}
+	
+	/**
+	 * Removes the data sets which are cached for the given context key from
+	 * the JVM level cache. The data sets being loaded are released when they
+	 * are loaded.
+	 * 
+	 * @param contextKey
+	 */
+	public static void clearContextCache( String contextKey )
+	{
+		for ( DataSourceAndDataSet dsAndDs : JVMLevelCacheMap.keySet( ) )
 		{
-			dataSetCacheObject.release( );
+			if ( contextKey.equals( dsAndDs.getContextKey( ) ) )
+			{
+				CacheEntry entry = JVMLevelCacheMap.get( dsAndDs );
+				if ( entry != null && JVMLevelCacheMap.remove( dsAndDs, entry ) )
+				{
+					entry.retire( );
+				}
+			}
 		}
 	}
 	
 	void clearCache( )
 	{
-		List cacheObjects = new ArrayList( );
-		synchronized ( cacheMap )
-		{
-			for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( ).toArray( new DataSourceAndDataSet[0] ) )
- 			{
-				cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
-				tempDataSetCacheMap.remove( dataSetAndSource );
- 			}
-		}
-		for ( int i = 0; i < cacheObjects.size( ); i++ )
-		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
-			cacheObject.release( );
-		}
+		cacheMap.clear( );
+		tempDataSetCacheMap.clear( );
+		loadingEntryMap.clear( );
+	}
+	
+	/**
+	 * Sets the maximum total size of the JVM level cache. When the size is
+	 * exceeded, the least recently used data sets which are not being loaded
+	 * are removed from the cache.
+	 * 
+	 * @param maxSize
+	 *            the maximum size in bytes, 0 for unlimited
+	 */
+	public static void setJVMLevelCacheMaxSize( long maxSize )
+	{
+		JVMLevelCacheMap.setMaxSize( maxSize );
+	}
+	
+	/**
+	 * @return the maximum total size of the JVM level cache in bytes, 0 for
+	 *         unlimited
+	 */
+	public static long getJVMLevelCacheMaxSize( )
+	{
+		return JVMLevelCacheMap.getMaxSize( );
+	}
+	
+	/**
+	 * @return the estimated total size of the data sets in the JVM level cache
+	 *         in bytes
+	 */
+	public static long getJVMLevelCacheSize( )
+	{
+		return JVMLevelCacheMap.getTotalSize( );
+	}
+	
+	/**
+	 * @return the count of data sets which are loaded from the JVM level cache
+	 */
+	public static long getJVMLevelCacheHitCount( )
+	{
+		return JVMLevelCacheMap.getHitCount( );
+	}
+	
+	/**
+	 * @return the count of data sets which are not found or not reusable in
+	 *         the JVM level cache
+	 */
+	public static long getJVMLevelCacheMissCount( )
+	{
+		return JVMLevelCacheMap.getMissCount( );
+	}
+	
+	/**
+	 * @return the count of data sets which are removed from the JVM level cache
+	 *         as they expire or exceed the maximum size
+	 */
+	public static long getJVMLevelCacheEvictionCount( )
+	{
+		return JVMLevelCacheMap.getEvictionCount( );
 	}
 }
 /**
@@ -368,10 +443,9 @@ public class CacheMapManager
  */
 class ShutdownHook implements Runnable
 {
-	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
+	private DataSetCacheMap cacheMap;
 
-	ShutdownHook(
-			Map<DataSourceAndDataSet, IDataSetCacheObject> jvmLevelCacheMap )
+	ShutdownHook( DataSetCacheMap jvmLevelCacheMap )
 	{
 		cacheMap = jvmLevelCacheMap;
 		Runtime.getRuntime( ).addShutdownHook( new Thread( this ) );
@@ -379,16 +453,6 @@ class ShutdownHook implements Runnable
 
 	public void run( )
 	{
-		List<IDataSetCacheObject> cacheObjects = new ArrayList<IDataSetCacheObject>( );
-		for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( )
-				.toArray( new DataSourceAndDataSet[0] ) )
-		{
-			cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
-		}
-		for ( int i = 0; i < cacheObjects.size( ); i++ )
-		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject) cacheObjects.get( i );
-			cacheObject.release( );
-		}
+		cacheMap.clear( );
 	}
 }
@@ -23,6 +23,8 @@ public class DataSetCacheConfig
 	
 	private boolean isIncremental;
 	private String cacheDir;
+	// the time in milliseconds the cached data set can be reused, 0 for unlimited
+	private long timeToLive;
 	
 	private DataSetCacheConfig( DataSetCacheMode cacheMode, int countConfig, boolean isIncremental, String cacheDir)
 	{
@@ -56,6 +58,24 @@ public class DataSetCacheConfig
 		return new DataSetCacheConfig(cacheMode, countConfig, isIncremental, cacheDir);
 	}
 
+	/**
+	 * Returns the config of the memory cache which shares the result of a data
+	 * set among the identical queries executed in a short time.
+	 * 
+	 * @param timeToLive
+	 *            the time in milliseconds the result is shared
+	 * @return
+	 */
+	public static DataSetCacheConfig getQueryCoalescingInstance( long timeToLive )
+	{
+		DataSetCacheConfig config = new DataSetCacheConfig( DataSetCacheMode.IN_MEMORY,
+				-1,
+				false,
+				null );
+		config.timeToLive = timeToLive;
+		return config;
+	}
+
 	/**
 	 * @return 
 	 */
@@ -74,6 +94,15 @@ public class DataSetCacheConfig
 		return cacheDir;
 	}
 	
+	/**
+	 * @return the time in milliseconds the cached data set can be reused, 0 if
+	 *         it is not limited by this config
+	 */
+	long getTimeToLive( )
+	{
+		return timeToLive;
+	}
+	
 	IDataSetCacheObject createDataSetCacheObject()
 	{
 		if (cacheMode == DataSetCacheMode.IN_MEMORY)
@@ -26,6 +26,7 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.impl.DataSetCacheUtil;
+import org.eclipse.birt.data.engine.impl.DataSetPrefetcher;
 import org.eclipse.birt.data.engine.impl.IEngineExecutionHints;
 import org.eclipse.birt.data.engine.impl.ResultMetaData;
 import org.eclipse.birt.data.engine.odi.IResultClass;
@@ -62,6 +63,7 @@ public class DataSetCacheManager
 	private Map appContext;
 	private String cacheID;
 	private boolean enableSamplePreview;
+	private String contextKey;
 	// map manager instance
 	private CacheMapManager jvmLevelCacheMapManager;
 	private CacheMapManager dteLevelCacheMapManager;
@@ -90,6 +92,7 @@ public class DataSetCacheManager
 				try
 				{
 					dteLevelCacheMapManager.clearCache( );
+					jvmLevelCacheMapManager.finishPopulations( );
 				}
 				catch ( Exception e )
 				{
@@ -155,6 +158,12 @@ public class DataSetCacheManager
 		this.appContext = appContext;
 		this.cacheID = CacheIDFetcher.getInstance( ).getCacheID( appContext );
 		this.enableSamplePreview =  CacheIDFetcher.getInstance( ).enableSampleDataPreivew( appContext );
+		this.contextKey = DataSetCacheUtil.getQueryCoalescingContextKey( appContext );
+		DataSetPrefetcher prefetcher = getDataSetPrefetcher( );
+		if ( this.contextKey == null && prefetcher != null && dataSetDesign != null )
+		{
+			this.contextKey = prefetcher.getContextKey( dataSetDesign.getName( ) );
+		}
 	}
 
 	/**
@@ -171,7 +180,7 @@ public class DataSetCacheManager
 		switchCacheMap( dataSetDesign );
 		return cacheMapManager.doesSaveToCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ),
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ),
 				dscc);
 	}
 
@@ -209,7 +218,7 @@ public class DataSetCacheManager
 		switchCacheMap( dataSetDesign );
 		return cacheMapManager.doesLoadFromCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				dataSetDesign,
-				parameterHints, this.cacheID, this.enableSamplePreview ),
+				parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ),
 				dscc.getCacheCapability( ));
 	}
 
@@ -227,7 +236,7 @@ public class DataSetCacheManager
 	
 	private DataSetCacheConfig getDataSetCacheConfig(IBaseDataSetDesign dataSetDesign, Map appContext) throws DataException
 	{
-		DataSetCacheConfig result = DataSetCacheUtil.getJVMDataSetCacheConfig( appContext, context, dataSetDesign );
+		DataSetCacheConfig result = getJVMDataSetCacheConfig( dataSetDesign, appContext );
 		if (result == null)
 		{
 			result = DataSetCacheUtil.getDteDataSetCacheConfig( queryExecutionHints, dataSetDesign, session, appContext );
@@ -287,7 +296,7 @@ public class DataSetCacheManager
 
 		DataSourceAndDataSet ds = DataSourceAndDataSet.newInstance( dataSourceDesign,
 				dataSetDesign,
-				null, this.cacheID, this.enableSamplePreview );
+				null, this.cacheID, this.enableSamplePreview, this.contextKey );
 		//switchCacheMap( dataSetDesign );
 		//cacheMapManager.clearCache( ds );
 		jvmLevelCacheMapManager.clearCache( ds );
@@ -311,7 +320,7 @@ public class DataSetCacheManager
 				
 		IDataSetCacheObject cached = cacheMapManager.getSavedCacheObject( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ) ); 
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ) ); 
 		if( this.cacheID != null && cached instanceof MemoryDataSetCacheObject && ((MemoryDataSetCacheObject)cached).getSize( ) > 0 )
 		{
 			cached = new DataSetCacheObjectWithDummyData( dataSetDesign, cached );
@@ -327,9 +336,38 @@ public class DataSetCacheManager
 	{
 		switchCacheMap( dataSetDesign );	
 		
+		long timeToLive = 0;
+		if ( cacheMapManager == jvmLevelCacheMapManager )
+		{
+			long maxSize = DataSetCacheUtil.getDataSetCacheMaxSize( appContext );
+			if ( maxSize >= 0 )
+			{
+				CacheMapManager.setJVMLevelCacheMaxSize( maxSize );
+			}
+			DataSetCacheConfig dscc = getDataSetCacheConfig( dataSetDesign, appContext );
+			timeToLive = dscc != null && dscc.getTimeToLive( ) > 0
+					? dscc.getTimeToLive( )
+					: DataSetCacheUtil.getDataSetCacheTimeToLive( appContext );
+		}
 		cacheMapManager.saveFinishOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ), dsco );
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ),
+				dsco,
+				timeToLive );
+	}
+	
+	/**
+	 * Gives up saving the current data set into cache after it failed.
+	 * 
+	 * @throws DataException
+	 */
+	public void saveAborted( ) throws DataException
+	{
+		switchCacheMap( dataSetDesign );
+		
+		cacheMapManager.saveAbortOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
+				this.dataSetDesign,
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ) );
 	}
 	
 	/**
@@ -343,7 +381,7 @@ public class DataSetCacheManager
 		
 		cacheMapManager.loadStart( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ) );
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ) );
 	}
 	
 	/**
@@ -356,7 +394,7 @@ public class DataSetCacheManager
 		
 		cacheMapManager.loadFinishOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ) );
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ) );
 	}
 	
 	/**
@@ -369,7 +407,7 @@ public class DataSetCacheManager
 				
 		IDataSetCacheObject cached = cacheMapManager.getloadedCacheObject( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ) ); 
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ) ); 
 		if( this.cacheID != null && cached instanceof MemoryDataSetCacheObject && ((MemoryDataSetCacheObject)cached).getSize( ) > 0 )
 		{
 			cached = new DataSetCacheObjectWithDummyData( dataSetDesign, cached );
@@ -393,7 +431,7 @@ public class DataSetCacheManager
 		switchCacheMap( dataSetDesign );
 		return cacheMapManager.doesLoadFromCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ),
+				this.parameterHints, this.cacheID, this.enableSamplePreview, this.contextKey ),
 				dscc.getCacheCapability( ));
 	}
 
@@ -426,7 +464,7 @@ public class DataSetCacheManager
 		//meta data is always from jvmLevelCacheMapManager
 		IResultClass resultClass = this.jvmLevelCacheMapManager.getCachedResultClass( DataSourceAndDataSet.newInstance( dataSource,
 				dataSet,
-				null, this.cacheID, this.enableSamplePreview ) );
+				null, this.cacheID, this.enableSamplePreview, this.contextKey ) );
 		if ( resultClass != null )
 			return new ResultMetaData( resultClass );
 		else
@@ -441,7 +479,7 @@ public class DataSetCacheManager
 	 */
 	private void switchCacheMap( IBaseDataSetDesign dataSetDesign ) throws DataException
 	{
-		if( DataSetCacheUtil.getJVMDataSetCacheConfig( appContext, context, dataSetDesign ) != null )
+		if( getJVMDataSetCacheConfig( dataSetDesign, appContext ) != null )
 		{
 			cacheMapManager = jvmLevelCacheMapManager;
 		}
@@ -450,4 +488,31 @@ public class DataSetCacheManager
 			cacheMapManager = dteLevelCacheMapManager;
 		}
 	}
+
+	/**
+	 * The data sets fetched in advance are saved into the JVM level cache,
+	 * where they are loaded by the queries.
+	 * 
+	 * @param dataSetDesign
+	 * @param appContext
+	 * @return null if no JVM level data set cache settings
+	 * @throws DataException
+	 */
+	private DataSetCacheConfig getJVMDataSetCacheConfig(
+			IBaseDataSetDesign dataSetDesign, Map appContext )
+			throws DataException
+	{
+		DataSetCacheConfig result = DataSetCacheUtil.getJVMDataSetCacheConfig( appContext, context, dataSetDesign );
+		DataSetPrefetcher prefetcher = getDataSetPrefetcher( );
+		if ( result == null && prefetcher != null && dataSetDesign != null )
+		{
+			result = prefetcher.getCacheConfig( dataSetDesign.getName( ) );
+		}
+		return result;
+	}
+
+	private DataSetPrefetcher getDataSetPrefetcher( )
+	{
+		return ( (DataEngineImpl) session.getEngine( ) ).getDataSetPrefetcher( );
+	}
 }
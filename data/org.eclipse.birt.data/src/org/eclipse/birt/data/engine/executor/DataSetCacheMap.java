@@ -0,0 +1,549 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+
+/**
+ * The map of cached data sets of one cache level. The entries are kept in a
+ * concurrent map, so that the look-ups of different data sets do not block
+ * each other.
+ * <p>
+ * When the total size of the cached data sets exceeds the maximum size, the
+ * least recently used entries which are not being loaded are removed. An entry
+ * whose time to live has passed is not reused. Only one cache map manager
+ * populates a data set at a time, the other managers wait until it has been
+ * cached, and then load it from the cache.
+ */
+class DataSetCacheMap
+{
+	private ConcurrentMap<DataSourceAndDataSet, CacheEntry> entries = new ConcurrentHashMap<DataSourceAndDataSet, CacheEntry>( );
+	private ConcurrentMap<DataSourceAndDataSet, Population> populations = new ConcurrentHashMap<DataSourceAndDataSet, Population>( );
+
+	// the ticks of the accesses to the entries, used for the LRU order
+	private AtomicLong clock = new AtomicLong( );
+
+	private AtomicLong totalSize = new AtomicLong( );
+	private AtomicLong hitCount = new AtomicLong( );
+	private AtomicLong missCount = new AtomicLong( );
+	private AtomicLong evictionCount = new AtomicLong( );
+
+	// the maximum total size in bytes, 0 for unlimited
+	private volatile long maxSize;
+
+	/**
+	 * @param key
+	 * @return the entry of the data set, or null if it is not cached
+	 */
+	CacheEntry get( DataSourceAndDataSet key )
+	{
+		return entries.get( key );
+	}
+
+	/**
+	 * @return the keys of the cached data sets
+	 */
+	Set<DataSourceAndDataSet> keySet( )
+	{
+		return entries.keySet( );
+	}
+
+	/**
+	 * Caches a data set. The replaced entry and the entries which exceed the
+	 * maximum size are released once they are not being loaded.
+	 *
+	 * @param key
+	 * @param cacheObject
+	 * @param timeToLive
+	 *            the time in milliseconds the data set can be reused, 0 for
+	 *            unlimited
+	 */
+	void put( DataSourceAndDataSet key, IDataSetCacheObject cacheObject,
+			long timeToLive )
+	{
+		CacheEntry entry = new CacheEntry( cacheObject,
+				sizeOf( cacheObject ),
+				timeToLive > 0 ? System.currentTimeMillis( ) + timeToLive : 0 );
+		entry.touch( clock.incrementAndGet( ) );
+		totalSize.addAndGet( entry.size );
+		CacheEntry old = entries.put( key, entry );
+		if ( old != null )
+		{
+			totalSize.addAndGet( -old.size );
+			if ( old.cacheObject != cacheObject )
+				old.retire( );
+		}
+		evict( entry );
+	}
+
+	/**
+	 * Removes an entry if it is still mapped to the key.
+	 *
+	 * @param key
+	 * @param entry
+	 * @return true if the entry is removed
+	 */
+	boolean remove( DataSourceAndDataSet key, CacheEntry entry )
+	{
+		if ( entries.remove( key, entry ) )
+		{
+			totalSize.addAndGet( -entry.size );
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Marks an entry as the most recently used one.
+	 *
+	 * @param entry
+	 */
+	void touch( CacheEntry entry )
+	{
+		entry.touch( clock.incrementAndGet( ) );
+	}
+
+	/**
+	 * Removes the expired entries, and the least recently used ones while the
+	 * total size exceeds the maximum size. The entries which are being loaded
+	 * are kept.
+	 *
+	 * @param keep
+	 *            the entry which is kept anyway, as it is just cached
+	 */
+	private void evict( CacheEntry keep )
+	{
+		long now = System.currentTimeMillis( );
+		for ( Map.Entry<DataSourceAndDataSet, CacheEntry> e : entries.entrySet( ) )
+		{
+			CacheEntry entry = e.getValue( );
+			if ( entry != keep && entry.isExpired( now ) && !entry.isLocked( ) )
+			{
+				evict( e.getKey( ), entry );
+			}
+		}
+		while ( maxSize > 0 && totalSize.get( ) > maxSize )
+		{
+			DataSourceAndDataSet lruKey = null;
+			CacheEntry lruEntry = null;
+			for ( Map.Entry<DataSourceAndDataSet, CacheEntry> e : entries.entrySet( ) )
+			{
+				CacheEntry entry = e.getValue( );
+				if ( entry != keep
+						&& !entry.isLocked( )
+						&& ( lruEntry == null || entry.lastAccess < lruEntry.lastAccess ) )
+				{
+					lruKey = e.getKey( );
+					lruEntry = entry;
+				}
+			}
+			if ( lruEntry == null )
+				break;
+			evict( lruKey, lruEntry );
+		}
+	}
+
+	private void evict( DataSourceAndDataSet key, CacheEntry entry )
+	{
+		if ( remove( key, entry ) )
+		{
+			evictionCount.incrementAndGet( );
+			entry.retire( );
+		}
+	}
+
+	/**
+	 * Registers the manager as the one which populates the data set.
+	 *
+	 * @param key
+	 * @param owner
+	 * @return false if the data set is being populated by another manager
+	 */
+	boolean startPopulation( DataSourceAndDataSet key, Object owner )
+	{
+		Population population = populations.putIfAbsent( key,
+				new Population( owner ) );
+		return population == null || population.owner == owner;
+	}
+
+	/**
+	 * Wakes up the managers which wait for the data set populated by the
+	 * owner.
+	 *
+	 * @param key
+	 * @param owner
+	 */
+	void finishPopulation( DataSourceAndDataSet key, Object owner )
+	{
+		Population population = populations.get( key );
+		if ( population != null
+				&& population.owner == owner
+				&& populations.remove( key, population ) )
+		{
+			population.latch.countDown( );
+		}
+	}
+
+	/**
+	 * Wakes up the managers which wait for the data sets populated by the
+	 * owner.
+	 *
+	 * @param owner
+	 */
+	void finishPopulations( Object owner )
+	{
+		for ( DataSourceAndDataSet key : populations.keySet( ) )
+		{
+			finishPopulation( key, owner );
+		}
+	}
+
+	/**
+	 * Waits until the data set populated by another manager has been cached.
+	 * If it takes longer than the timeout, the population is given up so that
+	 * the waiting manager can populate the data set itself.
+	 *
+	 * @param key
+	 * @param waiter
+	 * @param timeout
+	 *            in milliseconds
+	 * @return true if the data set has been populated by another manager
+	 */
+	boolean awaitPopulation( DataSourceAndDataSet key, Object waiter,
+			long timeout )
+	{
+		Population population = populations.get( key );
+		if ( population == null || population.owner == waiter )
+			return false;
+		try
+		{
+			if ( population.latch.await( timeout, TimeUnit.MILLISECONDS ) )
+				return true;
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+		}
+		if ( populations.remove( key, population ) )
+			population.latch.countDown( );
+		return false;
+	}
+
+	void recordHit( )
+	{
+		hitCount.incrementAndGet( );
+	}
+
+	void recordMiss( )
+	{
+		missCount.incrementAndGet( );
+	}
+
+	/**
+	 * @param maxSize
+	 *            the maximum total size in bytes, 0 for unlimited
+	 */
+	void setMaxSize( long maxSize )
+	{
+		this.maxSize = Math.max( 0, maxSize );
+	}
+
+	long getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	long getTotalSize( )
+	{
+		return totalSize.get( );
+	}
+
+	long getHitCount( )
+	{
+		return hitCount.get( );
+	}
+
+	long getMissCount( )
+	{
+		return missCount.get( );
+	}
+
+	long getEvictionCount( )
+	{
+		return evictionCount.get( );
+	}
+
+	/**
+	 * Removes and releases all the entries.
+	 */
+	void clear( )
+	{
+		List<CacheEntry> removed = new ArrayList<CacheEntry>( );
+		for ( DataSourceAndDataSet key : entries.keySet( ) )
+		{
+			CacheEntry entry = entries.get( key );
+			if ( entry != null && remove( key, entry ) )
+			{
+				removed.add( entry );
+			}
+		}
+		for ( int i = 0; i < removed.size( ); i++ )
+		{
+			removed.get( i ).release( );
+		}
+	}
+
+	/**
+	 * Removes all the entries and resets the counts, without releasing the
+	 * entries.
+	 */
+	void reset( )
+	{
+		entries.clear( );
+		for ( Population population : populations.values( ) )
+		{
+			population.latch.countDown( );
+		}
+		populations.clear( );
+		totalSize.set( 0 );
+		hitCount.set( 0 );
+		missCount.set( 0 );
+		evictionCount.set( 0 );
+	}
+
+	/**
+	 * @param cacheObject
+	 * @return the estimated size of the cached data set in bytes
+	 */
+	static long sizeOf( IDataSetCacheObject cacheObject )
+	{
+		if ( cacheObject instanceof DataSetCacheObjectWithDummyData )
+		{
+			return sizeOf( ( (DataSetCacheObjectWithDummyData) cacheObject ).getSourceDataSetCacheObject( ) );
+		}
+		if ( cacheObject instanceof DiskDataSetCacheObject )
+		{
+			return sizeOf( new File( ( (DiskDataSetCacheObject) cacheObject ).getCacheDir( ) ) );
+		}
+		if ( cacheObject instanceof IncreDataSetCacheObject )
+		{
+			return sizeOf( new File( ( (IncreDataSetCacheObject) cacheObject ).getCacheDir( ) ) );
+		}
+		if ( cacheObject instanceof MemoryDataSetCacheObject )
+		{
+			MemoryDataSetCacheObject memoryObject = (MemoryDataSetCacheObject) cacheObject;
+			if ( memoryObject.getResultClass( ) == null )
+				return 0;
+			try
+			{
+				SizeOfUtil sizeOfUtil = new SizeOfUtil( memoryObject.getResultClass( ) );
+				long size = 0;
+				for ( int i = 0; i < memoryObject.getSize( ); i++ )
+				{
+					size += sizeOfUtil.sizeOf( memoryObject.getResultObject( i ) );
+				}
+				return size;
+			}
+			catch ( DataException e )
+			{
+				return 0;
+			}
+		}
+		return 0;
+	}
+
+	private static long sizeOf( File file )
+	{
+		if ( !FileSecurity.fileExist( file ) )
+			return 0;
+		if ( FileSecurity.fileIsFile( file ) )
+			return file.length( );
+		long size = 0;
+		File[] children = FileSecurity.fileListFiles( file );
+		if ( children != null )
+		{
+			for ( int i = 0; i < children.length; i++ )
+			{
+				size += sizeOf( children[i] );
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * A cached data set. Loading an entry locks it, the readers are counted
+	 * by loadStart and loadFinish, and the entry is unlocked when the last
+	 * reader finishes.
+	 */
+	static final class CacheEntry
+	{
+
+		private IDataSetCacheObject cacheObject;
+		private long size;
+		// 0 if the entry never expires
+		private long expireTime;
+		private volatile long lastAccess;
+
+		private boolean locked;
+		private int readers;
+		// released when it is unlocked
+		private boolean retired;
+		private boolean released;
+
+		CacheEntry( IDataSetCacheObject cacheObject, long size, long expireTime )
+		{
+			this.cacheObject = cacheObject;
+			this.size = size;
+			this.expireTime = expireTime;
+		}
+
+		IDataSetCacheObject getCacheObject( )
+		{
+			return cacheObject;
+		}
+
+		long getSize( )
+		{
+			return size;
+		}
+
+		boolean isExpired( long now )
+		{
+			return expireTime > 0 && now >= expireTime;
+		}
+
+		private void touch( long tick )
+		{
+			lastAccess = tick;
+		}
+
+		synchronized boolean isLocked( )
+		{
+			return locked;
+		}
+
+		synchronized void lock( )
+		{
+			locked = true;
+		}
+
+		synchronized void loadStart( )
+		{
+			if ( locked )
+				readers++;
+		}
+
+		void loadFinish( )
+		{
+			boolean release = false;
+			synchronized ( this )
+			{
+				if ( !locked )
+					return;
+				if ( readers <= 1 )
+				{
+					locked = false;
+					readers = 0;
+					notifyAll( );
+					release = retired && !released;
+					released = released || release;
+				}
+				else
+				{
+					readers--;
+				}
+			}
+			if ( release )
+				cacheObject.release( );
+		}
+
+		/**
+		 * Waits until the entry is unlocked, and unlocks it anyway after the
+		 * timeout, as the entry may not be properly closed.
+		 *
+		 * @param timeout
+		 *            in milliseconds
+		 */
+		synchronized void awaitUnlocked( long timeout )
+		{
+			if ( locked )
+			{
+				try
+				{
+					wait( timeout );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread( ).interrupt( );
+				}
+				locked = false;
+				readers = 0;
+			}
+		}
+
+		/**
+		 * Releases the entry now, or when it is unlocked if it is being loaded.
+		 */
+		void retire( )
+		{
+			synchronized ( this )
+			{
+				retired = true;
+				if ( locked || released )
+					return;
+				released = true;
+			}
+			cacheObject.release( );
+		}
+
+		/**
+		 * Releases the entry now.
+		 */
+		void release( )
+		{
+			synchronized ( this )
+			{
+				if ( released )
+					return;
+				released = true;
+			}
+			cacheObject.release( );
+		}
+	}
+
+	/**
+	 * A data set which is being populated by a cache map manager.
+	 */
+	private static final class Population
+	{
+
+		private Object owner;
+		private CountDownLatch latch = new CountDownLatch( 1 );
+
+		Population( Object owner )
+		{
+			this.owner = owner;
+		}
+	}
+}
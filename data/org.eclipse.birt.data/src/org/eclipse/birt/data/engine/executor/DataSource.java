@@ -299,7 +299,16 @@ class DataSource implements IDataSource
         CacheConnection conn = getAvailableConnection();
         assert conn.currentStatements < conn.maxStatements;
         ++ conn.currentStatements;
-        PreparedStatement stmt = conn.odaConn.prepareStatement( queryText, dataSetType, querySpec );
+        PreparedStatement stmt;
+        try
+        {
+            stmt = conn.odaConn.prepareStatement( queryText, dataSetType, querySpec );
+        }
+        catch ( DataException e )
+        {
+            -- conn.currentStatements;
+            throw e;
+        }
         
         // Map statement to the open connection, so we can release the connection
         // when statement is closed
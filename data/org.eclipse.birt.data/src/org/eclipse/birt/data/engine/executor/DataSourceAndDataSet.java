@@ -31,6 +31,8 @@ public class DataSourceAndDataSet
 	private Collection paramterHints;
 	private String cacheScopeID;
 	private boolean enableSamplePreview = false;
+	/** fingerprint of the app context values the cached data set depends on */
+	private String contextKey;
 
 	/**
 	 * @param dataSourceDesign
@@ -40,6 +42,29 @@ public class DataSourceAndDataSet
 	public static DataSourceAndDataSet newInstance(
 			IBaseDataSourceDesign dataSourceDesign,
 			IBaseDataSetDesign dataSetDesign, Collection paramterHints, String cacheScopeID, boolean enableSamplePreview )
+	{
+		return newInstance( dataSourceDesign,
+				dataSetDesign,
+				paramterHints,
+				cacheScopeID,
+				enableSamplePreview,
+				null );
+	}
+
+	/**
+	 * @param dataSourceDesign
+	 * @param dataSetDesign
+	 * @param paramterHints
+	 * @param cacheScopeID
+	 * @param enableSamplePreview
+	 * @param contextKey
+	 *            the data sets of different context keys are not shared
+	 * @return
+	 */
+	public static DataSourceAndDataSet newInstance(
+			IBaseDataSourceDesign dataSourceDesign,
+			IBaseDataSetDesign dataSetDesign, Collection paramterHints,
+			String cacheScopeID, boolean enableSamplePreview, String contextKey )
 	{
 		DataSourceAndDataSet dataSourceAndSet = new DataSourceAndDataSet( );
 		dataSourceAndSet.dataSourceDesign = dataSourceDesign;
@@ -47,6 +72,7 @@ public class DataSourceAndDataSet
 		dataSourceAndSet.paramterHints = paramterHints;
 		dataSourceAndSet.cacheScopeID = cacheScopeID;
 		dataSourceAndSet.enableSamplePreview = enableSamplePreview;
+		dataSourceAndSet.contextKey = contextKey;
 		return dataSourceAndSet;
 	}
 
@@ -70,6 +96,9 @@ public class DataSourceAndDataSet
 				* result
 				+ ( ( cacheScopeID == null ) ? 0
 						: cacheScopeID.hashCode( ) );
+		result = prime
+				* result
+				+ ( ( contextKey == null ) ? 0 : contextKey.hashCode( ) );
 		
 		return result;
 	}
@@ -147,6 +176,10 @@ public class DataSourceAndDataSet
 		
 		DataSourceAndDataSet candidate = ( DataSourceAndDataSet )obj;
 		
+		if ( this.contextKey == null ? candidate.contextKey != null
+				: !this.contextKey.equals( candidate.contextKey ) )
+			return false;
+		
 		//If not managed by cache scope id
 		if ( this.cacheScopeID == null || candidate.cacheScopeID == null )
 			return this.isDataSourceDataSetEqual((DataSourceAndDataSet)obj, true );
@@ -200,4 +233,9 @@ public class DataSourceAndDataSet
 		return this.cacheScopeID;
 	}
 
+	public String getContextKey( )
+	{
+		return this.contextKey;
+	}
+
 }
@@ -40,6 +40,7 @@ import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.CancelManager;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.DataSetCacheUtil;
 import org.eclipse.birt.data.engine.impl.ICancellable;
 import org.eclipse.birt.data.engine.impl.IQueryContextVisitor;
 import org.eclipse.birt.data.engine.impl.QueryContextVisitorUtil;
@@ -47,6 +48,7 @@ import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.impl.document.viewing.ExprMetaUtil;
 import org.eclipse.birt.data.engine.odaconsumer.ColumnHint;
 import org.eclipse.birt.data.engine.odaconsumer.ParameterHint;
+import org.eclipse.birt.data.engine.odaconsumer.PrefetchResultSet;
 import org.eclipse.birt.data.engine.odaconsumer.PreparedStatement;
 import org.eclipse.birt.data.engine.odaconsumer.QuerySpecHelper;
 import org.eclipse.birt.data.engine.odaconsumer.ResultSet;
@@ -146,6 +148,7 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 {
     protected DataSource 		dataSource;
     protected String			queryText;
+    protected String			pushedDownQueryText;
     protected String			queryType;
     protected PreparedStatement	odaStatement;
     
@@ -176,6 +179,10 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 	
 	private IQueryContextVisitor qcv;
 	
+	// the result set whose rows are fetched in background
+	private PrefetchResultSet prefetchResultSet;
+	private ICancellable prefetchCanceller;
+	
 	private static Logger logger = Logger.getLogger( DataSourceQuery.class.getName( ) );
 
 
@@ -292,9 +299,7 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 		}
 		else
 		{
-			odaStatement = dataSource.prepareStatement( queryText,
-					queryType,
-					this.querySpecificaton );
+			odaStatement = prepareStatement( );
 		}
         
         // Add custom properties to odaStatement
@@ -393,6 +398,42 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
         return this;
     }
 
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IDataSourceQuery#setPushedDownQueryText(java.lang.String)
+	 */
+	public void setPushedDownQueryText( String queryText )
+	{
+		this.pushedDownQueryText = queryText;
+	}
+
+	/**
+	 * Prepare the pushed down query text if any, or the original one.
+	 * 
+	 * @return
+	 * @throws DataException
+	 */
+	private PreparedStatement prepareStatement( ) throws DataException
+	{
+		if ( pushedDownQueryText != null )
+		{
+			try
+			{
+				return dataSource.prepareStatement( pushedDownQueryText,
+						queryType,
+						this.querySpecificaton );
+			}
+			catch ( DataException e )
+			{
+				// the database does not accept the rewritten query
+				logger.log( Level.WARNING, e.getLocalizedMessage( ), e );
+				pushedDownQueryText = null;
+			}
+		}
+		return dataSource.prepareStatement( queryText,
+				queryType,
+				this.querySpecificaton );
+	}
+
 	private boolean canAccessResultSetByName( IOdaDataSetDesign design )
 			throws DataException
 	{
@@ -932,138 +973,152 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
     		design = (IOdaDataSetDesign)session.getDataSetCacheManager( ).getCurrentDataSetDesign( );
     	
 
-		if ( session.getDataSetCacheManager( ).doesSaveToCache( ) )
+		boolean saveToCache = session.getDataSetCacheManager( ).doesSaveToCache( );
+		ResultSet rs = null;
+		DataSetToCache dataSetToCache = null;
+		// the other queries waiting for the data set to be cached must not wait
+		// for it any longer if it fails before it is being cached
+		try
 		{
-			int fetchRowLimit = 0;
-			if ( design != null )
+			if ( saveToCache )
 			{
-				fetchRowLimit = session.getDataSetCacheManager( )
-						.getCurrentDataSetDesign( )
-						.getRowFetchLimit( );
-			}
+				int fetchRowLimit = 0;
+				if ( design != null )
+				{
+					fetchRowLimit = session.getDataSetCacheManager( )
+							.getCurrentDataSetDesign( )
+							.getRowFetchLimit( );
+				}
 
-			int cacheCountConfig = 0;
-			if ( design.getFilters( ).isEmpty( ) )
-			{
-				cacheCountConfig = session.getDataSetCacheManager( )
-						.getCacheCountConfig( );
-			}
+				int cacheCountConfig = 0;
+				if ( design.getFilters( ).isEmpty( ) )
+				{
+					cacheCountConfig = session.getDataSetCacheManager( )
+							.getCacheCountConfig( );
+				}
 			
-			if ( cacheCountConfig > 0 )
-			{
-				if ( fetchRowLimit != 0 && fetchRowLimit < cacheCountConfig )
+				if ( cacheCountConfig > 0 )
 				{
+					if ( fetchRowLimit != 0 && fetchRowLimit < cacheCountConfig )
+					{
 
-					odaStatement.setMaxRows( fetchRowLimit );
+						odaStatement.setMaxRows( fetchRowLimit );
+					}
+					else
+					{
+						odaStatement.setMaxRows( cacheCountConfig );
+					}
 				}
 				else
 				{
-					odaStatement.setMaxRows( cacheCountConfig );
-				}
-			}
-			else
-			{
-				if ( fetchRowLimit != 0 )
-				{
-					odaStatement.setMaxRows( fetchRowLimit );
+					if ( fetchRowLimit != 0 )
+					{
+						odaStatement.setMaxRows( fetchRowLimit );
+					}
 				}
 			}
-		}
 		
-    	ICancellable queryCanceller = new OdaQueryCanceller( odaStatement, dataSource, session.getStopSign(), this );
-    	this.session.getCancelManager( ).register( queryCanceller );
-    	
-    	if( !session.getStopSign().isStopped())
-    	{    
-			long startTime = System.currentTimeMillis( );
-    		odaStatement.execute( );
-			long endTime = System.currentTimeMillis( );
-			if( logger.isLoggable( Level.FINE ) )
-				logger.log( Level.FINE, "ODA query execution time: " + 
-					( endTime - startTime ) + " ms;\n   Executed query: " + odaStatement.getEffectiveQueryText() );
-    	}
+			ICancellable queryCanceller = new OdaQueryCanceller( odaStatement, dataSource, session.getStopSign(), this );
+			this.session.getCancelManager( ).register( queryCanceller );
 		
-		QueryContextVisitorUtil.populateEffectiveQueryText( qcv,
-				odaStatement.getEffectiveQueryText( ) );
+			if( !session.getStopSign().isStopped())
+			{    
+				long startTime = System.currentTimeMillis( );
+				odaStatement.execute( );
+				long endTime = System.currentTimeMillis( );
+				if( logger.isLoggable( Level.FINE ) )
+					logger.log( Level.FINE, "ODA query execution time: " + 
+						( endTime - startTime ) + " ms;\n   Executed query: " + odaStatement.getEffectiveQueryText() );
+			}
 		
-		logger.fine( "Effective Query Text:" + odaStatement.getEffectiveQueryText( ) );
-		if ( queryCanceller.collectException( ) != null )
-		{
-			if ( !( queryCanceller.collectException( ).getCause( ) instanceof UnsupportedOperationException ) )
-				throw queryCanceller.collectException( );
-		}
+			QueryContextVisitorUtil.populateEffectiveQueryText( qcv,
+					odaStatement.getEffectiveQueryText( ) );
+		
+			logger.fine( "Effective Query Text:" + odaStatement.getEffectiveQueryText( ) );
+			if ( queryCanceller.collectException( ) != null )
+			{
+				if ( !( queryCanceller.collectException( ).getCause( ) instanceof UnsupportedOperationException ) )
+					throw queryCanceller.collectException( );
+			}
 		
 		
-		ResultSet rs = null;
 		
-		if ( design != null )
-		{
-			if ( canAccessResultSetByName( design ) )
+			if ( design != null )
 			{
-				try
+				if ( canAccessResultSetByName( design ) )
 				{
+					try
+					{
 
-					rs = odaStatement.getResultSet( design.getPrimaryResultSetName( ) );
+						rs = odaStatement.getResultSet( design.getPrimaryResultSetName( ) );
+					}
+					catch ( DataException e )
+					{
+						throw new DataException( ResourceConstants.ERROR_HAPPEN_WHEN_RETRIEVE_RESULTSET,
+								design.getPrimaryResultSetName( ) );
+					}
 				}
-				catch ( DataException e )
+				else if ( canAccessResultSetByNumber( design ) )
 				{
-					throw new DataException( ResourceConstants.ERROR_HAPPEN_WHEN_RETRIEVE_RESULTSET,
-							design.getPrimaryResultSetName( ) );
+					try
+					{
+						rs = odaStatement.getResultSet( design.getPrimaryResultSetNumber( ) );
+					}
+					catch ( DataException e )
+					{
+						throw new DataException( ResourceConstants.ERROR_HAPPEN_WHEN_RETRIEVE_RESULTSET,
+								design.getPrimaryResultSetNumber( ) );
+					}
 				}
 			}
-			else if ( canAccessResultSetByNumber( design ) )
+			if( rs == null && !session.getStopSign( ).isStopped( ) )
 			{
-				try
-				{
-					rs = odaStatement.getResultSet( design.getPrimaryResultSetNumber( ) );
-				}
-				catch ( DataException e )
-				{
-					throw new DataException( ResourceConstants.ERROR_HAPPEN_WHEN_RETRIEVE_RESULTSET,
-							design.getPrimaryResultSetNumber( ) );
-				}
+				rs = odaStatement.getResultSet( );
+			}
+		
+			// If we did not get a result set metadata at prepare() time, get it now
+			if ( resultMetadata == null )
+			{
+				List modelResultHints = design.getResultSetHints( );
+				resultMetadata = rs.getMetaData( );
+				if ( resultMetadata == null )
+					throw new DataException( ResourceConstants.METADATA_NOT_AVAILABLE );
+				resultMetadata = mergeResultHint( modelResultHints , resultMetadata );
+			}
+		
+			rs = prefetch( rs );
+			
+			if ( saveToCache )
+			{
+				dataSetToCache = new DataSetToCache( rs, resultMetadata, session );
 			}
 		}
-		if( rs == null && !session.getStopSign( ).isStopped( ) )
+		catch ( DataException e )
 		{
-			rs = odaStatement.getResultSet( );
+			abortSaveToCache( saveToCache );
+			throw e;
 		}
-		
-		// If we did not get a result set metadata at prepare() time, get it now
-		if ( resultMetadata == null )
+		catch ( RuntimeException e )
 		{
-			List modelResultHints = design.getResultSetHints( );
-			resultMetadata = rs.getMetaData( );
-			if ( resultMetadata == null )
-				throw new DataException( ResourceConstants.METADATA_NOT_AVAILABLE );
-			resultMetadata = mergeResultHint( modelResultHints , resultMetadata );
+			abortSaveToCache( saveToCache );
+			throw e;
 		}
 		
 		// Initialize CachedResultSet using the ODA result set
-		if ( session.getDataSetCacheManager( ).doesSaveToCache( ) == false )
+		if ( !saveToCache )
 		{
-			if ( ( ( session.getEngineContext( ).getMode( ) == DataEngineContext.DIRECT_PRESENTATION || session.getEngineContext( )
-					.getMode( ) == DataEngineContext.MODE_GENERATION ) )
-					&& this.getQueryDefinition( ) instanceof IQueryDefinition )
+			Strategy strategy = getExecutionStrategy( );
+			if ( strategy != Strategy.Complex )
 			{
-				IQueryDefinition queryDefn = (IQueryDefinition) this.getQueryDefinition( );
-				
-				Strategy strategy = QueryExecutionStrategyUtil.getQueryExecutionStrategy( this.session, queryDefn,
-						queryDefn.getDataSetName( ) == null
-						? null
-						: ( (DataEngineImpl) this.session.getEngine( ) ).getDataSetDesign( queryDefn.getDataSetName( ) ) );
-				if ( strategy  != Strategy.Complex )
-				{
-					SimpleResultSet simpleResult = new SimpleResultSet( this,
-							rs,
-							resultMetadata,
-							eventHandler,
-							this.getGrouping( ),
-							this.session,
-							strategy == Strategy.SimpleLookingFoward);
-					
-					return simpleResult.getResultSetIterator( );
-				}
+				SimpleResultSet simpleResult = new SimpleResultSet( this,
+						rs,
+						resultMetadata,
+						eventHandler,
+						this.getGrouping( ),
+						this.session,
+						strategy == Strategy.SimpleLookingFoward );
+
+				return simpleResult.getResultSetIterator( );
 			}
 	    	
 			ri = new CachedResultSet( this,
@@ -1073,10 +1128,31 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 					session );
 		}
 		else
+		{
+			Strategy strategy = getExecutionStrategy( );
+			// the rows are streamed to the query while they are saved into
+			// the cache, instead of being cached before the query starts
+			if ( strategy != Strategy.Complex
+					&& eventHandler.getDataSetRuntime( ) != null
+					&& dataSetToCache.canSaveRows( ) )
+			{
+				SimpleResultSet simpleResult = new SimpleResultSet( this,
+						rs,
+						dataSetToCache,
+						resultMetadata,
+						eventHandler,
+						this.getGrouping( ),
+						this.session,
+						strategy == Strategy.SimpleLookingFoward );
+
+				return simpleResult.getResultSetIterator( );
+			}
+
 			ri = new CachedResultSet( this,
 					resultMetadata,
-					new DataSetToCache( rs, resultMetadata, session ),
+					dataSetToCache,
 					eventHandler, session );
+		}
 		
 		if ( ri != null )
 			( (CachedResultSet) ri ).setOdaResultSet( rs );
@@ -1084,6 +1160,101 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 		return ri;
     }
     
+	private void abortSaveToCache( boolean saveToCache )
+	{
+		if ( !saveToCache )
+			return;
+		try
+		{
+			session.getDataSetCacheManager( ).saveAborted( );
+		}
+		catch ( DataException e )
+		{
+			logger.log( Level.WARNING, e.getMessage( ), e );
+		}
+	}
+    
+	/**
+	 * The rows are streamed to the query without being populated in cache if
+	 * the query does not need them all at once, for example if it is not
+	 * sorted or only grouped by the order of the data set.
+	 * 
+	 * @return
+	 * @throws DataException
+	 */
+	private Strategy getExecutionStrategy( ) throws DataException
+	{
+		if ( ( session.getEngineContext( ).getMode( ) != DataEngineContext.DIRECT_PRESENTATION && session.getEngineContext( )
+				.getMode( ) != DataEngineContext.MODE_GENERATION )
+				|| !( this.getQueryDefinition( ) instanceof IQueryDefinition ) )
+			return Strategy.Complex;
+
+		IQueryDefinition queryDefn = (IQueryDefinition) this.getQueryDefinition( );
+		return QueryExecutionStrategyUtil.getQueryExecutionStrategy( this.session,
+				queryDefn,
+				queryDefn.getDataSetName( ) == null
+						? null
+						: ( (DataEngineImpl) this.session.getEngine( ) ).getDataSetDesign( queryDefn.getDataSetName( ) ) );
+	}
+
+	/**
+	 * Fetches the rows of the result set in background if it is enabled by
+	 * the app context, so that fetching overlaps with processing the rows.
+	 * 
+	 * @param rs
+	 * @return
+	 * @throws DataException
+	 */
+	private ResultSet prefetch( ResultSet rs ) throws DataException
+	{
+		stopPrefetch( );
+		int prefetchSize = DataSetCacheUtil.getOdaPrefetchSize( session.getDataSetCacheManager( )
+				.getCurrentAppContext( ) );
+		if ( rs == null
+				|| prefetchSize <= 0 || session.getStopSign( ).isStopped( )
+				|| !PrefetchResultSet.canPrefetch( rs ) )
+			return rs;
+
+		final PrefetchResultSet result = new PrefetchResultSet( rs,
+				prefetchSize );
+		final StopSign stop = session.getStopSign( );
+		this.prefetchCanceller = new ICancellable( ) {
+
+			public boolean doCancel( )
+			{
+				return stop.isStopped( );
+			}
+
+			public void cancel( )
+			{
+				result.cancel( );
+			}
+
+			public DataException collectException( )
+			{
+				return null;
+			}
+		};
+		this.session.getCancelManager( ).register( prefetchCanceller );
+		this.prefetchResultSet = result;
+		return result;
+	}
+
+	/**
+	 * Waits for the background thread, so that the statement can be closed.
+	 */
+	private void stopPrefetch( )
+	{
+		if ( prefetchResultSet == null )
+			return;
+		prefetchResultSet.stop( );
+		CancelManager manager = this.session.getCancelManager( );
+		if ( manager != null )
+			manager.deregister( prefetchCanceller );
+		prefetchResultSet = null;
+		prefetchCanceller = null;
+	}
+
 	private static class OdaQueryCanceller implements ICancellable
     {
     	private PreparedStatement statement;
@@ -1304,6 +1475,7 @@ public class DataSourceQuery extends BaseQuery implements IDataSourceQuery, IPre
 	 */
     public void close()
     {
+        stopPrefetch( );
         if ( odaStatement != null )
         {
         	this.dataSource.closeStatement( odaStatement );
@@ -92,6 +92,16 @@ public class DiskDataSetCacheObject implements IDataSetCacheObject
 		return new File( cacheDir + File.separator + "meta.data");
 	}
 
+	/**
+	 * 
+	 * @param fieldIndex
+	 * @return the file of the index of the column
+	 */
+	public File getIndexFile( int fieldIndex )
+	{
+		return new File( cacheDir + File.separator + "index" + fieldIndex + ".data");
+	}
+
 	public boolean isCachedDataReusable( int requiredCapability )
 	{
 		assert requiredCapability > 0;
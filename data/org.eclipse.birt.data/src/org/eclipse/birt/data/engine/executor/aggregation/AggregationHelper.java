@@ -79,11 +79,43 @@ public class AggregationHelper implements IAggrValueHolder
 	 * @throws DataException 
 	 */
 	public AggregationHelper( IAggrDefnManager manager, ResultSetPopulator populator ) throws DataException
+	{
+		this( manager, populator, true );
+	}
+
+	private AggregationHelper( IAggrDefnManager manager,
+			ResultSetPopulator populator, boolean calculate )
+			throws DataException
 	{
 		this.populator = populator;
 		this.manager = manager;
 		this.currentRoundAggrValue = new List[0];
 		this.populateAggregations( populator.getSession( ).getTempDir( ) );
+		if ( calculate )
+			this.calculate( );
+	}
+
+	/**
+	 * Calculates the aggregations of all the pass rounds, and adds their
+	 * values to the result iterator of the populator. The aggregations of
+	 * different pass rounds share the passes over the result set, for example
+	 * the aggregations which depend on a single pass aggregation are
+	 * calculated in the second pass of a multiple passes aggregation.
+	 * 
+	 * @param aggrDefns
+	 * @param populator
+	 * @throws DataException
+	 */
+	public static void populateAggrValueHolder( List aggrDefns,
+			ResultSetPopulator populator ) throws DataException
+	{
+		AggregationHelper helper = new AggregationHelper( new AggrDefnManager( aggrDefns ),
+				populator,
+				false );
+		// The aggregations of later pass rounds get the values of the earlier
+		// ones from the result iterator.
+		populator.getResultIterator( ).addAggrValueHolder( helper );
+		helper.calculate( );
 	}
 
 	private void populateAggregations( String tempDir ) throws DataException
@@ -107,58 +139,62 @@ public class AggregationHelper implements IAggrValueHolder
 				accumulatorManagers = new AccumulatorManager[currentAggrCount];
 				
 			}
-			this.calculate( );
 	}
 	/**
-	 * Makes one pass over the odiResult and calculates values for all aggregate
-	 * expressions. odiResult must be open, and cursor placed at first row. Upon
+	 * Makes the passes over the odiResult and calculates values for all aggregate
+	 * expressions, each aggregate expression starts in the pass of its pass
+	 * round. odiResult must be open, and cursor placed at first row. Upon
 	 * return, odiResult is rewinded to first row. Before calling this method, a
 	 * Javascript "row" object must be set up in the passed-in JS context and
 	 * bound to the passed in odiResult.
 	 */
 	private void calculate(  ) throws DataException
 	{
+		if ( this.currentAggrCount == 0 )
+			return;
+
 		List validAggregations = new ArrayList( );
 		boolean[] populateAggrValue = new boolean[this.currentAggrCount];
-		int count = 1;
+		int firstPass = Integer.MAX_VALUE;
+		int lastPass = 0;
 		for ( int i = 0; i < this.currentAggrCount; i++ )
 		{
-			validAggregations.add( Integer.valueOf( i ) );
-			if ( this.getAggrInfo( i ).getAggregation( ).getNumberOfPasses( ) > 1 )
-				populateAggrValue[i] = false;
-			else
-				populateAggrValue[i] = true;
 			accumulatorManagers[i] = new AccumulatorManager( this.getAggrInfo( i ).getAggregation( ) );
+			firstPass = Math.min( firstPass, this.getAggrInfo( i ).getRound( ) );
+			lastPass = Math.max( lastPass, this.getAggrInfo( i ).getRound( )
+					+ getPassesNumber( i ) - 1 );
 		}
 
-		while ( validAggregations.size( ) > 0 )
+		assert ( this.getCurrentResult( ) == null || this.getCurrentResultIndex( ) == 0 );
+		if ( this.getCurrentResult( ) == null )
 		{
+			for( int i=0; i<accumulatorManagers.length; i++ )
+			{
+				Accumulator a = accumulatorManagers[i].getCurrentAccumulator( );
+				a.start( );
+				a.finish( );
+				currentRoundAggrValue[i].add( a.getValue( ) );					
+			}
+			// Empty result set; nothing to do
+			return;
+		}
+
+		for ( int count = firstPass; count <= lastPass; count++ )
+		{
+			prepareIteration( validAggregations, populateAggrValue, count );
+			if ( validAggregations.size( ) == 0 )
+				continue;
+
 			int[] validAggregationArray = new int[validAggregations.size( )];
 			for ( int i = 0; i < validAggregations.size( ); i++ )
 			{
 				validAggregationArray[i] = ( (Integer) validAggregations.get( i ) ).intValue( );
 			}
-			assert ( this.getCurrentResult( ) == null || this.getCurrentResultIndex( ) == 0 );
-			if ( this.getCurrentResult( ) == null )
-			{
-				for( int i=0; i<accumulatorManagers.length; i++ )
-				{
-					Accumulator a = accumulatorManagers[i].getCurrentAccumulator( );
-					a.start( );
-					a.finish( );
-					currentRoundAggrValue[i].add( a.getValue( ) );					
-				}
-				// Empty result set; nothing to do
-				return;
-			}
 
 			pass( populateAggrValue, validAggregationArray );
 
 			// Rewind to first row
 			this.first( 0 );
-
-			count++;
-			prepareNextIteration( validAggregations, populateAggrValue, count );
 		}
 	}
 	
@@ -534,33 +570,37 @@ public class AggregationHelper implements IAggrValueHolder
 	}
 	
 	/**
-	 * Prepare next run of aggregation pass.
+	 * Select the aggregations which are calculated in the given pass, that is
+	 * the passes from the pass round of an aggregation to its last pass.
 	 * 
 	 * @param validAggregations
 	 * @param populateAggrValue
 	 * @param count
-	 * @throws DataException 
+	 * @throws DataException
 	 */
-	private void prepareNextIteration( List validAggregations,
+	private void prepareIteration( List validAggregations,
 			boolean[] populateAggrValue, int count ) throws DataException
 	{
 		validAggregations.clear( );
 		for ( int i = 0; i < this.currentAggrCount; i++ )
 		{
 			this.accumulatorManagers[i].restart( );
-			IAggrFunction aggrFunc = this.getAggrInfo( i ).getAggregation( );
-			populateAggrValue[i] = false;
-			int passesNumber = aggrFunc.getNumberOfPasses( );
-			if ( count <= passesNumber )
+			int firstPass = this.getAggrInfo( i ).getRound( );
+			int lastPass = firstPass + getPassesNumber( i ) - 1;
+			populateAggrValue[i] = count == lastPass;
+			if ( count >= firstPass && count <= lastPass )
 			{
 				validAggregations.add( Integer.valueOf( i ) );
-				if ( count == passesNumber )
-				{
-					populateAggrValue[i] = true;
-				}
 			}
 		}
 	}
+
+	private int getPassesNumber( int i ) throws DataException
+	{
+		return Math.max( 1, this.getAggrInfo( i )
+				.getAggregation( )
+				.getNumberOfPasses( ) );
+	}
 	
 	private IAggrInfo getAggrInfo( int i ) throws DataException
 	{
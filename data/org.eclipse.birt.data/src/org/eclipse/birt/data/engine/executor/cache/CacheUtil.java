@@ -80,6 +80,30 @@ public class CacheUtil
 		return populateMemBufferSize( appContext.get( DataEngine.MEMORY_BUFFER_SIZE )) * 1024 * 1024;
 	}
 	
+	/**
+	 * @param appContext
+	 * @return the memory budget in bytes shared by the caches of a session, 0
+	 *         indicates no limit
+	 */
+	public static long computeSessionMemoryBufferSize( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object propValue = appContext.get( DataEngine.SESSION_MEMORY_BUFFER_SIZE );
+		if ( propValue == null )
+			return 0;
+		try
+		{
+			//The unit is 1M.
+			return Long.parseLong( propValue.toString( ).trim( ) ) * 1024 * 1024;
+		}
+		catch ( NumberFormatException e )
+		{
+			// no limit, as if the option were not set
+			return 0;
+		}
+	}
+	
 	public static boolean enableSP3CubeQueryChange( Map appContext )
 	{
 		if ( appContext == null )
@@ -114,6 +138,63 @@ public class CacheUtil
 		}
 	}
 
+	/**
+	 * @param appContext
+	 * @return whether the columnar memory cache should be used
+	 */
+	public static boolean enableColumnarMemoryCache( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object propValue = appContext.get( DataEngine.COLUMNAR_MEMORY_CACHE );
+		return propValue != null
+				&& Boolean.valueOf( propValue.toString( ).trim( ) )
+						.booleanValue( );
+	}
+
+	/**
+	 * @param appContext
+	 * @return whether rows can be gathered into groups by hashing
+	 */
+	public static boolean enableHashGrouping( Map appContext )
+	{
+		if ( appContext == null )
+			return true;
+		Object propValue = appContext.get( DataEngine.HASH_GROUPING );
+		return propValue == null
+				|| Boolean.valueOf( propValue.toString( ).trim( ) )
+						.booleanValue( );
+	}
+
+	/**
+	 * @param appContext
+	 * @return whether joint data sets can be joined by hash join
+	 */
+	public static boolean enableHashJoin( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object propValue = appContext.get( DataEngine.HASH_JOIN );
+		return propValue != null
+				&& Boolean.valueOf( propValue.toString( ).trim( ) )
+						.booleanValue( );
+	}
+
+	/**
+	 * @param appContext
+	 * @return whether work can be pushed down into the queries of JDBC data
+	 *         sets
+	 */
+	public static boolean enableSqlPushDown( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object propValue = appContext.get( DataEngine.SQL_PUSH_DOWN );
+		return propValue != null
+				&& Boolean.valueOf( propValue.toString( ).trim( ) )
+						.booleanValue( );
+	}
+
 	/**
 	 * 
 	 * @param propValue
@@ -0,0 +1,624 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A growable column of values of one result set field. Primitive values are
+ * kept in primitive arrays with a separate null bitmap, strings are
+ * dictionary encoded. A column which meets a value it can not hold is
+ * converted to a plain object column by <code>ColumnarRowStore</code>.
+ */
+abstract class ColumnVector
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** bitmap of null values, one bit per row */
+	private long[] nulls = new long[1];
+
+	protected int size;
+
+	/**
+	 * Create a column which best fits the given value class.
+	 *
+	 * @param valueClass
+	 * @return
+	 */
+	static ColumnVector newInstance( Class valueClass )
+	{
+		if ( valueClass == null )
+			return new ObjectColumn( );
+		if ( valueClass.equals( Integer.class ) )
+			return new IntColumn( );
+		if ( valueClass.equals( Long.class ) )
+			return new LongColumn( );
+		if ( valueClass.equals( Double.class ) )
+			return new DoubleColumn( );
+		if ( valueClass.equals( Boolean.class ) )
+			return new BooleanColumn( );
+		if ( valueClass.equals( String.class ) )
+			return new StringColumn( );
+		if ( DateColumn.isSupported( valueClass ) )
+			return new DateColumn( valueClass );
+		return new ObjectColumn( );
+	}
+
+	/**
+	 * @return row count of the column
+	 */
+	int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * Append a value to the end of the column.
+	 *
+	 * @param value
+	 * @return false if the value can not be held by this column
+	 */
+	boolean add( Object value )
+	{
+		ensureCapacity( size + 1 );
+		if ( !set( size, value ) )
+			return false;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Set the value of specified row.
+	 *
+	 * @param row
+	 * @param value
+	 * @return false if the value can not be held by this column
+	 */
+	boolean set( int row, Object value )
+	{
+		if ( value == null )
+		{
+			setNull( row, true );
+			return true;
+		}
+		if ( !accept( value ) )
+			return false;
+		setNull( row, false );
+		doSet( row, value );
+		return true;
+	}
+
+	/**
+	 * @param row
+	 * @return the value of specified row, a new object is created for
+	 *         primitive columns
+	 */
+	Object get( int row )
+	{
+		if ( isNull( row ) )
+			return null;
+		return doGet( row );
+	}
+
+	/**
+	 * @param row
+	 * @return
+	 */
+	boolean isNull( int row )
+	{
+		return ( nulls[row >>> 6] & ( 1L << row ) ) != 0;
+	}
+
+	private void setNull( int row, boolean isNull )
+	{
+		if ( isNull )
+			nulls[row >>> 6] |= 1L << row;
+		else
+			nulls[row >>> 6] &= ~( 1L << row );
+	}
+
+	/**
+	 * Reorder the rows so that new row i is old row order[i].
+	 *
+	 * @param order
+	 */
+	void reorder( int[] order )
+	{
+		long[] newNulls = new long[nulls.length];
+		for ( int i = 0; i < order.length; i++ )
+		{
+			if ( isNull( order[i] ) )
+				newNulls[i >>> 6] |= 1L << i;
+		}
+		nulls = newNulls;
+		doReorder( order );
+	}
+
+	/**
+	 * @return estimated memory size in bytes occupied by this column
+	 */
+	long getMemorySize( )
+	{
+		return SizeOfUtil.OBJECT_OVERHEAD
+				+ SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD + nulls.length * 8L
+				+ getDataMemorySize( );
+	}
+
+	private void ensureCapacity( int capacity )
+	{
+		if ( ( nulls.length << 6 ) < capacity )
+		{
+			long[] newNulls = new long[Math.max( nulls.length * 2,
+					( capacity + 63 ) >>> 6 )];
+			System.arraycopy( nulls, 0, newNulls, 0, nulls.length );
+			nulls = newNulls;
+		}
+		int current = getCapacity( );
+		if ( current < capacity )
+			grow( Math.max( Math.max( INITIAL_CAPACITY, current * 3 / 2 ),
+					capacity ) );
+	}
+
+	protected abstract boolean accept( Object value );
+
+	protected abstract void doSet( int row, Object value );
+
+	protected abstract Object doGet( int row );
+
+	protected abstract int getCapacity( );
+
+	protected abstract void grow( int capacity );
+
+	protected abstract void doReorder( int[] order );
+
+	protected abstract long getDataMemorySize( );
+
+	/**
+	 * Column of Integer values.
+	 */
+	static class IntColumn extends ColumnVector
+	{
+		private int[] values = new int[0];
+
+		protected boolean accept( Object value )
+		{
+			return value instanceof Integer;
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			values[row] = ( (Integer) value ).intValue( );
+		}
+
+		protected Object doGet( int row )
+		{
+			return Integer.valueOf( values[row] );
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int capacity )
+		{
+			int[] newValues = new int[capacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected void doReorder( int[] order )
+		{
+			int[] newValues = new int[values.length];
+			for ( int i = 0; i < order.length; i++ )
+				newValues[i] = values[order[i]];
+			values = newValues;
+		}
+
+		protected long getDataMemorySize( )
+		{
+			return SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD + values.length * 4L;
+		}
+	}
+
+	/**
+	 * Column of Long values.
+	 */
+	static class LongColumn extends ColumnVector
+	{
+		private long[] values = new long[0];
+
+		protected boolean accept( Object value )
+		{
+			return value instanceof Long;
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			values[row] = ( (Long) value ).longValue( );
+		}
+
+		protected Object doGet( int row )
+		{
+			return Long.valueOf( values[row] );
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int capacity )
+		{
+			long[] newValues = new long[capacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected void doReorder( int[] order )
+		{
+			long[] newValues = new long[values.length];
+			for ( int i = 0; i < order.length; i++ )
+				newValues[i] = values[order[i]];
+			values = newValues;
+		}
+
+		protected long getDataMemorySize( )
+		{
+			return SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD + values.length * 8L;
+		}
+	}
+
+	/**
+	 * Column of Double values.
+	 */
+	static class DoubleColumn extends ColumnVector
+	{
+		private double[] values = new double[0];
+
+		protected boolean accept( Object value )
+		{
+			return value instanceof Double;
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			values[row] = ( (Double) value ).doubleValue( );
+		}
+
+		protected Object doGet( int row )
+		{
+			return Double.valueOf( values[row] );
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int capacity )
+		{
+			double[] newValues = new double[capacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected void doReorder( int[] order )
+		{
+			double[] newValues = new double[values.length];
+			for ( int i = 0; i < order.length; i++ )
+				newValues[i] = values[order[i]];
+			values = newValues;
+		}
+
+		protected long getDataMemorySize( )
+		{
+			return SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD + values.length * 8L;
+		}
+	}
+
+	/**
+	 * Column of Boolean values, kept as a bitmap.
+	 */
+	static class BooleanColumn extends ColumnVector
+	{
+		private long[] values = new long[0];
+
+		protected boolean accept( Object value )
+		{
+			return value instanceof Boolean;
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			if ( ( (Boolean) value ).booleanValue( ) )
+				values[row >>> 6] |= 1L << row;
+			else
+				values[row >>> 6] &= ~( 1L << row );
+		}
+
+		protected Object doGet( int row )
+		{
+			return Boolean.valueOf( ( values[row >>> 6] & ( 1L << row ) ) != 0 );
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length << 6;
+		}
+
+		protected void grow( int capacity )
+		{
+			long[] newValues = new long[( capacity + 63 ) >>> 6];
+			System.arraycopy( values, 0, newValues, 0, values.length );
+			values = newValues;
+		}
+
+		protected void doReorder( int[] order )
+		{
+			long[] newValues = new long[values.length];
+			for ( int i = 0; i < order.length; i++ )
+			{
+				if ( ( values[order[i] >>> 6] & ( 1L << order[i] ) ) != 0 )
+					newValues[i >>> 6] |= 1L << i;
+			}
+			values = newValues;
+		}
+
+		protected long getDataMemorySize( )
+		{
+			return SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD + values.length * 8L;
+		}
+	}
+
+	/**
+	 * Column of java.util.Date or one of its java.sql sub classes. Only the
+	 * milliseconds (and nanoseconds for Timestamp) are kept, the value class
+	 * is fixed by the first value.
+	 */
+	static class DateColumn extends ColumnVector
+	{
+		private Class dateClass;
+		private long[] values = new long[0];
+		private int[] nanos;
+
+		DateColumn( Class dateClass )
+		{
+			this.dateClass = dateClass;
+			if ( dateClass.equals( java.sql.Timestamp.class ) )
+				nanos = new int[0];
+		}
+
+		static boolean isSupported( Class valueClass )
+		{
+			return valueClass.equals( Date.class )
+					|| valueClass.equals( java.sql.Date.class )
+					|| valueClass.equals( java.sql.Time.class )
+					|| valueClass.equals( java.sql.Timestamp.class );
+		}
+
+		protected boolean accept( Object value )
+		{
+			return value.getClass( ).equals( dateClass );
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			values[row] = ( (Date) value ).getTime( );
+			if ( nanos != null )
+				nanos[row] = ( (java.sql.Timestamp) value ).getNanos( );
+		}
+
+		protected Object doGet( int row )
+		{
+			long time = values[row];
+			if ( dateClass.equals( java.sql.Timestamp.class ) )
+			{
+				java.sql.Timestamp value = new java.sql.Timestamp( time );
+				value.setNanos( nanos[row] );
+				return value;
+			}
+			if ( dateClass.equals( java.sql.Date.class ) )
+				return new java.sql.Date( time );
+			if ( dateClass.equals( java.sql.Time.class ) )
+				return new java.sql.Time( time );
+			return new Date( time );
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int capacity )
+		{
+			long[] newValues = new long[capacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+			if ( nanos != null )
+			{
+				int[] newNanos = new int[capacity];
+				System.arraycopy( nanos, 0, newNanos, 0, size );
+				nanos = newNanos;
+			}
+		}
+
+		protected void doReorder( int[] order )
+		{
+			long[] newValues = new long[values.length];
+			for ( int i = 0; i < order.length; i++ )
+				newValues[i] = values[order[i]];
+			values = newValues;
+			if ( nanos != null )
+			{
+				int[] newNanos = new int[nanos.length];
+				for ( int i = 0; i < order.length; i++ )
+					newNanos[i] = nanos[order[i]];
+				nanos = newNanos;
+			}
+		}
+
+		protected long getDataMemorySize( )
+		{
+			long result = SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD
+					+ values.length * 8L;
+			if ( nanos != null )
+				result += SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD
+						+ nanos.length * 4L;
+			return result;
+		}
+	}
+
+	/**
+	 * Dictionary encoded column of String values. When most of the values
+	 * turn out to be distinct the dictionary is not worth keeping and
+	 * <code>accept</code> starts to refuse values, which makes the owner
+	 * convert the column into an object column.
+	 */
+	static class StringColumn extends ColumnVector
+	{
+		/** below this row count the dictionary is always kept */
+		private static final int MIN_ROWS_TO_CHECK = 1024;
+
+		private int[] codes = new int[0];
+		private List<String> dictionary = new ArrayList<String>( );
+		private Map<String, Integer> codeMap = new HashMap<String, Integer>( );
+		private long dictionarySize;
+
+		protected boolean accept( Object value )
+		{
+			if ( !( value instanceof String ) )
+				return false;
+			// give up the dictionary when more than half of the values are
+			// distinct
+			return size < MIN_ROWS_TO_CHECK
+					|| dictionary.size( ) * 2 < size
+					|| codeMap.containsKey( value );
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			Integer code = codeMap.get( value );
+			if ( code == null )
+			{
+				code = Integer.valueOf( dictionary.size( ) );
+				dictionary.add( (String) value );
+				codeMap.put( (String) value, code );
+				// value string, dictionary slot and hash map entry
+				dictionarySize += SizeOfUtil.sizeOf( String.class, value )
+						+ SizeOfUtil.POINTER_SIZE * 2 + 32;
+			}
+			codes[row] = code.intValue( );
+		}
+
+		protected Object doGet( int row )
+		{
+			return dictionary.get( codes[row] );
+		}
+
+		protected int getCapacity( )
+		{
+			return codes.length;
+		}
+
+		protected void grow( int capacity )
+		{
+			int[] newCodes = new int[capacity];
+			System.arraycopy( codes, 0, newCodes, 0, size );
+			codes = newCodes;
+		}
+
+		protected void doReorder( int[] order )
+		{
+			int[] newCodes = new int[codes.length];
+			for ( int i = 0; i < order.length; i++ )
+				newCodes[i] = codes[order[i]];
+			codes = newCodes;
+		}
+
+		protected long getDataMemorySize( )
+		{
+			return SizeOfUtil.PRIMITIVE_ARRAY_OVERHEAD + codes.length * 4L
+					+ dictionarySize;
+		}
+	}
+
+	/**
+	 * Column of arbitrary objects. It accepts any value.
+	 */
+	static class ObjectColumn extends ColumnVector
+	{
+		private Object[] values = new Object[0];
+		private long objectSize;
+
+		protected boolean accept( Object value )
+		{
+			return true;
+		}
+
+		protected void doSet( int row, Object value )
+		{
+			Object old = values[row];
+			if ( old != null )
+				objectSize -= SizeOfUtil.sizeOf( old.getClass( ), old );
+			values[row] = value;
+			objectSize += SizeOfUtil.sizeOf( value.getClass( ), value );
+		}
+
+		boolean set( int row, Object value )
+		{
+			if ( value == null && row < size && values[row] != null )
+			{
+				objectSize -= SizeOfUtil.sizeOf( values[row].getClass( ),
+						values[row] );
+				values[row] = null;
+			}
+			return super.set( row, value );
+		}
+
+		protected Object doGet( int row )
+		{
+			return values[row];
+		}
+
+		protected int getCapacity( )
+		{
+			return values.length;
+		}
+
+		protected void grow( int capacity )
+		{
+			Object[] newValues = new Object[capacity];
+			System.arraycopy( values, 0, newValues, 0, size );
+			values = newValues;
+		}
+
+		protected void doReorder( int[] order )
+		{
+			Object[] newValues = new Object[values.length];
+			for ( int i = 0; i < order.length; i++ )
+				newValues[i] = values[order[i]];
+			values = newValues;
+		}
+
+		protected long getDataMemorySize( )
+		{
+			return SizeOfUtil.OBJECT_ARRAY_OVERHEAD
+					+ values.length * (long) SizeOfUtil.POINTER_SIZE
+					+ objectSize;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Memory implementation of ResultSetCache which keeps the rows in a
+ * <code>ColumnarRowStore</code> instead of an array of result objects.
+ */
+public class ColumnarMemoryCache extends MemoryCache
+{
+	private ColumnarRowStore rowStore;
+
+	/**
+	 * @param rowStore
+	 * @param rsMeta
+	 * @param comparator
+	 */
+	public ColumnarMemoryCache( ColumnarRowStore rowStore,
+			IResultClass rsMeta, Comparator comparator )
+	{
+		super( rowStore.getRowCount( ), rsMeta );
+		this.rowStore = rowStore;
+		this.rowStore.sort( comparator );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.MemoryCache#getResultObject(int)
+	 */
+	protected IResultObject getResultObject( int index ) throws DataException
+	{
+		return rowStore.getRow( index );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.MemoryCache#close()
+	 */
+	public void close( )
+	{
+		super.close( );
+		rowStore.clear( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.MemoryCache#setResultClass(org.eclipse.birt.data.engine.odi.IResultClass)
+	 */
+	public void setResultClass( IResultClass rsMeta ) throws DataException
+	{
+		super.setResultClass( rsMeta );
+		rowStore.setResultClass( rsMeta );
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import org.eclipse.birt.core.data.DataType.AnyType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.olap.data.util.CompareUtil;
+
+/**
+ * A view of one row of <code>ColumnarRowStore</code>. Field values are read
+ * from and written to the underlying columns.
+ */
+class ColumnarResultObject implements IResultObject
+{
+	private ColumnarRowStore store;
+	private int rowIndex;
+
+	/**
+	 * @param store
+	 * @param rowIndex
+	 */
+	ColumnarResultObject( ColumnarRowStore store, int rowIndex )
+	{
+		this.store = store;
+		this.rowIndex = rowIndex;
+	}
+
+	/**
+	 * Only used for reusable views in sorting.
+	 * 
+	 * @param rowIndex
+	 */
+	void setRowIndex( int rowIndex )
+	{
+		this.rowIndex = rowIndex;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IResultObject#getResultClass()
+	 */
+	public IResultClass getResultClass( )
+	{
+		return store.getResultClass( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IResultObject#getFieldValue(java.lang.String)
+	 */
+	public Object getFieldValue( String fieldName ) throws DataException
+	{
+		int fieldIndex = getResultClass( ).getFieldIndex( fieldName );
+
+		if ( fieldIndex < 1 )
+			throw new DataException( ResourceConstants.INVALID_FIELD_NAME,
+					fieldName );
+
+		return getFieldValue( fieldIndex );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IResultObject#getFieldValue(int)
+	 */
+	public Object getFieldValue( int fieldIndex ) throws DataException
+	{
+		return store.getValue( rowIndex, fieldIndex );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IResultObject#setCustomFieldValue(java.lang.String, java.lang.Object)
+	 */
+	public void setCustomFieldValue( String fieldName, Object value )
+			throws DataException
+	{
+		int idx = getResultClass( ).getFieldIndex( fieldName );
+		setCustomFieldValue( idx, value );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IResultObject#setCustomFieldValue(int, java.lang.Object)
+	 */
+	public void setCustomFieldValue( int fieldIndex, Object value )
+			throws DataException
+	{
+		IResultClass resultClass = getResultClass( );
+		if ( resultClass.isCustomField( fieldIndex ) )
+			store.setValue( rowIndex, fieldIndex, value );
+		else
+			throw new DataException( ResourceConstants.INVALID_CUSTOM_FIELD_INDEX,
+					Integer.valueOf( fieldIndex ) );
+
+		if ( value != null
+				&& resultClass instanceof ResultClass
+				&& resultClass.getFieldValueClass( fieldIndex )
+						.getName( )
+						.equals( AnyType.class.getName( ) ) )
+		{
+			( (ResultClass) resultClass ).getFieldMetaData( fieldIndex )
+					.setDataType( value.getClass( ) );
+		}
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString( )
+	{
+		int fieldCount = getResultClass( ).getFieldCount( );
+		StringBuffer buf = new StringBuffer( fieldCount * 10 );
+		for ( int i = 1; i <= fieldCount; i++ )
+		{
+			if ( i > 1 )
+				buf.append( ',' );
+			Object value = store.getValue( rowIndex, i );
+			buf.append( value == null ? "null" : value.toString( ) );
+		}
+		return buf.toString( );
+	}
+
+	/*
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	public boolean equals( Object ob )
+	{
+		if ( ob instanceof IResultObject == false )
+			return false;
+
+		IResultObject ob2 = (IResultObject) ob;
+
+		int fieldCount = this.getResultClass( ).getFieldCount( );
+		if ( fieldCount != ob2.getResultClass( ).getFieldCount( ) )
+			return false;
+
+		for ( int i = 0; i < fieldCount; i++ )
+		{
+			try
+			{
+				Object value1 = this.getFieldValue( i + 1 );
+				Object value2 = ob2.getFieldValue( i + 1 );
+				if ( CompareUtil.compare( value1, value2 ) != 0 )
+					return false;
+			}
+			catch ( DataException e )
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode( )
+	{
+		int result = 17;
+		int fieldCount = getResultClass( ).getFieldCount( );
+		for ( int i = 1; i <= fieldCount; i++ )
+		{
+			Object value = store.getValue( rowIndex, i );
+			result = 37 * result + ( value == null ? 0 : value.hashCode( ) );
+		}
+		return result;
+	}
+}
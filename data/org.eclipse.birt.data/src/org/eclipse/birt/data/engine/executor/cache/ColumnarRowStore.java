@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.Comparator;
+
+import org.eclipse.birt.core.data.DataType.AnyType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Column oriented storage of result objects. Every field is kept in its own
+ * <code>ColumnVector</code>, so that numbers and dates are not boxed and
+ * repeated strings are stored only once. Result objects are created only when
+ * a row is requested.
+ */
+public class ColumnarRowStore
+{
+	private IResultClass rsMeta;
+	private ColumnVector[] columns;
+	private int rowCount;
+
+	/**
+	 * @param rsMeta
+	 * @throws DataException
+	 */
+	public ColumnarRowStore( IResultClass rsMeta ) throws DataException
+	{
+		this.rsMeta = rsMeta;
+		this.columns = new ColumnVector[rsMeta.getFieldCount( )];
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			Class valueClass = rsMeta.getFieldValueClass( i + 1 );
+			if ( valueClass != null
+					&& valueClass.getName( ).equals( AnyType.class.getName( ) ) )
+				valueClass = null;
+			columns[i] = ColumnVector.newInstance( valueClass );
+		}
+	}
+
+	/**
+	 * Append a row. Fields beyond the field count of the result object are
+	 * regarded as null.
+	 *
+	 * @param resultObject
+	 * @throws DataException
+	 */
+	public void add( IResultObject resultObject ) throws DataException
+	{
+		int fieldCount = Math.min( columns.length,
+				resultObject.getResultClass( ).getFieldCount( ) );
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			Object value = i < fieldCount
+					? resultObject.getFieldValue( i + 1 ) : null;
+			if ( !columns[i].add( value ) )
+			{
+				inflate( i );
+				columns[i].add( value );
+			}
+		}
+		rowCount++;
+	}
+
+	/**
+	 * @return row count
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @return the number of fields kept by this store
+	 */
+	int getColumnCount( )
+	{
+		return columns.length;
+	}
+
+	/**
+	 * @return estimated memory size in bytes occupied by the stored rows
+	 */
+	public long getMemorySize( )
+	{
+		long result = SizeOfUtil.OBJECT_ARRAY_OVERHEAD
+				+ columns.length * (long) SizeOfUtil.POINTER_SIZE;
+		for ( int i = 0; i < columns.length; i++ )
+			result += columns[i].getMemorySize( );
+		return result;
+	}
+
+	/**
+	 * @param row
+	 *            0-based row index
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @return
+	 */
+	Object getValue( int row, int fieldIndex )
+	{
+		if ( fieldIndex > columns.length )
+			return null;
+		return columns[fieldIndex - 1].get( row );
+	}
+
+	/**
+	 * @param row
+	 *            0-based row index
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @param value
+	 */
+	void setValue( int row, int fieldIndex, Object value )
+	{
+		ensureColumnCount( fieldIndex );
+		if ( !columns[fieldIndex - 1].set( row, value ) )
+		{
+			inflate( fieldIndex - 1 );
+			columns[fieldIndex - 1].set( row, value );
+		}
+	}
+
+	/**
+	 * @return the meta data of stored rows
+	 */
+	IResultClass getResultClass( )
+	{
+		return rsMeta;
+	}
+
+	/**
+	 * @param rsMeta
+	 */
+	void setResultClass( IResultClass rsMeta )
+	{
+		this.rsMeta = rsMeta;
+		ensureColumnCount( rsMeta.getFieldCount( ) );
+	}
+
+	/**
+	 * @param row
+	 *            0-based row index
+	 * @return a view of the specified row
+	 */
+	public IResultObject getRow( int row )
+	{
+		return new ColumnarResultObject( this, row );
+	}
+
+	/**
+	 * Sort rows with the given comparator of result objects. The sort is
+	 * stable, which is the same as sorting an array of result objects.
+	 *
+	 * @param comparator
+	 */
+	public void sort( Comparator comparator )
+	{
+		if ( comparator == null || rowCount < 2 )
+			return;
+
+		int[] order = sortByGroups( comparator );
+		if ( order == null )
+		{
+			order = new int[rowCount];
+			for ( int i = 0; i < rowCount; i++ )
+				order[i] = i;
+			// two reusable row views, positioned on the compared rows
+			ColumnarResultObject left = new ColumnarResultObject( this, 0 );
+			ColumnarResultObject right = new ColumnarResultObject( this, 0 );
+			mergeSort( order.clone( ), order, 0, rowCount, comparator, left, right );
+		}
+
+		for ( int i = 0; i < columns.length; i++ )
+			columns[i].reorder( order );
+	}
+
+	/**
+	 * @param comparator
+	 * @return the sorted order of rows gathered into groups, or null if the
+	 *         rows can not be gathered by hashing
+	 */
+	private int[] sortByGroups( Comparator comparator )
+	{
+		GroupBucketSort bucketSort = GroupBucketSort.newInstance( comparator,
+				rowCount );
+		if ( bucketSort == null )
+			return null;
+		ColumnarResultObject row = new ColumnarResultObject( this, 0 );
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			row.setRowIndex( i );
+			if ( !bucketSort.add( row ) )
+				return null;
+		}
+		return bucketSort.getOrder( );
+	}
+
+	/**
+	 * Materialize all the rows as result objects, which is needed when the
+	 * rows are handed over to disk cache.
+	 *
+	 * @return
+	 * @throws DataException
+	 */
+	public IResultObject[] toResultObjects( ) throws DataException
+	{
+		IResultObject[] result = new IResultObject[rowCount];
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			Object[] fields = new Object[rsMeta.getFieldCount( )];
+			for ( int j = 0; j < fields.length; j++ )
+				fields[j] = getValue( i, j + 1 );
+			result[i] = new ResultObject( rsMeta, fields );
+		}
+		return result;
+	}
+
+	/**
+	 * Release the stored data.
+	 */
+	public void clear( )
+	{
+		columns = new ColumnVector[0];
+		rowCount = 0;
+	}
+
+	private void ensureColumnCount( int count )
+	{
+		if ( count <= columns.length )
+			return;
+		ColumnVector[] newColumns = new ColumnVector[count];
+		System.arraycopy( columns, 0, newColumns, 0, columns.length );
+		for ( int i = columns.length; i < count; i++ )
+		{
+			newColumns[i] = new ColumnVector.ObjectColumn( );
+			for ( int j = 0; j < rowCount; j++ )
+				newColumns[i].add( null );
+		}
+		columns = newColumns;
+	}
+
+	/**
+	 * Convert the specified column to an object column, which can hold any
+	 * value.
+	 *
+	 * @param index
+	 */
+	private void inflate( int index )
+	{
+		ColumnVector old = columns[index];
+		ColumnVector column = new ColumnVector.ObjectColumn( );
+		for ( int i = 0; i < old.size( ); i++ )
+			column.add( old.get( i ) );
+		columns[index] = column;
+	}
+
+	/**
+	 * Stable merge sort of row indexes, <code>src</code> and
+	 * <code>dest</code> hold the same content on entry.
+	 */
+	private static void mergeSort( int[] src, int[] dest, int low, int high,
+			Comparator comparator, ColumnarResultObject left,
+			ColumnarResultObject right )
+	{
+		int length = high - low;
+		if ( length < 7 )
+		{
+			// insertion sort on small ranges
+			for ( int i = low; i < high; i++ )
+			{
+				for ( int j = i; j > low
+						&& compare( dest[j - 1], dest[j], comparator, left, right ) > 0; j-- )
+				{
+					int temp = dest[j];
+					dest[j] = dest[j - 1];
+					dest[j - 1] = temp;
+				}
+			}
+			return;
+		}
+
+		int mid = ( low + high ) >>> 1;
+		mergeSort( dest, src, low, mid, comparator, left, right );
+		mergeSort( dest, src, mid, high, comparator, left, right );
+
+		if ( compare( src[mid - 1], src[mid], comparator, left, right ) <= 0 )
+		{
+			System.arraycopy( src, low, dest, low, length );
+			return;
+		}
+
+		for ( int i = low, p = low, q = mid; i < high; i++ )
+		{
+			if ( q >= high
+					|| ( p < mid && compare( src[p], src[q], comparator, left, right ) <= 0 ) )
+				dest[i] = src[p++];
+			else
+				dest[i] = src[q++];
+		}
+	}
+
+	private static int compare( int row1, int row2, Comparator comparator,
+			ColumnarResultObject left, ColumnarResultObject right )
+	{
+		left.setRowIndex( row1 );
+		right.setRowIndex( row2 );
+		return comparator.compare( left, right );
+	}
+}
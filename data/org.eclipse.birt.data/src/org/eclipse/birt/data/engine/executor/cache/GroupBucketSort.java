@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Sort rows by gathering them into groups in one pass. Rows are put into
+ * buckets by hashing their group key values, and only the distinct group keys
+ * are sorted. The rows of a bucket keep their arrival order, or are sorted by
+ * the remaining sort keys, so that the result is the same as a stable sort
+ * with the comparator.
+ *
+ * Rows are only gathered when the values of each group key are of one class
+ * whose equality is the same as the comparison. Otherwise <code>add</code>
+ * returns false, and the rows should be sorted with the comparator.
+ */
+public final class GroupBucketSort
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private IGroupKeyComparator comparator;
+	private int groupKeyCount;
+
+	// whether the rows of a bucket are sorted by the remaining keys
+	private boolean sortInBucket;
+
+	// the class of the values of each group key
+	private Class[] keyClasses;
+
+	private Map<GroupKey, Bucket> bucketMap;
+	private List<Bucket> buckets;
+
+	// position of the next row in the same bucket, -1 for the last one
+	private int[] next;
+
+	// sort keys of each row, only kept when sortInBucket is true
+	private Object[][] rowKeys;
+	private int rowCount;
+
+	/**
+	 * @param comparator
+	 * @param capacity
+	 */
+	private GroupBucketSort( IGroupKeyComparator comparator, int capacity )
+	{
+		this.comparator = comparator;
+		this.groupKeyCount = comparator.getGroupKeyCount( );
+		this.keyClasses = new Class[groupKeyCount];
+		this.bucketMap = new HashMap<GroupKey, Bucket>( );
+		this.buckets = new ArrayList<Bucket>( );
+		this.next = new int[Math.max( capacity, 1 )];
+	}
+
+	/**
+	 * @param comparator
+	 * @param capacity
+	 *            expected count of rows
+	 * @return the instance, or null if the rows of the comparator can not be
+	 *         gathered by hashing
+	 */
+	public static GroupBucketSort newInstance( Comparator comparator,
+			int capacity )
+	{
+		if ( !( comparator instanceof IGroupKeyComparator )
+				|| ( (IGroupKeyComparator) comparator ).getGroupKeyCount( ) <= 0 )
+			return null;
+		return new GroupBucketSort( (IGroupKeyComparator) comparator, capacity );
+	}
+
+	/**
+	 * Sort the first <code>length</code> rows of an array by gathering them
+	 * into groups.
+	 *
+	 * @param rows
+	 * @param length
+	 * @param comparator
+	 * @return false if the rows can not be gathered by hashing, and then the
+	 *         array is not changed
+	 */
+	public static boolean sort( Object[] rows, int length, Comparator comparator )
+	{
+		GroupBucketSort bucketSort = newInstance( comparator, length );
+		if ( bucketSort == null )
+			return false;
+		for ( int i = 0; i < length; i++ )
+		{
+			if ( !bucketSort.add( (IResultObject) rows[i] ) )
+				return false;
+		}
+
+		int[] order = bucketSort.getOrder( );
+		Object[] sorted = new Object[length];
+		for ( int i = 0; i < length; i++ )
+			sorted[i] = rows[order[i]];
+		System.arraycopy( sorted, 0, rows, 0, length );
+		return true;
+	}
+
+	/**
+	 * Put a row into the bucket of its group keys. The row is only used in
+	 * this call, so a reused row view can be passed.
+	 *
+	 * @param row
+	 * @return false if the group key values can not be hashed
+	 */
+	public boolean add( IResultObject row )
+	{
+		Object[] keys = comparator.getSortKeys( row );
+		if ( rowCount == 0 )
+		{
+			sortInBucket = keys.length > groupKeyCount;
+			if ( sortInBucket )
+				rowKeys = new Object[next.length][];
+		}
+
+		Object[] groupKeys = new Object[groupKeyCount];
+		for ( int i = 0; i < groupKeyCount; i++ )
+		{
+			Object value = keys[i];
+			if ( value == null )
+				continue;
+			if ( keyClasses[i] == null )
+			{
+				if ( !isHashable( value ) )
+					return false;
+				keyClasses[i] = value.getClass( );
+			}
+			else if ( keyClasses[i] != value.getClass( ) )
+			{
+				return false;
+			}
+			groupKeys[i] = normalize( value );
+		}
+
+		ensureCapacity( rowCount + 1 );
+		GroupKey groupKey = new GroupKey( groupKeys );
+		Bucket bucket = bucketMap.get( groupKey );
+		if ( bucket == null )
+		{
+			bucket = new Bucket( keys, rowCount );
+			bucketMap.put( groupKey, bucket );
+			buckets.add( bucket );
+		}
+		else
+		{
+			next[bucket.tail] = rowCount;
+			bucket.tail = rowCount;
+			bucket.size++;
+		}
+		next[rowCount] = -1;
+		if ( sortInBucket )
+			rowKeys[rowCount] = keys;
+		rowCount++;
+		return true;
+	}
+
+	/**
+	 * @return count of the added rows
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @return count of the distinct group keys
+	 */
+	public int getGroupCount( )
+	{
+		return buckets.size( );
+	}
+
+	/**
+	 * Sort the distinct group keys, and list the rows bucket by bucket.
+	 *
+	 * @return the positions of the added rows, in sorted order
+	 */
+	public int[] getOrder( )
+	{
+		Collections.sort( buckets, new Comparator<Bucket>( ) {
+
+			public int compare( Bucket bucket1, Bucket bucket2 )
+			{
+				return comparator.compareSortKeys( bucket1.keys, bucket2.keys );
+			}
+		} );
+
+		int[] order = new int[rowCount];
+		int pos = 0;
+		for ( int i = 0; i < buckets.size( ); i++ )
+		{
+			Bucket bucket = buckets.get( i );
+			int start = pos;
+			for ( int row = bucket.head; row >= 0; row = next[row] )
+				order[pos++] = row;
+			if ( sortInBucket && bucket.size > 1 )
+				sortBucket( order, start, pos );
+		}
+
+		bucketMap = null;
+		buckets = null;
+		next = null;
+		rowKeys = null;
+		return order;
+	}
+
+	/**
+	 * Sort the rows of one bucket by all the sort keys. The sort is stable.
+	 */
+	private void sortBucket( int[] order, int from, int to )
+	{
+		Integer[] rows = new Integer[to - from];
+		for ( int i = 0; i < rows.length; i++ )
+			rows[i] = Integer.valueOf( order[from + i] );
+		Arrays.sort( rows, new Comparator<Integer>( ) {
+
+			public int compare( Integer row1, Integer row2 )
+			{
+				return comparator.compareSortKeys( rowKeys[row1.intValue( )],
+						rowKeys[row2.intValue( )] );
+			}
+		} );
+		for ( int i = 0; i < rows.length; i++ )
+			order[from + i] = rows[i].intValue( );
+	}
+
+	private void ensureCapacity( int capacity )
+	{
+		if ( capacity <= next.length )
+			return;
+		int newLength = Math.max( capacity,
+				Math.max( INITIAL_CAPACITY, next.length * 2 ) );
+		int[] newNext = new int[newLength];
+		System.arraycopy( next, 0, newNext, 0, rowCount );
+		next = newNext;
+		if ( rowKeys != null )
+		{
+			Object[][] newRowKeys = new Object[newLength][];
+			System.arraycopy( rowKeys, 0, newRowKeys, 0, rowCount );
+			rowKeys = newRowKeys;
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return whether two values of the class of this value are equal exactly
+	 *         when they are compared as equal
+	 */
+	private static boolean isHashable( Object value )
+	{
+		return value instanceof String
+				|| value instanceof Integer
+				|| value instanceof Long
+				|| value instanceof Double
+				|| value instanceof Float
+				|| value instanceof Short
+				|| value instanceof Byte
+				|| value instanceof BigDecimal
+				|| value instanceof BigInteger
+				|| value instanceof Boolean
+				|| value instanceof Date;
+	}
+
+	/**
+	 * Decimals of different scales are compared as equal, so that they are
+	 * hashed without trailing zeros.
+	 */
+	private static Object normalize( Object value )
+	{
+		if ( value instanceof BigDecimal )
+		{
+			BigDecimal decimal = (BigDecimal) value;
+			return decimal.signum( ) == 0 ? BigDecimal.ZERO
+					: decimal.stripTrailingZeros( );
+		}
+		return value;
+	}
+
+	/**
+	 * The hashed group key values of a row.
+	 */
+	private static final class GroupKey
+	{
+		private Object[] values;
+		private int hashCode;
+
+		GroupKey( Object[] values )
+		{
+			this.values = values;
+			this.hashCode = Arrays.hashCode( values );
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( !( obj instanceof GroupKey ) )
+				return false;
+			GroupKey other = (GroupKey) obj;
+			return hashCode == other.hashCode
+					&& Arrays.equals( values, other.values );
+		}
+	}
+
+	/**
+	 * The rows of one group, linked by their positions.
+	 */
+	private static final class Bucket
+	{
+		// sort keys of the first row
+		Object[] keys;
+		int head;
+		int tail;
+		int size;
+
+		Bucket( Object[] keys, int row )
+		{
+			this.keys = keys;
+			this.head = row;
+			this.tail = row;
+			this.size = 1;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+/**
+ * A sort key comparator whose leading sort keys are group keys. Two rows are
+ * equal on these keys exactly when their key values are equal, so that the
+ * rows can be gathered into groups by hashing instead of comparing.
+ */
+public interface IGroupKeyComparator extends ISortKeyComparator
+{
+
+	/**
+	 * @return count of the leading sort keys which are group keys, 0 if the
+	 *         rows can not be gathered by hashing
+	 */
+	public int getGroupKeyCount( );
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * A holder of cached rows whose memory usage is accounted by
+ * <code>MemoryBudget</code>.
+ */
+public interface IMemoryConsumer
+{
+
+	/**
+	 * Move the rows held in memory to disk.
+	 * 
+	 * @return true if the memory has been released, false if this consumer
+	 *         can not be spilled now
+	 * @throws DataException
+	 */
+	public boolean spill( ) throws DataException;
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * A comparator of result objects which compares rows by their sort keys. The
+ * keys of a row can be fetched once in the calling thread, and then be
+ * compared any times in any thread.
+ */
+public interface ISortKeyComparator extends Comparator
+{
+
+	/**
+	 * Fetch the sort key values of a row. This method might evaluate
+	 * expressions, so that it is only called in the thread where the query is
+	 * executed.
+	 *
+	 * @param row
+	 * @return sort key values
+	 */
+	public Object[] getSortKeys( IResultObject row );
+
+	/**
+	 * Compare the sort key values of two rows. This method is thread safe.
+	 *
+	 * @param keys1
+	 * @param keys2
+	 * @return compared result
+	 */
+	public int compareSortKeys( Object[] keys1, Object[] keys2 );
+}
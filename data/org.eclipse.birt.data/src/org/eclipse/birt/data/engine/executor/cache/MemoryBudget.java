@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * Memory budget shared by all the caches of one data engine session. Every
+ * cache reports its measured memory usage, and when the total usage exceeds
+ * the limit the largest cache is asked to spill its rows to disk.
+ */
+public class MemoryBudget
+{
+	// the limit in bytes, 0 indicates no limit
+	private long memoryLimit;
+
+	private long usedMemorySize;
+	private long peakMemorySize;
+	private int spillCount;
+
+	private Map<IMemoryConsumer, Long> consumers = new IdentityHashMap<IMemoryConsumer, Long>( );
+
+	private static Logger logger = Logger.getLogger( MemoryBudget.class.getName( ) );
+
+	/**
+	 * @param memoryLimit
+	 *            the limit in bytes, 0 indicates no limit
+	 */
+	public MemoryBudget( long memoryLimit )
+	{
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @return the limit in bytes, 0 indicates no limit
+	 */
+	public synchronized long getMemoryLimit( )
+	{
+		return memoryLimit;
+	}
+
+	/**
+	 * @param memoryLimit
+	 *            the limit in bytes, 0 indicates no limit
+	 */
+	public synchronized void setMemoryLimit( long memoryLimit )
+	{
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @return the total measured memory size of all registered consumers
+	 */
+	public synchronized long getUsedMemorySize( )
+	{
+		return usedMemorySize;
+	}
+
+	/**
+	 * @return the highest total measured memory size since this budget was
+	 *         created
+	 */
+	public synchronized long getPeakMemorySize( )
+	{
+		return peakMemorySize;
+	}
+
+	/**
+	 * @return how many times consumers have been spilled by this budget
+	 */
+	public synchronized int getSpillCount( )
+	{
+		return spillCount;
+	}
+
+	/**
+	 * @param consumer
+	 * @return the measured memory size of the consumer
+	 */
+	public synchronized long getMemorySize( IMemoryConsumer consumer )
+	{
+		Long size = consumers.get( consumer );
+		return size == null ? 0 : size.longValue( );
+	}
+
+	/**
+	 * Report the current memory usage of a consumer, the consumer is
+	 * registered if it is not yet. When the total usage exceeds the limit,
+	 * other consumers which take more memory than this one are spilled
+	 * first.
+	 * 
+	 * @param consumer
+	 * @param memorySize
+	 * @return false if the limit is still exceeded and the reporting consumer
+	 *         is expected to release its memory
+	 * @throws DataException
+	 */
+	public synchronized boolean update( IMemoryConsumer consumer,
+			long memorySize ) throws DataException
+	{
+		Long old = consumers.put( consumer, Long.valueOf( memorySize ) );
+		usedMemorySize += memorySize - ( old == null ? 0 : old.longValue( ) );
+		if ( usedMemorySize > peakMemorySize )
+			peakMemorySize = usedMemorySize;
+
+		if ( memoryLimit <= 0 || usedMemorySize <= memoryLimit )
+			return true;
+
+		Set<IMemoryConsumer> refused = new HashSet<IMemoryConsumer>( );
+		while ( usedMemorySize > memoryLimit )
+		{
+			IMemoryConsumer largest = findLargest( refused );
+			if ( largest == null || largest == consumer )
+				return false;
+
+			logger.fine( "Memory budget of " + memoryLimit
+					+ " bytes is exceeded, spill the cache of "
+					+ consumers.get( largest ) + " bytes" );
+			if ( largest.spill( ) )
+			{
+				spillCount++;
+				remove( largest );
+			}
+			else
+			{
+				refused.add( largest );
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove a consumer, its memory is no longer accounted.
+	 * 
+	 * @param consumer
+	 */
+	public synchronized void remove( IMemoryConsumer consumer )
+	{
+		Long old = consumers.remove( consumer );
+		if ( old != null )
+			usedMemorySize -= old.longValue( );
+	}
+
+	private IMemoryConsumer findLargest( Set<IMemoryConsumer> excluded )
+	{
+		IMemoryConsumer largest = null;
+		long largestSize = -1;
+		Iterator<Map.Entry<IMemoryConsumer, Long>> it = consumers.entrySet( )
+				.iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<IMemoryConsumer, Long> entry = it.next( );
+			if ( excluded.contains( entry.getKey( ) ) )
+				continue;
+			if ( entry.getValue( ).longValue( ) > largestSize )
+			{
+				largest = entry.getKey( );
+				largestSize = entry.getValue( ).longValue( );
+			}
+		}
+		return largest;
+	}
+}
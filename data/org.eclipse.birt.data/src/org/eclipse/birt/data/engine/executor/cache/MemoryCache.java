@@ -55,10 +55,39 @@ public class MemoryCache implements ResultSetCache
 		this.rsMeta = rsMeta;
 		this.countOfResult = resultObjects.length;
 
-		if ( comparator != null )
+		if ( comparator != null
+				&& !GroupBucketSort.sort( this.resultObjects,
+						this.resultObjects.length,
+						comparator ) )
 			Arrays.sort( this.resultObjects, comparator );
 	}
 
+	/**
+	 * Constructor for sub classes which keep the rows in their own storage
+	 * and override <code>getResultObject</code>.
+	 * 
+	 * @param countOfResult
+	 * @param rsMeta
+	 */
+	protected MemoryCache( int countOfResult, IResultClass rsMeta )
+	{
+		this.rsMeta = rsMeta;
+		this.countOfResult = countOfResult;
+	}
+
+	/**
+	 * Return the row at the specified position.
+	 * 
+	 * @param index
+	 *            0-based row index
+	 * @return
+	 * @throws DataException
+	 */
+	protected IResultObject getResultObject( int index ) throws DataException
+	{
+		return resultObjects[index];
+	}
+
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
 	 */
@@ -93,7 +122,7 @@ public class MemoryCache implements ResultSetCache
 			if ( currResultIndex == countOfResult )
 				currResultObject = null;
 			else
-				currResultObject = resultObjects[currResultIndex];
+				currResultObject = getResultObject( currResultIndex );
 		}
 
 		return currResultObject != null;
@@ -122,7 +151,7 @@ public class MemoryCache implements ResultSetCache
 		if ( currResultIndex == -1 || currResultIndex == countOfResult )
 			currResultObject = null;
 		else
-			currResultObject = resultObjects[currResultIndex];
+			currResultObject = getResultObject( currResultIndex );
 	}
 
 	/**
@@ -184,23 +213,24 @@ public class MemoryCache implements ResultSetCache
 		try
 		{
 			// save data
-			int rowCount = this.resultObjects.length;
+			int rowCount = this.countOfResult;
 			int colCount = getColumnCount( this.rsMeta );
 
 			IOUtil.writeInt( dos, rowCount );
 			long offset = 4;
 			for ( int i = 0; i < rowCount; i++ )
 			{
+				IResultObject resultObject = getResultObject( i );
 				IOUtil.writeLong( rowLensStream, offset );
 				offset += ResultSetUtil.writeResultObject( dos,
-						resultObjects[i],
+						resultObject,
 						colCount,
 						resultSetNameSet, stringTable, index, i, version, saveInnerId );
 				if ( auxiliaryIndexCreators != null )
 				{
 					for ( IAuxiliaryIndexCreator creator : auxiliaryIndexCreators )
 					{
-						creator.save( resultObjects[i], i );
+						creator.save( resultObject, i );
 					}
 				}
 			}
@@ -242,7 +272,7 @@ public class MemoryCache implements ResultSetCache
 		try
 		{
 			// save data
-			int rowCount = originalRowCount + this.resultObjects.length;
+			int rowCount = originalRowCount + this.countOfResult;
 			int colCount = this.rsMeta.getFieldCount( );
 			
 			IOUtil.writeInt( outputStream, rowCount );
@@ -258,16 +288,17 @@ public class MemoryCache implements ResultSetCache
 				offset = ( ( RAOutputStream )outputStream ).length( );
 			for ( int i = 0; i < rowCount - originalRowCount; i++ )
 			{
+				IResultObject resultObject = getResultObject( i );
 				IOUtil.writeLong( rlos, offset );
 				offset += ResultSetUtil.writeResultObject( dos,
-						resultObjects[i],
+						resultObject,
 						colCount,
 						resultSetNameSet, stringTable, map, originalRowCount + i, version );
 				if ( auxiliaryIndexCreators != null )
 				{
 					for ( IAuxiliaryIndexCreator creator : auxiliaryIndexCreators )
 					{
-						creator.save( resultObjects[i], originalRowCount + i );
+						creator.save( resultObject, originalRowCount + i );
 					}
 				}
 			}
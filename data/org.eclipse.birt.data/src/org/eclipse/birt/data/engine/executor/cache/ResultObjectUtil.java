@@ -15,6 +15,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -100,6 +101,22 @@ public class ResultObjectUtil
 	{
 	}
 	
+	/**
+	 * @return the value classes of the columns
+	 */
+	public Class[] getFieldTypes( )
+	{
+		return typeArray;
+	}
+
+	/**
+	 * @return whether the session of this util has been stopped
+	 */
+	public boolean isStopped( )
+	{
+		return session != null && session.getStopSign( ).isStopped( );
+	}
+
 	/**
 	 * New a instance of ResultObject according to the parameter of object array
 	 * plus the metadata stored before.
@@ -171,6 +188,34 @@ public class ResultObjectUtil
 		return rowDatas;
 	}
 
+	/**
+	 * Skips the given count of objects without reading them.
+	 * 
+	 * @param bis
+	 *            input stream
+	 * @param length
+	 *            how many objects needs to be skipped
+	 * @throws IOException
+	 */
+	public void skipData( InputStream bis, int length ) throws IOException
+	{
+		for ( int i = 0; i < length; i++ )
+		{
+			long rowLen = IOUtil.readInt( bis );
+			while ( rowLen > 0 )
+			{
+				long skipped = bis.skip( rowLen );
+				if ( skipped <= 0 )
+				{
+					if ( bis.read( ) < 0 )
+						throw new EOFException( );
+					skipped = 1;
+				}
+				rowLen -= skipped;
+			}
+		}
+	}
+
 	public static Object readObject( DataInputStream dis, Class fieldType, ClassLoader classLoader, int version ) throws IOException, DataException
 	{
 		Object obj = null;
@@ -332,35 +377,7 @@ public class ResultObjectUtil
         // No Version control needed. Previous we write byte 1 & 0, which is
         // perfectly convert to char 1 & 0.
 
-        Object convertedObj = null;
-        // process null object
-        if ( fieldValue != null )
-        {
-            if ( fieldType.equals( Integer.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.INTEGER_TYPE );
-            }
-            else if ( fieldType.equals( Double.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.DOUBLE_TYPE );
-            }
-            else if ( fieldType.equals( BigDecimal.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.DECIMAL_TYPE );
-            }
-            else if ( Date.class.isAssignableFrom( fieldType ) )
-            {
-                convertedObj = convert( fieldValue, DataType.DATE_TYPE );
-            }
-            else if ( fieldType.equals( Boolean.class ) )
-            {
-                convertedObj = convert( fieldValue, DataType.BOOLEAN_TYPE );
-            }
-            else
-            {
-                convertedObj = fieldValue;
-            }
-        }
+        Object convertedObj = convertFieldValue( fieldValue, fieldType );
 
         char leadingChar = 0;
         if ( convertedObj == null )
@@ -458,6 +475,35 @@ public class ResultObjectUtil
 		}
 	}
 	
+	/**
+	 * Convert a field value to the data type of its column before it is
+	 * serialized.
+	 * 
+	 * @param fieldValue
+	 * @param fieldType
+	 * @return the converted value, null if the value is null
+	 * @throws DataException
+	 */
+	public static Object convertFieldValue( Object fieldValue, Class fieldType )
+			throws DataException
+	{
+		if ( fieldValue == null )
+			return null;
+
+		if ( fieldType.equals( Integer.class ) )
+			return convert( fieldValue, DataType.INTEGER_TYPE );
+		else if ( fieldType.equals( Double.class ) )
+			return convert( fieldValue, DataType.DOUBLE_TYPE );
+		else if ( fieldType.equals( BigDecimal.class ) )
+			return convert( fieldValue, DataType.DECIMAL_TYPE );
+		else if ( Date.class.isAssignableFrom( fieldType ) )
+			return convert( fieldValue, DataType.DATE_TYPE );
+		else if ( fieldType.equals( Boolean.class ) )
+			return convert( fieldValue, DataType.BOOLEAN_TYPE );
+		else
+			return fieldValue;
+	}
+
 	private static Object convert( Object o, int type ) throws DataException
 	{
 		try
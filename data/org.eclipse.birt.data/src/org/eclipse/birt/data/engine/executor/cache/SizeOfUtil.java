@@ -31,6 +31,8 @@ public class SizeOfUtil
 	private static int INTEGER_SIZE = 16;
 	private static int DOUBLE_SIZE = 16;
 	private static int BIGDECIMAL_SIZE = 200;
+	private static int BIGDECIMAL_BASE_SIZE = 32;
+	private static int BIGINTEGER_BASE_SIZE = 32;
 	private static int DATE_SIZE = 24;
 	private static int TIME_SIZE = 24;
 	private static int SQL_DATE_SIZE = 24;
@@ -43,10 +45,27 @@ public class SizeOfUtil
 	public static int OBJECT_OVERHEAD = 8;
 	public static int OBJECT_ARRAY_OVERHEAD = 12;
 	
+	/**
+	 * The values of sampled fields in the first SAMPLE_WARM_UP rows are all
+	 * measured, after that only one of every SAMPLE_INTERVAL rows is measured
+	 * and the average size of the measured values is used for the other rows.
+	 */
+	private static final int SAMPLE_WARM_UP = 100;
+	private static final int SAMPLE_INTERVAL = 16;
+
+	private static final int FIXED_SIZE = 0;
+	private static final int MEASURED_SIZE = 1;
+	private static final int SAMPLED_SIZE = 2;
+
 	// field count of result object
 	private int fieldCount = 0;
-	private boolean[] isfixedSize = null;
+	private int[] sizeKind = null;
 	private int[] fieldSize = null;
+
+	// measured size and count of values of sampled fields
+	private long[] sampledSize = null;
+	private int[] sampledCount = null;
+	private long rowCount = 0;
 	
 	static
 	{
@@ -66,6 +85,8 @@ public class SizeOfUtil
 					INTEGER_SIZE = 24;
 					DOUBLE_SIZE = 24;
 					BIGDECIMAL_SIZE = 216;
+					BIGDECIMAL_BASE_SIZE = 40;
+					BIGINTEGER_BASE_SIZE = 40;
 					DATE_SIZE = 32;
 					TIME_SIZE = 32;
 					SQL_DATE_SIZE = 32;
@@ -93,19 +114,28 @@ public class SizeOfUtil
 	public SizeOfUtil( IResultClass resultClass ) throws DataException
 	{
 		fieldCount = resultClass.getFieldCount( );
-		isfixedSize = new boolean[resultClass.getFieldCount( )];
-		fieldSize = new int[resultClass.getFieldCount( )];
+		sizeKind = new int[fieldCount];
+		fieldSize = new int[fieldCount];
+		sampledSize = new long[fieldCount];
+		sampledCount = new int[fieldCount];
 
-		for ( int i = 1; i <= resultClass.getFieldCount( ); i++ )
+		for ( int i = 1; i <= fieldCount; i++ )
 		{
-			if ( isFixedSizeClass( resultClass.getFieldValueClass( i ) ) )
+			Class valueClass = resultClass.getFieldValueClass( i );
+			if ( isFixedSizeClass( valueClass ) )
 			{
-				fieldSize[i - 1] = sizeOf( resultClass.getFieldValueClass( i ) );
-				isfixedSize[i - 1] = true;
+				fieldSize[i - 1] = sizeOf( valueClass );
+				sizeKind[i - 1] = FIXED_SIZE;
+			}
+			else if ( String.class.equals( valueClass )
+					|| byte[].class.equals( valueClass ) )
+			{
+				// measuring the length is cheap, always do it
+				sizeKind[i - 1] = MEASURED_SIZE;
 			}
 			else
 			{
-				isfixedSize[i - 1] = false;
+				sizeKind[i - 1] = SAMPLED_SIZE;
 			}
 		}
 	}
@@ -120,7 +150,6 @@ public class SizeOfUtil
 	{
 		return objectClass.equals( Integer.class )
 				|| objectClass.equals( Double.class )
-				|| objectClass.equals( BigDecimal.class )
 				|| objectClass.equals( Date.class )
 				|| objectClass.equals( java.sql.Date.class )
 				|| objectClass.equals( Time.class )
@@ -172,7 +201,10 @@ public class SizeOfUtil
 	}
 
 	/**
-	 * Compute the size of memory occupied by result object
+	 * Compute the size of memory occupied by result object. Fixed size fields
+	 * use constant sizes, strings and byte arrays are measured, other values
+	 * are measured on sampled rows and estimated by the average sampled size
+	 * on the others.
 	 * 
 	 * @param resultObject
 	 * @return
@@ -180,21 +212,37 @@ public class SizeOfUtil
 	 */
 	public int sizeOf( IResultObject resultObject ) throws DataException
 	{
+		boolean sampleRow = rowCount < SAMPLE_WARM_UP
+				|| rowCount % SAMPLE_INTERVAL == 0;
+		rowCount++;
+
 		int returnValue = 0;
 		for ( int i = 1; i <= fieldCount; i++ )
 		{
-			if ( !isfixedSize[i - 1] )
-			{
-				if ( resultObject.getFieldValue( i ) != null )
-					returnValue += sizeOf( resultObject.getFieldValue( i )
-							.getClass( ), resultObject.getFieldValue( i ) );
-			}
-			else
+			Object value = resultObject.getFieldValue( i );
+			if ( value == null )
+				continue;
+
+			switch ( sizeKind[i - 1] )
 			{
-				if ( resultObject.getFieldValue( i ) != null )
-				{
+				case FIXED_SIZE :
 					returnValue += fieldSize[i - 1];
-				}
+					break;
+				case MEASURED_SIZE :
+					returnValue += sizeOf( value.getClass( ), value );
+					break;
+				default :
+					if ( sampleRow || sampledCount[i - 1] == 0 )
+					{
+						int size = sizeOf( value.getClass( ), value );
+						sampledSize[i - 1] += size;
+						sampledCount[i - 1]++;
+						returnValue += size;
+					}
+					else
+					{
+						returnValue += (int) ( sampledSize[i - 1] / sampledCount[i - 1] );
+					}
 			}
 		}
 		int fieldsSize = POINTER_SIZE * 2 + 8 + ( 4 + fieldCount * 4 - 1 ) / 8 * 8;
@@ -277,10 +325,30 @@ public class SizeOfUtil
 			int byteLen = ( (byte[]) object ).length;
 			return POINTER_SIZE * 2 + 8 + ( 4 + byteLen - 1 ) / 8 * 8;
 		}
+		else if ( objectClass.equals( BigDecimal.class ) )
+		{
+			return sizeOf( (BigDecimal) object );
+		}
 		else
 		{
 			return sizeOf( objectClass );
 		}
 	}
 
+	/**
+	 * Return the size of memory occupied by a BigDecimal. Unscaled values of
+	 * at most 18 digits are kept in a long, larger ones in a BigInteger.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static int sizeOf( BigDecimal value )
+	{
+		if ( value.precision( ) <= 18 )
+			return BIGDECIMAL_BASE_SIZE;
+		int words = ( value.unscaledValue( ).bitLength( ) + 31 ) / 32;
+		return BIGDECIMAL_BASE_SIZE + BIGINTEGER_BASE_SIZE
+				+ getArraySize( words );
+	}
+
 }
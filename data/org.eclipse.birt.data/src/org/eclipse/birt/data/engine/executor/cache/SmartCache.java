@@ -18,6 +18,7 @@ import java.util.Map;
 
 import org.eclipse.birt.data.engine.api.IBinding;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.disk.DiskCache;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.impl.StringTable;
 import org.eclipse.birt.data.engine.impl.index.IAuxiliaryIndexCreator;
@@ -33,13 +34,17 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
  * can be accomondated in memory, then MemoryCache will be used. Otherwise
  * DiskCache will be used.
  */
-public class SmartCache implements ResultSetCache
+public class SmartCache implements ResultSetCache, IMemoryConsumer
 {
 	/** concrete implementation of ResultSetCache */
 	private ResultSetCache resultSetCache;
 	
 	// open flag
 	private boolean isOpen = true;
+	
+	private IResultClass rsMeta;
+	
+	private DataEngineSession session;
 			
 	/**
 	 * Retrieve data from ODA, used in normal query
@@ -58,6 +63,7 @@ public class SmartCache implements ResultSetCache
 		this.resultSetCache = smartCacheHelper.getResultSetCache( cacheRequest,
 				odaResultSet,
 				rsMeta );
+		registerMemory( smartCacheHelper, rsMeta, session );
 	}
 	
 	/**
@@ -74,6 +80,7 @@ public class SmartCache implements ResultSetCache
 		this.resultSetCache = smartCacheHelper.getResultSetCache( cacheRequest,
 				odiAdapter,
 				rsMeta );
+		registerMemory( smartCacheHelper, rsMeta, session );
 	}
 	
 	/**
@@ -98,6 +105,7 @@ public class SmartCache implements ResultSetCache
 				startIndex,
 				endIndex,
 				rsMeta );
+		registerMemory( smartCacheHelper, rsMeta, session );
 	}
 	
 	/**
@@ -114,12 +122,80 @@ public class SmartCache implements ResultSetCache
 		this.resultSetCache = smartCacheHelper.getResultSetCache( cacheRequest,
 				rowResultSet,
 				rsMeta );
+		registerMemory( smartCacheHelper, rsMeta, session );
+	}
+	
+	/**
+	 * Account the memory of rows cached in memory in the memory budget of
+	 * the session.
+	 * 
+	 * @param smartCacheHelper
+	 * @param rsMeta
+	 * @param session
+	 * @throws DataException
+	 */
+	private void registerMemory( SmartCacheHelper smartCacheHelper,
+			IResultClass rsMeta, DataEngineSession session )
+			throws DataException
+	{
+		this.rsMeta = rsMeta;
+		this.session = session;
+		if ( resultSetCache instanceof MemoryCache
+				&& smartCacheHelper.getMemorySize( ) > 0 )
+		{
+			if ( !session.getMemoryBudget( ).update( this,
+					smartCacheHelper.getMemorySize( ) ) )
+				spill( );
+		}
+	}
+	
+	/*
+	 * Move the rows of memory cache to a disk cache. The current position is
+	 * kept, while the result objects returned before are no longer backed by
+	 * this cache. The memory budget may ask for the spill on the thread of
+	 * another cache, so the cache is swapped while this cache is locked, as
+	 * every access to the cache is. The budget is never called with the lock
+	 * held, which would deadlock with a budget spilling this cache.
+	 * 
+	 * @see org.eclipse.birt.data.engine.executor.cache.IMemoryConsumer#spill()
+	 */
+	public boolean spill( ) throws DataException
+	{
+		synchronized ( this )
+		{
+			if ( !isOpen
+					|| !( resultSetCache instanceof MemoryCache )
+					|| resultSetCache.getCount( ) < 2 )
+				return false;
+
+			MemoryCache memoryCache = (MemoryCache) resultSetCache;
+			int count = memoryCache.getCount( );
+			int currentIndex = memoryCache.getCurrentIndex( );
+
+			// the rows are already sorted, so no comparator is needed
+			IResultObject[] resultObjects = new IResultObject[count - 1];
+			for ( int i = 0; i < resultObjects.length; i++ )
+				resultObjects[i] = memoryCache.getResultObject( i );
+			ResultSetCache diskCache = new DiskCache( resultObjects,
+					memoryCache.getResultObject( count - 1 ),
+					new EmptyRowResultSet( rsMeta ),
+					rsMeta,
+					null,
+					resultObjects.length,
+					-1,
+					session );
+			diskCache.moveTo( currentIndex );
+
+			resultSetCache = diskCache;
+		}
+		session.getMemoryBudget( ).remove( this );
+		return true;
 	}
 	
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCount()
 	 */
-	public int getCount( ) throws DataException
+	public synchronized int getCount( ) throws DataException
 	{
 		assert isOpen;
 		
@@ -129,7 +205,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
 	 */
-	public int getCurrentIndex( ) throws DataException
+	public synchronized int getCurrentIndex( ) throws DataException
 	{
 		assert isOpen;
 		
@@ -139,7 +215,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentResult()
 	 */
-	public IResultObject getCurrentResult( ) throws DataException
+	public synchronized IResultObject getCurrentResult( ) throws DataException
 	{
 		assert isOpen;
 		
@@ -149,7 +225,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#nextRow()
 	 */
-	public boolean next( ) throws DataException
+	public synchronized boolean next( ) throws DataException
 	{
 		assert isOpen;
 		
@@ -159,7 +235,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#fetch()
 	 */
-	public IResultObject fetch( ) throws DataException
+	public synchronized IResultObject fetch( ) throws DataException
 	{
 		assert isOpen;
 		
@@ -169,7 +245,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#moveTo(int)
 	 */
-	public void moveTo( int destIndex ) throws DataException
+	public synchronized void moveTo( int destIndex ) throws DataException
 	{
 		assert isOpen;
 		
@@ -179,7 +255,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#reset()
 	 */
-	public void reset( ) throws DataException
+	public synchronized void reset( ) throws DataException
 	{
 		assert isOpen;
 		
@@ -191,18 +267,23 @@ public class SmartCache implements ResultSetCache
 	 */
 	public void close( ) throws DataException
 	{
-		if ( isOpen == false )
-			return;
-		
-		resultSetCache.close( );
-		resultSetCache = null;
-		isOpen = false;
+		synchronized ( this )
+		{
+			if ( isOpen == false )
+				return;
+
+			resultSetCache.close( );
+			resultSetCache = null;
+			isOpen = false;
+		}
+		if ( session != null )
+			session.getMemoryBudget( ).remove( this );
 	}
 	
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#saveToStream(java.io.OutputStream)
 	 */
-	public void doSave( DataOutputStream outputStream,
+	public synchronized void doSave( DataOutputStream outputStream,
 			DataOutputStream rowLensStream,
 			Map<String, StringTable> stringTable,
 			Map<String, IIndexSerializer> index,
@@ -224,7 +305,7 @@ public class SmartCache implements ResultSetCache
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#saveToStream(java.io.OutputStream)
 	 */
-	public void incrementalUpdate( OutputStream outputStream,
+	public synchronized void incrementalUpdate( OutputStream outputStream,
 			OutputStream rowLensStream, int originalRowCount,
 			Map<String, StringTable> stringTable,
 			Map<String, IIndexSerializer> map, List<IBinding> cacheRequestMap,
@@ -246,8 +327,38 @@ public class SmartCache implements ResultSetCache
 	 * @param rsMeta
 	 * @throws DataException
 	 */
-	public void setResultClass( IResultClass rsMeta ) throws DataException
+	public synchronized void setResultClass( IResultClass rsMeta ) throws DataException
 	{
+		this.rsMeta = rsMeta;
 		this.resultSetCache.setResultClass( rsMeta );
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * A row result set without rows, which is used when the rows of memory
+	 * cache are moved to disk.
+	 */
+	private static class EmptyRowResultSet implements IRowResultSet
+	{
+		private IResultClass rsMeta;
+
+		EmptyRowResultSet( IResultClass rsMeta )
+		{
+			this.rsMeta = rsMeta;
+		}
+
+		public IResultClass getMetaData( )
+		{
+			return rsMeta;
+		}
+
+		public IResultObject next( )
+		{
+			return null;
+		}
+
+		public int getIndex( )
+		{
+			return -1;
+		}
+	}
+}
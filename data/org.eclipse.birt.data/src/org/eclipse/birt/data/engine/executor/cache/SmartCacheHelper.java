@@ -31,7 +31,7 @@ import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 /**
  * Help SmartCache to get the ResultSetCache, the real data cache.
  */
-class SmartCacheHelper
+class SmartCacheHelper implements IMemoryConsumer
 {
 	/** concrete implementation of ResultSetCache */
 	private ResultSetCache resultSetCache;
@@ -41,8 +41,14 @@ class SmartCacheHelper
 	// log instance
 	private static Logger logger = Logger.getLogger( SmartCache.class.getName( ) );
 
+	// how many rows are populated between two reports to memory budget
+	private static final int BUDGET_UPDATE_INTERVAL = 64;
+
 	private DataEngineSession session;
 	
+	/** measured memory size of the rows cached in memory */
+	private long memorySize;
+	
 	SmartCacheHelper( DataEngineSession session )
 	{
 		this.session = session;
@@ -307,9 +313,23 @@ class SmartCacheHelper
 		int maxRows = CacheUtil.getMaxRows( eventHandler == null ? null
 				: eventHandler.getAppContext( ) );
 		
+		// the memory budget shared by all the caches of the session
+		MemoryBudget memoryBudget = session.getMemoryBudget( );
+		long sessionCacheSize = CacheUtil.computeSessionMemoryBufferSize( eventHandler == null
+				? null : eventHandler.getAppContext( ) );
+		if ( sessionCacheSize > 0 )
+			memoryBudget.setMemoryLimit( sessionCacheSize );
+		boolean measureMemory = memoryCacheSize != 0
+				|| memoryBudget.getMemoryLimit( ) > 0;
+		boolean withinBudget = true;
+		
 		IResultObject odaObject;
 		IResultObject[] resultObjects;
 		List resultObjectsList = new ArrayList( );
+		// rows are kept column by column if columnar cache is enabled
+		ColumnarRowStore columnarStore = CacheUtil.enableColumnarMemoryCache( eventHandler == null
+				? null : eventHandler.getAppContext( ) )
+				? new ColumnarRowStore( rsMeta ) : null;
 
 		int dataCount = 0;
 		long usedMemorySize = 0;
@@ -317,42 +337,62 @@ class SmartCacheHelper
 		while ( !session.getStopSign( ).isStopped( )
 				&& ( odaObject = rowResultSet.next( ) ) != null )
 		{
-			if ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize )
+			if ( withinBudget
+					&& ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize ) )
 			{
 				dataCount++;
 				if( maxRows > 0 && dataCount > maxRows )
 				{
 					throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 				}
-				//the followed variable is for performance
-				int odaObjectFieldCount = odaObject.getResultClass( ).getFieldCount( );
-				int metaFieldCount = rsMeta.getFieldCount( );
-				if(odaObjectFieldCount < metaFieldCount)
+				if ( columnarStore != null )
 				{
-					//Populate Data according to the given meta data.
-					Object[] obs = new Object[metaFieldCount];
-					for ( int i = 1; i <= odaObjectFieldCount; i++ )
-					{
-						obs[i - 1] = odaObject.getFieldValue( i );
-					}
-					ResultObject temp = new ResultObject( rsMeta, obs );
-					resultObjectsList.add( temp );
-					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( temp );
+					columnarStore.add( odaObject );
+					if ( measureMemory )
+						usedMemorySize = columnarStore.getMemorySize( );
 				}
 				else
 				{
-					resultObjectsList.add( odaObject );
-					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( odaObject );
+					//the followed variable is for performance
+					int odaObjectFieldCount = odaObject.getResultClass( ).getFieldCount( );
+					int metaFieldCount = rsMeta.getFieldCount( );
+					if(odaObjectFieldCount < metaFieldCount)
+					{
+						//Populate Data according to the given meta data.
+						Object[] obs = new Object[metaFieldCount];
+						for ( int i = 1; i <= odaObjectFieldCount; i++ )
+						{
+							obs[i - 1] = odaObject.getFieldValue( i );
+						}
+						ResultObject temp = new ResultObject( rsMeta, obs );
+						resultObjectsList.add( temp );
+						if( measureMemory )
+							usedMemorySize += sizeOfUtil.sizeOf( temp );
+					}
+					else
+					{
+						resultObjectsList.add( odaObject );
+						if( measureMemory )
+							usedMemorySize += sizeOfUtil.sizeOf( odaObject );
+					}
 				}
-				
+				if ( memoryBudget.getMemoryLimit( ) > 0
+						&& dataCount % BUDGET_UPDATE_INTERVAL == 0 )
+					withinBudget = memoryBudget.update( this, usedMemorySize );
 			}
 			else
 			{
 				logger.fine( "DiskCache is used" );
 
-				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				if ( columnarStore != null )
+				{
+					resultObjects = columnarStore.toResultObjects( );
+					columnarStore.clear( );
+				}
+				else
+				{
+					resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				}
 				// the order is: resultObjects, odaObject, rowResultSet
 				resultSetCache = new DiskCache( resultObjects,
 						odaObject,
@@ -366,15 +406,28 @@ class SmartCacheHelper
 			}
 		}
 
+		memoryBudget.remove( this );
 		if ( resultSetCache == null )
 		{
-			logger.fine( "MemoryCache is used" );
+			memorySize = usedMemorySize;
+			if ( columnarStore != null )
+			{
+				logger.fine( "ColumnarMemoryCache is used" );
+
+				resultSetCache = new ColumnarMemoryCache( columnarStore,
+						rsMeta,
+						getComparator( sortSpec, eventHandler ) );
+			}
+			else
+			{
+				logger.fine( "MemoryCache is used" );
 
-			resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
 
-			resultSetCache = new MemoryCache( resultObjects,
-					rsMeta,
-					getComparator( sortSpec, eventHandler ) );
+				resultSetCache = new MemoryCache( resultObjects,
+						rsMeta,
+						getComparator( sortSpec, eventHandler ) );
+			}
 		}
 
 		odaObject = null;
@@ -386,6 +439,24 @@ class SmartCacheHelper
 		logger.fine( "Time consumed by cache is: " + consumedTime + " second" );
 	}
 	
+	/**
+	 * @return the measured memory size of the populated memory cache
+	 */
+	long getMemorySize( )
+	{
+		return memorySize;
+	}
+
+	/*
+	 * A cache in population decides by itself when to go to disk.
+	 * 
+	 * @see org.eclipse.birt.data.engine.executor.cache.IMemoryConsumer#spill()
+	 */
+	public boolean spill( )
+	{
+		return false;
+	}
+	
 	/**
 	 * @param sortSpec
 	 * @return Comparator based on specified sortSpec, null indicates there is
@@ -405,7 +476,8 @@ class SmartCacheHelper
 
 		final int[] sortAscending = sortSpec.getSortAscending();
 		final CompareHints[] comparators = sortSpec.getComparator( );
-		Comparator comparator = new Comparator( ) {
+		final int groupKeyCount = getGroupKeyCount( sortSpec, eventHandler );
+		Comparator comparator = new IGroupKeyComparator( ) {
 
 			/**
 			 * compares two row indexes, actually compares two rows pointed by
@@ -419,50 +491,138 @@ class SmartCacheHelper
 				// compare group keys first
 				for ( int i = 0; i < sortKeyIndexes.length; i++ )
 				{
-					int colIndex = sortKeyIndexes[i];
-					String colName = sortKeyColumns[i];
 					try
 					{
-						Object colObj1 = null;
-						Object colObj2 = null;
+						int result = ScriptEvalUtil.compare( getKey( row1, i ),
+								getKey( row2, i ),
+								comparators[i] );
+						if ( result != 0 )
+							return toSortOrder( i, result );
+					}
+					catch ( DataException e )
+					{
+						// Should never get here
+						// colIndex is always valid
+					}
+				}
+
+				// all equal, so return 0
+				return 0;
+			}
 
-						if ( eventHandler != null )
+			/*
+			 * @see org.eclipse.birt.data.engine.executor.cache.ISortKeyComparator#getSortKeys(org.eclipse.birt.data.engine.odi.IResultObject)
+			 */
+			public Object[] getSortKeys( IResultObject row )
+			{
+				Object[] keys = new Object[sortKeyIndexes.length];
+				for ( int i = 0; i < keys.length; i++ )
+				{
+					try
+					{
+						keys[i] = getKey( row, i );
+					}
+					catch ( DataException e )
+					{
+						// Should never get here
+						// colIndex is always valid
+					}
+				}
+				return keys;
+			}
+
+			/*
+			 * @see org.eclipse.birt.data.engine.executor.cache.ISortKeyComparator#compareSortKeys(java.lang.Object[], java.lang.Object[])
+			 */
+			public int compareSortKeys( Object[] keys1, Object[] keys2 )
+			{
+				for ( int i = 0; i < sortKeyIndexes.length; i++ )
+				{
+					try
+					{
+						int result;
+						if ( comparators[i] != null
+								&& comparators[i].getComparator( ) != null )
 						{
-							colObj1 = eventHandler.getValue( row1,
-									colIndex,
-									colName );
-							colObj2 = eventHandler.getValue( row2,
-									colIndex,
-									colName );
+							// collators are not always safe to share
+							synchronized ( comparators[i] )
+							{
+								result = ScriptEvalUtil.compare( keys1[i],
+										keys2[i],
+										comparators[i] );
+							}
 						}
 						else
 						{
-							colObj1 = row1.getFieldValue( colIndex );
-							colObj2 = row2.getFieldValue( colIndex );
+							result = ScriptEvalUtil.compare( keys1[i],
+									keys2[i],
+									comparators[i] );
 						}
-
-						int result = ScriptEvalUtil.compare( colObj1, colObj2, comparators[i] );
 						if ( result != 0 )
-						{
-							if( sortAscending[i] == SortSpec.SORT_DISABLE )
-							{
-								return 0;
-							}
-							return sortAscending[i] == SortSpec.SORT_ASC ? result : -result;
-						}
+							return toSortOrder( i, result );
 					}
 					catch ( DataException e )
 					{
 						// Should never get here
-						// colIndex is always valid
 					}
 				}
-
-				// all equal, so return 0
 				return 0;
 			}
+
+			/*
+			 * @see org.eclipse.birt.data.engine.executor.cache.IGroupKeyComparator#getGroupKeyCount()
+			 */
+			public int getGroupKeyCount( )
+			{
+				return groupKeyCount;
+			}
+
+			private Object getKey( IResultObject row, int i )
+					throws DataException
+			{
+				if ( eventHandler != null )
+					return eventHandler.getValue( row,
+							sortKeyIndexes[i],
+							sortKeyColumns[i] );
+				return row.getFieldValue( sortKeyIndexes[i] );
+			}
+
+			private int toSortOrder( int i, int result )
+			{
+				if ( sortAscending[i] == SortSpec.SORT_DISABLE )
+				{
+					return 0;
+				}
+				return sortAscending[i] == SortSpec.SORT_ASC ? result : -result;
+			}
 		};
 
 		return comparator;
 	}
+
+	/**
+	 * The leading group keys can be hashed if they are really sorted and
+	 * compared without collator.
+	 * 
+	 * @param sortSpec
+	 * @param eventHandler
+	 * @return count of the leading sort keys by which rows can be gathered
+	 */
+	private static int getGroupKeyCount( SortSpec sortSpec,
+			IEventHandler eventHandler )
+	{
+		if ( !CacheUtil.enableHashGrouping( eventHandler == null ? null
+				: eventHandler.getAppContext( ) ) )
+			return 0;
+
+		int[] sortAscending = sortSpec.getSortAscending( );
+		CompareHints[] comparators = sortSpec.getComparator( );
+		int count = 0;
+		while ( count < sortSpec.getGroupKeyCount( )
+				&& count < sortAscending.length
+				&& sortAscending[count] != SortSpec.SORT_DISABLE
+				&& ( comparators[count] == null || comparators[count].getComparator( ) == null ) )
+			count++;
+		return count;
+	}
 }
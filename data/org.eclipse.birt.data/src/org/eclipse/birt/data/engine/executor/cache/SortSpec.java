@@ -23,6 +23,7 @@ public class SortSpec
 	private String[] sortKeyColumns;
 	private int[] sortAscending;
 	private CompareHints[] comparator;
+	private int groupKeyCount;
 
     public static final int SORT_DISABLE = IGroupDefinition.NO_SORT; 
     public static final int SORT_ASC = IGroupDefinition.SORT_ASC; 
@@ -41,6 +42,21 @@ public class SortSpec
 		this.setComparator( comparator );
 	}
 	
+	/**
+	 * @param sortKeyIndexes
+	 * @param sortKeyColumns
+	 * @param sortAscending
+	 * @param comparator
+	 * @param groupKeyCount
+	 *            count of the leading sort keys which are group keys
+	 */
+	public SortSpec( int[] sortKeyIndexes, String[] sortKeyColumns,
+			int[] sortAscending, CompareHints[] comparator, int groupKeyCount )
+	{
+		this( sortKeyIndexes, sortKeyColumns, sortAscending, comparator );
+		this.groupKeyCount = groupKeyCount;
+	}
+	
 	/**
 	 * @return
 	 */
@@ -52,6 +68,15 @@ public class SortSpec
 			return 0;
 	}
 
+	/**
+	 * @return count of the leading sort keys which are group keys, the rows
+	 *         only need to be gathered by these keys
+	 */
+	int getGroupKeyCount( )
+	{
+		return groupKeyCount;
+	}
+
 	void setComparator( CompareHints[] comparator )
 	{
 		this.comparator = comparator;
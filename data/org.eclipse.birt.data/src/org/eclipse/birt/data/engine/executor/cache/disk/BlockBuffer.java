@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A reusable, unsynchronized byte buffer holding the data of one block of a
+ * spill file. The same instance is used for every block, so that encoding and
+ * decoding rows does not allocate memory per row.
+ */
+final class BlockBuffer
+{
+	private byte[] buf;
+	private int pos;
+	private int limit;
+
+	/**
+	 * @param capacity
+	 *            initial capacity
+	 */
+	BlockBuffer( int capacity )
+	{
+		this.buf = new byte[capacity];
+	}
+
+	/**
+	 * @return the backing array, which is valid until the buffer grows
+	 */
+	byte[] array( )
+	{
+		return buf;
+	}
+
+	/**
+	 * @return count of written bytes, or the read position when reading
+	 */
+	int position( )
+	{
+		return pos;
+	}
+
+	/**
+	 * Discard the written content.
+	 */
+	void reset( )
+	{
+		pos = 0;
+		limit = 0;
+	}
+
+	/**
+	 * Make sure the backing array can hold the specified count of bytes.
+	 *
+	 * @param capacity
+	 */
+	void ensureCapacity( int capacity )
+	{
+		if ( capacity > buf.length )
+		{
+			byte[] newBuf = new byte[Math.max( capacity, buf.length * 2 )];
+			System.arraycopy( buf, 0, newBuf, 0, pos );
+			buf = newBuf;
+		}
+	}
+
+	/**
+	 * Start reading the first <code>length</code> bytes of the backing array.
+	 *
+	 * @param length
+	 */
+	void flip( int length )
+	{
+		pos = 0;
+		limit = length;
+	}
+
+	// -------------------------write-----------------------
+
+	void writeByte( int value )
+	{
+		ensureCapacity( pos + 1 );
+		buf[pos++] = (byte) value;
+	}
+
+	void writeBytes( byte[] bytes, int offset, int length )
+	{
+		ensureCapacity( pos + length );
+		System.arraycopy( bytes, offset, buf, pos, length );
+		pos += length;
+	}
+
+	/**
+	 * Append zero bytes.
+	 *
+	 * @param length
+	 */
+	void writeZeros( int length )
+	{
+		ensureCapacity( pos + length );
+		for ( int i = 0; i < length; i++ )
+			buf[pos++] = 0;
+	}
+
+	/**
+	 * Set a bit of a bitmap written before.
+	 *
+	 * @param offset
+	 *            offset of the bitmap
+	 * @param index
+	 *            bit index
+	 */
+	void setBit( int offset, int index )
+	{
+		buf[offset + ( index >>> 3 )] |= 1 << ( index & 7 );
+	}
+
+	void writeLong( long value )
+	{
+		ensureCapacity( pos + 8 );
+		for ( int i = 56; i >= 0; i -= 8 )
+			buf[pos++] = (byte) ( value >>> i );
+	}
+
+	/**
+	 * Write an unsigned variable length value, 7 bits per byte.
+	 *
+	 * @param value
+	 */
+	void writeVarLong( long value )
+	{
+		ensureCapacity( pos + 10 );
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			buf[pos++] = (byte) ( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		buf[pos++] = (byte) value;
+	}
+
+	void writeVarInt( int value )
+	{
+		writeVarLong( value & 0xFFFFFFFFL );
+	}
+
+	// -------------------------read------------------------
+
+	int readByte( ) throws IOException
+	{
+		if ( pos >= limit )
+			throw new EOFException( );
+		return buf[pos++] & 0xFF;
+	}
+
+	void readBytes( byte[] bytes, int offset, int length ) throws IOException
+	{
+		if ( pos + length > limit )
+			throw new EOFException( );
+		System.arraycopy( buf, pos, bytes, offset, length );
+		pos += length;
+	}
+
+	void skip( int length ) throws IOException
+	{
+		if ( pos + length > limit )
+			throw new EOFException( );
+		pos += length;
+	}
+
+	/**
+	 * @param offset
+	 *            offset of a bitmap
+	 * @param index
+	 *            bit index
+	 * @return whether the bit is set
+	 */
+	boolean isBitSet( int offset, int index )
+	{
+		return ( buf[offset + ( index >>> 3 )] & ( 1 << ( index & 7 ) ) ) != 0;
+	}
+
+	long readLong( ) throws IOException
+	{
+		if ( pos + 8 > limit )
+			throw new EOFException( );
+		long value = 0;
+		for ( int i = 0; i < 8; i++ )
+			value = ( value << 8 ) | ( buf[pos++] & 0xFF );
+		return value;
+	}
+
+	long readVarLong( ) throws IOException
+	{
+		long value = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			if ( pos >= limit )
+				throw new EOFException( );
+			b = buf[pos++];
+			value |= (long) ( b & 0x7F ) << shift;
+			shift += 7;
+		} while ( b < 0 );
+		return value;
+	}
+
+	int readVarInt( ) throws IOException
+	{
+		return (int) readVarLong( );
+	}
+
+	/**
+	 * @return an output stream appending to this buffer
+	 */
+	OutputStream asOutputStream( )
+	{
+		return new OutputStream( ) {
+
+			public void write( int b )
+			{
+				writeByte( b );
+			}
+
+			public void write( byte[] b, int off, int len )
+			{
+				writeBytes( b, off, len );
+			}
+		};
+	}
+
+	/**
+	 * @return an input stream reading from the current position of this
+	 *         buffer
+	 */
+	InputStream asInputStream( )
+	{
+		return new InputStream( ) {
+
+			public int read( )
+			{
+				if ( pos >= limit )
+					return -1;
+				return buf[pos++] & 0xFF;
+			}
+
+			public int read( byte[] b, int off, int len )
+			{
+				if ( len == 0 )
+					return 0;
+				if ( pos >= limit )
+					return -1;
+				int count = Math.min( len, limit - pos );
+				System.arraycopy( buf, pos, b, off, count );
+				pos += count;
+				return count;
+			}
+		};
+	}
+}
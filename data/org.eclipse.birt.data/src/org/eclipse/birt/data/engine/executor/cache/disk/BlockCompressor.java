@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 block compressor using the sequence layout of the LZ4 block
+ * format: a token of literal length and match length, the literals, a two
+ * bytes little endian offset and the extra match length. It trades ratio for
+ * speed, which suits temporary files that are read only once or twice.
+ */
+final class BlockCompressor
+{
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_FIND_LIMIT = 12;
+	private static final int MAX_DISTANCE = 65535;
+	private static final int HASH_LOG = 12;
+	private static final int SKIP_TRIGGER = 6;
+
+	// hash table of recent positions, reused between blocks
+	private final int[] hashTable = new int[1 << HASH_LOG];
+
+	/**
+	 * Compress a block.
+	 *
+	 * @param src
+	 * @param srcLength
+	 * @param dest
+	 * @param destLimit
+	 *            max length of the compressed data
+	 * @return the compressed length, or -1 if the compressed data is longer
+	 *         than <code>destLimit</code>
+	 */
+	int compress( byte[] src, int srcLength, byte[] dest, int destLimit )
+	{
+		Arrays.fill( hashTable, -1 );
+		int anchor = 0;
+		int dp = 0;
+
+		if ( srcLength >= MATCH_FIND_LIMIT + 1 )
+		{
+			int matchFindLimit = srcLength - MATCH_FIND_LIMIT;
+			int matchLimit = srcLength - LAST_LITERALS;
+			int sp = 1;
+			while ( sp < matchFindLimit )
+			{
+				int sequence = readInt( src, sp );
+				int hash = ( sequence * -1640531535 ) >>> ( 32 - HASH_LOG );
+				int ref = hashTable[hash];
+				hashTable[hash] = sp;
+				if ( ref < 0
+						|| sp - ref > MAX_DISTANCE
+						|| readInt( src, ref ) != sequence )
+				{
+					// skip faster through data which does not compress
+					sp += 1 + ( ( sp - anchor ) >>> SKIP_TRIGGER );
+					continue;
+				}
+
+				// extend the match backwards and forwards
+				while ( sp > anchor && ref > 0 && src[sp - 1] == src[ref - 1] )
+				{
+					sp--;
+					ref--;
+				}
+				int matchLength = MIN_MATCH;
+				while ( sp + matchLength < matchLimit
+						&& src[sp + matchLength] == src[ref + matchLength] )
+					matchLength++;
+
+				dp = writeSequence( src,
+						anchor,
+						sp - anchor,
+						sp - ref,
+						matchLength,
+						dest,
+						dp,
+						destLimit );
+				if ( dp < 0 )
+					return -1;
+				sp += matchLength;
+				anchor = sp;
+			}
+		}
+
+		return writeSequence( src,
+				anchor,
+				srcLength - anchor,
+				0,
+				0,
+				dest,
+				dp,
+				destLimit );
+	}
+
+	/**
+	 * Decompress a block.
+	 *
+	 * @param src
+	 * @param srcLength
+	 * @param dest
+	 * @param destLength
+	 *            the length of uncompressed data
+	 * @throws IOException
+	 *             if the data is corrupted
+	 */
+	static void decompress( byte[] src, int srcLength, byte[] dest,
+			int destLength ) throws IOException
+	{
+		int sp = 0;
+		int dp = 0;
+		try
+		{
+			while ( sp < srcLength )
+			{
+				int token = src[sp++] & 0xFF;
+
+				int literalLength = token >>> 4;
+				if ( literalLength == 15 )
+				{
+					int b;
+					do
+					{
+						b = src[sp++] & 0xFF;
+						literalLength += b;
+					} while ( b == 255 );
+				}
+				System.arraycopy( src, sp, dest, dp, literalLength );
+				sp += literalLength;
+				dp += literalLength;
+				if ( sp >= srcLength )
+					break;
+
+				int offset = ( src[sp++] & 0xFF ) | ( ( src[sp++] & 0xFF ) << 8 );
+				int matchLength = token & 0x0F;
+				if ( matchLength == 15 )
+				{
+					int b;
+					do
+					{
+						b = src[sp++] & 0xFF;
+						matchLength += b;
+					} while ( b == 255 );
+				}
+				matchLength += MIN_MATCH;
+
+				int ref = dp - offset;
+				if ( offset == 0 || ref < 0 || dp + matchLength > destLength )
+					throw new IOException( "Corrupted block data" );
+				if ( offset >= matchLength )
+				{
+					System.arraycopy( dest, ref, dest, dp, matchLength );
+					dp += matchLength;
+				}
+				else
+				{
+					// overlapped copy repeats the referenced bytes
+					for ( int i = 0; i < matchLength; i++ )
+						dest[dp++] = dest[ref++];
+				}
+			}
+		}
+		catch ( ArrayIndexOutOfBoundsException e )
+		{
+			throw new IOException( "Corrupted block data" );
+		}
+		if ( dp != destLength )
+			throw new IOException( "Corrupted block data" );
+	}
+
+	/**
+	 * Write one sequence, a sequence without match is the last one.
+	 *
+	 * @return the new position in dest, or -1 if dest is too small
+	 */
+	private static int writeSequence( byte[] src, int literalOffset,
+			int literalLength, int offset, int matchLength, byte[] dest,
+			int dp, int destLimit )
+	{
+		if ( dp + literalLength + literalLength / 255 + matchLength / 255 + 8 > destLimit )
+			return -1;
+
+		int tokenPos = dp++;
+		int token;
+		if ( literalLength >= 15 )
+		{
+			token = 15 << 4;
+			dp = writeLength( literalLength - 15, dest, dp );
+		}
+		else
+		{
+			token = literalLength << 4;
+		}
+		System.arraycopy( src, literalOffset, dest, dp, literalLength );
+		dp += literalLength;
+
+		if ( matchLength > 0 )
+		{
+			dest[dp++] = (byte) offset;
+			dest[dp++] = (byte) ( offset >>> 8 );
+			int length = matchLength - MIN_MATCH;
+			if ( length >= 15 )
+			{
+				token |= 15;
+				dp = writeLength( length - 15, dest, dp );
+			}
+			else
+			{
+				token |= length;
+			}
+		}
+		dest[tokenPos] = (byte) token;
+		return dp;
+	}
+
+	private static int writeLength( int length, byte[] dest, int dp )
+	{
+		while ( length >= 255 )
+		{
+			dest[dp++] = (byte) 255;
+			length -= 255;
+		}
+		dest[dp++] = (byte) length;
+		return dp;
+	}
+
+	private static int readInt( byte[] buf, int pos )
+	{
+		return ( buf[pos] & 0xFF )
+				| ( ( buf[pos + 1] & 0xFF ) << 8 )
+				| ( ( buf[pos + 2] & 0xFF ) << 16 )
+				| ( ( buf[pos + 3] & 0xFF ) << 24 );
+	}
+}
@@ -34,6 +34,7 @@ class DataFileReader
 	private BufferedInputStream bis;
 
 	private ResultObjectUtil resultObjectUtil;
+	private RowBlockDecoder decoder;
 	
 	/**
 	 * A util method to new instance of DataFileReader
@@ -98,10 +99,11 @@ class DataFileReader
 				// since file will always exist
 			}
 			bis = new BufferedInputStream( fis );
+			decoder = new RowBlockDecoder( bis, resultObjectUtil, null );
 			isOpen = true;
 		}
 
-		return resultObjectUtil.readData( bis, null, length );
+		return decoder.read( length );
 	}
 
 	/**
@@ -115,6 +117,7 @@ class DataFileReader
 		{
 			try
 			{
+				decoder = null;
 				bis.close( );
 				fis.close( );
 				isOpen = false;
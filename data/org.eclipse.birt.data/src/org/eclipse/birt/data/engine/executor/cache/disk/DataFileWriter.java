@@ -34,6 +34,7 @@ class DataFileWriter
 	private BufferedOutputStream bos;
 
 	private ResultObjectUtil resultObjectUtil;
+	private RowBlockEncoder encoder;
 	
 	/**
 	 * A util method to new instance of DataFileWriter
@@ -86,6 +87,22 @@ class DataFileWriter
 	 * @throws DataException 
 	 */
 	void write( IResultObject[] resultObjects, int count ) throws IOException, DataException
+	{
+		write( resultObjects, 0, count );
+	}
+
+	/**
+	 * Write the specified length of objects starting from the given index of
+	 * the array.
+	 * 
+	 * @param resultObjects
+	 * @param from
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void write( IResultObject[] resultObjects, int from, int count )
+			throws IOException, DataException
 	{
 		if ( isOpen == false )
 		{
@@ -99,10 +116,11 @@ class DataFileWriter
 				// since file will always exist
 			}
 			bos = new BufferedOutputStream( fos );
+			encoder = new RowBlockEncoder( bos, resultObjectUtil );
 			isOpen = true;
 		}
 
-		resultObjectUtil.writeData( bos, resultObjects, count );
+		encoder.write( resultObjects, from, count );
 	}
 
 	/**
@@ -116,6 +134,8 @@ class DataFileWriter
 		{
 			try
 			{
+				encoder.flush( );
+				encoder = null;
 				bos.close( );
 				fos.close( );
 				isOpen = false;
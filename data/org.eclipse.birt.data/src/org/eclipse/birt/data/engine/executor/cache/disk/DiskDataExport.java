@@ -47,7 +47,10 @@ abstract class DiskDataExport
 	{
 		DiskDataExport dbExport;
 		if ( comparator != null )
-			dbExport = new DiskSortExport2( infoMap, comparator, resultObjectUtil );
+			dbExport = new DiskSortExport2( infoMap,
+					comparator,
+					resultObjectUtil,
+					getSortParallelism( session ) );
 		else
 			dbExport = new DiskDirectExport( infoMap, resultObjectUtil );
 
@@ -56,6 +59,18 @@ abstract class DiskDataExport
 		return dbExport;
 	}
 	
+	/**
+	 * @param session
+	 * @return count of threads used in sorting, which is configured in the
+	 *         data engine context
+	 */
+	private static int getSortParallelism( DataEngineSession session )
+	{
+		if ( session == null || session.getEngineContext( ) == null )
+			return 1;
+		return session.getEngineContext( ).getSortParallelism( );
+	}
+	
 	/**
 	 * Export data which is stored in the resultObjects array to disk, which is
 	 * the first step of export.
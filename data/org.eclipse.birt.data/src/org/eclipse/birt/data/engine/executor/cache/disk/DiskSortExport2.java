@@ -16,6 +16,8 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
@@ -47,12 +49,37 @@ class DiskSortExport2 extends DiskDataExport
 
 	// the goal file
 	private IRowIterator goalRowIterator = null;
+	
+	// the background threads of parallel sort, null if sorting is done in
+	// the calling thread
+	private SortTaskExecutor executor;
+	
+	// the run which is being written in background
+	private Future<Object> pendingWrite;
 
 	/**
 	 * @param dataProvider
 	 */
 	DiskSortExport2( Map infoMap, Comparator comparator,
 			ResultObjectUtil resultObjectUtil )
+	{
+		this( infoMap, comparator, resultObjectUtil, 1 );
+	}
+	
+	/**
+	 * In parallel sort, the rows of a run are sorted by several threads, and
+	 * then written to file in background while the rows of the next run are
+	 * fetched. To keep the memory usage, a run has half of the rows of a unit
+	 * except the first one.
+	 * 
+	 * @param infoMap
+	 * @param comparator
+	 * @param resultObjectUtil
+	 * @param parallelism
+	 *            count of threads used in sorting
+	 */
+	DiskSortExport2( Map infoMap, Comparator comparator,
+			ResultObjectUtil resultObjectUtil, int parallelism )
 	{
 		dataCountOfUnit = Integer.parseInt( (String) infoMap.get( "dataCountOfUnit" ) );
 
@@ -63,7 +90,9 @@ class DiskSortExport2 extends DiskDataExport
 					+ ", and then merge sort on file can not be done" );
 		}
 
-		rowBuffer = new IResultObject[dataCountOfUnit];
+		executor = SortTaskExecutor.newInstance( parallelism );
+		rowBuffer = new IResultObject[executor == null ? dataCountOfUnit
+				: getParallelRunSize( )];
 
 		tempFileUtil = new MergeTempFileUtil( (String) ( infoMap.get( "tempDir" ) ),
 				resultObjectUtil );
@@ -78,9 +107,15 @@ class DiskSortExport2 extends DiskDataExport
 	 * @see org.eclipse.birt.data.engine.executor.resultset.DataBaseExport#exportStartDataToDisk(org.eclipse.birt.data.engine.executor.ResultObject[])
 	 */
 	public void exportStartDataToDisk( IResultObject[] resultObjects )
-			throws IOException
+			throws IOException, DataException
 	{
 		dataCountOfTotal = resultObjects.length;
+		if ( executor != null )
+		{
+			writeRun( resultObjects, resultObjects.length, 0 );
+			inMemoryPos = -1;
+			return;
+		}
 		System.arraycopy( resultObjects, 0, rowBuffer, 0, resultObjects.length );
 		inMemoryPos = this.dataCountOfUnit - 1;
 	}
@@ -101,15 +136,17 @@ class DiskSortExport2 extends DiskDataExport
 				dataCountOfUnit,
 				maxRows );
 			dataCountOfTotal += dataCountOfRest;
+			waitForPendingWrite( );
 
 			MergeSortImpl mergeSortImpl = new MergeSortImpl( this.dataCountOfUnit,
 				this.mergeSortUtil,
 				this.tempFileUtil,
-				this.currRowFiles, session );
+				this.currRowFiles, session, executor );
 			this.goalRowIterator = mergeSortImpl.mergeSortOnUnits( );
 		}
 		catch( IOException ie )
 		{
+			stopPendingWrite( );
 			for( int i = 0; i < currRowFiles.size( ); i++ )
 			{
 				( ( RowFile )currRowFiles.get( i ) ).close( );
@@ -164,6 +201,18 @@ class DiskSortExport2 extends DiskDataExport
 	 */
 	private void addNewRow( IResultObject resultObject ) throws IOException, DataException
 	{
+		if ( executor != null )
+		{
+			if ( inMemoryPos == rowBuffer.length - 1 )
+			{
+				writeRun( rowBuffer, rowBuffer.length, 0 );
+				rowBuffer = new IResultObject[rowBuffer.length];
+				inMemoryPos = -1;
+			}
+			rowBuffer[++inMemoryPos] = resultObject;
+			return;
+		}
+		
 		if ( inMemoryPos == dataCountOfUnit - 1 )
 		{
 			prepareNewTempRowFile( 0 );
@@ -183,6 +232,17 @@ class DiskSortExport2 extends DiskDataExport
 	 */
 	private void processLastUnit( ) throws IOException, DataException
 	{
+		if ( executor != null )
+		{
+			if ( inMemoryPos >= 0 )
+				writeRun( rowBuffer,
+						inMemoryPos + 1,
+						Math.max( 0, dataCountOfUnit - currRowFiles.size( ) ) );
+			rowBuffer = null;
+			inMemoryPos = -1;
+			return;
+		}
+		
 		// Now all the rest rows exist in memory.
 		rowBuffer = interchange( rowBuffer, inMemoryPos );
 		mergeSortUtil.sortSelf( rowBuffer );
@@ -198,6 +258,75 @@ class DiskSortExport2 extends DiskDataExport
 		getCurrTempFile( currRowFiles ).endWrite( );
 	}
 
+	/**
+	 * @return count of rows of the runs after the first one in parallel sort
+	 */
+	private int getParallelRunSize( )
+	{
+		return Math.max( 2, dataCountOfUnit / 2 );
+	}
+	
+	/**
+	 * Sort the rows of a run in parallel and write them to a new temporary
+	 * file in background. The writing of the previous run is waited for, so
+	 * that at most one run is being written.
+	 * 
+	 * @param rows
+	 * @param count
+	 * @param cacheSize
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeRun( final IResultObject[] rows, final int count,
+			int cacheSize ) throws IOException, DataException
+	{
+		mergeSortUtil.sortSelf( rows, count, executor );
+		waitForPendingWrite( );
+		
+		// the file is created in the calling thread, where it is registered to
+		// be closed with the data engine
+		final RowFile rowFile = tempFileUtil.newTempFile( cacheSize );
+		currRowFiles.add( rowFile );
+		pendingWrite = executor.submit( new Callable<Object>( ) {
+
+			public Object call( ) throws IOException, DataException
+			{
+				rowFile.writeRows( rows, count );
+				rowFile.endWrite( );
+				return null;
+			}
+		} );
+	}
+	
+	/**
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void waitForPendingWrite( ) throws IOException, DataException
+	{
+		if ( pendingWrite != null )
+		{
+			Future<Object> future = pendingWrite;
+			pendingWrite = null;
+			SortTaskExecutor.waitFor( future );
+		}
+	}
+	
+	/**
+	 * Wait for the background writing to stop when an error happens.
+	 */
+	private void stopPendingWrite( )
+	{
+		try
+		{
+			waitForPendingWrite( );
+		}
+		catch ( Exception e )
+		{
+			// the first exception is thrown
+		}
+	}
+	
 	/**
 	 * To switch the place of rows in array by a postion.
 	 * 
@@ -272,6 +401,12 @@ class DiskSortExport2 extends DiskDataExport
 	 */
 	public void close( )
 	{
+		stopPendingWrite( );
+		if ( executor != null )
+		{
+			executor.shutdown( );
+			executor = null;
+		}
 		tempFileUtil.clearTempDir( );
 	}
 	
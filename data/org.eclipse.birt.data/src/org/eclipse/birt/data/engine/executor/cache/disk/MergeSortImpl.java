@@ -13,6 +13,8 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
@@ -33,7 +35,18 @@ class MergeSortImpl
 	// this value, max.
 	private final static int maxOpenFile = 500;
 	
+	// The count of merged rows which are written to file at one time.
+	private final static int writeBatchSize = 1024;
+	
+	// Files are read ahead only when this count of rows can be read at one
+	// time without exceeding the memory of one unit.
+	private final static int minReadAheadSize = 16;
+	
 	private DataEngineSession session;
+	
+	// the background threads, null if merging is done in the calling thread
+	private SortTaskExecutor executor;
+	
 	/**
 	 * @param dataCountOfUnit
 	 * @param mergeSortUtil
@@ -42,12 +55,30 @@ class MergeSortImpl
 	 */
 	MergeSortImpl( int dataCountOfUnit, MergeSortUtil mergeSortUtil,
 			MergeTempFileUtil tempFileUtil, List tempRowFiles, DataEngineSession session )
+	{
+		this( dataCountOfUnit, mergeSortUtil, tempFileUtil, tempRowFiles, session, null );
+	}
+	
+	/**
+	 * @param dataCountOfUnit
+	 * @param mergeSortUtil
+	 * @param tempFileUtil
+	 * @param tempRowFiles
+	 * @param session
+	 * @param executor
+	 *            the threads which read and write files in background, null
+	 *            if all the work is done in the calling thread
+	 */
+	MergeSortImpl( int dataCountOfUnit, MergeSortUtil mergeSortUtil,
+			MergeTempFileUtil tempFileUtil, List tempRowFiles,
+			DataEngineSession session, SortTaskExecutor executor )
 	{
 		this.dataCountOfUnit = dataCountOfUnit;
 		this.mergeSortUtil = mergeSortUtil;
 		this.tempFileUtil = tempFileUtil;
 		this.tempRowFiles = tempRowFiles;
 		this.session = session;
+		this.executor = executor;
 	}
 	
 	/**
@@ -70,9 +101,9 @@ class MergeSortImpl
 			granularity = getMergeGranularity( );
 			if ( granularity == tempRowFiles.size( ) )
 			{
-				goalFile = new MergeSortRowFiles( getSubList( tempRowFiles,
+				goalFile = new MergeSortRowFiles( readAhead( getSubList( tempRowFiles,
 						0,
-						tempRowFiles.size( ) - 1 ), mergeSortUtil );
+						tempRowFiles.size( ) - 1 ) ), mergeSortUtil );
 				tempRowFiles.clear( );
 				finish = true;
 			}
@@ -146,26 +177,116 @@ class MergeSortImpl
 	}
 
 	/**
-	 * merge rows in multi files to one file.
+	 * When there are background threads, every file is wrapped to be read
+	 * ahead in background.
+	 * 
+	 * @param rowFiles
+	 * @return iterators on the files
+	 */
+	private IRowIterator[] readAhead( RowFile[] rowFiles )
+	{
+		if ( executor == null
+				|| dataCountOfUnit / ( 2 * rowFiles.length ) < minReadAheadSize )
+			return rowFiles;
+		
+		// the objects read ahead of all files take at most one unit of memory
+		int batchSize = dataCountOfUnit / ( 2 * rowFiles.length );
+		IRowIterator[] rowIterators = new IRowIterator[rowFiles.length];
+		for ( int i = 0; i < rowFiles.length; i++ )
+			rowIterators[i] = new ReadAheadRowIterator( rowFiles[i],
+					executor,
+					batchSize );
+		return rowIterators;
+	}
+
+	/**
+	 * merge rows in multi files to one file. The merged rows are written in
+	 * batches, and in background if possible.
 	 * 
 	 * @param sourceFiles
 	 * @param targetFile
 	 * @throws IOException
 	 * @throws DataException 
 	 */
-	private void mergeRowFiles( RowFile[] sourceFiles, RowFile targetFile )
+	private void mergeRowFiles( RowFile[] sourceFiles, final RowFile targetFile )
 			throws IOException, DataException
 	{
-		MergeSortRowFiles mergeSortRowSet = new MergeSortRowFiles( sourceFiles,
+		MergeSortRowFiles mergeSortRowSet = new MergeSortRowFiles( readAhead( sourceFiles ),
 				mergeSortUtil );
-		IResultObject resultObject = mergeSortRowSet.fetch( );
-		while ( resultObject != null )
+		Future<Object> pendingWrite = null;
+		try
 		{
-			targetFile.write( resultObject );
-			resultObject = mergeSortRowSet.fetch( );
+			IResultObject[] batch = new IResultObject[writeBatchSize];
+			int count = 0;
+			IResultObject resultObject = mergeSortRowSet.fetch( );
+			while ( resultObject != null )
+			{
+				batch[count++] = resultObject;
+				if ( count == writeBatchSize )
+				{
+					pendingWrite = writeRows( targetFile,
+							batch,
+							count,
+							pendingWrite );
+					batch = new IResultObject[writeBatchSize];
+					count = 0;
+				}
+				resultObject = mergeSortRowSet.fetch( );
+			}
+			pendingWrite = writeRows( targetFile, batch, count, pendingWrite );
+			if ( pendingWrite != null )
+			{
+				SortTaskExecutor.waitFor( pendingWrite );
+				pendingWrite = null;
+			}
+		}
+		finally
+		{
+			if ( pendingWrite != null )
+			{
+				try
+				{
+					SortTaskExecutor.waitFor( pendingWrite );
+				}
+				catch ( Exception e )
+				{
+					// the first exception is thrown
+				}
+			}
+			mergeSortRowSet.close( );
+			targetFile.endWrite( );
+		}
+	}
+	
+	/**
+	 * Write rows to file. The previous writing is waited for, so that at most
+	 * one batch is written in background.
+	 * 
+	 * @return the future of writing in background, or null if the rows have
+	 *         been written
+	 */
+	private Future<Object> writeRows( final RowFile targetFile,
+			final IResultObject[] rows, final int count,
+			Future<Object> pendingWrite ) throws IOException, DataException
+	{
+		if ( pendingWrite != null )
+			SortTaskExecutor.waitFor( pendingWrite );
+		if ( count == 0 )
+			return null;
+		
+		if ( executor == null )
+		{
+			targetFile.writeRows( rows, count );
+			return null;
 		}
-		mergeSortRowSet.close( );
-		targetFile.endWrite( );
+		return executor.submit( new Callable<Object>( ) {
+
+			public Object call( ) throws IOException, DataException
+			{
+				targetFile.writeRows( rows, count );
+				return null;
+			}
+		} );
 	}
 	
-}
+}
\ No newline at end of file
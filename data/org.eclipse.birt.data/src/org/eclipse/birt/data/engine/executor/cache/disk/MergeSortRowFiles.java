@@ -12,8 +12,6 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.odi.IResultObject;
@@ -22,14 +20,24 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
  * Provide the service of sorting objects existed in several files. The objects
  * in every file are sorted. It makes the reading objects transparent to
  * DiskMergeSort.
+ * 
+ * The current objects of files are organized in a loser tree, so that only
+ * log2(count of files) comparisons are needed to fetch one object. Objects
+ * which are equal are returned in the order of files.
  */
 class MergeSortRowFiles implements IRowIterator
 {
 	private IRowIterator[] subRowIterators = null;
 	private MergeSortUtil mergeSortUtil = null;
-	private ValueIndex[] rowBuffer = null;
-	private ValueIndex mValueIndex = null;
-	private int rowBufferSize = 0;
+	
+	// current object and its sort key of every sub iterator, null object
+	// means the sub iterator is exhausted
+	private IResultObject[] currentRows = null;
+	private Object[] currentKeys = null;
+	
+	// loserTree[0] is the index of the winner, and loserTree[1 .. n-1] are
+	// the losers of internal nodes. The leaf of sub iterator i is node i + n.
+	private int[] loserTree = null;
 	
 	/**
 	 * @param rowFiles
@@ -42,7 +50,6 @@ class MergeSortRowFiles implements IRowIterator
 		
 		this.subRowIterators = subRowIterators;
 		this.mergeSortUtil = mergeSortUtil;
-		this.mValueIndex = new ValueIndex( null, 0, mergeSortUtil.getComparator( ) );
 	}
 	
 	/*
@@ -57,7 +64,7 @@ class MergeSortRowFiles implements IRowIterator
 			subRowIterators[i].reset( );
 		}
 		
-		rowBuffer = null;
+		loserTree = null;
 	}
 
 	/*
@@ -65,52 +72,36 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	public IResultObject fetch( ) throws IOException, DataException
 	{	
-		if ( rowBuffer == null )
+		if ( loserTree == null )
 		{
 			prepareFirstFetch( );
 		}
-		if ( rowBufferSize == 0 )
+		if ( subRowIterators.length == 0 )
 		{
 			return null;
 		}
 		
-		ValueIndex reObj = rowBuffer[0];
-		IResultObject value = reObj.value;
-		
-		IResultObject readValue = subRowIterators[reObj.index].fetch( );
-		if( readValue == null )
+		int winner = loserTree[0];
+		IResultObject value = currentRows[winner];
+		if ( value == null )
 		{
-			rowBufferSize--;
-			if( rowBufferSize > 0 )
-			{
-				ValueIndex[] tBuffer = new ValueIndex[rowBufferSize];
-				System.arraycopy( rowBuffer, 1, tBuffer, 0, rowBufferSize );
-				rowBuffer = tBuffer;
-			}
+			return null;
 		}
-		else
+		
+		readNext( winner );
+		
+		// replay the matches on the path from the leaf to the root
+		int count = subRowIterators.length;
+		for ( int node = ( winner + count ) / 2; node > 0; node /= 2 )
 		{
-			int pos = 0;
-			mValueIndex.value = readValue;
-			mValueIndex.index = reObj.index;
-			if( rowBufferSize > 1 )
+			if ( wins( loserTree[node], winner ) )
 			{
-				pos = Arrays.binarySearch( rowBuffer, mValueIndex );
-				
-				if( pos < 0 )
-					pos = ( pos + 1 ) * -1;
-				pos--;
-				if( pos == -1 )
-					pos = 0;
-
-				if( pos > 0 )
-				{
-					System.arraycopy( rowBuffer, 1 , rowBuffer, 0, pos );
-				}
+				int temp = loserTree[node];
+				loserTree[node] = winner;
+				winner = temp;
 			}
-			rowBuffer[pos] = mValueIndex;
-			mValueIndex = reObj;
 		}
+		loserTree[0] = winner;
 		return value;
 	}
 	
@@ -120,25 +111,72 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	private void prepareFirstFetch( ) throws IOException, DataException
 	{
-		rowBuffer = new ValueIndex[subRowIterators.length];
+		int count = subRowIterators.length;
+		currentRows = new IResultObject[count];
+		currentKeys = new Object[count];
+		loserTree = new int[Math.max( count, 1 )];
+		if ( count == 0 )
+			return;
 		
-		for ( int i = 0; i < rowBuffer.length; i++ )
+		for ( int i = 0; i < count; i++ )
 		{
-			IResultObject value = subRowIterators[i].fetch( );
-			if( value != null )
-				rowBuffer[i] = new ValueIndex( value, i, this.mergeSortUtil.getComparator( ) );;
+			readNext( i );
 		}
-		rowBufferSize = 0;
-		for ( int i = 0; i < rowBuffer.length; i++ )
+		loserTree[0] = buildTree( 1 );
+	}
+	
+	/**
+	 * Play the matches of a sub tree.
+	 * 
+	 * @param node
+	 * @return the winner of the sub tree
+	 */
+	private int buildTree( int node )
+	{
+		int count = subRowIterators.length;
+		if ( node >= count )
+			return node - count;
+		
+		int left = buildTree( node * 2 );
+		int right = buildTree( node * 2 + 1 );
+		if ( wins( left, right ) )
 		{
-			if( rowBuffer[i] != null )
-			{
-				rowBuffer[rowBufferSize] = rowBuffer[i];
-				rowBufferSize++;
-			}
+			loserTree[node] = right;
+			return left;
 		}
-		Arrays.sort( rowBuffer, 0, rowBufferSize );
+		loserTree[node] = left;
+		return right;
+	}
+	
+	/**
+	 * Read the next object of a sub iterator.
+	 * 
+	 * @param index
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void readNext( int index ) throws IOException, DataException
+	{
+		IResultObject row = subRowIterators[index].fetch( );
+		currentRows[index] = row;
+		currentKeys[index] = row == null ? null
+				: mergeSortUtil.getSortKey( row );
+	}
+	
+	/**
+	 * @return whether the current object of sub iterator i is returned before
+	 *         that of sub iterator j
+	 */
+	private boolean wins( int i, int j )
+	{
+		if ( currentRows[j] == null )
+			return currentRows[i] != null || i < j;
+		if ( currentRows[i] == null )
+			return false;
 		
+		int result = mergeSortUtil.compareSortKey( currentKeys[i],
+				currentKeys[j] );
+		return result < 0 || ( result == 0 && i < j );
 	}
 	
 	/*
@@ -155,37 +193,5 @@ class MergeSortRowFiles implements IRowIterator
 		
 		subRowIterators = null;
 	}
-
-	static class ValueIndex implements Comparable
-	{
-		IResultObject value;
-		int index;
-		private Comparator comparator;
-		
-		ValueIndex( IResultObject value, int index, Comparator comparator )
-		{
-			this.value = value;
-			this.index = index;
-			this.comparator = comparator;
-		}
-
-		public int compareTo(Object o)
-		{
-			ValueIndex other = ( ( ValueIndex ) o );
-			int result = comparator.compare( value, other.value  );
-			if( result == 0 )
-			{
-				if( index > other.index )
-					return 1;
-				else if( index == other.index )
-					return 0;
-				else 
-					return -1;
-					
-			}
-			return result;
-		}
-	}
 	
-}
-
+}
\ No newline at end of file
@@ -14,6 +14,9 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 import java.util.Arrays;
 import java.util.Comparator;
 
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.GroupBucketSort;
+import org.eclipse.birt.data.engine.executor.cache.ISortKeyComparator;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -35,6 +38,9 @@ class MergeSortUtil
 	// Comparator
 	private Comparator comparator;
 	
+	// not null if the rows can be compared by sort keys in other threads
+	private ISortKeyComparator sortKeyComparator;
+	
 	/**
 	 * One key of MergeSortUtil is the comparator, which provides a service to
 	 * compare the data of two rows.
@@ -47,17 +53,23 @@ class MergeSortUtil
 		
 		MergeSortUtil instance = new MergeSortUtil( );
 		instance.comparator = comparator;
+		if ( comparator instanceof ISortKeyComparator )
+			instance.sortKeyComparator = (ISortKeyComparator) comparator;
 		return instance;
 	}
 
 	/**
-	 * Sort an array of ResultObjects using stored comparator.
+	 * Sort an array of ResultObjects using stored comparator. Rows are
+	 * gathered by hashing if the comparator supports group keys.
 	 * 
 	 * @param self,
 	 *            which needs to be sorted
 	 */
 	void sortSelf( IResultObject[] self )
 	{
+		if ( GroupBucketSort.sort( self, self.length, comparator ) )
+			return;
+		
 		Comparator comparator = new Comparator( ) {
 
 			public int compare( Object obj1, Object obj2 )
@@ -71,6 +83,70 @@ class MergeSortUtil
 		Arrays.sort( self, comparator );
 	}
 	
+	/**
+	 * Sort the first <code>length</code> objects of an array. Rows are
+	 * gathered by hashing if the comparator supports group keys. Otherwise
+	 * when an executor is given and the comparator supports sort keys, the
+	 * sort keys are fetched in the calling thread and compared by the threads
+	 * of the executor.
+	 * 
+	 * @param self
+	 * @param length
+	 * @param executor
+	 *            null if the array is sorted in the calling thread
+	 * @throws DataException
+	 */
+	void sortSelf( IResultObject[] self, int length, SortTaskExecutor executor )
+			throws DataException
+	{
+		if ( GroupBucketSort.sort( self, length, comparator ) )
+			return;
+		if ( executor == null || sortKeyComparator == null )
+		{
+			Arrays.sort( self, 0, length, comparator );
+			return;
+		}
+		
+		SortEntry[] entries = new SortEntry[length];
+		for ( int i = 0; i < length; i++ )
+			entries[i] = new SortEntry( self[i], getSortKey( self[i] ) );
+		executor.sort( entries, length, new Comparator( ) {
+
+			public int compare( Object obj1, Object obj2 )
+			{
+				return compareSortKey( ( (SortEntry) obj1 ).sortKey,
+						( (SortEntry) obj2 ).sortKey );
+			}
+		} );
+		for ( int i = 0; i < length; i++ )
+			self[i] = entries[i].row;
+	}
+	
+	/**
+	 * @param row
+	 * @return the object which represents the row in comparing, which is the
+	 *         sort keys if they are supported, or the row itself
+	 */
+	Object getSortKey( IResultObject row )
+	{
+		if ( sortKeyComparator == null )
+			return row;
+		return sortKeyComparator.getSortKeys( row );
+	}
+	
+	/**
+	 * @param sortKey1
+	 * @param sortKey2
+	 * @return the compared result of two objects got by getSortKey
+	 */
+	int compareSortKey( Object sortKey1, Object sortKey2 )
+	{
+		if ( sortKeyComparator == null )
+			return comparator.compare( sortKey1, sortKey2 );
+		return sortKeyComparator.compareSortKeys( (Object[]) sortKey1,
+				(Object[]) sortKey2 );
+	}
+	
 	/**
 	 * Get min object of a array
 	 * 
@@ -173,5 +249,20 @@ class MergeSortUtil
 	{
 		return comparator;
 	}
+	
+	/**
+	 * A row with its sort keys.
+	 */
+	private static class SortEntry
+	{
+		IResultObject row;
+		Object sortKey;
+		
+		SortEntry( IResultObject row, Object sortKey )
+		{
+			this.row = row;
+			this.sortKey = sortKey;
+		}
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * A row iterator which reads the next batch of objects from the wrapped
+ * iterator in background, while the current batch is being consumed. The
+ * wrapped iterator is only accessed by one thread at a time.
+ */
+class ReadAheadRowIterator implements IRowIterator
+{
+	private IRowIterator rowIterator;
+	private SortTaskExecutor executor;
+	private int batchSize;
+
+	private IResultObject[] currentBatch;
+	private int currentPos;
+	private Future<IResultObject[]> nextBatch;
+	private boolean isEnd;
+
+	/**
+	 * @param rowIterator
+	 * @param executor
+	 * @param batchSize
+	 *            count of objects read at one time
+	 */
+	ReadAheadRowIterator( IRowIterator rowIterator, SortTaskExecutor executor,
+			int batchSize )
+	{
+		assert batchSize > 0;
+
+		this.rowIterator = rowIterator;
+		this.executor = executor;
+		this.batchSize = batchSize;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		if ( currentBatch == null || currentPos == currentBatch.length )
+		{
+			if ( isEnd )
+				return null;
+			if ( nextBatch == null )
+				nextBatch = submitRead( );
+
+			currentBatch = SortTaskExecutor.waitFor( nextBatch );
+			currentPos = 0;
+			nextBatch = null;
+			if ( currentBatch.length < batchSize )
+				isEnd = true;
+			else
+				nextBatch = submitRead( );
+
+			if ( currentBatch.length == 0 )
+				return null;
+		}
+		return currentBatch[currentPos++];
+	}
+
+	/**
+	 * @return the future of reading next batch
+	 */
+	private Future<IResultObject[]> submitRead( )
+	{
+		return executor.submit( new Callable<IResultObject[]>( ) {
+
+			public IResultObject[] call( ) throws IOException, DataException
+			{
+				IResultObject[] batch = new IResultObject[batchSize];
+				int count = 0;
+				while ( count < batchSize )
+				{
+					IResultObject row = rowIterator.fetch( );
+					if ( row == null )
+						break;
+					batch[count++] = row;
+				}
+				if ( count == batchSize )
+					return batch;
+
+				IResultObject[] lastBatch = new IResultObject[count];
+				System.arraycopy( batch, 0, lastBatch, 0, count );
+				return lastBatch;
+			}
+		} );
+	}
+
+	/**
+	 * Wait for the background reading to stop.
+	 *
+	 * @throws DataException
+	 */
+	private void stopReading( ) throws DataException
+	{
+		if ( nextBatch == null )
+			return;
+		try
+		{
+			SortTaskExecutor.waitFor( nextBatch );
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR, e );
+		}
+		finally
+		{
+			nextBatch = null;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( ) throws DataException
+	{
+		stopReading( );
+		rowIterator.reset( );
+		currentBatch = null;
+		isEnd = false;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( ) throws DataException
+	{
+		try
+		{
+			stopReading( );
+		}
+		finally
+		{
+			rowIterator.close( );
+			currentBatch = null;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Decode result objects from the block format described in
+ * <code>SpillFormat</code>. One block is read and decompressed at a time into
+ * a reusable buffer, from which rows are decoded sequentially.
+ */
+class RowBlockDecoder
+{
+	private InputStream input;
+	private ResultObjectUtil resultObjectUtil;
+	private ClassLoader classLoader;
+
+	private int[] typeCodes;
+	private int nullBitmapSize;
+
+	private BlockBuffer block;
+	private byte[] compressed;
+	private int blockRemainingRows;
+
+	private long[] previousValues;
+	private List<String> dictionary;
+	private char[] chars = new char[64];
+
+	private DataInputStream objectInput;
+
+	/**
+	 * Read and check the file header from the input.
+	 *
+	 * @param input
+	 * @param resultObjectUtil
+	 * @param classLoader
+	 * @throws IOException
+	 * @throws DataException
+	 *             if the input is not a spill file of the expected columns
+	 */
+	RowBlockDecoder( InputStream input, ResultObjectUtil resultObjectUtil,
+			ClassLoader classLoader ) throws IOException, DataException
+	{
+		this.input = input;
+		this.resultObjectUtil = resultObjectUtil;
+		this.classLoader = classLoader;
+
+		Class[] fieldTypes = resultObjectUtil.getFieldTypes( );
+		this.typeCodes = new int[fieldTypes.length];
+		for ( int i = 0; i < fieldTypes.length; i++ )
+			typeCodes[i] = SpillFormat.getTypeCode( fieldTypes[i] );
+		this.nullBitmapSize = ( typeCodes.length + 7 ) / 8;
+
+		if ( IOUtil.readInt( input ) != SpillFormat.MAGIC
+				|| input.read( ) != SpillFormat.VERSION
+				|| IOUtil.readInt( input ) != typeCodes.length )
+			throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR );
+		for ( int i = 0; i < typeCodes.length; i++ )
+		{
+			if ( input.read( ) != typeCodes[i] )
+				throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR );
+		}
+
+		this.block = new BlockBuffer( SpillFormat.BLOCK_SIZE + 1024 );
+		this.previousValues = new long[typeCodes.length];
+		this.dictionary = new ArrayList<String>( );
+		this.objectInput = new DataInputStream( block.asInputStream( ) );
+	}
+
+	/**
+	 * Read the specified count of result objects. The reading procedure is
+	 * strictly sequential.
+	 *
+	 * @param length
+	 * @return result object array
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	IResultObject[] read( int length ) throws IOException, DataException
+	{
+		IResultObject[] rowDatas = new IResultObject[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			if ( resultObjectUtil.isStopped( ) )
+				break;
+			if ( blockRemainingRows == 0 )
+				readBlock( );
+			rowDatas[i] = resultObjectUtil.newResultObject( readRow( ) );
+			blockRemainingRows--;
+		}
+		return rowDatas;
+	}
+
+	/**
+	 * Load next block into the block buffer.
+	 *
+	 * @throws IOException
+	 */
+	private void readBlock( ) throws IOException
+	{
+		int compression = input.read( );
+		if ( compression == -1 )
+			throw new EOFException( );
+		blockRemainingRows = IOUtil.readInt( input );
+		int rawLength = IOUtil.readInt( input );
+		int storedLength = IOUtil.readInt( input );
+
+		block.reset( );
+		block.ensureCapacity( rawLength );
+		if ( compression == SpillFormat.COMPRESSION_LZ )
+		{
+			if ( compressed == null || compressed.length < storedLength )
+				compressed = new byte[Math.max( storedLength,
+						block.array( ).length )];
+			readFully( compressed, storedLength );
+			BlockCompressor.decompress( compressed,
+					storedLength,
+					block.array( ),
+					rawLength );
+		}
+		else
+		{
+			readFully( block.array( ), rawLength );
+		}
+		block.flip( rawLength );
+
+		for ( int i = 0; i < previousValues.length; i++ )
+			previousValues[i] = 0;
+		dictionary.clear( );
+	}
+
+	private void readFully( byte[] bytes, int length ) throws IOException
+	{
+		int total = 0;
+		while ( total < length )
+		{
+			int readSize = input.read( bytes, total, length - total );
+			if ( readSize < 0 )
+				throw new EOFException( );
+			total += readSize;
+		}
+	}
+
+	/**
+	 * Decode one row from the block buffer.
+	 *
+	 * @return field values
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private Object[] readRow( ) throws IOException, DataException
+	{
+		int bitmapOffset = block.position( );
+		block.skip( nullBitmapSize );
+
+		Object[] obs = new Object[typeCodes.length];
+		for ( int i = 0; i < typeCodes.length; i++ )
+		{
+			if ( !block.isBitSet( bitmapOffset, i ) )
+				obs[i] = readValue( i );
+		}
+		return obs;
+	}
+
+	private Object readValue( int column ) throws IOException, DataException
+	{
+		switch ( typeCodes[column] )
+		{
+			case SpillFormat.TYPE_INTEGER :
+				return Integer.valueOf( (int) readDelta( column ) );
+			case SpillFormat.TYPE_DOUBLE :
+				return new Double( readDouble( ) );
+			case SpillFormat.TYPE_DECIMAL :
+				return readDecimal( );
+			case SpillFormat.TYPE_DATE :
+				return new Date( readDelta( column ) );
+			case SpillFormat.TYPE_SQL_DATE :
+				try
+				{
+					return DataTypeUtil.toSqlDate( new java.sql.Date( readDelta( column ) ) );
+				}
+				catch ( BirtException e )
+				{
+					throw DataException.wrap( e );
+				}
+			case SpillFormat.TYPE_TIME :
+				return new Time( readDelta( column ) );
+			case SpillFormat.TYPE_TIMESTAMP :
+				Timestamp timestamp = new Timestamp( readDelta( column ) );
+				int nanos = block.readVarInt( );
+				if ( nanos != 0 )
+					timestamp.setNanos( timestamp.getNanos( ) + nanos );
+				return timestamp;
+			case SpillFormat.TYPE_BOOLEAN :
+				return Boolean.valueOf( block.readByte( ) != 0 );
+			case SpillFormat.TYPE_STRING :
+				return readString( );
+			case SpillFormat.TYPE_BLOB :
+				byte[] bytes = new byte[block.readVarInt( )];
+				block.readBytes( bytes, 0, bytes.length );
+				return bytes;
+			case SpillFormat.TYPE_INT_ARRAY :
+				int[] ints = new int[block.readVarInt( )];
+				for ( int i = 0; i < ints.length; i++ )
+					ints[i] = (int) SpillFormat.decodeZigZag( block.readVarLong( ) );
+				return ints;
+			case SpillFormat.TYPE_OBJECT :
+				return IOUtil.readObject( objectInput, classLoader );
+			default :
+				throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR );
+		}
+	}
+
+	private long readDelta( int column ) throws IOException
+	{
+		previousValues[column] += SpillFormat.decodeZigZag( block.readVarLong( ) );
+		return previousValues[column];
+	}
+
+	private double readDouble( ) throws IOException
+	{
+		long head = block.readVarLong( );
+		if ( ( head & 1 ) == 0 )
+			return SpillFormat.decodeZigZag( head >>> 1 );
+		return Double.longBitsToDouble( block.readLong( ) );
+	}
+
+	private BigDecimal readDecimal( ) throws IOException
+	{
+		int scale = (int) SpillFormat.decodeZigZag( block.readVarLong( ) );
+		long head = block.readVarLong( );
+		if ( ( head & 1 ) == 0 )
+			return BigDecimal.valueOf( SpillFormat.decodeZigZag( head >>> 1 ),
+					scale );
+		byte[] bytes = new byte[block.readVarInt( )];
+		block.readBytes( bytes, 0, bytes.length );
+		return new BigDecimal( new BigInteger( bytes ), scale );
+	}
+
+	private String readString( ) throws IOException
+	{
+		int ref = block.readVarInt( );
+		if ( ref >= SpillFormat.STRING_REF )
+			return dictionary.get( ref - SpillFormat.STRING_REF );
+
+		int length = block.readVarInt( );
+		if ( chars.length < length )
+			chars = new char[Math.max( length, chars.length * 2 )];
+		for ( int i = 0; i < length; i++ )
+			chars[i] = (char) block.readVarInt( );
+		String value = new String( chars, 0, length );
+		if ( ref == SpillFormat.STRING_NEW_ENTRY )
+			dictionary.add( value );
+		return value;
+	}
+}
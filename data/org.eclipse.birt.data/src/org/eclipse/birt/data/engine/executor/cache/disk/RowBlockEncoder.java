@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Encode result objects to the block format described in
+ * <code>SpillFormat</code>. Rows are accumulated in a reusable block buffer,
+ * which is compressed and written when it is full or when the encoder is
+ * flushed.
+ */
+class RowBlockEncoder
+{
+	private OutputStream output;
+	private ResultObjectUtil resultObjectUtil;
+
+	private Class[] fieldTypes;
+	private int[] typeCodes;
+	private int nullBitmapSize;
+
+	private BlockBuffer block;
+	private int blockRowCount;
+	private byte[] compressed;
+	private BlockCompressor compressor;
+
+	// previous value of every column in current block, used in delta encoding
+	private long[] previousValues;
+	private Map<String, Integer> dictionary;
+
+	// used to serialize values of Object columns into the block
+	private DataOutputStream objectOutput;
+
+	/**
+	 * Write the file header to the output.
+	 *
+	 * @param output
+	 * @param resultObjectUtil
+	 * @throws IOException
+	 */
+	RowBlockEncoder( OutputStream output, ResultObjectUtil resultObjectUtil )
+			throws IOException
+	{
+		this.output = output;
+		this.resultObjectUtil = resultObjectUtil;
+		this.fieldTypes = resultObjectUtil.getFieldTypes( );
+		this.typeCodes = new int[fieldTypes.length];
+		for ( int i = 0; i < fieldTypes.length; i++ )
+			typeCodes[i] = SpillFormat.getTypeCode( fieldTypes[i] );
+		this.nullBitmapSize = ( fieldTypes.length + 7 ) / 8;
+
+		this.block = new BlockBuffer( SpillFormat.BLOCK_SIZE + 1024 );
+		this.compressor = new BlockCompressor( );
+		this.previousValues = new long[fieldTypes.length];
+		this.dictionary = new HashMap<String, Integer>( );
+		this.objectOutput = new DataOutputStream( block.asOutputStream( ) );
+
+		IOUtil.writeInt( output, SpillFormat.MAGIC );
+		output.write( SpillFormat.VERSION );
+		IOUtil.writeInt( output, typeCodes.length );
+		for ( int i = 0; i < typeCodes.length; i++ )
+			output.write( typeCodes[i] );
+	}
+
+	/**
+	 * Encode the specified count of result objects.
+	 *
+	 * @param resultObjects
+	 * @param from
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	void write( IResultObject[] resultObjects, int from, int count )
+			throws IOException, DataException
+	{
+		for ( int i = from; i < from + count; i++ )
+		{
+			writeRow( resultObjects[i] );
+			if ( resultObjectUtil.isStopped( ) )
+				return;
+		}
+	}
+
+	/**
+	 * Write the rows which are still in the block buffer.
+	 *
+	 * @throws IOException
+	 */
+	void flush( ) throws IOException
+	{
+		if ( blockRowCount == 0 )
+			return;
+
+		int rawLength = block.position( );
+		if ( compressed == null || compressed.length < rawLength )
+			compressed = new byte[block.array( ).length];
+		// compressed data is only kept if it saves at least 1/16 of the size
+		int storedLength = compressor.compress( block.array( ),
+				rawLength,
+				compressed,
+				rawLength - rawLength / 16 );
+		if ( storedLength > 0 )
+		{
+			output.write( SpillFormat.COMPRESSION_LZ );
+			writeBlockHeader( rawLength, storedLength );
+			output.write( compressed, 0, storedLength );
+		}
+		else
+		{
+			output.write( SpillFormat.COMPRESSION_NONE );
+			writeBlockHeader( rawLength, rawLength );
+			output.write( block.array( ), 0, rawLength );
+		}
+
+		block.reset( );
+		blockRowCount = 0;
+		for ( int i = 0; i < previousValues.length; i++ )
+			previousValues[i] = 0;
+		dictionary.clear( );
+	}
+
+	private void writeBlockHeader( int rawLength, int storedLength )
+			throws IOException
+	{
+		IOUtil.writeInt( output, blockRowCount );
+		IOUtil.writeInt( output, rawLength );
+		IOUtil.writeInt( output, storedLength );
+	}
+
+	/**
+	 * Encode one row.
+	 *
+	 * @param resultObject
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeRow( IResultObject resultObject ) throws IOException,
+			DataException
+	{
+		int bitmapOffset = block.position( );
+		block.writeZeros( nullBitmapSize );
+
+		for ( int i = 0; i < typeCodes.length; i++ )
+		{
+			Object fieldValue = resultObject.getFieldValue( i + 1 );
+			Object value = ResultObjectUtil.convertFieldValue( fieldValue,
+					fieldTypes[i] );
+			// keep the nanoseconds which are lost in the conversion to date
+			if ( typeCodes[i] == SpillFormat.TYPE_TIMESTAMP
+					&& fieldValue instanceof Timestamp )
+				value = fieldValue;
+			if ( value == null )
+			{
+				block.setBit( bitmapOffset, i );
+				continue;
+			}
+			writeValue( i, value );
+		}
+
+		blockRowCount++;
+		if ( block.position( ) >= SpillFormat.BLOCK_SIZE )
+			flush( );
+	}
+
+	private void writeValue( int column, Object value ) throws IOException,
+			DataException
+	{
+		switch ( typeCodes[column] )
+		{
+			case SpillFormat.TYPE_INTEGER :
+				writeDelta( column, ( (Integer) value ).intValue( ) );
+				break;
+			case SpillFormat.TYPE_DOUBLE :
+				writeDouble( ( (Double) value ).doubleValue( ) );
+				break;
+			case SpillFormat.TYPE_DECIMAL :
+				writeDecimal( (BigDecimal) value );
+				break;
+			case SpillFormat.TYPE_DATE :
+			case SpillFormat.TYPE_SQL_DATE :
+			case SpillFormat.TYPE_TIME :
+				writeDelta( column, ( (Date) value ).getTime( ) );
+				break;
+			case SpillFormat.TYPE_TIMESTAMP :
+				writeDelta( column, ( (Date) value ).getTime( ) );
+				// nanoseconds which are not part of the milliseconds
+				block.writeVarInt( value instanceof Timestamp
+						? ( (Timestamp) value ).getNanos( ) % 1000000 : 0 );
+				break;
+			case SpillFormat.TYPE_BOOLEAN :
+				block.writeByte( ( (Boolean) value ).booleanValue( ) ? 1 : 0 );
+				break;
+			case SpillFormat.TYPE_STRING :
+				writeString( value.toString( ) );
+				break;
+			case SpillFormat.TYPE_BLOB :
+				byte[] bytes = (byte[]) value;
+				block.writeVarInt( bytes.length );
+				block.writeBytes( bytes, 0, bytes.length );
+				break;
+			case SpillFormat.TYPE_INT_ARRAY :
+				int[] ints = (int[]) value;
+				block.writeVarInt( ints.length );
+				for ( int i = 0; i < ints.length; i++ )
+					block.writeVarLong( SpillFormat.encodeZigZag( ints[i] ) );
+				break;
+			case SpillFormat.TYPE_OBJECT :
+				if ( !( value instanceof Serializable ) )
+					throw new DataException( ResourceConstants.NOT_SERIALIZABLE_CLASS,
+							value.getClass( ).getName( ) );
+				IOUtil.writeObject( objectOutput, value );
+				objectOutput.flush( );
+				break;
+			default :
+				throw new DataException( ResourceConstants.BAD_DATA_TYPE,
+						String.valueOf( fieldTypes[column] ) );
+		}
+	}
+
+	private void writeDelta( int column, long value )
+	{
+		block.writeVarLong( SpillFormat.encodeZigZag( value
+				- previousValues[column] ) );
+		previousValues[column] = value;
+	}
+
+	/**
+	 * Integral values are written as varints, the others as raw bits. The
+	 * lowest bit of the leading varint tells which form follows.
+	 */
+	private void writeDouble( double value )
+	{
+		if ( value == Math.rint( value )
+				&& Math.abs( value ) < ( 1L << 52 )
+				&& Double.doubleToRawLongBits( value ) != Double.doubleToRawLongBits( -0.0 ) )
+		{
+			block.writeVarLong( SpillFormat.encodeZigZag( (long) value ) << 1 );
+		}
+		else
+		{
+			block.writeVarLong( 1 );
+			block.writeLong( Double.doubleToRawLongBits( value ) );
+		}
+	}
+
+	/**
+	 * Scale is followed by the unscaled value, in the same form as doubles.
+	 */
+	private void writeDecimal( BigDecimal value )
+	{
+		block.writeVarLong( SpillFormat.encodeZigZag( value.scale( ) ) );
+		BigInteger unscaled = value.unscaledValue( );
+		if ( unscaled.bitLength( ) <= 62 )
+		{
+			block.writeVarLong( SpillFormat.encodeZigZag( unscaled.longValue( ) ) << 1 );
+		}
+		else
+		{
+			block.writeVarLong( 1 );
+			byte[] bytes = unscaled.toByteArray( );
+			block.writeVarInt( bytes.length );
+			block.writeBytes( bytes, 0, bytes.length );
+		}
+	}
+
+	private void writeString( String value )
+	{
+		Integer index = dictionary.get( value );
+		if ( index != null )
+		{
+			block.writeVarInt( index.intValue( ) + SpillFormat.STRING_REF );
+			return;
+		}
+		if ( dictionary.size( ) < SpillFormat.MAX_DICTIONARY_SIZE
+				&& value.length( ) <= SpillFormat.MAX_DICTIONARY_STRING_LENGTH )
+		{
+			dictionary.put( value, Integer.valueOf( dictionary.size( ) ) );
+			block.writeVarInt( SpillFormat.STRING_NEW_ENTRY );
+		}
+		else
+		{
+			block.writeVarInt( SpillFormat.STRING_LITERAL );
+		}
+		int length = value.length( );
+		block.writeVarInt( length );
+		for ( int i = 0; i < length; i++ )
+			block.writeVarInt( value.charAt( i ) );
+	}
+}
@@ -140,24 +140,10 @@ class RowFile implements IRowIterator, ICloseListener
 		{
 			createWriter( );
 		}
-		dfw.write( getSubArray( resultObjects, from, count ), count );
+		dfw.write( resultObjects, from, count );
 		rowCount += count;
 	}
 	
-	/**
-	 * Get subarray of a object array
-	 * @param resultObjects
-	 * @param count
-	 * @throws IOException
-	 */
-	private IResultObject[] getSubArray( IResultObject[] resultObjects, int from,
-			int count )
-	{
-		IResultObject[] subArray = new IResultObject[count];
-		System.arraycopy( resultObjects, from, subArray, 0, count );
-		return subArray;
-	}
-	
 	/**
 	 * Create a instance of DataFileWriter
 	 *
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.ThreadSecurity;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+/**
+ * The background threads of one disk based sort. They sort the chunks of an
+ * in-memory run, write runs to temporary files and read ahead the run files
+ * in the final merge. The cube build also uses them to sort fact table rows
+ * and to find the dimension positions of the rows. Tasks must not wait for
+ * other tasks of the same executor, only the thread which submits them does.
+ */
+public final class SortTaskExecutor
+{
+	// an array smaller than this is sorted by one thread
+	private static final int MIN_CHUNK_SIZE = 8192;
+
+	// idle threads are released after this time
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private ThreadPoolExecutor executor;
+	private int parallelism;
+
+	/**
+	 * @param parallelism
+	 * @param threadName
+	 */
+	private SortTaskExecutor( int parallelism, String threadName )
+	{
+		this.parallelism = parallelism;
+		this.executor = new ThreadPoolExecutor( parallelism,
+				parallelism,
+				KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>( ),
+				ThreadSecurity.createThreadFactory( threadName ) );
+		this.executor.allowCoreThreadTimeOut( true );
+	}
+
+	/**
+	 * @param parallelism
+	 * @return the executor, or null if the sort is done in the calling thread
+	 */
+	static SortTaskExecutor newInstance( int parallelism )
+	{
+		return newInstance( parallelism, "BIRT-DiskSort" ); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param parallelism
+	 * @param threadName
+	 *            the name prefix of the threads
+	 * @return the executor, or null if the tasks are done in the calling thread
+	 */
+	public static SortTaskExecutor newInstance( int parallelism,
+			String threadName )
+	{
+		if ( parallelism <= 1 )
+			return null;
+		return new SortTaskExecutor( parallelism, threadName );
+	}
+
+	/**
+	 * @return count of threads
+	 */
+	public int getParallelism( )
+	{
+		return parallelism;
+	}
+
+	/**
+	 * @param task
+	 * @return future of the task
+	 */
+	public <T> Future<T> submit( Callable<T> task )
+	{
+		return executor.submit( task );
+	}
+
+	/**
+	 * Wait for a task to be done, and throw the exception of the task if any.
+	 *
+	 * @param future
+	 * @return result of the task
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static <T> T waitFor( Future<T> future ) throws IOException,
+			DataException
+	{
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			future.cancel( true );
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.BACKGROUND_TASK_ERROR, e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			throw new DataException( ResourceConstants.BACKGROUND_TASK_ERROR,
+					cause );
+		}
+	}
+
+	/**
+	 * Sort the first <code>length</code> elements of an array. Chunks of the
+	 * array are sorted by the threads in parallel, and then the sorted chunks
+	 * are merged in pairs. Like <code>Arrays.sort</code>, the sort is stable.
+	 *
+	 * @param array
+	 * @param length
+	 * @param comparator
+	 *            a comparator which can be called by several threads
+	 * @throws DataException
+	 */
+	public void sort( final Object[] array, int length,
+			final Comparator comparator )
+			throws DataException
+	{
+		int chunkCount = Math.min( parallelism, length / MIN_CHUNK_SIZE );
+		if ( chunkCount < 2 )
+		{
+			Arrays.sort( array, 0, length, comparator );
+			return;
+		}
+
+		int[] bounds = new int[chunkCount + 1];
+		for ( int i = 0; i <= chunkCount; i++ )
+			bounds[i] = (int) ( (long) length * i / chunkCount );
+
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		for ( int i = 0; i < chunkCount; i++ )
+		{
+			final int from = bounds[i];
+			final int to = bounds[i + 1];
+			futures.add( submit( new Callable<Object>( ) {
+
+				public Object call( )
+				{
+					Arrays.sort( array, from, to, comparator );
+					return null;
+				}
+			} ) );
+		}
+		waitForAll( futures );
+
+		Object[] source = array;
+		Object[] target = new Object[length];
+		while ( bounds.length > 2 )
+		{
+			int[] newBounds = new int[bounds.length / 2 + 1];
+			for ( int i = 0; i + 1 < bounds.length; i += 2 )
+			{
+				final Object[] src = source;
+				final Object[] dest = target;
+				final int from = bounds[i];
+				final int middle = bounds[i + 1];
+				final int to = i + 2 < bounds.length ? bounds[i + 2] : middle;
+				newBounds[i / 2] = from;
+				futures.add( submit( new Callable<Object>( ) {
+
+					public Object call( )
+					{
+						merge( src, from, middle, to, dest, comparator );
+						return null;
+					}
+				} ) );
+			}
+			newBounds[newBounds.length - 1] = length;
+			waitForAll( futures );
+
+			bounds = newBounds;
+			Object[] temp = source;
+			source = target;
+			target = temp;
+		}
+		if ( source != array )
+			System.arraycopy( source, 0, array, 0, length );
+	}
+
+	/**
+	 * Merge two adjacent sorted ranges of source to the same range of target.
+	 */
+	private static void merge( Object[] source, int from, int middle, int to,
+			Object[] target, Comparator comparator )
+	{
+		int left = from;
+		int right = middle;
+		int pos = from;
+		while ( left < middle && right < to )
+		{
+			if ( comparator.compare( source[left], source[right] ) <= 0 )
+				target[pos++] = source[left++];
+			else
+				target[pos++] = source[right++];
+		}
+		System.arraycopy( source, left, target, pos, middle - left );
+		pos += middle - left;
+		System.arraycopy( source, right, target, pos, to - right );
+	}
+
+	/**
+	 * Wait for all the tasks and clear the list.
+	 */
+	private static void waitForAll( List<Future<Object>> futures )
+			throws DataException
+	{
+		try
+		{
+			for ( int i = 0; i < futures.size( ); i++ )
+				waitFor( futures.get( i ) );
+		}
+		catch ( IOException e )
+		{
+			// sort tasks do no IO
+			throw new DataException( ResourceConstants.BACKGROUND_TASK_ERROR,
+					e );
+		}
+		finally
+		{
+			futures.clear( );
+		}
+	}
+
+	/**
+	 * Stop the threads. The tasks which have been submitted are still done.
+	 */
+	public void shutdown( )
+	{
+		executor.shutdown( );
+	}
+}
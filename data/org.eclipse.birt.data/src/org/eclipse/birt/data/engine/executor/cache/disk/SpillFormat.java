@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.datatools.connectivity.oda.IBlob;
+import org.eclipse.datatools.connectivity.oda.IClob;
+
+/**
+ * Constants of the binary format of spill files. A spill file starts with a
+ * header holding the format version and the type code of every column,
+ * followed by blocks of rows. Every block is encoded independently and
+ * compressed as a whole:
+ *
+ * <pre>
+ * header: int magic, byte version, int columnCount, byte[columnCount] types
+ * block:  byte compression, int rowCount, int rawLength, int storedLength,
+ *         byte[storedLength] data
+ * row:    null bitmap, followed by the values of non-null columns
+ * </pre>
+ *
+ * Integers and dates are stored as zig-zag varints of the difference to the
+ * previous value of the same column in the block, and strings refer to a
+ * dictionary shared by all the string columns of the block.
+ */
+final class SpillFormat
+{
+	static final int MAGIC = 0x5350494C;
+	static final int VERSION = 1;
+
+	// the size of raw block data after which a block is written
+	static final int BLOCK_SIZE = 64 * 1024;
+
+	// max count of dictionary entries and max length of a dictionary string
+	static final int MAX_DICTIONARY_SIZE = 4096;
+	static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+
+	// string references, a dictionary index i is written as i + STRING_REF
+	static final int STRING_LITERAL = 0;
+	static final int STRING_NEW_ENTRY = 1;
+	static final int STRING_REF = 2;
+
+	static final int COMPRESSION_NONE = 0;
+	static final int COMPRESSION_LZ = 1;
+
+	static final int TYPE_UNSUPPORTED = 0;
+	static final int TYPE_INTEGER = 1;
+	static final int TYPE_DOUBLE = 2;
+	static final int TYPE_DECIMAL = 3;
+	static final int TYPE_DATE = 4;
+	static final int TYPE_SQL_DATE = 5;
+	static final int TYPE_TIME = 6;
+	static final int TYPE_TIMESTAMP = 7;
+	static final int TYPE_BOOLEAN = 8;
+	static final int TYPE_STRING = 9;
+	static final int TYPE_BLOB = 10;
+	static final int TYPE_INT_ARRAY = 11;
+	static final int TYPE_OBJECT = 12;
+
+	private SpillFormat( )
+	{
+	}
+
+	/**
+	 * The mapping is the same as the one used by
+	 * <code>ResultObjectUtil.readObject</code>.
+	 *
+	 * @param fieldType
+	 * @return type code of the value class of a column
+	 */
+	static int getTypeCode( Class fieldType )
+	{
+		if ( fieldType == null )
+			return TYPE_UNSUPPORTED;
+		if ( fieldType.equals( Integer.class ) )
+			return TYPE_INTEGER;
+		if ( fieldType.equals( Double.class ) )
+			return TYPE_DOUBLE;
+		if ( fieldType.equals( BigDecimal.class ) )
+			return TYPE_DECIMAL;
+		if ( fieldType.equals( Time.class ) )
+			return TYPE_TIME;
+		if ( fieldType.equals( Timestamp.class ) )
+			return TYPE_TIMESTAMP;
+		if ( fieldType.equals( java.sql.Date.class ) )
+			return TYPE_SQL_DATE;
+		if ( Date.class.isAssignableFrom( fieldType ) )
+			return TYPE_DATE;
+		if ( fieldType.equals( Boolean.class ) )
+			return TYPE_BOOLEAN;
+		if ( fieldType.equals( String.class )
+				|| fieldType.equals( IClob.class )
+				|| fieldType.equals( Clob.class ) )
+			return TYPE_STRING;
+		if ( fieldType.equals( IBlob.class ) || fieldType.equals( Blob.class ) )
+			return TYPE_BLOB;
+		if ( fieldType.equals( int[].class ) )
+			return TYPE_INT_ARRAY;
+		if ( fieldType.equals( Object.class )
+				|| fieldType.equals( DataType.getClass( DataType.ANY_TYPE ) ) )
+			return TYPE_OBJECT;
+		return TYPE_UNSUPPORTED;
+	}
+
+	/**
+	 * @param value
+	 * @return the zig-zag encoding of a signed value
+	 */
+	static long encodeZigZag( long value )
+	{
+		return ( value << 1 ) ^ ( value >> 63 );
+	}
+
+	/**
+	 * @param value
+	 * @return the signed value of a zig-zag encoding
+	 */
+	static long decodeZigZag( long value )
+	{
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+}
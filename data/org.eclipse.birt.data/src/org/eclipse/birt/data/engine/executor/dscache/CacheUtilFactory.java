@@ -434,6 +434,30 @@ class CacheUtilFactory
 						e );
 			}
 		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.executor.dscache.ILoadUtil#skipObject()
+		 */
+		public boolean skipObject( ) throws DataException
+		{
+			if ( roUtil == null )
+				init( );
+			
+			try
+			{
+				if ( currIndex == rowCount - 1 )
+					return false;
+				
+				currIndex++;
+				roUtil.skipData( bis, 1 );
+				return true;
+			}
+			catch ( IOException e )
+			{
+				throw new DataException( ResourceConstants.DATASETCACHE_LOAD_ERROR,
+						e );
+			}
+		}
 		
 		/**
 		 * @return
@@ -564,6 +588,30 @@ class CacheUtilFactory
 						e );
 			}
 		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.executor.dscache.ILoadUtil#skipObject()
+		 */
+		public boolean skipObject( ) throws DataException
+		{
+			if ( roUtil == null )
+				init( );
+			
+			try
+			{
+				if ( currIndex == rowCount - 1 )
+					return false;
+				
+				currIndex++;
+				roUtil.skipData( bis, 1 );
+				return true;
+			}
+			catch ( IOException e )
+			{
+				throw new DataException( ResourceConstants.DATASETCACHE_LOAD_ERROR,
+						e );
+			}
+		}
 		
 		/**
 		 * @return
@@ -938,6 +986,15 @@ class CacheUtilFactory
 				return null;
 			return this.cacheObject.getResultObject( currIndex );
 		}
+
+		/*
+		 * @see org.eclipse.birt.data.engine.executor.dscache.ILoadUtil#skipObject()
+		 */
+		public boolean skipObject( ) throws DataException
+		{
+			currIndex++;
+			return currIndex < this.cacheObject.getSize( );
+		}
 		
 		/**
 		 * @return
@@ -16,6 +16,7 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.BaseQuery;
 import org.eclipse.birt.data.engine.executor.transform.CachedResultSet;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.index.IndexFilter;
 import org.eclipse.birt.data.engine.odi.ICandidateQuery;
 import org.eclipse.birt.data.engine.odi.ICustomDataSet;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
@@ -102,6 +103,15 @@ public class CandidateQuery extends BaseQuery implements ICandidateQuery
 		this.getOdaCacheResultSet( ).setTempComputedColumn( columns );
 	}
 	
+	/**
+	 * 
+	 * @param indexFilters
+	 */
+	public void setIndexFilters( List<IndexFilter> indexFilters )
+	{
+		this.getOdaCacheResultSet( ).setIndexFilters( indexFilters );
+	}
+	
 	/**
 	 * @return OdaCacheResultSet
 	 */
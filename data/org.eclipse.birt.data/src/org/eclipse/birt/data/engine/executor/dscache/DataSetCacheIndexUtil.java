@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.dscache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.DiskDataSetCacheObject;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.index.BitmapIntSet;
+import org.eclipse.birt.data.engine.impl.index.DataSetSortedIndex;
+import org.eclipse.birt.data.engine.impl.index.IndexFilter;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Selects the rows of a disk data set cache by the indexes of the columns the
+ * filters compare. The index of a column is built by a scan of the cache the
+ * first time a filter needs it, and saved in the cache folder with the length
+ * and modified time of the data file, so that the later queries on the cache
+ * load it instead. A changed data file has its indexes built again.
+ */
+class DataSetCacheIndexUtil
+{
+
+	/**
+	 * @param cacheObject
+	 * @param filters
+	 * @param session
+	 * @return the rows which may pass all the filters, or null if no filter
+	 *         can select rows by an index
+	 * @throws DataException
+	 */
+	static BitmapIntSet selectRows( DiskDataSetCacheObject cacheObject,
+			List<IndexFilter> filters, DataEngineSession session )
+			throws DataException
+	{
+		File dataFile = cacheObject.getDataFile( );
+		if ( filters.isEmpty( ) || !FileSecurity.fileExist( dataFile ) )
+			return null;
+
+		IResultClass rsClass = cacheObject.getResultClass( );
+		Map<Integer, DataSetSortedIndex> indexes = new HashMap<Integer, DataSetSortedIndex>( );
+		List<IndexFilter> indexFilters = new ArrayList<IndexFilter>( );
+		for ( IndexFilter filter : filters )
+		{
+			int fieldIndex = rsClass.getFieldIndex( filter.getColumnName( ) );
+			if ( fieldIndex > 0
+					&& filter.comparesValuesOf( rsClass.getFieldValueClass( fieldIndex ) ) )
+			{
+				indexes.put( Integer.valueOf( fieldIndex ), null );
+				indexFilters.add( filter );
+			}
+		}
+		if ( indexFilters.isEmpty( ) )
+			return null;
+
+		synchronized ( cacheObject )
+		{
+			loadIndexes( cacheObject, indexes, session );
+		}
+
+		BitmapIntSet result = null;
+		for ( IndexFilter filter : indexFilters )
+		{
+			int fieldIndex = rsClass.getFieldIndex( filter.getColumnName( ) );
+			DataSetSortedIndex index = indexes.get( Integer.valueOf( fieldIndex ) );
+			// the index is not built if the query is stopped
+			BitmapIntSet rows = index == null ? null
+					: filter.selectRows( index );
+			if ( rows == null )
+				continue;
+			if ( result == null )
+				result = rows;
+			else
+				result.and( rows );
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the saved indexes of the columns, the indexes which are not saved
+	 * or are out of date are built by a scan of the cache and saved.
+	 *
+	 * @param cacheObject
+	 * @param indexes
+	 *            the indexes of the columns by the field index
+	 * @param session
+	 * @throws DataException
+	 */
+	private static void loadIndexes( DiskDataSetCacheObject cacheObject,
+			Map<Integer, DataSetSortedIndex> indexes, DataEngineSession session )
+			throws DataException
+	{
+		File dataFile = cacheObject.getDataFile( );
+		List<Integer> unsaved = new ArrayList<Integer>( );
+		try
+		{
+			for ( Integer fieldIndex : indexes.keySet( ) )
+			{
+				File indexFile = cacheObject.getIndexFile( fieldIndex.intValue( ) );
+				if ( !FileSecurity.fileExist( indexFile ) )
+				{
+					unsaved.add( fieldIndex );
+					continue;
+				}
+				DataInputStream dis = new DataInputStream( new BufferedInputStream( FileSecurity.createFileInputStream( indexFile ) ) );
+				try
+				{
+					if ( IOUtil.readLong( dis ) == dataFile.length( )
+							&& IOUtil.readLong( dis ) == dataFile.lastModified( ) )
+						indexes.put( fieldIndex, new DataSetSortedIndex( dis ) );
+					else
+						unsaved.add( fieldIndex );
+				}
+				finally
+				{
+					dis.close( );
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.DATASETCACHE_LOAD_ERROR,
+					e );
+		}
+		if ( unsaved.isEmpty( ) )
+			return;
+
+		// build the unsaved indexes by a single scan
+		List[] values = new List[unsaved.size( )];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			values[i] = new ArrayList( );
+		}
+		try
+		{
+			DataInputStream metaDis = new DataInputStream( new BufferedInputStream( FileSecurity.createFileInputStream( cacheObject.getMetaFile( ) ) ) );
+			int rowCount;
+			IResultClass rsClass;
+			try
+			{
+				rowCount = IOUtil.readInt( metaDis );
+				rsClass = new ResultClass( metaDis, 0 );
+			}
+			finally
+			{
+				metaDis.close( );
+			}
+			// the data file is read as it is, the delta of the cache has been
+			// merged into it by the load of the query
+			ResultObjectUtil roUtil = ResultObjectUtil.newInstance( rsClass,
+					session );
+			BufferedInputStream bis = new BufferedInputStream( FileSecurity.createFileInputStream( dataFile ) );
+			try
+			{
+				for ( int i = 0; i < rowCount; i++ )
+				{
+					IResultObject row = roUtil.readData( bis,
+							session.getEngineContext( ).getClassLoader( ),
+							1 )[0];
+					if ( row == null )
+						return;
+					for ( int j = 0; j < values.length; j++ )
+					{
+						values[j].add( row.getFieldValue( unsaved.get( j )
+								.intValue( ) ) );
+					}
+				}
+			}
+			finally
+			{
+				bis.close( );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.DATASETCACHE_LOAD_ERROR,
+					e );
+		}
+
+		try
+		{
+			Iterator<Integer> it = unsaved.iterator( );
+			for ( int i = 0; it.hasNext( ); i++ )
+			{
+				Integer fieldIndex = it.next( );
+				DataSetSortedIndex index = new DataSetSortedIndex( values[i] );
+				values[i] = null;
+				indexes.put( fieldIndex, index );
+
+				DataOutputStream dos = new DataOutputStream( new BufferedOutputStream( FileSecurity.createFileOutputStream( cacheObject.getIndexFile( fieldIndex.intValue( ) ) ) ) );
+				try
+				{
+					IOUtil.writeLong( dos, dataFile.length( ) );
+					IOUtil.writeLong( dos, dataFile.lastModified( ) );
+					index.save( dos );
+				}
+				finally
+				{
+					dos.close( );
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.DATASETCACHE_SAVE_ERROR,
+					e );
+		}
+	}
+}
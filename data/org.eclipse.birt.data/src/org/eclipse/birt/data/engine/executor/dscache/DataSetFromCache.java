@@ -17,11 +17,14 @@ import java.util.List;
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.engine.api.querydefn.ComputedColumn;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.DiskDataSetCacheObject;
 import org.eclipse.birt.data.engine.executor.IDataSetCacheObject;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
 import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.index.BitmapIntSet;
+import org.eclipse.birt.data.engine.impl.index.IndexFilter;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -43,6 +46,10 @@ public class DataSetFromCache
 	
 	private int countLimit = 0, fetched = 0;
 	
+	// the filters which select the rows by the indexes of the cache
+	private List<IndexFilter> indexFilters;
+	private BitmapIntSet selectedRows;
+	
 	public DataSetFromCache( DataEngineSession session )
 	{
 		this.session = session;
@@ -82,6 +89,22 @@ public class DataSetFromCache
 		{
 			loadUtil = CacheUtilFactory.createLoadUtil( getCacheObject( ), this.session );		
 		}
+		if ( indexFilters != null && loadUtil != null )
+		{
+			selectedRows = selectRows( );
+			indexFilters = null;
+		}
+		if ( selectedRows != null )
+		{
+			// skip the rows which do not pass the filters
+			while ( !selectedRows.contains( fetched )
+					&& ( fetched < countLimit || countLimit <= 0 ) )
+			{
+				if ( !loadUtil.skipObject( ) )
+					return null;
+				fetched++;
+			}
+		}
 
 		IResultObject cacheObject = loadUtil == null ? null
 				: loadUtil.loadObject( );
@@ -111,6 +134,27 @@ public class DataSetFromCache
 			return null;
 	}
 	
+	/**
+	 * @return the rows which may pass the index filters, or null if all the
+	 *         rows are loaded
+	 * @throws DataException
+	 */
+	private BitmapIntSet selectRows( ) throws DataException
+	{
+		IDataSetCacheObject cacheObject = getCacheObject( );
+		if ( !( cacheObject instanceof DiskDataSetCacheObject ) )
+			return null;
+		List<IndexFilter> filters = new ArrayList<IndexFilter>( );
+		for ( IndexFilter filter : indexFilters )
+		{
+			if ( !isTempComputedColumn( filter.getColumnName( ) ) )
+				filters.add( filter );
+		}
+		return DataSetCacheIndexUtil.selectRows( (DiskDataSetCacheObject) cacheObject,
+				filters,
+				session );
+	}
+	
 	/**
 	 * get all new field objects from a cacheObject
 	 * @param cacheObject
@@ -235,6 +279,18 @@ public class DataSetFromCache
 		this.addedTempComputedColumn = addedTempComputedColumn;
 	}
 	
+	/**
+	 * Set the filters which select the rows to load by the indexes of the
+	 * cache. The rows which do not pass these filters are skipped, the others
+	 * are still filtered by all the filters.
+	 * 
+	 * @param indexFilters
+	 */
+	public void setIndexFilters( List<IndexFilter> indexFilters )
+	{
+		this.indexFilters = indexFilters;
+	}
+	
 	/**
 	 * @throws DataException 
 	 */
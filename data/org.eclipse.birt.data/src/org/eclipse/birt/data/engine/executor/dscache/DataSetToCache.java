@@ -19,6 +19,7 @@ import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
 import org.eclipse.birt.data.engine.executor.IDataSetCacheObject;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.impl.IIncreCacheDataSetDesign;
 import org.eclipse.birt.data.engine.odaconsumer.ResultSet;
@@ -55,6 +56,11 @@ public class DataSetToCache
 
 	private Integer increCacheMode;
 	
+	// the cache object whose rows are saved one by one
+	private IDataSetCacheObject savingCacheObject;
+	private int savedCount;
+	private boolean saveFinished;
+	
 	/**
 	 * @param odaDataSet
 	 * @param resultSet
@@ -219,6 +225,116 @@ public class DataSetToCache
 		}
 	}
 
+	/**
+	 * Whether the rows can be saved one by one while they are streamed to the
+	 * query, instead of saving a populated result set.
+	 * 
+	 * @return
+	 */
+	public boolean canSaveRows( )
+	{
+		return increCacheMode == null;
+	}
+
+	/**
+	 * Saves a row of the data set, after the computed columns and filters of
+	 * the data set are applied. The row is copied, since its temporary columns
+	 * are changed afterwards by the query.
+	 * 
+	 * @param resultObject
+	 * @throws DataException
+	 */
+	public void saveRow( IResultObject resultObject ) throws DataException
+	{
+		if ( saveFinished )
+			return;
+		if ( session.getStopSign( ).isStopped( ) )
+		{
+			abortSave( );
+			return;
+		}
+		try
+		{
+			startSave( );
+			Object[] values = new Object[rsMeta.getFieldCount( )];
+			for ( int i = 0; i < values.length; i++ )
+			{
+				values[i] = resultObject.getFieldValue( rsMeta.getFieldName( i + 1 ) );
+			}
+			saveUtil.saveObject( new ResultObject( rsMeta, values ) );
+			savedCount++;
+			if ( savedCount >= cacheCount )
+			{
+				finishSave( );
+			}
+		}
+		catch ( DataException e )
+		{
+			abortSave( );
+			throw e;
+		}
+	}
+
+	/**
+	 * Finishes saving the rows when all of them have been saved, after which
+	 * the data set can be loaded from the cache.
+	 * 
+	 * @throws DataException
+	 */
+	public void finishSave( ) throws DataException
+	{
+		if ( saveFinished )
+			return;
+		if ( session.getStopSign( ).isStopped( ) )
+		{
+			abortSave( );
+			return;
+		}
+		startSave( );
+		saveFinished = true;
+		saveClose( savingCacheObject );
+	}
+
+	/**
+	 * Removes the rows saved so far if not all of them have been saved, for
+	 * example when the query fails or is cancelled.
+	 * 
+	 * @throws DataException
+	 */
+	public void abortSave( ) throws DataException
+	{
+		if ( saveFinished )
+			return;
+		saveFinished = true;
+		if ( saveUtil != null )
+		{
+			saveUtil.close( );
+			saveUtil = null;
+		}
+		removeCacheObject( );
+	}
+
+	/**
+	 * Whether the save is finished or aborted, after which no more rows of
+	 * the data set are used, as the cached data set is limited by the cache
+	 * capability.
+	 * 
+	 * @return
+	 */
+	public boolean isSaveFinished( )
+	{
+		return saveFinished;
+	}
+
+	private void startSave( ) throws DataException
+	{
+		if ( savingCacheObject == null )
+		{
+			savingCacheObject = getCacheObject( );
+			saveInit( savingCacheObject );
+		}
+	}
+
 	/**
 	 * @throws DataException 
 	 * 
@@ -271,9 +387,11 @@ public class DataSetToCache
 	{
 		if ( saveUtil != null )
 		{
-			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
+			// the data set is cached only after it has been completely saved,
+			// so that it is not loaded or measured when partly written
 			saveUtil.close( );
 			saveUtil = null;
+			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
 		}
 	}
 
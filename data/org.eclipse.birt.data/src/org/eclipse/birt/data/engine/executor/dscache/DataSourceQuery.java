@@ -23,6 +23,7 @@ import org.eclipse.birt.data.engine.executor.transform.CachedResultSet;
 import org.eclipse.birt.data.engine.executor.transform.SimpleResultSet;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.index.IndexFilter;
 import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
 import org.eclipse.birt.data.engine.odi.IDataSourceQuery;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
@@ -89,6 +90,14 @@ public class DataSourceQuery extends BaseQuery
 		// do nothing
 	}
 
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IDataSourceQuery#setPushedDownQueryText(java.lang.String)
+	 */
+	public void setPushedDownQueryText( String queryText )
+	{
+		// do nothing
+	}
+
 	/*
 	 * @see org.eclipse.birt.data.engine.odi.IDataSourceQuery#prepare()
 	 */
@@ -143,6 +152,17 @@ public class DataSourceQuery extends BaseQuery
 		getOdaCacheResultSet( ).setTempComputedColumn( addedTempComputedColumn);
 	}
 	
+	/**
+	 * Set the filters with which DatasetCache selects the rows to load by the
+	 * indexes of the cache.
+	 * 
+	 * @param indexFilters
+	 */
+	public void setIndexFilters( List<IndexFilter> indexFilters )
+	{
+		getOdaCacheResultSet( ).setIndexFilters( indexFilters );
+	}
+	
 	/*
 	 * @see org.eclipse.birt.data.engine.odi.IPreparedDSQuery#execute()
 	 */
@@ -50,6 +50,14 @@ public class DummyDataCacheLoadUtil implements ILoadUtil
 		}
 		return new ResultObject( actualResultClass, actual );
 	}
+
+	public boolean skipObject( ) throws DataException
+	{
+		if( !this.sourceLoadUtil.skipObject( ) )
+			return false;
+		this.rowID ++;
+		return true;
+	}
 	
 	private Object populateDataWithType( Class dataType, String displayName )
 	{
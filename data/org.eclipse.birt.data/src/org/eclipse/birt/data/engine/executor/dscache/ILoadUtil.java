@@ -28,6 +28,14 @@ interface ILoadUtil
 	 */
 	public abstract IResultObject loadObject( ) throws DataException;
 
+	/**
+	 * Skips the next object without loading it.
+	 * 
+	 * @return false if there is no more object
+	 * @throws DataException
+	 */
+	public abstract boolean skipObject( ) throws DataException;
+
 	/**
 	 * @return
 	 * @throws DataException
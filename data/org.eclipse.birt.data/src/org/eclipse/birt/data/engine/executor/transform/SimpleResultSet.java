@@ -45,6 +45,7 @@ import org.eclipse.birt.data.engine.executor.cache.ResultSetCache;
 import org.eclipse.birt.data.engine.executor.cache.ResultSetUtil;
 import org.eclipse.birt.data.engine.executor.cache.RowResultSet;
 import org.eclipse.birt.data.engine.executor.cache.SmartCacheRequest;
+import org.eclipse.birt.data.engine.executor.dscache.DataSetToCache;
 import org.eclipse.birt.data.engine.impl.ComputedColumnHelper;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.impl.DataSetRuntime;
@@ -107,6 +108,7 @@ public class SimpleResultSet implements IResultIterator
 	private ComputedColumnHelper ccHelper;
 	private FilterByRow filterByRow;
 	private List<OnFetchScriptHelper> onFetchEvents;
+	private DataSetToCache dataSetToCache;
 	
 	//TODO: refactor me. Add this for emergence -- release.
 	private boolean firstRowSaved = false;
@@ -151,6 +153,56 @@ public class SimpleResultSet implements IResultIterator
 				forceLookingForward );
 	}
 
+	/**
+	 * The rows of the data set are saved into the data set cache while they
+	 * are fetched, so that the query does not wait for the whole data set
+	 * to be cached.
+	 * 
+	 * @param dataSourceQuery
+	 * @param resultSet
+	 * @param dataSetToCache
+	 * @param resultClass
+	 * @param handler
+	 * @param groupSpecs
+	 * @param session
+	 * @param forceLookingForward
+	 * @throws DataException
+	 */
+	public SimpleResultSet( BaseQuery dataSourceQuery,
+			final ResultSet resultSet, final DataSetToCache dataSetToCache,
+			IResultClass resultClass, IEventHandler handler,
+			GroupSpec[] groupSpecs, DataEngineSession session,
+			boolean forceLookingForward ) throws DataException
+	{
+		this( dataSourceQuery,
+				resultSet,
+				resultClass,
+				handler,
+				groupSpecs,
+				session,
+				forceLookingForward );
+		assert handler.getDataSetRuntime( ) != null;
+		this.dataSetToCache = dataSetToCache;
+		this.closeable = new ICloseable( ) {
+
+			public void close( ) throws DataException
+			{
+				try
+				{
+					// the rows which are not fetched by the query are still
+					// saved, so that the whole data set is cached
+					if ( rowResultSet instanceof RowResultSetWithResultSetScope )
+						( (RowResultSetWithResultSetScope) rowResultSet ).saveRemainingRows( );
+				}
+				finally
+				{
+					dataSetToCache.abortSave( );
+					resultSet.close( );
+				}
+			}
+		};
+	}
+
 	public SimpleResultSet( BaseQuery dataSourceQuery,
 			IDataSetPopulator populator, IResultClass resultClass,
 			IEventHandler handler, GroupSpec[] groupSpecs,
@@ -1037,7 +1089,38 @@ public class SimpleResultSet implements IResultIterator
 		 */
 		protected IResultObject fetch( ) throws DataException
 		{
-			return this.rowResultSet.next( );
+			DataSetToCache cache = SimpleResultSet.this.dataSetToCache;
+			if ( cache == null )
+				return this.rowResultSet.next( );
+
+			// the rows of the data set are saved before the query filters and
+			// computed columns are applied, the data set ends when the cache is full
+			if ( cache.isSaveFinished( ) )
+				return null;
+			IResultObject row = this.rowResultSet.next( );
+			if ( row != null )
+				cache.saveRow( row );
+			else
+				cache.finishSave( );
+			return row;
+		}
+
+		/**
+		 * Saves the rows of the data set which are not fetched by the query.
+		 * 
+		 * @throws DataException
+		 */
+		void saveRemainingRows( ) throws DataException
+		{
+			DataSetToCache cache = SimpleResultSet.this.dataSetToCache;
+			while ( !cache.isSaveFinished( ) )
+			{
+				IResultObject row = this.rowResultSet.next( );
+				if ( row != null )
+					cache.saveRow( row );
+				else
+					cache.finishSave( );
+			}
 		}
 
 		/*
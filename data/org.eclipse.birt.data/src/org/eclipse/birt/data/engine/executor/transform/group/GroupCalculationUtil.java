@@ -369,7 +369,11 @@ public class GroupCalculationUtil
 			comparator[groupCount + i] = new CompareHints( query.getOrdering( )[i].getComparator( ), null );
 		}
 
-		return new SortSpec( sortKeyIndexes, sortKeyColumns, sortAscending, comparator );
+		return new SortSpec( sortKeyIndexes,
+				sortKeyColumns,
+				sortAscending,
+				comparator,
+				groupCount );
 	}
 	
 	private boolean needSortingOnGroupKeys( )
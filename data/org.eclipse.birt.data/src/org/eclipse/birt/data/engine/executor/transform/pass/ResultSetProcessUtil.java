@@ -23,7 +23,6 @@ import org.eclipse.birt.data.engine.api.IFilterDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
-import org.eclipse.birt.data.engine.executor.aggregation.AggrDefnRoundManager;
 import org.eclipse.birt.data.engine.executor.aggregation.AggregationHelper;
 import org.eclipse.birt.data.engine.executor.cache.SortSpec;
 import org.eclipse.birt.data.engine.executor.transform.IComputedColumnsState;
@@ -248,14 +247,7 @@ class ResultSetProcessUtil extends RowProcessUtil
 		this.populator.getResultIterator( ).clearAggrValueHolder( );
 		List aggrDefns = this.populator.getEventHandler( ).getAggrDefinitions( );
 
-		AggrDefnRoundManager factory = new AggrDefnRoundManager( aggrDefns );
-		for ( int i = 0; i < factory.getRound( ); i++ )
-		{
-			AggregationHelper helper = new AggregationHelper( factory.getAggrDefnManager( i ),
-					this.populator );
-			this.populator.getResultIterator( ).addAggrValueHolder( helper );
-
-		}
+		AggregationHelper.populateAggrValueHolder( aggrDefns, this.populator );
 	}
 	
 	/**
@@ -401,14 +393,8 @@ class ResultSetProcessUtil extends RowProcessUtil
 			}
 			this.populator.getExpressionProcessor( )
 					.setResultIterator( this.populator.getResultIterator( ) );
-			AggrDefnRoundManager factory = new AggrDefnRoundManager( aggrDefns );
 			this.populator.getResultIterator( ).clearAggrValueHolder( );
-			for ( int i = 0; i < factory.getRound( ); i++ )
-			{
-				AggregationHelper helper = new AggregationHelper( factory.getAggrDefnManager( i ),
-						this.populator );
-				this.populator.getResultIterator( ).addAggrValueHolder( helper );
-			}
+			AggregationHelper.populateAggrValueHolder( aggrDefns, this.populator );
 			//TODO: Enhance me so that invalid computed column will not be evaluated at all
 			if( this.computedColumnHelper!= null )
 				this.computedColumnHelper.suppressException( false );
@@ -16,6 +16,7 @@ import java.util.logging.Logger;
 import org.eclipse.birt.core.script.JavascriptEvalUtil;
 import org.eclipse.birt.core.script.ScriptContext;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Script;
@@ -24,6 +25,7 @@ import org.mozilla.javascript.Scriptable;
 public abstract class BytecodeExpression extends CompiledExpression
 {
 	private Script m_script;
+	private NativeExpression m_nativeExpr;
 	  
 	protected static Logger logger = Logger.getLogger( BytecodeExpression.class.getName( ) );
 	/**
@@ -37,6 +39,32 @@ public abstract class BytecodeExpression extends CompiledExpression
     	m_script = script;
     }
 
+	/**
+	 * Sets the native form of this expression, which is evaluated without the
+	 * script engine when possible.
+	 * 
+	 * @param nativeExpr
+	 *            the native form, or null if the expression is not simple
+	 */
+	void setNativeExpression( NativeExpression nativeExpr )
+	{
+		m_nativeExpr = nativeExpr;
+	}
+
+	/**
+	 * Evaluates the expression on the fields of a row by its native form.
+	 * 
+	 * @param row
+	 * @return the value of the expression, or NativeExpression.NOT_EVALUATED
+	 *         if it has to be evaluated by the script engine
+	 */
+	Object evaluateNative( IResultObject row )
+	{
+		if ( m_nativeExpr == null )
+			return NativeExpression.NOT_EVALUATED;
+		return m_nativeExpr.evaluate( row );
+	}
+
 	/**
 	 * Evaluates the compiled byte code
 	 */
@@ -216,7 +216,7 @@ public class ExprEvaluateUtil
 		}
 		else
 		{
-			return expr.evaluate( cx, scope );
+			return evaluateBytecodeExpression( expr, ro, scope, cx );
 		}
 	}
 
@@ -666,10 +666,34 @@ public class ExprEvaluateUtil
 		}
 		else
 		{
-			return  expr.evaluate( cx, scope );
+			return evaluateBytecodeExpression( expr, roObject, scope, cx );
 		}
 
 	}
+
+	/**
+	 * Evaluates the expression by its native form if it is a simple
+	 * expression on the fields of the row, or by the script engine otherwise.
+	 * 
+	 * @param expr
+	 * @param roObject
+	 * @param scope
+	 * @param cx
+	 * @return
+	 * @throws DataException
+	 */
+	private static Object evaluateBytecodeExpression( CompiledExpression expr,
+			IResultObject roObject, Scriptable scope, ScriptContext cx )
+			throws DataException
+	{
+		if ( roObject != null && expr instanceof BytecodeExpression )
+		{
+			Object value = ( (BytecodeExpression) expr ).evaluateNative( roObject );
+			if ( value != NativeExpression.NOT_EVALUATED )
+				return value;
+		}
+		return expr.evaluate( cx, scope );
+	}
 	
 	public static Object evaluateColumnReferenceExpression( IResultObject roObject, int index, ColumnReferenceExpression colref ) throws DataException
 	{
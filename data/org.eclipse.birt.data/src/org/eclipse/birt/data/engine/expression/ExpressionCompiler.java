@@ -21,6 +21,7 @@ import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ScriptNode;
 
 /**
  * 
@@ -170,6 +171,20 @@ public class ExpressionCompiler extends AbstractExpressionCompiler
 		return aggregateExpression;
 	}
 
+	/*
+	 * The native form is compiled before the script, whose compilation may
+	 * transform the tree.
+	 * 
+	 * @see org.eclipse.birt.data.engine.expression.AbstractExpressionCompiler#compileForBytecodeExpr(org.mozilla.javascript.Context, org.mozilla.javascript.ast.ScriptNode, org.eclipse.birt.data.engine.expression.CompiledExpression)
+	 */
+	protected void compileForBytecodeExpr( Context context, ScriptNode tree,
+			CompiledExpression expr )
+	{
+		NativeExpression nativeExpr = new NativeExpressionCompiler( rowIndicator ).compile( tree );
+		super.compileForBytecodeExpr( context, tree, expr );
+		( (BytecodeExpression) expr ).setNativeExpression( nativeExpr );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.expression.AbstractExpressionParser#compileDirectColRefExpr(org.mozilla.javascript.Node, org.mozilla.javascript.Node, boolean)
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.util.regex.Pattern;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.MathUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Token;
+
+/**
+ * The form of a simple Javascript expression which is evaluated by Java code
+ * on the field values of a result object, without the script engine. The
+ * operators follow the rules of Javascript for values of null, Number, String
+ * and Boolean. For any other value, such as a date, the evaluation stops with
+ * NOT_EVALUATED, and the expression has to be evaluated by the script engine.
+ */
+abstract class NativeExpression
+{
+	/**
+	 * The value returned if the expression can not be evaluated natively
+	 */
+	static final Object NOT_EVALUATED = new Object( );
+
+	/**
+	 * Evaluates the expression on a row.
+	 *
+	 * @param row
+	 * @return the value of the expression, or NOT_EVALUATED
+	 */
+	abstract Object evaluate( IResultObject row );
+
+	/**
+	 * @param value
+	 * @return whether the value is used as it is by Javascript
+	 */
+	static boolean isPrimitive( Object value )
+	{
+		return value == null
+				|| value instanceof Number || value instanceof String
+				|| value instanceof Boolean;
+	}
+
+	/**
+	 * A constant.
+	 */
+	static final class Constant extends NativeExpression
+	{
+		private Object value;
+
+		Constant( Object value )
+		{
+			this.value = value;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			return value;
+		}
+	}
+
+	/**
+	 * A field of the row, referred by name or by index.
+	 */
+	static final class ColumnReference extends NativeExpression
+	{
+		private String name;
+		private int index;
+
+		ColumnReference( String name )
+		{
+			this.name = name;
+			this.index = -1;
+		}
+
+		ColumnReference( int index )
+		{
+			this.index = index;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object value;
+			try
+			{
+				value = index >= 0 ? row.getFieldValue( index )
+						: row.getFieldValue( name );
+			}
+			catch ( DataException e )
+			{
+				// the script engine reports the error
+				return NOT_EVALUATED;
+			}
+			return isPrimitive( value ) ? value : NOT_EVALUATED;
+		}
+	}
+
+	/**
+	 * The arithmetic operators +, -, *, / and %.
+	 */
+	static final class Arithmetic extends NativeExpression
+	{
+		private int operator;
+		private NativeExpression left;
+		private NativeExpression right;
+
+		Arithmetic( int operator, NativeExpression left, NativeExpression right )
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object value1 = left.evaluate( row );
+			if ( value1 == NOT_EVALUATED )
+				return NOT_EVALUATED;
+			Object value2 = right.evaluate( row );
+			if ( value2 == NOT_EVALUATED )
+				return NOT_EVALUATED;
+
+			if ( operator == Token.ADD
+					&& ( value1 instanceof String || value2 instanceof String ) )
+				return ScriptRuntime.toString( value1 )
+						+ ScriptRuntime.toString( value2 );
+
+			double d1 = ScriptRuntime.toNumber( value1 );
+			double d2 = ScriptRuntime.toNumber( value2 );
+			switch ( operator )
+			{
+				case Token.ADD :
+					return new Double( d1 + d2 );
+				case Token.SUB :
+					return new Double( d1 - d2 );
+				case Token.MUL :
+					return new Double( d1 * d2 );
+				case Token.DIV :
+					return new Double( d1 / d2 );
+				default :
+					return new Double( d1 % d2 );
+			}
+		}
+	}
+
+	/**
+	 * The unary operators -, + and !.
+	 */
+	static final class Unary extends NativeExpression
+	{
+		private int operator;
+		private NativeExpression operand;
+
+		Unary( int operator, NativeExpression operand )
+		{
+			this.operator = operator;
+			this.operand = operand;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object value = operand.evaluate( row );
+			if ( value == NOT_EVALUATED )
+				return NOT_EVALUATED;
+
+			switch ( operator )
+			{
+				case Token.NEG :
+					return new Double( -ScriptRuntime.toNumber( value ) );
+				case Token.POS :
+					return new Double( ScriptRuntime.toNumber( value ) );
+				default :
+					return Boolean.valueOf( !ScriptRuntime.toBoolean( value ) );
+			}
+		}
+	}
+
+	/**
+	 * The equality and relational operators.
+	 */
+	static final class Comparison extends NativeExpression
+	{
+		private int operator;
+		private NativeExpression left;
+		private NativeExpression right;
+
+		Comparison( int operator, NativeExpression left, NativeExpression right )
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object value1 = left.evaluate( row );
+			if ( value1 == NOT_EVALUATED )
+				return NOT_EVALUATED;
+			Object value2 = right.evaluate( row );
+			if ( value2 == NOT_EVALUATED )
+				return NOT_EVALUATED;
+
+			boolean result;
+			switch ( operator )
+			{
+				case Token.EQ :
+					result = ScriptRuntime.eq( value1, value2 );
+					break;
+				case Token.NE :
+					result = !ScriptRuntime.eq( value1, value2 );
+					break;
+				case Token.SHEQ :
+					result = ScriptRuntime.shallowEq( value1, value2 );
+					break;
+				case Token.SHNE :
+					result = !ScriptRuntime.shallowEq( value1, value2 );
+					break;
+				case Token.LT :
+					result = ScriptRuntime.cmp_LT( value1, value2 );
+					break;
+				case Token.LE :
+					result = ScriptRuntime.cmp_LE( value1, value2 );
+					break;
+				case Token.GT :
+					result = ScriptRuntime.cmp_LT( value2, value1 );
+					break;
+				default :
+					result = ScriptRuntime.cmp_LE( value2, value1 );
+			}
+			return Boolean.valueOf( result );
+		}
+	}
+
+	/**
+	 * The operators && and ||, which return the value of an operand as
+	 * Javascript does.
+	 */
+	static final class Logical extends NativeExpression
+	{
+		private boolean isAnd;
+		private NativeExpression left;
+		private NativeExpression right;
+
+		Logical( boolean isAnd, NativeExpression left, NativeExpression right )
+		{
+			this.isAnd = isAnd;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object value = left.evaluate( row );
+			if ( value == NOT_EVALUATED )
+				return NOT_EVALUATED;
+			if ( ScriptRuntime.toBoolean( value ) == isAnd )
+				return right.evaluate( row );
+			return value;
+		}
+	}
+
+	/**
+	 * The conditional operator ?:.
+	 */
+	static final class Conditional extends NativeExpression
+	{
+		private NativeExpression condition;
+		private NativeExpression ifTrue;
+		private NativeExpression ifFalse;
+
+		Conditional( NativeExpression condition, NativeExpression ifTrue,
+				NativeExpression ifFalse )
+		{
+			this.condition = condition;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object value = condition.evaluate( row );
+			if ( value == NOT_EVALUATED )
+				return NOT_EVALUATED;
+			return ScriptRuntime.toBoolean( value )
+					? ifTrue.evaluate( row ) : ifFalse.evaluate( row );
+		}
+	}
+
+	/**
+	 * A call of the functions of BirtMath and BirtStr, which are evaluated as
+	 * the built-in functions of the same names are.
+	 */
+	static final class FunctionCall extends NativeExpression
+	{
+		static final int ADD = 0;
+		static final int SUBTRACT = 1;
+		static final int MULTIPLY = 2;
+		static final int DIVIDE = 3;
+		static final int SAFE_DIVIDE = 4;
+		static final int ROUND = 5;
+		static final int ROUND_UP = 6;
+		static final int ROUND_DOWN = 7;
+		static final int MOD = 8;
+		static final int TO_UPPER = 9;
+		static final int TO_LOWER = 10;
+		static final int TRIM = 11;
+		static final int LEFT = 12;
+		static final int RIGHT = 13;
+		static final int CONCAT = 14;
+
+		private static final Pattern BLANKS = Pattern.compile( "\\s+" ); //$NON-NLS-1$
+
+		private int function;
+		private NativeExpression[] arguments;
+
+		FunctionCall( int function, NativeExpression[] arguments )
+		{
+			this.function = function;
+			this.arguments = arguments;
+		}
+
+		Object evaluate( IResultObject row )
+		{
+			Object[] args = new Object[arguments.length];
+			for ( int i = 0; i < args.length; i++ )
+			{
+				args[i] = arguments[i].evaluate( row );
+				if ( args[i] == NOT_EVALUATED )
+					return NOT_EVALUATED;
+			}
+			try
+			{
+				return execute( args );
+			}
+			catch ( BirtException e )
+			{
+				// the script engine reports the error
+				return NOT_EVALUATED;
+			}
+			catch ( RuntimeException e )
+			{
+				return NOT_EVALUATED;
+			}
+		}
+
+		private Object execute( Object[] args ) throws BirtException
+		{
+			switch ( function )
+			{
+				case ADD :
+					return MathUtil.add( args[0], args[1] );
+				case SUBTRACT :
+					return MathUtil.subtract( args[0], args[1] );
+				case MULTIPLY :
+					return MathUtil.multiply( args[0], args[1] );
+				case DIVIDE :
+					try
+					{
+						return MathUtil.divide( args[0], args[1] );
+					}
+					catch ( ArithmeticException e )
+					{
+						return new Double( Double.NaN );
+					}
+				case SAFE_DIVIDE :
+					return MathUtil.safeDivide( args[0], args[1], args[2] );
+				case ROUND :
+				{
+					double multiple = getMultiple( args );
+					return new Double( Math.round( toDouble( args[0] )
+							* multiple )
+							/ multiple );
+				}
+				case ROUND_UP :
+				{
+					double multiple = getMultiple( args );
+					return new Double( Math.round( Math.ceil( toDouble( args[0] )
+							* multiple ) )
+							/ multiple );
+				}
+				case ROUND_DOWN :
+				{
+					double multiple = getMultiple( args );
+					return new Double( Math.round( Math.floor( toDouble( args[0] )
+							* multiple ) )
+							/ multiple );
+				}
+				case MOD :
+				{
+					double n = toDouble( args[0] );
+					double div = toDouble( args[1] );
+					if ( div == 0 )
+						return NOT_EVALUATED;
+					return new Double( n - div * Math.floor( n / div ) );
+				}
+				case TO_UPPER :
+					if ( args[0] instanceof Integer || args[0] == null )
+						return args[0];
+					return args[0].toString( ).toUpperCase( );
+				case TO_LOWER :
+					if ( args[0] == null )
+						return null;
+					return args[0].toString( ).toLowerCase( );
+				case TRIM :
+					if ( args[0] == null )
+						return null;
+					return BLANKS.matcher( args[0].toString( ).trim( ) )
+							.replaceAll( " " ); //$NON-NLS-1$
+				case LEFT :
+				case RIGHT :
+					return substring( args );
+				default :
+					StringBuffer buf = new StringBuffer( );
+					for ( int i = 0; i < args.length; i++ )
+						buf.append( args[i] );
+					return buf.toString( );
+			}
+		}
+
+		/**
+		 * BirtStr.left and BirtStr.right.
+		 */
+		private Object substring( Object[] args )
+		{
+			int n = 1;
+			if ( args.length > 1 )
+			{
+				if ( !( args[1] instanceof Number ) )
+					return NOT_EVALUATED;
+				n = ( (Number) args[1] ).intValue( );
+			}
+			if ( n < 0 )
+				return NOT_EVALUATED;
+			if ( args[0] == null )
+				return null;
+			String str = args[0].toString( );
+			if ( n >= str.length( ) )
+				return str;
+			return function == LEFT ? str.substring( 0, n )
+					: str.substring( str.length( ) - n );
+		}
+
+		private static double toDouble( Object value )
+		{
+			if ( value instanceof Number )
+				return ( (Number) value ).doubleValue( );
+			return value == null ? 0 : Double.valueOf( value.toString( ) )
+					.doubleValue( );
+		}
+
+		/**
+		 * @param args
+		 * @return the multiple of the digits to round to
+		 */
+		private static double getMultiple( Object[] args )
+		{
+			int dec = args.length > 1 ? (int) toDouble( args[1] ) : 0;
+			double multiple = 1;
+			if ( dec >= 0 )
+			{
+				for ( int i = 0; i < dec; i++ )
+					multiple *= 10;
+			}
+			else
+			{
+				double adjustment = 1;
+				for ( int i = dec; i < 0; i++ )
+				{
+					multiple *= 0.1;
+					adjustment *= 10;
+				}
+				multiple = Math.round( multiple * adjustment ) / adjustment;
+			}
+			return multiple;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.script.ScriptConstants;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * This class compiles the script tree of a simple expression to a
+ * NativeExpression. The expression may consist of column references of the
+ * row indicator, constants, arithmetic, equality, relational and logical
+ * operators, the conditional operator, and the common functions of BirtMath
+ * and BirtStr. Any other expression is left to the script engine.
+ */
+final class NativeExpressionCompiler
+{
+	private static final String BIRT_MATH = "BirtMath"; //$NON-NLS-1$
+	private static final String BIRT_STR = "BirtStr"; //$NON-NLS-1$
+
+	private String rowIndicator;
+
+	/**
+	 * @param rowIndicator
+	 *            name of the row whose columns are the fields of the result
+	 *            object
+	 */
+	NativeExpressionCompiler( String rowIndicator )
+	{
+		this.rowIndicator = rowIndicator;
+	}
+
+	/**
+	 * @param tree
+	 * @return the native form of the script, or null if it is not a simple
+	 *         expression
+	 */
+	NativeExpression compile( ScriptNode tree )
+	{
+		Node exprNode = tree.getFirstChild( );
+		if ( exprNode == null
+				|| exprNode != tree.getLastChild( )
+				|| exprNode.getType( ) != Token.EXPR_RESULT )
+			return null;
+		Node child = exprNode.getFirstChild( );
+		if ( child == null || child.getNext( ) != null )
+			return null;
+		return compile( child );
+	}
+
+	/**
+	 * @param node
+	 * @return the native form of the node, or null if it is not supported
+	 */
+	private NativeExpression compile( Node node )
+	{
+		switch ( node.getType( ) )
+		{
+			case Token.NUMBER :
+				return new NativeExpression.Constant( new Double( node.getDouble( ) ) );
+			case Token.STRING :
+				return new NativeExpression.Constant( node.getString( ) );
+			case Token.NULL :
+				return new NativeExpression.Constant( null );
+			case Token.TRUE :
+				return new NativeExpression.Constant( Boolean.TRUE );
+			case Token.FALSE :
+				return new NativeExpression.Constant( Boolean.FALSE );
+			case Token.GETPROP :
+			case Token.GETELEM :
+				return compileColumnReference( node );
+			case Token.ADD :
+			case Token.SUB :
+			case Token.MUL :
+			case Token.DIV :
+			case Token.MOD :
+			{
+				NativeExpression[] operands = compileChildren( node, 2 );
+				return operands == null ? null
+						: new NativeExpression.Arithmetic( node.getType( ),
+								operands[0],
+								operands[1] );
+			}
+			case Token.NEG :
+			case Token.POS :
+			case Token.NOT :
+			{
+				NativeExpression[] operands = compileChildren( node, 1 );
+				return operands == null ? null
+						: new NativeExpression.Unary( node.getType( ),
+								operands[0] );
+			}
+			case Token.EQ :
+			case Token.NE :
+			case Token.SHEQ :
+			case Token.SHNE :
+			case Token.LT :
+			case Token.LE :
+			case Token.GT :
+			case Token.GE :
+			{
+				NativeExpression[] operands = compileChildren( node, 2 );
+				return operands == null ? null
+						: new NativeExpression.Comparison( node.getType( ),
+								operands[0],
+								operands[1] );
+			}
+			case Token.AND :
+			case Token.OR :
+			{
+				NativeExpression[] operands = compileChildren( node, 2 );
+				return operands == null ? null
+						: new NativeExpression.Logical( node.getType( ) == Token.AND,
+								operands[0],
+								operands[1] );
+			}
+			case Token.HOOK :
+			{
+				NativeExpression[] operands = compileChildren( node, 3 );
+				return operands == null ? null
+						: new NativeExpression.Conditional( operands[0],
+								operands[1],
+								operands[2] );
+			}
+			case Token.CALL :
+				return compileFunctionCall( node );
+			default :
+				return null;
+		}
+	}
+
+	/**
+	 * @param node
+	 * @param count
+	 *            expected count of children
+	 * @return the native forms of the children, or null if any of them is not
+	 *         supported
+	 */
+	private NativeExpression[] compileChildren( Node node, int count )
+	{
+		NativeExpression[] result = new NativeExpression[count];
+		Node child = node.getFirstChild( );
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( child == null )
+				return null;
+			result[i] = compile( child );
+			if ( result[i] == null )
+				return null;
+			child = child.getNext( );
+		}
+		return child == null ? result : null;
+	}
+
+	/**
+	 * Column references are recognized as ExpressionCompiler does, so that
+	 * row[0] and the special names are left to the script engine.
+	 *
+	 * @param refNode
+	 * @return
+	 */
+	private NativeExpression compileColumnReference( Node refNode )
+	{
+		Node rowName = refNode.getFirstChild( );
+		if ( rowName == null
+				|| rowName.getType( ) != Token.NAME
+				|| !rowIndicator.equals( rowName.getString( ) ) )
+			return null;
+
+		Node rowColumn = rowName.getNext( );
+		if ( rowColumn == null || rowColumn.getNext( ) != null )
+			return null;
+		if ( rowColumn.getType( ) == Token.STRING )
+		{
+			String name = rowColumn.getString( );
+			if ( ScriptConstants.OUTER_RESULT_KEYWORD.equals( name )
+					|| ScriptConstants.ROW_NUM_KEYWORD.equals( name )
+					|| "_rownum".equals( name ) //$NON-NLS-1$
+					|| "0".equals( name ) ) //$NON-NLS-1$
+				return null;
+			return new NativeExpression.ColumnReference( name );
+		}
+		if ( refNode.getType( ) == Token.GETELEM
+				&& rowColumn.getType( ) == Token.NUMBER )
+		{
+			double index = rowColumn.getDouble( );
+			if ( index < 1 || index != (int) index )
+				return null;
+			return new NativeExpression.ColumnReference( (int) index );
+		}
+		return null;
+	}
+
+	/**
+	 * @param callNode
+	 * @return the native form of a call of the BirtMath and BirtStr functions
+	 */
+	private NativeExpression compileFunctionCall( Node callNode )
+	{
+		Node target = callNode.getFirstChild( );
+		if ( target.getType( ) != Token.GETPROP
+				|| target.getFirstChild( ).getType( ) != Token.NAME
+				|| target.getLastChild( ).getType( ) != Token.STRING )
+			return null;
+
+		List args = new ArrayList( );
+		for ( Node arg = target.getNext( ); arg != null; arg = arg.getNext( ) )
+		{
+			NativeExpression expr = compile( arg );
+			if ( expr == null )
+				return null;
+			args.add( expr );
+		}
+
+		int function = getFunction( target.getFirstChild( ).getString( ),
+				target.getLastChild( ).getString( ),
+				args.size( ) );
+		if ( function < 0 )
+			return null;
+		return new NativeExpression.FunctionCall( function,
+				(NativeExpression[]) args.toArray( new NativeExpression[args.size( )] ) );
+	}
+
+	/**
+	 * @param object
+	 * @param name
+	 * @param argCount
+	 * @return the function of NativeExpression.FunctionCall, or -1 if it is not
+	 *         supported with the count of arguments
+	 */
+	private static int getFunction( String object, String name, int argCount )
+	{
+		if ( BIRT_MATH.equals( object ) )
+		{
+			if ( argCount == 2 )
+			{
+				if ( "add".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.ADD;
+				if ( "subtract".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.SUBTRACT;
+				if ( "multiply".equals( name ) || "multiple".equals( name ) ) //$NON-NLS-1$ //$NON-NLS-2$
+					return NativeExpression.FunctionCall.MULTIPLY;
+				if ( "divide".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.DIVIDE;
+				if ( "mod".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.MOD;
+			}
+			if ( argCount == 3 && "safeDivide".equals( name ) ) //$NON-NLS-1$
+				return NativeExpression.FunctionCall.SAFE_DIVIDE;
+			if ( argCount == 1 || argCount == 2 )
+			{
+				if ( "round".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.ROUND;
+				if ( "roundUp".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.ROUND_UP;
+				if ( "roundDown".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.ROUND_DOWN;
+			}
+		}
+		else if ( BIRT_STR.equals( object ) )
+		{
+			if ( argCount == 1 )
+			{
+				if ( "toUpper".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.TO_UPPER;
+				if ( "toLower".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.TO_LOWER;
+				if ( "trim".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.TRIM;
+			}
+			if ( argCount == 1 || argCount == 2 )
+			{
+				if ( "left".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.LEFT;
+				if ( "right".equals( name ) ) //$NON-NLS-1$
+					return NativeExpression.FunctionCall.RIGHT;
+			}
+			if ( argCount > 0 && "concat".equals( name ) ) //$NON-NLS-1$
+				return NativeExpression.FunctionCall.CONCAT;
+		}
+		return -1;
+	}
+}
@@ -134,6 +134,7 @@ public class ResourceConstants
 	public final static String DESTINDEX_OUTOF_RANGE = "data.engine.BadDestIndex";
 	public final static String WRITE_TEMPFILE_ERROR = "data.engine.WriteTempError";
 	public final static String READ_TEMPFILE_ERROR = "data.engine.ReadTempError";
+	public final static String BACKGROUND_TASK_ERROR = "data.engine.BackgroundTaskError";
 
 	//resultiterator cache exception
 	public final static String CREATE_CACHE_TEMPFILE_ERROR = "data.engine.CreateCacheTempError";
@@ -77,6 +77,8 @@ public class DataEngineImpl extends DataEngine
 
 	private IEngineExecutionHints queryExecutionHints;
 	
+	private DataSetPrefetcher dataSetPrefetcher;
+	
 	private Map<DataSourceAndDataSetNames, ValidationContext> validationContextMap
 		= new HashMap<DataSourceAndDataSetNames, ValidationContext>();
 	
@@ -422,6 +424,8 @@ public class DataEngineImpl extends DataEngine
 		setMemoryUsage(appContext);
 		if ( appContext != null )
 			this.context.setBundleVersion( (String) appContext.get( BIRT_ENGINE_BUNDEL_VERSION ) );
+		if ( dataSetPrefetcher != null )
+			dataSetPrefetcher.start( appContext );
 
 		IPreparedQuery result = PreparedQueryUtil.newInstance( this,
 				querySpec,
@@ -564,6 +568,9 @@ public class DataEngineImpl extends DataEngine
 			}
 		}
 		
+		if ( dataSetPrefetcher != null )
+			dataSetPrefetcher.shutdown( this );
+		
 		this.dataSourceManager.close( );
 		
 		releaseValidationContexts( );
@@ -756,6 +763,28 @@ public class DataEngineImpl extends DataEngine
 	public void registerQueries( IDataQueryDefinition[] queryDefns ) throws DataException
 	{
 		((EngineExecutionHints)queryExecutionHints).populateCachedDataSets( this, queryDefns );
+		if ( dataSetPrefetcher == null )
+			dataSetPrefetcher = new DataSetPrefetcher( this );
+		dataSetPrefetcher.register( queryDefns );
+	}
+	
+	/**
+	 * @return the prefetcher of the data sets of the registered queries, or
+	 *         null if no query is registered
+	 */
+	public DataSetPrefetcher getDataSetPrefetcher( )
+	{
+		return this.dataSetPrefetcher;
+	}
+	
+	/**
+	 * Shares the data sets fetched in advance by another data engine.
+	 * 
+	 * @param dataSetPrefetcher
+	 */
+	void setDataSetPrefetcher( DataSetPrefetcher dataSetPrefetcher )
+	{
+		this.dataSetPrefetcher = dataSetPrefetcher;
 	}
 
 	public void cancel( )
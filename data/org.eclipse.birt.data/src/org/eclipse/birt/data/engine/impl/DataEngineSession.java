@@ -36,6 +36,7 @@ import org.eclipse.birt.data.engine.api.IDataScriptEngine;
 import org.eclipse.birt.data.engine.api.IShutdownListener;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
+import org.eclipse.birt.data.engine.executor.cache.MemoryBudget;
 import org.eclipse.birt.data.engine.impl.document.NamingRelation;
 import org.eclipse.birt.data.engine.impl.document.QueryResultIDUtil;
 import org.mozilla.javascript.ImporterTopLevel;
@@ -60,6 +61,8 @@ public class DataEngineSession
 	private NamingRelation namingRelation;
 	
 	private CancelManager cancelManager;
+	
+	private MemoryBudget memoryBudget;
 
 	private StopSign stopSign;
 	
@@ -114,6 +117,7 @@ public class DataEngineSession
 
 		this.dataSetCacheManager = new DataSetCacheManager( this );
 		this.cancelManager = new CancelManager( );
+		this.memoryBudget = new MemoryBudget( 0 );
 		if( engine.getContext( ).getClassLoader( )!= null )
 		{
 			classLoaderHolder.set( engine.getContext( ).getClassLoader( ) );			
@@ -437,6 +441,14 @@ public class DataEngineSession
 		return this.cancelManager;
 	}
 	
+	/**
+	 * @return the memory budget shared by all the caches of this session
+	 */
+	public MemoryBudget getMemoryBudget( )
+	{
+		return this.memoryBudget;
+	}
+	
 	private void houseKeepCancelManager( )
 	{
 		if( cancelManager!= null )
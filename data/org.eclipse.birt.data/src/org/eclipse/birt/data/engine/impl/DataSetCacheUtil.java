@@ -11,7 +11,9 @@
 package org.eclipse.birt.data.engine.impl;
 
 import java.io.File;
+import java.security.MessageDigest;
 import java.util.Map;
+import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.api.DataEngineContext;
@@ -26,6 +28,11 @@ import org.eclipse.birt.data.engine.executor.DataSetCacheConfig.DataSetCacheMode
  */
 public class DataSetCacheUtil
 {
+	private static Logger logger = Logger.getLogger( DataSetCacheUtil.class.getName( ) );
+	
+	// the missing context keys of query coalescing are logged only once
+	private static volatile boolean coalescingWithoutContextKeysLogged = false;
+	
 	/**
 	 * used to get DataSetCacheConfig from all boring options outside
 	 * @param appContext
@@ -89,6 +96,24 @@ public class DataSetCacheUtil
 				return DataSetCacheConfig.getInstacne( DataSetCacheMode.IN_DISK, cacheCount, tempDir);
 			}
 		}
+		long coalescingTime = getQueryCoalescingTime( appContext );
+		if ( coalescingTime > 0 )
+		{
+			// without the context keys the result of a user would be shared
+			// with all the others
+			if ( getQueryCoalescingContextKey( appContext ) == null )
+			{
+				if ( !coalescingWithoutContextKeysLogged )
+				{
+					coalescingWithoutContextKeysLogged = true;
+					logger.warning( "Queries are not coalesced, since " //$NON-NLS-1$
+							+ DataEngine.QUERY_COALESCING_CONTEXT_KEYS
+							+ " is not set" ); //$NON-NLS-1$
+				}
+				return null;
+			}
+			return DataSetCacheConfig.getQueryCoalescingInstance( coalescingTime );
+		}
 		return null;
 	}
 	
@@ -185,6 +210,133 @@ public class DataSetCacheUtil
 	}
 	
 
+	/**
+	 * @param appContext
+	 * @return the maximum total size of JVM level data set cache in bytes, 0
+	 *         for unlimited, or -1 if it is not set
+	 */
+	public static long getDataSetCacheMaxSize( Map appContext )
+	{
+		if ( appContext == null )
+			return -1;
+		Object option = appContext.get( DataEngine.DATA_SET_CACHE_MAX_SIZE );
+		if ( option == null )
+			return -1;
+		return Math.max( 0, getIntValueFromString( option ) ) * 1024L * 1024L;
+	}
+
+	/**
+	 * @param appContext
+	 * @return the time in milliseconds a data set of JVM level data set cache
+	 *         can be reused, 0 for unlimited
+	 */
+	public static long getDataSetCacheTimeToLive( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object option = appContext.get( DataEngine.DATA_SET_CACHE_TIME_TO_LIVE );
+		if ( option == null )
+			return 0;
+		return Math.max( 0, getIntValueFromString( option ) ) * 1000L;
+	}
+
+	/**
+	 * @param appContext
+	 * @return the time in milliseconds during which the result of a data set
+	 *         is shared by the identical queries, 0 if the queries are not
+	 *         coalesced
+	 */
+	public static long getQueryCoalescingTime( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object option = appContext.get( DataEngine.QUERY_COALESCING_TIME );
+		if ( option == null )
+			return 0;
+		return Math.max( 0, getIntValueFromString( option ) ) * 1000L;
+	}
+
+	/**
+	 * @param appContext
+	 * @return the maximum count of data sets fetched concurrently in advance,
+	 *         0 if the data sets are not fetched in advance
+	 */
+	public static int getDataSetPrefetchCount( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object option = appContext.get( DataEngine.DATA_SET_PREFETCH );
+		if ( option == null )
+			return 0;
+		return Math.max( 0, getIntValueFromString( option ) );
+	}
+
+	/**
+	 * @param appContext
+	 * @return the maximum count of rows fetched from an ODA result set in
+	 *         background, 0 if the rows are not fetched in background or the
+	 *         setting is not a number
+	 */
+	public static int getOdaPrefetchSize( Map appContext )
+	{
+		if ( appContext == null )
+			return 0;
+		Object option = appContext.get( DataEngine.ODA_PREFETCH_SIZE );
+		if ( option == null )
+			return 0;
+		return Math.max( 0, getIntValueFromString( option, 0 ) );
+	}
+
+	/**
+	 * Returns the fingerprint of the app context entries listed by
+	 * QUERY_COALESCING_CONTEXT_KEYS, so that the result of a data set is only
+	 * shared by the sessions of the same entries. The values are digested to
+	 * avoid keeping them in the cache keys.
+	 * 
+	 * @param appContext
+	 * @return the fingerprint, or null if the queries are not coalesced or no
+	 *         entry is listed, in which case they must not be coalesced
+	 */
+	public static String getQueryCoalescingContextKey( Map appContext )
+	{
+		if ( getQueryCoalescingTime( appContext ) <= 0 )
+			return null;
+		Object option = appContext.get( DataEngine.QUERY_COALESCING_CONTEXT_KEYS );
+		if ( option == null )
+			return null;
+		StringBuffer buffer = new StringBuffer( );
+		String[] keys = option.toString( ).split( "," ); //$NON-NLS-1$
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			String key = keys[i].trim( );
+			if ( key.length( ) == 0 )
+				continue;
+			Object value = appContext.get( key );
+			buffer.append( key )
+					.append( '=' )
+					.append( value == null ? "" : value.toString( ) ) //$NON-NLS-1$
+					.append( '\n' );
+		}
+		if ( buffer.length( ) == 0 )
+			return null;
+		try
+		{
+			byte[] digest = MessageDigest.getInstance( "SHA-256" ) //$NON-NLS-1$
+					.digest( buffer.toString( ).getBytes( "UTF-8" ) ); //$NON-NLS-1$
+			StringBuffer result = new StringBuffer( );
+			for ( int i = 0; i < digest.length; i++ )
+			{
+				result.append( Integer.toHexString( ( digest[i] & 0xFF ) | 0x100 )
+						.substring( 1 ) );
+			}
+			return result.toString( );
+		}
+		catch ( Exception e )
+		{
+			return buffer.toString( );
+		}
+	}
+
 	/**
 	 * 
 	 * @param option
@@ -194,6 +346,25 @@ public class DataSetCacheUtil
 	{
 		return Integer.valueOf(option.toString()).intValue();
 	}
+
+	/**
+	 * 
+	 * @param option
+	 * @param defaultValue
+	 * @return the int value of the option, or the default value if the option
+	 *         is not an int
+	 */
+	private static int getIntValueFromString( Object option, int defaultValue )
+	{
+		try
+		{
+			return Integer.parseInt( option.toString( ).trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return defaultValue;
+		}
+	}
 }
 
 
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.api.IBaseDataSetDesign;
+import org.eclipse.birt.data.engine.api.IBaseDataSourceDesign;
+import org.eclipse.birt.data.engine.api.ICombinedOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.IDataQueryDefinition;
+import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.IOdaDataSourceDesign;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.IResultIterator;
+import org.eclipse.birt.data.engine.api.querydefn.QueryDefinition;
+import org.eclipse.birt.data.engine.api.script.IBaseDataSetEventHandler;
+import org.eclipse.birt.data.engine.api.script.IBaseDataSourceEventHandler;
+import org.eclipse.birt.data.engine.api.script.IOptionalEventHandler;
+import org.eclipse.birt.data.engine.core.security.ThreadSecurity;
+import org.eclipse.birt.data.engine.executor.CacheMapManager;
+import org.eclipse.birt.data.engine.executor.DataSetCacheConfig;
+
+/**
+ * Fetches the data sets of the registered queries in advance, so that the
+ * independent data sets of a report are fetched concurrently instead of one
+ * after another. A data engine session is not thread safe, so each data set
+ * is fetched by a worker data engine, which saves the rows into the JVM level
+ * cache under a key private to the owner data engine. The query of the owner
+ * loads the rows from the cache, or waits for them if they are being fetched.
+ * <p>
+ * Only the ODA data sets without parameters, computed columns, filters and
+ * scripts, used by queries which do not depend on outer rows, are fetched in
+ * advance, as they are fetched in the same way by the worker.
+ */
+public class DataSetPrefetcher
+{
+
+	private static Logger logger = Logger.getLogger( DataSetPrefetcher.class.getName( ) );
+
+	/**
+	 * The connection passed in by the application can not be shared by the
+	 * worker data engines.
+	 */
+	private static final String PASS_IN_CONNECTION = "OdaJDBCDriverPassInConnection"; //$NON-NLS-1$
+
+	/**
+	 * The rows which are not loaded by the owner are released after this
+	 * time, in case they are saved after the owner is shut down.
+	 */
+	private static final long TIME_TO_LIVE = 10 * 60 * 1000L;
+
+	private DataEngineImpl owner;
+	private List<IQueryDefinition> queries = new ArrayList<IQueryDefinition>( );
+	private String contextKey = UUID.randomUUID( ).toString( );
+	private DataSetCacheConfig cacheConfig = DataSetCacheConfig.getQueryCoalescingInstance( TIME_TO_LIVE );
+
+	private volatile Set<String> dataSetNames = Collections.emptySet( );
+	private ExecutorService executor;
+	private boolean started;
+	private volatile boolean closed;
+
+	/**
+	 * @param owner
+	 *            the data engine which executes the queries
+	 */
+	DataSetPrefetcher( DataEngineImpl owner )
+	{
+		this.owner = owner;
+	}
+
+	/**
+	 * Registers the queries which will be executed by the owner.
+	 *
+	 * @param queryDefns
+	 */
+	void register( IDataQueryDefinition[] queryDefns )
+	{
+		if ( queryDefns == null || started )
+			return;
+		for ( int i = 0; i < queryDefns.length; i++ )
+		{
+			if ( queryDefns[i] instanceof IQueryDefinition )
+				queries.add( (IQueryDefinition) queryDefns[i] );
+		}
+	}
+
+	/**
+	 * Starts to fetch the data sets in advance if it is enabled by the app
+	 * context. It does nothing if it has been started.
+	 *
+	 * @param appContext
+	 */
+	void start( Map appContext )
+	{
+		if ( started )
+			return;
+		started = true;
+
+		int count = DataSetCacheUtil.getDataSetPrefetchCount( appContext );
+		if ( count <= 0
+				|| appContext.containsKey( PASS_IN_CONNECTION )
+				|| owner.getContext( ).getCacheOption( ) == DataEngineContext.CACHE_USE_DISABLE )
+			return;
+
+		Map<String, IOdaDataSetDesign> dataSets = new LinkedHashMap<String, IOdaDataSetDesign>( );
+		for ( IQueryDefinition query : queries )
+		{
+			String name = query.getDataSetName( );
+			if ( name == null || dataSets.containsKey( name ) )
+				continue;
+			IBaseDataSetDesign dataSet = owner.getDataSetDesign( name );
+			IBaseDataSourceDesign dataSource = dataSet == null ? null
+					: owner.getDataSourceDesign( dataSet.getDataSourceName( ) );
+			try
+			{
+				if ( isIndependent( query, dataSet, dataSource )
+						&& DataSetCacheUtil.getJVMDataSetCacheConfig( appContext,
+								owner.getContext( ),
+								dataSet ) == null )
+				{
+					dataSets.put( name, (IOdaDataSetDesign) dataSet );
+				}
+			}
+			catch ( BirtException e )
+			{
+				logger.log( Level.FINE, e.getMessage( ), e );
+			}
+		}
+		queries.clear( );
+		if ( dataSets.isEmpty( ) )
+			return;
+
+		this.dataSetNames = Collections.unmodifiableSet( dataSets.keySet( ) );
+		this.executor = Executors.newFixedThreadPool( Math.min( count,
+				dataSets.size( ) ),
+				ThreadSecurity.createThreadFactory( "BIRT-DataSetPrefetch" ) ); //$NON-NLS-1$
+		for ( final IOdaDataSetDesign dataSet : dataSets.values( ) )
+		{
+			final IOdaDataSourceDesign dataSource = (IOdaDataSourceDesign) owner.getDataSourceDesign( dataSet.getDataSourceName( ) );
+			final Map context = new HashMap( appContext );
+			executor.execute( new Runnable( ) {
+
+				public void run( )
+				{
+					prefetch( dataSource, dataSet, context );
+				}
+			} );
+		}
+		executor.shutdown( );
+	}
+
+	/**
+	 * Whether the data set of a query can be fetched without the owner, that
+	 * is it does not depend on outer rows, parameters, scripts or event
+	 * handlers. A worker has no event handler, so a data set or data source
+	 * with one, such as a Java handler which sets the credentials or the
+	 * query text, is fetched by the owner. An optional event handler which
+	 * has nothing to handle, as set by the report engine on every data set
+	 * and data source, does not count.
+	 *
+	 * @param query
+	 * @param dataSet
+	 * @param dataSource
+	 * @return
+	 */
+	static boolean isIndependent( IQueryDefinition query,
+			IBaseDataSetDesign dataSet, IBaseDataSourceDesign dataSource )
+	{
+		if ( query.getQueryResultsID( ) != null
+				|| !isEmpty( query.getInputParamBindings( ) ) )
+			return false;
+		if ( !( dataSet instanceof IOdaDataSetDesign )
+				|| dataSet instanceof ICombinedOdaDataSetDesign
+				|| dataSet instanceof IIncreCacheDataSetDesign
+				|| !( dataSource instanceof IOdaDataSourceDesign ) )
+			return false;
+		return isEmpty( dataSet.getParameters( ) )
+				&& isEmpty( dataSet.getInputParamBindings( ) )
+				&& isEmpty( dataSet.getComputedColumns( ) )
+				&& isEmpty( dataSet.getFilters( ) )
+				&& dataSet.getBeforeOpenScript( ) == null
+				&& dataSet.getAfterOpenScript( ) == null
+				&& dataSet.getOnFetchScript( ) == null
+				&& dataSet.getBeforeCloseScript( ) == null
+				&& dataSet.getAfterCloseScript( ) == null
+				&& !hasHandlers( dataSet.getEventHandler( ) )
+				&& dataSource.getBeforeOpenScript( ) == null
+				&& dataSource.getAfterOpenScript( ) == null
+				&& dataSource.getBeforeCloseScript( ) == null
+				&& dataSource.getAfterCloseScript( ) == null
+				&& !hasHandlers( dataSource.getEventHandler( ) );
+	}
+
+	/**
+	 * @param eventHandler
+	 * @return whether the event handler may handle any event
+	 */
+	private static boolean hasHandlers( Object eventHandler )
+	{
+		if ( eventHandler instanceof IOptionalEventHandler )
+			return ( (IOptionalEventHandler) eventHandler ).hasHandlers( );
+		return eventHandler != null;
+	}
+
+	private static boolean isEmpty( Collection collection )
+	{
+		return collection == null || collection.isEmpty( );
+	}
+
+	/**
+	 * Fetches all the rows of a data set on a worker data engine, which saves
+	 * them into the cache. The failure is left to the query of the owner.
+	 *
+	 * @param dataSource
+	 * @param dataSet
+	 * @param appContext
+	 */
+	private void prefetch( IOdaDataSourceDesign dataSource,
+			IOdaDataSetDesign dataSet, Map appContext )
+	{
+		if ( closed )
+			return;
+		ScriptContext scriptContext = new ScriptContext( );
+		DataEngineImpl worker = null;
+		try
+		{
+			DataEngineContext ownerContext = owner.getContext( );
+			DataEngineContext context = DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION,
+					scriptContext,
+					null,
+					null,
+					ownerContext.getClassLoader( ) );
+			context.setTmpdir( ownerContext.getTmpdir( ) );
+			context.setLocale( ownerContext.getLocale( ).toLocale( ) );
+			context.setTimeZone( ownerContext.getTimeZone( ) );
+
+			worker = new DataEngineImpl( context );
+			worker.setDataSetPrefetcher( this );
+			worker.defineDataSource( new PrefetchDataSourceDesign( dataSource ) );
+			worker.defineDataSet( new PrefetchDataSetDesign( dataSet ) );
+
+			QueryDefinition query = new QueryDefinition( );
+			query.setDataSetName( dataSet.getName( ) );
+			IResultIterator it = worker.prepare( query, appContext )
+					.execute( null )
+					.getResultIterator( );
+			while ( it.next( ) )
+				;
+			it.close( );
+		}
+		catch ( BirtException e )
+		{
+			logger.log( Level.FINE, "Failed to fetch data set " //$NON-NLS-1$
+					+ dataSet.getName( ) + " in advance", e ); //$NON-NLS-1$
+		}
+		finally
+		{
+			if ( worker != null )
+				worker.shutdown( );
+			scriptContext.close( );
+		}
+	}
+
+	/**
+	 * @param dataSetName
+	 * @return the cache config of the data set fetched in advance, or null if
+	 *         it is not fetched in advance
+	 */
+	public DataSetCacheConfig getCacheConfig( String dataSetName )
+	{
+		return dataSetNames.contains( dataSetName ) ? cacheConfig : null;
+	}
+
+	/**
+	 * @param dataSetName
+	 * @return the key under which the data set fetched in advance is cached,
+	 *         or null if it is not fetched in advance
+	 */
+	public String getContextKey( String dataSetName )
+	{
+		return dataSetNames.contains( dataSetName ) ? contextKey : null;
+	}
+
+	/**
+	 * Stops fetching the data sets and releases the fetched rows when the
+	 * owner is shut down.
+	 *
+	 * @param engine
+	 *            the data engine which is shut down
+	 */
+	void shutdown( DataEngineImpl engine )
+	{
+		if ( engine != owner || closed )
+			return;
+		closed = true;
+		if ( executor != null )
+		{
+			CacheMapManager.clearContextCache( contextKey );
+		}
+	}
+
+	/**
+	 * The data source of a worker, whose events are handled by the owner only.
+	 */
+	private static class PrefetchDataSourceDesign implements IOdaDataSourceDesign
+	{
+
+		private IOdaDataSourceDesign source;
+
+		PrefetchDataSourceDesign( IOdaDataSourceDesign source )
+		{
+			this.source = source;
+		}
+
+		public String getName( )
+		{
+			return source.getName( );
+		}
+
+		public String getExtensionID( )
+		{
+			return source.getExtensionID( );
+		}
+
+		public Map getPublicProperties( )
+		{
+			return source.getPublicProperties( );
+		}
+
+		public Map getPrivateProperties( )
+		{
+			return source.getPrivateProperties( );
+		}
+
+		public String getBeforeOpenScript( )
+		{
+			return null;
+		}
+
+		public String getAfterOpenScript( )
+		{
+			return null;
+		}
+
+		public String getBeforeCloseScript( )
+		{
+			return null;
+		}
+
+		public String getAfterCloseScript( )
+		{
+			return null;
+		}
+
+		public IBaseDataSourceEventHandler getEventHandler( )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * The data set of a worker, whose events are handled by the owner only.
+	 */
+	private static class PrefetchDataSetDesign extends OdaDataSetAdapter
+	{
+
+		PrefetchDataSetDesign( IOdaDataSetDesign source )
+		{
+			super( source );
+		}
+
+		public IBaseDataSetEventHandler getEventHandler( )
+		{
+			return null;
+		}
+	}
+}
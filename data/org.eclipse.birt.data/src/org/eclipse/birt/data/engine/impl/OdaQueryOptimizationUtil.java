@@ -19,6 +19,7 @@ import org.eclipse.birt.data.engine.api.IBinding;
 import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
 import org.eclipse.birt.data.engine.api.IQueryDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.datatools.connectivity.oda.spec.QuerySpecification;
 import org.eclipse.datatools.connectivity.oda.spec.ValidationContext;
 
@@ -45,4 +46,30 @@ public class OdaQueryOptimizationUtil
 		return null;
 	}
 
+	/**
+	 * Rewrite the query of a JDBC data set, so that the filters, sorts and
+	 * aggregations which can be translated into SQL are done by the database.
+	 * 
+	 * @param dataSourceId
+	 * @param dataSetType
+	 * @param queryText
+	 * @param dataSetDesign
+	 * @param query
+	 * @param appContext
+	 * @return the rewritten query text, or null if the query is not rewritten
+	 */
+	public static String pushDownToSql( String dataSourceId,
+			String dataSetType, String queryText,
+			IOdaDataSetDesign dataSetDesign, IQueryDefinition query,
+			Map appContext )
+	{
+		if ( !CacheUtil.enableSqlPushDown( appContext )
+				|| !SqlPushDownPlanner.JDBC_DATA_SOURCE_ID.equals( dataSourceId )
+				|| !SqlPushDownPlanner.JDBC_DATA_SET_TYPE.equals( dataSetType )
+				|| query == null
+				|| ( query.getQueryExecutionHints( ) != null && !query.getQueryExecutionHints( )
+						.enablePushDown( ) ) )
+			return null;
+		return new SqlPushDownPlanner( dataSetDesign, query ).rewrite( queryText );
+	}
 }
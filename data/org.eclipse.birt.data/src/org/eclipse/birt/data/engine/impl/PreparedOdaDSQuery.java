@@ -501,7 +501,24 @@ public class PreparedOdaDSQuery extends PreparedDataSourceQuery
 			}
 			
 			odiQuery = odiDataSource.newQuery( dataSetType, dataText, this.fromCache(), this.contextVisitor );
-			
+
+			// rows of a cached data set are shared by other queries, so the
+			// work of this query is only pushed down into uncached queries
+			if ( combinedQuerySpec == null
+					&& querySpec == null
+					&& !dataEngine.getSession( )
+							.getDataSetCacheManager( )
+							.needsToCache( dataSetDesign, appContext ) )
+			{
+				odiQuery.setPushedDownQueryText( OdaQueryOptimizationUtil.pushDownToSql( extDataSet.getDataSource( )
+						.getExtensionID( ),
+						dataSetType,
+						dataText,
+						(IOdaDataSetDesign) dataSetDesign,
+						queryDefn,
+						appContext ) );
+			}
+
 			if ( odiQuery instanceof IPreparedDSQuery )
 			{
 				( (IPreparedDSQuery) odiQuery ).setQuerySpecification( querySpec );
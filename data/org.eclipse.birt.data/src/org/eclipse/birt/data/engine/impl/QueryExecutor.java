@@ -59,6 +59,7 @@ import org.eclipse.birt.data.engine.expression.ExpressionProcessor;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.aggregation.AggregateTable;
 import org.eclipse.birt.data.engine.impl.group.GroupCalculatorFactory;
+import org.eclipse.birt.data.engine.impl.index.IndexFilter;
 import org.eclipse.birt.data.engine.odi.ICandidateQuery;
 import org.eclipse.birt.data.engine.odi.IDataSource;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
@@ -117,6 +118,8 @@ public abstract class QueryExecutor implements IQueryExecutor
 	private IExecutorHelper parentHelper;
 	private DataEngineSession session;
 	protected List temporaryComputedColumns = new ArrayList( );
+	// the filters which select the rows of the data set cache by its indexes
+	private List<IndexFilter> indexFilters;
 	private static Logger logger = Logger.getLogger( QueryExecutor.class.getName( ) );
 	protected IQueryContextVisitor contextVisitor;
 	
@@ -533,6 +536,17 @@ public abstract class QueryExecutor implements IQueryExecutor
 				( (org.eclipse.birt.data.engine.executor.dscache.CandidateQuery) odiQuery ).setTempComputedColumn( this.temporaryComputedColumns );
 			}
 		}
+		if ( indexFilters != null && indexFilters.size( ) > 0 )
+		{
+			if ( odiQuery instanceof org.eclipse.birt.data.engine.executor.dscache.DataSourceQuery )
+			{
+				( (org.eclipse.birt.data.engine.executor.dscache.DataSourceQuery) odiQuery ).setIndexFilters( this.indexFilters );
+			}
+			else if ( odiQuery instanceof org.eclipse.birt.data.engine.executor.dscache.CandidateQuery )
+			{
+				( (org.eclipse.birt.data.engine.executor.dscache.CandidateQuery) odiQuery ).setIndexFilters( this.indexFilters );
+			}
+		}
 	}
 	
 	/**
@@ -950,6 +964,9 @@ public abstract class QueryExecutor implements IQueryExecutor
 		if ( dataSetFilters.size( )
 				+ queryFilters.size( ) + multipassFilters.size( ) + aggrFilters.size( ) + dataSetAggrFilters.size( ) + aggrNoUpdateFilters.size( ) > 0 )
 		{
+			this.indexFilters = getIndexFilters( dataSetFilters,
+					queryFilters,
+					dataSetAggrFilters.size( ) > 0 );
 			IResultObjectEvent objectEvent = new FilterByRow( dataSetFilters,
 					queryFilters,
 					multipassFilters,
@@ -961,6 +978,84 @@ public abstract class QueryExecutor implements IQueryExecutor
 		}
 	}
 	
+	/**
+	 * Gets the filters with which the data set cache selects the rows to fetch
+	 * by its indexes. The rows the data set filters filter out are never
+	 * needed, the rows the query filters filter out are needed by the
+	 * aggregations on the data set only. A top or bottom filter ranks all the
+	 * rows, an on fetch script may change the cached values, and an expression
+	 * on the row index needs all the rows to be counted.
+	 * 
+	 * @param dataSetFilters
+	 * @param queryFilters
+	 * @param hasDataSetAggrFilter
+	 * @return
+	 * @throws DataException
+	 */
+	private List<IndexFilter> getIndexFilters(
+			List<IFilterDefinition> dataSetFilters,
+			List<IFilterDefinition> queryFilters, boolean hasDataSetAggrFilter )
+			throws DataException
+	{
+		List<IndexFilter> result = new ArrayList<IndexFilter>( );
+		if ( !( odiQuery instanceof org.eclipse.birt.data.engine.executor.dscache.DataSourceQuery || odiQuery instanceof org.eclipse.birt.data.engine.executor.dscache.CandidateQuery )
+				|| dataSet.getDesign( ) == null )
+			return result;
+		String onFetchScript = dataSet.getDesign( ).getOnFetchScript( );
+		if ( onFetchScript != null && onFetchScript.trim( ).length( ) > 0 )
+			return result;
+
+		boolean useQueryFilters = !hasDataSetAggrFilter;
+		Set<String> computedColumnNames = new HashSet<String>( );
+		List computedColumns = dataSet.getComputedColumns( );
+		if ( computedColumns != null )
+		{
+			for ( int i = 0; i < computedColumns.size( ); i++ )
+			{
+				IComputedColumn cc = (IComputedColumn) computedColumns.get( i );
+				if ( IndexFilter.refersToRowIndex( cc.getExpression( ), null ) )
+					return result;
+				computedColumnNames.add( cc.getName( ) );
+				if ( cc.getAggregateFunction( ) != null )
+					useQueryFilters = false;
+			}
+		}
+		@SuppressWarnings("unchecked")
+		Map<String, IBinding> bindings = this.baseQueryDefn.getBindings( );
+		List<IFilterDefinition> filters = new ArrayList<IFilterDefinition>( dataSetFilters );
+		filters.addAll( queryFilters );
+		for ( IFilterDefinition filter : filters )
+		{
+			if ( filter.getExpression( ) instanceof IConditionalExpression )
+			{
+				int operator = ( (IConditionalExpression) filter.getExpression( ) ).getOperator( );
+				if ( operator == IConditionalExpression.OP_TOP_N
+						|| operator == IConditionalExpression.OP_TOP_PERCENT
+						|| operator == IConditionalExpression.OP_BOTTOM_N
+						|| operator == IConditionalExpression.OP_BOTTOM_PERCENT )
+					return result;
+			}
+			// the rows left out by the indexes are not counted in the row index
+			if ( IndexFilter.refersToRowIndex( filter.getExpression( ),
+					dataSetFilters.contains( filter ) ? null : bindings ) )
+				return result;
+		}
+
+		for ( IFilterDefinition filter : filters )
+		{
+			boolean isDataSetFilter = dataSetFilters.contains( filter );
+			if ( !isDataSetFilter && !useQueryFilters )
+				continue;
+			IndexFilter indexFilter = IndexFilter.newInstance( filter,
+					isDataSetFilter ? null : bindings,
+					dataSet.getCompareLocator( ) );
+			if ( indexFilter != null
+					&& !computedColumnNames.contains( indexFilter.getColumnName( ) ) )
+				result.add( indexFilter );
+		}
+		return result;
+	}
+	
 	/**
 	 * 
 	 * @param computedColumns
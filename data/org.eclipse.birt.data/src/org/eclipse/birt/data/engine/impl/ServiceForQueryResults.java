@@ -669,7 +669,10 @@ public class ServiceForQueryResults implements IServiceForQueryResults
 		}
 
 		/**
-		 * Populate the calculation level of the aggr defns.
+		 * Populate the calculation level of the aggr defns. The round of an
+		 * aggr defn is the first pass in which it can be calculated, that is
+		 * the pass after the last pass of the aggr defns it refers to, so the
+		 * aggr defns which do not depend on each other share the same passes.
 		 * 
 		 * @param aggrDefns
 		 * @param nameMap
@@ -681,10 +684,15 @@ public class ServiceForQueryResults implements IServiceForQueryResults
 		{
 			List aggrDefnsCopy = new ArrayList();
 			aggrDefnsCopy.addAll( aggrDefns );
-			int calculateRound = -1;
+			Map originalAggrRefMap = new HashMap( );
+			for ( Iterator it = aggrRefMap.entrySet( ).iterator( ); it.hasNext( ); )
+			{
+				Entry entry = (Entry) it.next( );
+				originalAggrRefMap.put( entry.getKey( ),
+						new HashSet( (Set) entry.getValue( ) ) );
+			}
 			while( aggrDefnsCopy.size( ) > 0 )
 			{
-				calculateRound++;
 				List removedNames = new ArrayList();
 				for( Iterator it = aggrRefMap.keySet( ).iterator( ); it.hasNext( );)
 				{
@@ -693,7 +701,7 @@ public class ServiceForQueryResults implements IServiceForQueryResults
 					Set aggrRefList = (Set)aggrRefMap.get( name );
 					if ( aggrRefList.size( ) == 0 )
 					{
-						defn.setRound( calculateRound );
+						defn.setRound( getFirstPass( (Set) originalAggrRefMap.get( name ) ) );
 						defn.setCalculateLevel( ((Integer)aggrRefGroupLevelMap.get( name )).intValue( ) );
 						aggrDefnsCopy.remove( defn );
 						removedNames.add( defn );
@@ -712,6 +720,26 @@ public class ServiceForQueryResults implements IServiceForQueryResults
 			}
 		}
 
+		/**
+		 * Get the first pass after all the passes of the referred aggr defns,
+		 * whose rounds are already populated.
+		 * 
+		 * @param aggrRefs
+		 * @return
+		 */
+		private int getFirstPass( Set aggrRefs )
+		{
+			int firstPass = 0;
+			for ( Iterator it = aggrRefs.iterator( ); it.hasNext( ); )
+			{
+				IAggrInfo aggrRef = (IAggrInfo) it.next( );
+				firstPass = Math.max( firstPass, aggrRef.getRound( )
+						+ Math.max( 1, aggrRef.getAggregation( )
+								.getNumberOfPasses( ) ) );
+			}
+			return firstPass;
+		}
+
 		/**
 		 * Popualte a binding name <--> binding map.
 		 * @param aggrDefns
@@ -0,0 +1,846 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.ExpressionUtil;
+import org.eclipse.birt.core.data.IColumnBinding;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.IBaseExpression;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.IColumnDefinition;
+import org.eclipse.birt.data.engine.api.IComputedColumn;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.IExpressionCollection;
+import org.eclipse.birt.data.engine.api.IFilterDefinition;
+import org.eclipse.birt.data.engine.api.IGroupDefinition;
+import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.IQueryDefinition;
+import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.data.engine.api.ISortDefinition;
+import org.eclipse.birt.data.engine.api.querydefn.BaseExpression;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * Plans the work which can be pushed down into the SQL query of a JDBC data
+ * set. The original query is wrapped as a derived table, and the wrapping
+ * query adds the translatable filter conditions, the group and sort keys, and
+ * the grouping when the query only consumes aggregations.
+ *
+ * The filters and sorts are still applied by the data engine, so a condition
+ * is only translated if the database keeps at least the rows the data engine
+ * keeps, whatever the collation of the database is. Everything which can not
+ * be translated is left to the data engine.
+ */
+final class SqlPushDownPlanner
+{
+	static final String JDBC_DATA_SOURCE_ID = "org.eclipse.birt.report.data.oda.jdbc"; //$NON-NLS-1$
+	static final String JDBC_DATA_SET_TYPE = "org.eclipse.birt.report.data.oda.jdbc.JdbcSelectDataSet"; //$NON-NLS-1$
+
+	private static final String DERIVED_TABLE_NAME = "BIRT_PUSHDOWN"; //$NON-NLS-1$
+
+	private static final String SUM = "SUM"; //$NON-NLS-1$
+	private static final String MIN = "MIN"; //$NON-NLS-1$
+	private static final String MAX = "MAX"; //$NON-NLS-1$
+
+	private static final Pattern SELECT = Pattern.compile( "\\s*select\\b.*", //$NON-NLS-1$
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL );
+	private static final Pattern ORDER_BY = Pattern.compile( "\\border\\s+by\\b", //$NON-NLS-1$
+			Pattern.CASE_INSENSITIVE );
+	private static final Pattern IDENTIFIER = Pattern.compile( "[A-Za-z_][A-Za-z0-9_]*" ); //$NON-NLS-1$
+	// a leading zero makes an octal literal in script
+	private static final Pattern NUMBER = Pattern.compile( "-?(0|[1-9]\\d*)(\\.\\d+)?([eE][-+]?\\d+)?" ); //$NON-NLS-1$
+
+	private static Logger logger = Logger.getLogger( SqlPushDownPlanner.class.getName( ) );
+
+	private IOdaDataSetDesign dataSetDesign;
+	private IQueryDefinition query;
+
+	// result set hints by column names and aliases
+	private Map<String, IColumnDefinition> columns;
+	private Set<String> computedColumns;
+
+	private List<String> conditions;
+	// whether every filter is translated into a condition
+	private boolean allFiltersTranslated;
+	// the columns referred by the filters
+	private Set<IColumnDefinition> filterColumns;
+
+	// the group key columns, null if the rows are not grouped
+	private List<IColumnDefinition> groupColumns;
+	// the aggregate function of each aggregated column
+	private Map<IColumnDefinition, String> aggregations;
+
+	private List<String> orderBy;
+
+	/**
+	 * @param dataSetDesign
+	 * @param query
+	 */
+	SqlPushDownPlanner( IOdaDataSetDesign dataSetDesign, IQueryDefinition query )
+	{
+		this.dataSetDesign = dataSetDesign;
+		this.query = query;
+	}
+
+	/**
+	 * @param queryText
+	 *            the SQL query of the data set
+	 * @return the rewritten query, or null if nothing can be pushed down
+	 */
+	String rewrite( String queryText )
+	{
+		if ( !isQueryTextSupported( queryText ) || !isDataSetSupported( ) )
+			return null;
+		try
+		{
+			collectColumns( );
+
+			conditions = new ArrayList<String>( );
+			filterColumns = new HashSet<IColumnDefinition>( );
+			allFiltersTranslated = true;
+			translateFilters( dataSetDesign.getFilters( ), true );
+			translateFilters( query.getFilters( ), false );
+
+			if ( !planGrouping( ) )
+			{
+				groupColumns = null;
+				aggregations = null;
+			}
+			planOrderBy( );
+		}
+		catch ( DataException e )
+		{
+			logger.log( Level.FINE, e.getLocalizedMessage( ), e );
+			return null;
+		}
+
+		if ( conditions.isEmpty( ) && groupColumns == null && orderBy.isEmpty( ) )
+			return null;
+		return buildQueryText( queryText.trim( ) );
+	}
+
+	/**
+	 * The query is wrapped as a derived table, so it should be a single select
+	 * statement without its own order.
+	 */
+	private static boolean isQueryTextSupported( String queryText )
+	{
+		return queryText != null
+				&& SELECT.matcher( queryText ).matches( )
+				&& queryText.indexOf( ';' ) < 0
+				&& !ORDER_BY.matcher( queryText ).find( );
+	}
+
+	/**
+	 * Fetched rows can be limited or changed by the data set, and then the
+	 * filters of the query can not be applied before them.
+	 */
+	private boolean isDataSetSupported( )
+	{
+		if ( dataSetDesign.getRowFetchLimit( ) > 0 || query.getMaxRows( ) > 0 )
+			return false;
+		String onFetchScript = dataSetDesign.getOnFetchScript( );
+		if ( onFetchScript != null && onFetchScript.trim( ).length( ) > 0 )
+			return false;
+		List computedColumnList = dataSetDesign.getComputedColumns( );
+		if ( computedColumnList != null )
+		{
+			for ( int i = 0; i < computedColumnList.size( ); i++ )
+			{
+				// aggregations of the data set are computed on all the rows
+				if ( ( (IComputedColumn) computedColumnList.get( i ) ).getAggregateFunction( ) != null )
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private void collectColumns( )
+	{
+		columns = new HashMap<String, IColumnDefinition>( );
+		List hints = dataSetDesign.getResultSetHints( );
+		if ( hints != null )
+		{
+			for ( int i = 0; i < hints.size( ); i++ )
+			{
+				IColumnDefinition column = (IColumnDefinition) hints.get( i );
+				if ( column.getColumnName( ) != null )
+					columns.put( column.getColumnName( ), column );
+				if ( column.getAlias( ) != null )
+					columns.put( column.getAlias( ), column );
+			}
+		}
+		computedColumns = new HashSet<String>( );
+		List computedColumnList = dataSetDesign.getComputedColumns( );
+		if ( computedColumnList != null )
+		{
+			for ( int i = 0; i < computedColumnList.size( ); i++ )
+				computedColumns.add( ( (IComputedColumn) computedColumnList.get( i ) ).getName( ) );
+		}
+	}
+
+	/**
+	 * @param filters
+	 * @param isDataSetFilter
+	 * @throws DataException
+	 */
+	private void translateFilters( List filters, boolean isDataSetFilter )
+			throws DataException
+	{
+		if ( filters == null )
+			return;
+		for ( int i = 0; i < filters.size( ); i++ )
+		{
+			IFilterDefinition filter = (IFilterDefinition) filters.get( i );
+			String condition = null;
+			// the rows of other filters are still used by aggregations
+			if ( filter.updateAggregation( ) )
+				condition = translateCondition( filter.getExpression( ),
+						isDataSetFilter );
+			if ( condition == null )
+				allFiltersTranslated = false;
+			else
+				conditions.add( condition );
+		}
+	}
+
+	/**
+	 * @param expr
+	 * @param isDataSetFilter
+	 * @return the SQL condition, or null if the expression can not be
+	 *         translated
+	 * @throws DataException
+	 */
+	private String translateCondition( IBaseExpression expr,
+			boolean isDataSetFilter ) throws DataException
+	{
+		if ( !( expr instanceof IConditionalExpression ) )
+			return null;
+		IConditionalExpression condition = (IConditionalExpression) expr;
+		if ( condition.getExpression( ) == null )
+			return null;
+		IColumnDefinition column = resolveColumn( condition.getExpression( )
+				.getText( ), isDataSetFilter );
+		if ( column == null )
+			return null;
+
+		String name = getNativeName( column );
+		String result;
+		switch ( condition.getOperator( ) )
+		{
+			case IConditionalExpression.OP_NULL :
+				result = name + " IS NULL"; //$NON-NLS-1$
+				break;
+			case IConditionalExpression.OP_NOT_NULL :
+				result = name + " IS NOT NULL"; //$NON-NLS-1$
+				break;
+			case IConditionalExpression.OP_EQ :
+				result = translateComparison( column,
+						" = ", //$NON-NLS-1$
+						condition.getOperand1( ),
+						false,
+						true );
+				break;
+			case IConditionalExpression.OP_IN :
+				result = translateIn( column, condition.getOperand1( ) );
+				break;
+			// null values are less than all other values in the data engine
+			case IConditionalExpression.OP_NE :
+				result = translateComparison( column,
+						" <> ", //$NON-NLS-1$
+						condition.getOperand1( ),
+						true,
+						false );
+				break;
+			case IConditionalExpression.OP_LT :
+				result = translateComparison( column,
+						" < ", //$NON-NLS-1$
+						condition.getOperand1( ),
+						true,
+						false );
+				break;
+			case IConditionalExpression.OP_LE :
+				result = translateComparison( column,
+						" <= ", //$NON-NLS-1$
+						condition.getOperand1( ),
+						true,
+						false );
+				break;
+			case IConditionalExpression.OP_GT :
+				result = translateComparison( column,
+						" > ", //$NON-NLS-1$
+						condition.getOperand1( ),
+						false,
+						false );
+				break;
+			case IConditionalExpression.OP_GE :
+				result = translateComparison( column,
+						" >= ", //$NON-NLS-1$
+						condition.getOperand1( ),
+						false,
+						false );
+				break;
+			case IConditionalExpression.OP_BETWEEN :
+			case IConditionalExpression.OP_NOT_BETWEEN :
+				result = translateBetween( column,
+						condition.getOperand1( ),
+						condition.getOperand2( ),
+						condition.getOperator( ) == IConditionalExpression.OP_NOT_BETWEEN );
+				break;
+			default :
+				result = null;
+		}
+		if ( result != null )
+			filterColumns.add( column );
+		return result;
+	}
+
+	/**
+	 * Strings are only compared for equality, which is also true in the
+	 * database for case insensitive collations.
+	 */
+	private String translateComparison( IColumnDefinition column,
+			String operator, IBaseExpression operand, boolean orNull,
+			boolean allowString )
+	{
+		String value = translateValue( column, operand, allowString );
+		if ( value == null )
+			return null;
+		String name = getNativeName( column );
+		String result = name + operator + value;
+		if ( orNull )
+			result = "(" + result + " OR " + name + " IS NULL)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return result;
+	}
+
+	private String translateBetween( IColumnDefinition column,
+			IBaseExpression operand1, IBaseExpression operand2, boolean not )
+	{
+		String value1 = translateValue( column, operand1, false );
+		String value2 = translateValue( column, operand2, false );
+		if ( value1 == null || value2 == null )
+			return null;
+		String name = getNativeName( column );
+		if ( not )
+			return "(" + name + " NOT BETWEEN " + value1 + " AND " + value2 //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ " OR " + name + " IS NULL)"; //$NON-NLS-1$ //$NON-NLS-2$
+		return name + " BETWEEN " + value1 + " AND " + value2; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private String translateIn( IColumnDefinition column,
+			IBaseExpression operand )
+	{
+		if ( !( operand instanceof IExpressionCollection ) )
+			return null;
+		Collection operands = ( (IExpressionCollection) operand ).getExpressions( );
+		if ( operands == null || operands.isEmpty( ) )
+			return null;
+		StringBuffer result = new StringBuffer( getNativeName( column ) );
+		result.append( " IN (" ); //$NON-NLS-1$
+		Iterator it = operands.iterator( );
+		while ( it.hasNext( ) )
+		{
+			String value = translateValue( column,
+					(IBaseExpression) it.next( ),
+					true );
+			if ( value == null )
+				return null;
+			result.append( value );
+			if ( it.hasNext( ) )
+				result.append( ", " ); //$NON-NLS-1$
+		}
+		result.append( ")" ); //$NON-NLS-1$
+		return result.toString( );
+	}
+
+	/**
+	 * Translate a number literal for a numeric column, or a string literal for
+	 * a string column.
+	 *
+	 * @return the SQL literal, or null if the operand can not be translated
+	 */
+	private static String translateValue( IColumnDefinition column,
+			IBaseExpression operand, boolean allowString )
+	{
+		if ( !( operand instanceof IScriptExpression )
+				|| BaseExpression.constantId.equals( operand.getScriptId( ) ) )
+			return null;
+		String text = ( (IScriptExpression) operand ).getText( );
+		if ( text == null )
+			return null;
+		text = text.trim( );
+		if ( isNumeric( column ) )
+			return NUMBER.matcher( text ).matches( ) ? text : null;
+		if ( allowString && column.getDataType( ) == DataType.STRING_TYPE )
+		{
+			String value = parseStringLiteral( text );
+			if ( value != null )
+				return "'" + value.replaceAll( "'", "''" ) + "'"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+		return null;
+	}
+
+	/**
+	 * @return the value of a script string literal without escapes, or null
+	 */
+	private static String parseStringLiteral( String text )
+	{
+		if ( text.length( ) < 2 )
+			return null;
+		char quote = text.charAt( 0 );
+		if ( ( quote != '"' && quote != '\'' )
+				|| text.charAt( text.length( ) - 1 ) != quote )
+			return null;
+		String value = text.substring( 1, text.length( ) - 1 );
+		if ( value.indexOf( quote ) >= 0 || value.indexOf( '\\' ) >= 0 )
+			return null;
+		return value;
+	}
+
+	private static boolean isNumeric( IColumnDefinition column )
+	{
+		int type = column.getDataType( );
+		return type == DataType.INTEGER_TYPE
+				|| type == DataType.DOUBLE_TYPE
+				|| type == DataType.DECIMAL_TYPE;
+	}
+
+	/**
+	 * Strings are not grouped in the database, since a case insensitive
+	 * collation would merge groups.
+	 */
+	private static boolean isGroupable( IColumnDefinition column )
+	{
+		int type = column.getDataType( );
+		return isNumeric( column )
+				|| type == DataType.DATE_TYPE
+				|| type == DataType.SQL_DATE_TYPE
+				|| type == DataType.SQL_TIME_TYPE
+				|| type == DataType.BOOLEAN_TYPE;
+	}
+
+	/**
+	 * Resolve an expression which directly refers to a column of the SQL
+	 * query.
+	 *
+	 * @param text
+	 * @param isDataSetExpression
+	 *            whether "row" refers to the data set columns instead of the
+	 *            bindings of the query
+	 * @return the column, or null if the expression is not a column reference
+	 * @throws DataException
+	 */
+	private IColumnDefinition resolveColumn( String text,
+			boolean isDataSetExpression ) throws DataException
+	{
+		if ( text == null )
+			return null;
+		String name;
+		try
+		{
+			name = ExpressionUtil.getColumnName( text );
+			if ( name == null )
+			{
+				name = ExpressionUtil.getColumnBindingName( text );
+				if ( name != null && !isDataSetExpression )
+					name = getBoundColumnName( name );
+			}
+		}
+		catch ( BirtException e )
+		{
+			return null;
+		}
+		if ( name == null || computedColumns.contains( name ) )
+			return null;
+		IColumnDefinition column = columns.get( name );
+		if ( column == null
+				|| !IDENTIFIER.matcher( getNativeName( column ) ).matches( ) )
+			return null;
+		return column;
+	}
+
+	/**
+	 * The query is wrapped as a derived table, whose columns have the names
+	 * of the SQL query, not the names or the aliases of the result set.
+	 *
+	 * @param column
+	 * @return the name of the column in the SQL query
+	 */
+	private static String getNativeName( IColumnDefinition column )
+	{
+		return column.getColumnNativeName( ) != null
+				? column.getColumnNativeName( ) : column.getColumnName( );
+	}
+
+	/**
+	 * @param bindingName
+	 * @return the data set column directly bound by a binding of the query
+	 * @throws DataException
+	 * @throws BirtException
+	 */
+	private String getBoundColumnName( String bindingName )
+			throws DataException, BirtException
+	{
+		IBinding binding = (IBinding) query.getBindings( ).get( bindingName );
+		if ( binding == null
+				|| binding.getAggrFunction( ) != null
+				|| !( binding.getExpression( ) instanceof IScriptExpression ) )
+			return null;
+		return ExpressionUtil.getColumnName( ( (IScriptExpression) binding.getExpression( ) ).getText( ) );
+	}
+
+	/**
+	 * The rows are grouped in the database when the query does not use the
+	 * details, every binding is a SUM, MIN or MAX of a column or only refers
+	 * to group keys and other bindings, and every filter is translated and
+	 * only refers to group keys. Partial sums and extremes of each group are
+	 * aggregated again to the same values by the data engine. COUNT and AVE
+	 * are not pushed down, since they would need the bindings to be changed.
+	 *
+	 * @return whether the rows can be grouped in the database
+	 * @throws DataException
+	 */
+	private boolean planGrouping( ) throws DataException
+	{
+		if ( query.usesDetails( )
+				|| query.getGroups( ) == null
+				|| query.getGroups( ).isEmpty( )
+				|| ( query.getSubqueries( ) != null && !query.getSubqueries( )
+						.isEmpty( ) )
+				|| query.getDistinctValue( )
+				|| dataSetDesign.needDistinctValue( )
+				|| !computedColumns.isEmpty( )
+				|| !allFiltersTranslated )
+			return false;
+
+		// all the columns are selected by their names
+		List hints = dataSetDesign.getResultSetHints( );
+		if ( hints == null || hints.isEmpty( ) )
+			return false;
+		for ( int i = 0; i < hints.size( ); i++ )
+		{
+			String name = getNativeName( (IColumnDefinition) hints.get( i ) );
+			if ( name == null || !IDENTIFIER.matcher( name ).matches( ) )
+				return false;
+		}
+
+		groupColumns = new ArrayList<IColumnDefinition>( );
+		for ( int i = 0; i < query.getGroups( ).size( ); i++ )
+		{
+			IGroupDefinition group = (IGroupDefinition) query.getGroups( )
+					.get( i );
+			if ( group.getInterval( ) != IGroupDefinition.NO_INTERVAL )
+				return false;
+			IColumnDefinition column = resolveGroupKey( group );
+			if ( column == null || !isGroupable( column ) )
+				return false;
+			if ( !groupColumns.contains( column ) )
+				groupColumns.add( column );
+		}
+		if ( !groupColumns.containsAll( filterColumns ) )
+			return false;
+
+		aggregations = new HashMap<IColumnDefinition, String>( );
+		Iterator it = query.getBindings( ).values( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			if ( !planBinding( (IBinding) it.next( ) ) )
+				return false;
+		}
+
+		for ( int i = 0; i < query.getGroups( ).size( ); i++ )
+		{
+			IGroupDefinition group = (IGroupDefinition) query.getGroups( )
+					.get( i );
+			if ( !refersToGroupLevel( group.getFilters( ) )
+					|| !refersToGroupLevel( group.getSorts( ) ) )
+				return false;
+		}
+		return refersToGroupLevel( query.getSorts( ) );
+	}
+
+	private IColumnDefinition resolveGroupKey( IGroupDefinition group )
+			throws DataException
+	{
+		if ( group.getKeyExpression( ) != null )
+			return resolveColumn( group.getKeyExpression( ), false );
+		if ( group.getKeyColumn( ) == null )
+			return null;
+		IColumnDefinition column = resolveColumn( ExpressionUtil.createJSRowExpression( group.getKeyColumn( ) ),
+				false );
+		if ( column == null )
+			column = resolveColumn( ExpressionUtil.createJSDataSetRowExpression( group.getKeyColumn( ) ),
+					false );
+		return column;
+	}
+
+	/**
+	 * @param binding
+	 * @return whether the binding has the same value after grouping
+	 * @throws DataException
+	 */
+	private boolean planBinding( IBinding binding ) throws DataException
+	{
+		String function = binding.getAggrFunction( );
+		if ( function == null )
+			return binding.getExpression( ) instanceof IScriptExpression
+					&& refersToGroupLevel( ( (IScriptExpression) binding.getExpression( ) ).getText( ) );
+
+		if ( binding.getFilter( ) != null )
+			return false;
+		function = function.toUpperCase( );
+		if ( !function.equals( SUM )
+				&& !function.equals( MIN )
+				&& !function.equals( MAX ) )
+			return false;
+
+		List exprs = new ArrayList( );
+		if ( binding.getArguments( ) != null )
+			exprs.addAll( binding.getArguments( ) );
+		if ( binding.getExpression( ) != null )
+			exprs.add( binding.getExpression( ) );
+		if ( exprs.size( ) != 1 || !( exprs.get( 0 ) instanceof IScriptExpression ) )
+			return false;
+		IColumnDefinition column = resolveColumn( ( (IScriptExpression) exprs.get( 0 ) ).getText( ),
+				false );
+		if ( column == null
+				|| groupColumns.contains( column )
+				|| ( function.equals( SUM ) && !isNumeric( column ) ) )
+			return false;
+		String existing = aggregations.get( column );
+		if ( existing != null && !existing.equals( function ) )
+			return false;
+		aggregations.put( column, function );
+		return true;
+	}
+
+	/**
+	 * @param definitions
+	 *            filters or sorts
+	 * @return whether the definitions only refer to group keys and bindings
+	 * @throws DataException
+	 */
+	private boolean refersToGroupLevel( List definitions )
+			throws DataException
+	{
+		if ( definitions == null )
+			return true;
+		for ( int i = 0; i < definitions.size( ); i++ )
+		{
+			Object definition = definitions.get( i );
+			IBaseExpression expr = null;
+			if ( definition instanceof IFilterDefinition )
+			{
+				expr = ( (IFilterDefinition) definition ).getExpression( );
+			}
+			else if ( definition instanceof ISortDefinition )
+			{
+				ISortDefinition sort = (ISortDefinition) definition;
+				if ( sort.getExpression( ) == null )
+				{
+					if ( !query.getBindings( ).containsKey( sort.getColumn( ) ) )
+						return false;
+					continue;
+				}
+				expr = sort.getExpression( );
+			}
+			if ( expr instanceof IConditionalExpression )
+				expr = ( (IConditionalExpression) expr ).getExpression( );
+			if ( !( expr instanceof IScriptExpression )
+					|| !refersToGroupLevel( ( (IScriptExpression) expr ).getText( ) ) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param text
+	 * @return whether the expression only refers to group key columns of the
+	 *         data set and bindings of the query
+	 * @throws DataException
+	 */
+	private boolean refersToGroupLevel( String text ) throws DataException
+	{
+		if ( text == null || ExpressionUtil.hasAggregation( text ) )
+			return false;
+		try
+		{
+			List<IColumnBinding> references = ExpressionUtil.extractColumnExpressions( text,
+					ExpressionUtil.ROW_INDICATOR );
+			for ( int i = 0; i < references.size( ); i++ )
+			{
+				if ( !query.getBindings( ).containsKey( references.get( i )
+						.getResultSetColumnName( ) ) )
+					return false;
+			}
+			references = ExpressionUtil.extractColumnExpressions( text,
+					ExpressionUtil.DATASET_ROW_INDICATOR );
+			for ( int i = 0; i < references.size( ); i++ )
+			{
+				IColumnDefinition column = resolveColumn( ExpressionUtil.createJSDataSetRowExpression( references.get( i )
+						.getResultSetColumnName( ) ),
+						false );
+				if ( column == null || !groupColumns.contains( column ) )
+					return false;
+			}
+		}
+		catch ( BirtException e )
+		{
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The rows are ordered by the leading group and sort keys which are
+	 * columns. The data engine still sorts the rows, which is cheaper on
+	 * ordered rows.
+	 *
+	 * @throws DataException
+	 */
+	private void planOrderBy( ) throws DataException
+	{
+		orderBy = new ArrayList<String>( );
+		List groups = query.getGroups( );
+		if ( groups != null )
+		{
+			for ( int i = 0; i < groups.size( ); i++ )
+			{
+				IGroupDefinition group = (IGroupDefinition) groups.get( i );
+				IColumnDefinition column = group.getInterval( ) == IGroupDefinition.NO_INTERVAL
+						? resolveGroupKey( group ) : null;
+				if ( column == null )
+					return;
+				addOrderBy( column,
+						group.getSortDirection( ) == IGroupDefinition.SORT_DESC );
+			}
+		}
+		// the other columns are aggregated when the rows are grouped
+		if ( groupColumns != null )
+			return;
+		List sorts = query.getSorts( );
+		if ( sorts != null )
+		{
+			for ( int i = 0; i < sorts.size( ); i++ )
+			{
+				ISortDefinition sort = (ISortDefinition) sorts.get( i );
+				IColumnDefinition column = sort.getExpression( ) != null
+						? resolveColumn( sort.getExpression( ).getText( ),
+								false )
+						: resolveColumn( ExpressionUtil.createJSRowExpression( sort.getColumn( ) ),
+								false );
+				if ( column == null )
+					return;
+				addOrderBy( column,
+						sort.getSortDirection( ) == ISortDefinition.SORT_DESC );
+			}
+		}
+	}
+
+	private void addOrderBy( IColumnDefinition column, boolean descending )
+	{
+		orderBy.add( descending ? getNativeName( column ) + " DESC" //$NON-NLS-1$
+				: getNativeName( column ) );
+	}
+
+	/**
+	 * @param queryText
+	 * @return the wrapping query
+	 */
+	private String buildQueryText( String queryText )
+	{
+		StringBuffer result = new StringBuffer( "SELECT " ); //$NON-NLS-1$
+		if ( groupColumns == null )
+			result.append( "*" ); //$NON-NLS-1$
+		else
+			appendSelectList( result );
+		// the original query may end with a line comment
+		result.append( " FROM ( " ).append( queryText ).append( "\n) " ) //$NON-NLS-1$ //$NON-NLS-2$
+				.append( DERIVED_TABLE_NAME );
+		appendClause( result, " WHERE ", " AND ", conditions ); //$NON-NLS-1$ //$NON-NLS-2$
+		if ( groupColumns != null )
+		{
+			List<String> names = new ArrayList<String>( );
+			for ( int i = 0; i < groupColumns.size( ); i++ )
+				names.add( getNativeName( groupColumns.get( i ) ) );
+			appendClause( result, " GROUP BY ", ", ", names ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		appendClause( result, " ORDER BY ", ", ", orderBy ); //$NON-NLS-1$ //$NON-NLS-2$
+		return result.toString( );
+	}
+
+	/**
+	 * Select all the columns of the result set hints in their order. Columns
+	 * which are neither group keys nor aggregated are not used by the query,
+	 * and any of their values is kept.
+	 */
+	private void appendSelectList( StringBuffer result )
+	{
+		IColumnDefinition[] hints = (IColumnDefinition[]) dataSetDesign.getResultSetHints( )
+				.toArray( new IColumnDefinition[0] );
+		Arrays.sort( hints, new Comparator<IColumnDefinition>( ) {
+
+			public int compare( IColumnDefinition column1,
+					IColumnDefinition column2 )
+			{
+				return column1.getColumnPosition( )
+						- column2.getColumnPosition( );
+			}
+		} );
+		for ( int i = 0; i < hints.length; i++ )
+		{
+			String name = getNativeName( hints[i] );
+			if ( i > 0 )
+				result.append( ", " ); //$NON-NLS-1$
+			if ( groupColumns.contains( hints[i] ) )
+			{
+				result.append( name );
+				continue;
+			}
+			String function = aggregations.get( hints[i] );
+			result.append( function == null ? MAX : function )
+					.append( "(" ) //$NON-NLS-1$
+					.append( name )
+					.append( ") " ) //$NON-NLS-1$
+					.append( name );
+		}
+	}
+
+	private static void appendClause( StringBuffer result, String keyword,
+			String separator, List<String> items )
+	{
+		if ( items.isEmpty( ) )
+			return;
+		result.append( keyword );
+		for ( int i = 0; i < items.size( ); i++ )
+		{
+			if ( i > 0 )
+				result.append( separator );
+			result.append( items.get( i ) );
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.document;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+
+/**
+ * Save the expression values in column chunks. The values of a column in a
+ * chunk of rows are compressed together and saved after the row header of the
+ * expression value stream. The chunk directory is saved in the row length
+ * stream, which starts with COLUMNAR_INDICATOR instead of the offset of the
+ * first row:
+ *
+ * <pre>
+ * long COLUMNAR_INDICATOR, int chunk size, int column count
+ * for every chunk:
+ *     int row count, int missing row count, int[] missing rows
+ *     for every column:
+ *         long offset, int length, Object min, Object max
+ * </pre>
+ *
+ * A missing row is a row between two saved rows, which has no value. The min
+ * and max are null unless all the values of the column in the chunk are
+ * comparable values of the same class.
+ */
+class ColumnChunkSaveUtil
+{
+	static final long COLUMNAR_INDICATOR = -1;
+	static final int CHUNK_SIZE = 1024;
+
+	private DataOutputStream rowExprsDos;
+	private DataOutputStream rowLenDos;
+
+	private Object[] exprNames;
+	private Object[][] chunkValues;
+	private int chunkRowCount;
+	private int[] missingRows;
+	private int missingRowCount;
+	private long currentOffset;
+
+	/**
+	 * @param rowExprsDos
+	 * @param rowLenDos
+	 * @param exprNames
+	 *            the names of the columns in the order of the row header
+	 * @throws IOException
+	 */
+	ColumnChunkSaveUtil( DataOutputStream rowExprsDos,
+			DataOutputStream rowLenDos, Object[] exprNames ) throws IOException
+	{
+		this.rowExprsDos = rowExprsDos;
+		this.rowLenDos = rowLenDos;
+		this.exprNames = exprNames;
+		this.chunkValues = new Object[exprNames.length][CHUNK_SIZE];
+		this.missingRows = new int[CHUNK_SIZE];
+
+		IOUtil.writeLong( rowLenDos, COLUMNAR_INDICATOR );
+		IOUtil.writeInt( rowLenDos, CHUNK_SIZE );
+		IOUtil.writeInt( rowLenDos, exprNames.length );
+	}
+
+	/**
+	 * @param valueMap
+	 *            the values of the row, or null if the row is missing
+	 * @throws IOException
+	 */
+	void saveRow( Map valueMap ) throws IOException
+	{
+		if ( valueMap == null )
+		{
+			missingRows[missingRowCount++] = chunkRowCount;
+		}
+		else
+		{
+			for ( int i = 0; i < exprNames.length; i++ )
+			{
+				Object value = valueMap.get( exprNames[i] );
+				if ( value instanceof BirtException )
+					value = RowSaveUtil.EXCEPTION_INDICATOR;
+				chunkValues[i][chunkRowCount] = value;
+			}
+		}
+
+		chunkRowCount++;
+		if ( chunkRowCount == CHUNK_SIZE )
+			saveChunk( );
+	}
+
+	/**
+	 * Save the last chunk, which is not full.
+	 *
+	 * @throws IOException
+	 */
+	void saveFinish( ) throws IOException
+	{
+		if ( chunkRowCount > 0 )
+			saveChunk( );
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void saveChunk( ) throws IOException
+	{
+		IOUtil.writeInt( rowLenDos, chunkRowCount );
+		IOUtil.writeInt( rowLenDos, missingRowCount );
+		for ( int i = 0; i < missingRowCount; i++ )
+		{
+			IOUtil.writeInt( rowLenDos, missingRows[i] );
+		}
+
+		Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+		try
+		{
+			for ( int i = 0; i < exprNames.length; i++ )
+			{
+				Object[] values = chunkValues[i];
+
+				ByteArrayOutputStream tempBaos = new ByteArrayOutputStream( );
+				DataOutputStream tempDos = new DataOutputStream( new DeflaterOutputStream( tempBaos,
+						deflater ) );
+				for ( int j = 0; j < chunkRowCount; j++ )
+				{
+					IOUtil.writeObject( tempDos, values[j] );
+				}
+				tempDos.close( );
+				deflater.reset( );
+
+				byte[] bytes = tempBaos.toByteArray( );
+				IOUtil.writeRawBytes( rowExprsDos, bytes );
+
+				IOUtil.writeLong( rowLenDos, currentOffset );
+				IOUtil.writeInt( rowLenDos, bytes.length );
+				Object[] range = getRange( values, chunkRowCount );
+				IOUtil.writeObject( rowLenDos, range[0] );
+				IOUtil.writeObject( rowLenDos, range[1] );
+
+				currentOffset += bytes.length;
+				Arrays.fill( values, null );
+			}
+		}
+		finally
+		{
+			deflater.end( );
+		}
+
+		chunkRowCount = 0;
+		missingRowCount = 0;
+	}
+
+	/**
+	 * @param values
+	 * @param count
+	 * @return the min and max of the values, or nulls if they are not
+	 *         comparable
+	 */
+	private static Object[] getRange( Object[] values, int count )
+	{
+		Comparable min = null;
+		Comparable max = null;
+		for ( int i = 0; i < count; i++ )
+		{
+			Object value = values[i];
+			if ( value == null )
+				continue;
+			if ( value == RowSaveUtil.EXCEPTION_INDICATOR
+					|| !( value instanceof Comparable )
+					|| ( min != null && min.getClass( ) != value.getClass( ) ) )
+				return new Object[2];
+
+			Comparable comparable = (Comparable) value;
+			if ( min == null || comparable.compareTo( min ) < 0 )
+				min = comparable;
+			if ( max == null || comparable.compareTo( max ) > 0 )
+				max = comparable;
+		}
+		return new Object[]{
+				min, max
+		};
+	}
+}
@@ -182,6 +182,13 @@ public class RDLoad
 			exprDataResultSet = new ExprDataResultSet1( streamManager.getInStream( DataEngineContext.EXPR_VALUE_STREAM,
 					StreamManager.ROOT_STREAM,
 					StreamManager.BASE_SCOPE ),
+					version >= VersionManager.VERSION_4_2_4
+							&& streamManager.hasInStream( DataEngineContext.EXPR_ROWLEN_STREAM,
+									StreamManager.ROOT_STREAM,
+									StreamManager.BASE_SCOPE )
+							? streamManager.getInStream( DataEngineContext.EXPR_ROWLEN_STREAM,
+									StreamManager.ROOT_STREAM,
+									StreamManager.BASE_SCOPE ) : null,
 					exprMetas,
 					version,
 					( isSummary || version < VersionManager.VERSION_2_2_1_3 )
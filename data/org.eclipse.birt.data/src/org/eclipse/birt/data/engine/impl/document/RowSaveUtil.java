@@ -48,6 +48,7 @@ public class RowSaveUtil
 	private Map directColumnReferenceBinding;
 	private int version;
 	private Map bindingNameType;
+	private ColumnChunkSaveUtil chunkSaveUtil;
 	
 	/**
 	 * @param rowCount
@@ -83,9 +84,16 @@ public class RowSaveUtil
 			
 			saveNullRowsBetween( lastRowIndex, currIndex );
 			
-			int rowBytes = saveExprValue( valueMap );
-			IOUtil.writeLong( this.rowLenDos, currentOffset );
-			currentOffset += rowBytes;
+			if ( chunkSaveUtil != null )
+			{
+				chunkSaveUtil.saveRow( valueMap );
+			}
+			else
+			{
+				int rowBytes = saveExprValue( valueMap );
+				IOUtil.writeLong( this.rowLenDos, currentOffset );
+				currentOffset += rowBytes;
+			}
 			lastRowIndex = currIndex;
 		}
 		catch ( IOException e )
@@ -213,6 +221,8 @@ public class RowSaveUtil
 		try
 		{
 			saveNullRowsBetween( lastRowIndex, currIndex );
+			if ( chunkSaveUtil != null )
+				chunkSaveUtil.saveFinish( );
 
 			rowExprsDos.close( );
 			rowLenDos.close( );
@@ -250,6 +260,16 @@ public class RowSaveUtil
 					? this.initSave( map ) : this.saveExprValue( map );
 			IOUtil.writeInt( this.rowExprsDos, rowBytes );
 			this.rowExprsDos.flush( );
+			
+			// The column chunks need the row count to be known before hand,
+			// which is not the case of progressive viewing.
+			if ( this.version >= VersionManager.VERSION_4_2_4
+					&& this.rowCount > 0 )
+			{
+				this.chunkSaveUtil = new ColumnChunkSaveUtil( this.rowExprsDos,
+						this.rowLenDos,
+						exprNameSet.toArray( ) );
+			}
 		}
 		catch ( IOException e )
 		{
@@ -268,6 +288,11 @@ public class RowSaveUtil
 		int gapRows = currIndex - lastRowIndex - 1;
 		for ( int i = 0; i < gapRows; i++ )
 		{
+			if ( chunkSaveUtil != null )
+			{
+				chunkSaveUtil.saveRow( null );
+				continue;
+			}
 			IOUtil.writeInt( this.rowExprsDos, 0 );
 			IOUtil.writeLong( this.rowLenDos, currentOffset );
 			currentOffset += IOUtil.INT_LENGTH;
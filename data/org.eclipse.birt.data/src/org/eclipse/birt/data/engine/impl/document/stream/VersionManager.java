@@ -99,6 +99,9 @@ public class VersionManager
 	//Materialize nested aggregation for xtab query
 	public final static int VERSION_4_2_3 = 310;
 	
+	//Expression values are saved in compressed column chunks
+	public final static int VERSION_4_2_4 = 320;
+	
 	private DataEngineContext dataEngineContext;
 	private static Logger logger = Logger.getLogger( VersionManager.class.getName( ) );
 	
@@ -241,6 +244,6 @@ public class VersionManager
 	 */
 	public static int getLatestVersion( )
 	{
-		return VERSION_4_2_3;
+		return VERSION_4_2_4;
 	}
 }
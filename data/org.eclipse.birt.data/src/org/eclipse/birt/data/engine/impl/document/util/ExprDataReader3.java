@@ -0,0 +1,571 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.document.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.cache.BasicCachedArray;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.document.RowSaveUtil;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.impl.document.viewing.ExprMetaUtil;
+import org.eclipse.birt.data.engine.impl.document.viewing.IDataSetResultSet;
+import org.eclipse.birt.data.engine.impl.document.viewing.RowIndexUtil;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Read the expression values which are saved in column chunks. The chunk
+ * directory is read when the reader is created, while the values of a column
+ * are read and decompressed one chunk at a time only when the column is
+ * referenced, so the columns which are not used and the chunks which are moved
+ * over are never read.
+ * <p>
+ * If the row info stream is given, the rows are the valid rows of a report
+ * document based on this report document, as in ExprDataReader2. Otherwise
+ * all the rows are read, as in ExprDataReader1.
+ */
+class ExprDataReader3 implements IExprDataReader
+{
+	private static final long COLUMNAR_INDICATOR = -1;
+
+	private RAInputStream rowExprsIs;
+	private int rowCount;
+	private int currRowIndex;
+
+	private RowIndexUtil rowIndexUtil;
+	private BasicCachedArray rowIDMap;
+	private int nextDestIndex;
+
+	private Map exprValueMap;
+	private int exprValueIndex;
+
+	private Map columnIndexes;
+	private Map dataSetExprKeys;
+	private Map bindingNameTypeMap;
+	private IDataSetResultSet dataSetResultSet;
+	private ClassLoader currentClassLoader;
+	private long metaOffset;
+
+	// the chunk directory
+	private int chunkSize;
+	private int[] chunkRowCounts;
+	private int[][] missingRows;
+	private long[][] offsets;
+	private int[][] lengths;
+	private Object[][] minValues;
+	private Object[][] maxValues;
+
+	// the last read chunk of every column
+	private int[] columnChunkIndexes;
+	private Object[][] columnChunkValues;
+
+	/**
+	 * @param rowLenIs
+	 * @param version
+	 * @return whether the expression values are saved in column chunks
+	 * @throws DataException
+	 */
+	static boolean isColumnar( RAInputStream rowLenIs, int version ) throws DataException
+	{
+		if ( version < VersionManager.VERSION_4_2_4 || rowLenIs == null )
+			return false;
+		try
+		{
+			if ( rowLenIs.length( ) < IOUtil.LONG_LENGTH )
+				return false;
+			rowLenIs.seek( 0 );
+			boolean columnar = IOUtil.readLong( new DataInputStream( rowLenIs ) ) == COLUMNAR_INDICATOR;
+			rowLenIs.seek( 0 );
+			return columnar;
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_LOAD_ERROR,
+					e,
+					"Result Data" );
+		}
+	}
+
+	/**
+	 * @param tempDir
+	 * @param rowExprsIs
+	 * @param rowLenIs
+	 * @param rowInfoIs
+	 *            the valid row index of the report document based on this
+	 *            report document, or null if all the rows are read
+	 * @param dataSetResultSet
+	 * @throws DataException
+	 */
+	ExprDataReader3( String tempDir, RAInputStream rowExprsIs,
+			RAInputStream rowLenIs, RAInputStream rowInfoIs,
+			IDataSetResultSet dataSetResultSet ) throws DataException
+	{
+		try
+		{
+			this.currentClassLoader = DataEngineSession.getCurrentClassLoader( );
+			this.rowExprsIs = rowExprsIs;
+
+			rowExprsIs.seek( 0 );
+			this.rowCount = IOUtil.readInt( rowExprsIs );
+			DataInputStream rowExprsDis = new DataInputStream( rowExprsIs );
+			int exprCount = IOUtil.readInt( rowExprsDis );
+			this.columnIndexes = new HashMap( );
+			this.dataSetExprKeys = new HashMap( );
+			this.bindingNameTypeMap = new HashMap( );
+			for ( int i = 0; i < exprCount; i++ )
+			{
+				String key = IOUtil.readString( rowExprsDis );
+				this.columnIndexes.put( key, Integer.valueOf( i ) );
+				this.bindingNameTypeMap.put( key,
+						Integer.valueOf( IOUtil.readInt( rowExprsDis ) ) );
+			}
+
+			int dataSetColumnExprCount = IOUtil.readInt( rowExprsDis );
+			for ( int i = 0; i < dataSetColumnExprCount; i++ )
+			{
+				String key = IOUtil.readObject( rowExprsDis,
+						this.currentClassLoader ).toString( );
+				this.dataSetExprKeys.put( key,
+						IOUtil.readObject( rowExprsDis, this.currentClassLoader ) );
+				this.bindingNameTypeMap.put( key,
+						Integer.valueOf( IOUtil.readInt( rowExprsDis ) ) );
+			}
+			this.metaOffset = IOUtil.INT_LENGTH
+					+ IOUtil.readInt( rowExprsDis ) + IOUtil.INT_LENGTH;
+
+			if ( this.dataSetExprKeys.size( ) > 0 )
+				this.dataSetResultSet = dataSetResultSet;
+
+			loadChunkDirectory( rowLenIs, exprCount );
+
+			if ( rowInfoIs != null )
+			{
+				this.rowIndexUtil = new RowIndexUtil( rowInfoIs );
+				this.rowCount = (int) ( rowInfoIs.length( ) / 4 );
+				this.rowIDMap = new BasicCachedArray( tempDir, rowCount );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_LOAD_ERROR,
+					e,
+					"Result Data" );
+		}
+
+		this.currRowIndex = -1;
+		this.exprValueIndex = -1;
+	}
+
+	/**
+	 * @param rowLenIs
+	 * @param exprCount
+	 * @throws IOException
+	 */
+	private void loadChunkDirectory( RAInputStream rowLenIs, int exprCount )
+			throws IOException
+	{
+		rowLenIs.seek( 0 );
+		DataInputStream rowLenDis = new DataInputStream( rowLenIs );
+		IOUtil.readLong( rowLenDis );
+		this.chunkSize = IOUtil.readInt( rowLenDis );
+		int columnCount = IOUtil.readInt( rowLenDis );
+		assert columnCount == exprCount;
+
+		int maxChunkCount = chunkSize == 0 ? 0 : ( rowCount + chunkSize - 1 )
+				/ chunkSize;
+		int[] chunkRowCounts = new int[maxChunkCount];
+		int[][] missingRows = new int[maxChunkCount][];
+		long[][] offsets = new long[maxChunkCount][columnCount];
+		int[][] lengths = new int[maxChunkCount][columnCount];
+		Object[][] minValues = new Object[maxChunkCount][columnCount];
+		Object[][] maxValues = new Object[maxChunkCount][columnCount];
+
+		// less rows than the row count may have been saved
+		int chunkCount = 0;
+		long length = rowLenIs.length( );
+		while ( chunkCount < maxChunkCount && rowLenIs.getOffset( ) < length )
+		{
+			chunkRowCounts[chunkCount] = IOUtil.readInt( rowLenDis );
+			missingRows[chunkCount] = new int[IOUtil.readInt( rowLenDis )];
+			for ( int i = 0; i < missingRows[chunkCount].length; i++ )
+			{
+				missingRows[chunkCount][i] = IOUtil.readInt( rowLenDis );
+			}
+			for ( int i = 0; i < columnCount; i++ )
+			{
+				offsets[chunkCount][i] = IOUtil.readLong( rowLenDis );
+				lengths[chunkCount][i] = IOUtil.readInt( rowLenDis );
+				minValues[chunkCount][i] = IOUtil.readObject( rowLenDis,
+						this.currentClassLoader );
+				maxValues[chunkCount][i] = IOUtil.readObject( rowLenDis,
+						this.currentClassLoader );
+			}
+			chunkCount++;
+		}
+
+		this.chunkRowCounts = Arrays.copyOf( chunkRowCounts, chunkCount );
+		this.missingRows = Arrays.copyOf( missingRows, chunkCount );
+		this.offsets = Arrays.copyOf( offsets, chunkCount );
+		this.lengths = Arrays.copyOf( lengths, chunkCount );
+		this.minValues = Arrays.copyOf( minValues, chunkCount );
+		this.maxValues = Arrays.copyOf( maxValues, chunkCount );
+
+		this.columnChunkIndexes = new int[columnCount];
+		Arrays.fill( this.columnChunkIndexes, -1 );
+		this.columnChunkValues = new Object[columnCount][];
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#getRowCount()
+	 */
+	public int getCount( )
+	{
+		return this.rowCount;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#getRowId()
+	 */
+	public int getRowId( )
+	{
+		if ( this.rowIDMap != null )
+			return ( (Integer) rowIDMap.get( currRowIndex ) ).intValue( );
+
+		try
+		{
+			if ( this.dataSetResultSet != null
+					&& this.dataSetResultSet.getResultObject( ) != null )
+				return (Integer) this.dataSetResultSet.getResultObject( )
+						.getFieldValue( ExprMetaUtil.POS_NAME );
+			if ( this.bindingNameTypeMap.containsKey( ExprMetaUtil.POS_NAME ) )
+				return (Integer) this.getRowValue( )
+						.get( ExprMetaUtil.POS_NAME );
+		}
+		catch ( DataException e )
+		{
+			return -1;
+		}
+		return this.getRowIndex( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#getRowIndex()
+	 */
+	public int getRowIndex( )
+	{
+		if ( this.currRowIndex >= this.rowCount )
+			return this.rowCount;
+
+		return this.currRowIndex;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#next()
+	 */
+	public boolean next( ) throws DataException
+	{
+		if ( this.currRowIndex >= this.rowCount - 1 )
+		{
+			this.currRowIndex = this.rowCount;
+			return false;
+		}
+
+		this.currRowIndex++;
+		if ( this.rowIndexUtil != null )
+		{
+			this.nextDestIndex = rowIndexUtil.read( );
+			this.rowIDMap.set( currRowIndex, Integer.valueOf( nextDestIndex ) );
+		}
+		else if ( this.dataSetResultSet != null )
+		{
+			return this.dataSetResultSet.next( ) != null;
+		}
+		return true;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.util.IExprDataReader#moveTo(int)
+	 */
+	public void moveTo( int index ) throws DataException
+	{
+		if ( index < 0 || index >= this.rowCount )
+			throw new DataException( ResourceConstants.INVALID_ROW_INDEX,
+					Integer.valueOf( index ) );
+		else if ( index < currRowIndex )
+			throw new DataException( ResourceConstants.BACKWARD_SEEK_ERROR );
+		else if ( index == currRowIndex )
+			return;
+
+		if ( this.rowIndexUtil != null )
+		{
+			while ( this.currRowIndex < index )
+				this.next( );
+		}
+		else
+		{
+			// the chunks moved over are not read
+			this.currRowIndex = index;
+			this.getRowValue( );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#getRowValue()
+	 */
+	public Map getRowValue( ) throws DataException
+	{
+		int absoluteIndex = this.rowIndexUtil != null ? nextDestIndex
+				: currRowIndex;
+		if ( this.rowCount == 0 )
+			absoluteIndex = 0;
+		if ( this.exprValueMap != null && exprValueIndex == absoluteIndex )
+			return this.exprValueMap;
+
+		Map dataSetValues = new HashMap( );
+		if ( this.dataSetResultSet != null && this.rowCount > 0 )
+		{
+			this.dataSetResultSet.skipTo( absoluteIndex );
+			IResultObject o = this.dataSetResultSet.getResultObject( );
+			Iterator it = this.dataSetExprKeys.keySet( ).iterator( );
+			while ( it.hasNext( ) )
+			{
+				String key = it.next( ).toString( );
+				String value = (String) this.dataSetExprKeys.get( key );
+				try
+				{
+					dataSetValues.put( key,
+							o == null
+									? null
+									: DataTypeUtil.convert( o.getFieldValue( value ),
+											( (Integer) this.bindingNameTypeMap.get( key ) ).intValue( ) ) );
+				}
+				catch ( BirtException e )
+				{
+					dataSetValues.put( key, e );
+				}
+			}
+		}
+
+		this.exprValueIndex = absoluteIndex;
+		this.exprValueMap = new RowValueMap( absoluteIndex, dataSetValues );
+		return this.exprValueMap;
+	}
+
+	/**
+	 * @return the count of the saved chunks
+	 */
+	int getChunkCount( )
+	{
+		return this.offsets.length;
+	}
+
+	/**
+	 * @return the count of rows in a chunk, except the last one
+	 */
+	int getChunkSize( )
+	{
+		return this.chunkSize;
+	}
+
+	/**
+	 * Get the min and max values of a column in a chunk, with which the chunks
+	 * that can not satisfy a condition on the column can be skipped.
+	 *
+	 * @param name
+	 * @param chunkIndex
+	 * @return the min and max values, or null if the values of the column are
+	 *         not comparable in the chunk
+	 */
+	Object[] getChunkRange( String name, int chunkIndex )
+	{
+		Integer columnIndex = (Integer) this.columnIndexes.get( name );
+		if ( columnIndex == null
+				|| minValues[chunkIndex][columnIndex.intValue( )] == null )
+			return null;
+		return new Object[]{
+				minValues[chunkIndex][columnIndex.intValue( )],
+				maxValues[chunkIndex][columnIndex.intValue( )]
+		};
+	}
+
+	/**
+	 * @param absoluteIndex
+	 * @return whether the values of the row are saved
+	 */
+	private boolean isSaved( int absoluteIndex )
+	{
+		int chunkIndex = absoluteIndex / chunkSize;
+		return chunkIndex < missingRows.length
+				&& absoluteIndex % chunkSize < chunkRowCounts[chunkIndex]
+				&& Arrays.binarySearch( missingRows[chunkIndex],
+						absoluteIndex % chunkSize ) < 0;
+	}
+
+	/**
+	 * @param columnIndex
+	 * @param absoluteIndex
+	 * @return
+	 * @throws DataException
+	 */
+	private Object getColumnValue( int columnIndex, int absoluteIndex )
+			throws DataException
+	{
+		int chunkIndex = absoluteIndex / chunkSize;
+		if ( columnChunkIndexes[columnIndex] != chunkIndex )
+		{
+			columnChunkValues[columnIndex] = readColumnChunk( columnIndex,
+					chunkIndex );
+			columnChunkIndexes[columnIndex] = chunkIndex;
+		}
+		return columnChunkValues[columnIndex][absoluteIndex % chunkSize];
+	}
+
+	/**
+	 * @param columnIndex
+	 * @param chunkIndex
+	 * @return
+	 * @throws DataException
+	 */
+	private Object[] readColumnChunk( int columnIndex, int chunkIndex )
+			throws DataException
+	{
+		Inflater inflater = new Inflater( );
+		try
+		{
+			byte[] bytes = new byte[lengths[chunkIndex][columnIndex]];
+			rowExprsIs.seek( metaOffset + offsets[chunkIndex][columnIndex] );
+			rowExprsIs.readFully( bytes, 0, bytes.length );
+
+			DataInputStream dis = new DataInputStream( new InflaterInputStream( new ByteArrayInputStream( bytes ),
+					inflater ) );
+			Object[] values = new Object[chunkRowCounts[chunkIndex]];
+			for ( int i = 0; i < values.length; i++ )
+			{
+				values[i] = IOUtil.readObject( dis, this.currentClassLoader );
+			}
+			return values;
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_LOAD_ERROR,
+					e,
+					"Result Data" );
+		}
+		finally
+		{
+			inflater.end( );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.document.IExprResultReader#close()
+	 */
+	public void close( )
+	{
+		this.columnChunkValues = null;
+		this.exprValueMap = null;
+		if ( this.rowIndexUtil != null )
+		{
+			this.rowIndexUtil.close( );
+			this.rowIndexUtil = null;
+		}
+	}
+
+	/**
+	 * The values of a row, the values of the expressions are read when they
+	 * are got.
+	 */
+	private class RowValueMap extends AbstractMap
+	{
+		private int absoluteIndex;
+		private Map dataSetValues;
+		private boolean saved;
+
+		RowValueMap( int absoluteIndex, Map dataSetValues )
+		{
+			this.absoluteIndex = absoluteIndex;
+			this.dataSetValues = dataSetValues;
+			this.saved = isSaved( absoluteIndex );
+		}
+
+		/*
+		 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+		 */
+		public boolean containsKey( Object key )
+		{
+			return dataSetValues.containsKey( key )
+					|| ( saved && columnIndexes.containsKey( key ) );
+		}
+
+		/*
+		 * @see java.util.AbstractMap#get(java.lang.Object)
+		 */
+		public Object get( Object key )
+		{
+			if ( dataSetValues.containsKey( key ) )
+				return dataSetValues.get( key );
+
+			Integer columnIndex = (Integer) columnIndexes.get( key );
+			if ( !saved || columnIndex == null )
+				return null;
+
+			Object value;
+			try
+			{
+				value = getColumnValue( columnIndex.intValue( ), absoluteIndex );
+			}
+			catch ( DataException e )
+			{
+				return e;
+			}
+			if ( RowSaveUtil.EXCEPTION_INDICATOR.equals( value ) )
+				return new DataException( ResourceConstants.READ_COLUMN_VALUE_FROM_DOCUMENT_ERROR,
+						key );
+			return value;
+		}
+
+		/*
+		 * @see java.util.AbstractMap#entrySet()
+		 */
+		public Set entrySet( )
+		{
+			Map valueMap = new HashMap( );
+			if ( saved )
+			{
+				Iterator it = columnIndexes.keySet( ).iterator( );
+				while ( it.hasNext( ) )
+				{
+					Object key = it.next( );
+					valueMap.put( key, get( key ) );
+				}
+			}
+			valueMap.putAll( dataSetValues );
+			return valueMap.entrySet( );
+		}
+	}
+}
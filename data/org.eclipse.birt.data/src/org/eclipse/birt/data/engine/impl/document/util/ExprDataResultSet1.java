@@ -27,21 +27,31 @@ import org.eclipse.birt.data.engine.impl.document.viewing.IDataSetResultSet;
 public class ExprDataResultSet1 extends BaseExprDataResultSet
 {
 	private RAInputStream rowRAIs;
+	private RAInputStream rowLenRAIs;
 	
 	/**
 	 * @param rowIs,
 	 *            the input stream for expression row
+	 * @param rowLenRAIs,
+	 *            the input stream for expression row length, which is only
+	 *            needed if the expression values are saved in column chunks
 	 * @param inExprMetas,
 	 *            the expression meta data
 	 * @throws DataException 
 	 */
-	public ExprDataResultSet1( RAInputStream rowRAIs, ExprMetaInfo[] inExprMetas, int version, IDataSetResultSet dsRSet )
+	public ExprDataResultSet1( RAInputStream rowRAIs, RAInputStream rowLenRAIs, ExprMetaInfo[] inExprMetas, int version, IDataSetResultSet dsRSet )
 			throws DataException
 	{
 		this.rowRAIs = rowRAIs;
-		IExprDataReader exprDataReader = new ExprDataReader1( rowRAIs,
-				null,
-				version, dsRSet );
+		this.rowLenRAIs = rowLenRAIs;
+		IExprDataReader exprDataReader = ExprDataReader3.isColumnar( rowLenRAIs,
+				version )
+				? (IExprDataReader) new ExprDataReader3( null,
+						rowRAIs,
+						rowLenRAIs,
+						null,
+						dsRSet )
+				: new ExprDataReader1( rowRAIs, null, version, dsRSet );
 		this.rowCount = exprDataReader.getCount( );
 
 		super.init( inExprMetas, exprDataReader );
@@ -61,6 +71,11 @@ public class ExprDataResultSet1 extends BaseExprDataResultSet
 				rowRAIs.close( );
 				rowRAIs = null;
 			}
+			if ( rowLenRAIs != null )
+			{
+				rowLenRAIs.close( );
+				rowLenRAIs = null;
+			}
 		}
 		catch ( IOException e )
 		{
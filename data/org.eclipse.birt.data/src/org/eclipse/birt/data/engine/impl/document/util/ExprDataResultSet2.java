@@ -48,7 +48,14 @@ public class ExprDataResultSet2 extends BaseExprDataResultSet
 		this.rowLenIs = rowLenIs;
 		this.rowInfoIs = rowInfoIs;
 
-		IExprDataReader exprDataReader = new ExprDataReader2( tempDir, rowIs, rowLenIs, rowInfoIs, version, dataSetResultSet );
+		IExprDataReader exprDataReader = ExprDataReader3.isColumnar( rowLenIs,
+				version )
+				? (IExprDataReader) new ExprDataReader3( tempDir,
+						rowIs,
+						rowLenIs,
+						rowInfoIs,
+						dataSetResultSet )
+				: new ExprDataReader2( tempDir, rowIs, rowLenIs, rowInfoIs, version, dataSetResultSet );
 		this.rowCount = exprDataReader.getCount( );
 		
 		super.init( inExprMetas, exprDataReader );
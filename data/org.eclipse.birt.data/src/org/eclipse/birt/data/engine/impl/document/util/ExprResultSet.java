@@ -145,11 +145,19 @@ public class ExprResultSet implements IExprResultSet
 						StreamManager.SELF_SCOPE );
 			}
 			
-			this.exprResultReader = new ExprDataReader1( this.rowExprsRAIs,
-					this.rowLenRAIs,
-					this.version,
-					( this.qd instanceof IQueryDefinition && ( (IQueryDefinition) qd ).isSummaryQuery( ) )
-							? null : this.dataSetResultSet );
+			if ( ExprDataReader3.isColumnar( this.rowLenRAIs, this.version ) )
+				this.exprResultReader = new ExprDataReader3( tempDir,
+						this.rowExprsRAIs,
+						this.rowLenRAIs,
+						null,
+						( this.qd instanceof IQueryDefinition && ( (IQueryDefinition) qd ).isSummaryQuery( ) )
+								? null : this.dataSetResultSet );
+			else
+				this.exprResultReader = new ExprDataReader1( this.rowExprsRAIs,
+						this.rowLenRAIs,
+						this.version,
+						( this.qd instanceof IQueryDefinition && ( (IQueryDefinition) qd ).isSummaryQuery( ) )
+								? null : this.dataSetResultSet );
 			this.rowCount = exprResultReader.getCount( );
 		}
 		else
@@ -163,10 +171,16 @@ public class ExprResultSet implements IExprResultSet
 			rowInfoRAIs = streamManager.getInStream( DataEngineContext.ROW_INDEX_STREAM,
 					StreamManager.ROOT_STREAM,
 					StreamManager.SELF_SCOPE );
-			this.exprResultReader = new ExprDataReader2( tempDir,
-					rowExprsRAIs,
-					rowLenRAIs,
-					rowInfoRAIs, version, (this.qd instanceof IQueryDefinition && ( (IQueryDefinition) qd ).isSummaryQuery( ) )?null:this.dataSetResultSet );
+			if ( ExprDataReader3.isColumnar( rowLenRAIs, version ) )
+				this.exprResultReader = new ExprDataReader3( tempDir,
+						rowExprsRAIs,
+						rowLenRAIs,
+						rowInfoRAIs, (this.qd instanceof IQueryDefinition && ( (IQueryDefinition) qd ).isSummaryQuery( ) )?null:this.dataSetResultSet );
+			else
+				this.exprResultReader = new ExprDataReader2( tempDir,
+						rowExprsRAIs,
+						rowLenRAIs,
+						rowInfoRAIs, version, (this.qd instanceof IQueryDefinition && ( (IQueryDefinition) qd ).isSummaryQuery( ) )?null:this.dataSetResultSet );
 			this.rowCount = this.exprResultReader.getCount( );			
 		}
 	}
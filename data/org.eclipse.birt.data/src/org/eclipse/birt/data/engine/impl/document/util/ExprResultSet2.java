@@ -71,10 +71,16 @@ public class ExprResultSet2 extends ExprResultSet
 		rowInfoRAIs = streamManager.getInStream( DataEngineContext.ROW_INDEX_STREAM,
 				StreamManager.SUB_QUERY_STREAM,
 				StreamManager.SELF_SCOPE );
-		this.exprResultReader = new ExprDataReader2( tempDir,
-				rowExprsRAIs,
-				rowLenRAIs,
-				rowInfoRAIs, version, null );
+		if ( ExprDataReader3.isColumnar( rowLenRAIs, version ) )
+			this.exprResultReader = new ExprDataReader3( tempDir,
+					rowExprsRAIs,
+					rowLenRAIs,
+					rowInfoRAIs, null );
+		else
+			this.exprResultReader = new ExprDataReader2( tempDir,
+					rowExprsRAIs,
+					rowLenRAIs,
+					rowInfoRAIs, version, null );
 		
 		this.rowCount = this.exprResultReader.getCount( );
 	}
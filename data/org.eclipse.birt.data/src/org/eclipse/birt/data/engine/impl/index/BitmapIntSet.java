@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.util.Arrays;
+
+/**
+ * An ordered set of non-negative ints kept in a bitmap, one bit for every int
+ * up to the largest one. The sets of rows selected by the keys of an index are
+ * combined with <code>and</code> and <code>or</code>.
+ */
+public class BitmapIntSet implements IOrderedIntSet
+{
+
+	private long[] words;
+	// the count of ints, or -1 if it is not known
+	private int size;
+
+	public BitmapIntSet( )
+	{
+		this.words = new long[1];
+		this.size = 0;
+	}
+
+	/**
+	 * @param value
+	 *            a non-negative int
+	 */
+	public void add( int value )
+	{
+		assert value >= 0;
+		int index = value >>> 6;
+		if ( index >= words.length )
+			words = Arrays.copyOf( words,
+					Math.max( index + 1, words.length * 2 ) );
+		words[index] |= 1L << value;
+		size = -1;
+	}
+
+	/**
+	 * @param values
+	 *            non-negative ints
+	 */
+	public void addAll( int[] values )
+	{
+		for ( int i = 0; i < values.length; i++ )
+		{
+			add( values[i] );
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return whether the set contains the value
+	 */
+	public boolean contains( int value )
+	{
+		int index = value >>> 6;
+		return value >= 0
+				&& index < words.length
+				&& ( words[index] & ( 1L << value ) ) != 0;
+	}
+
+	/**
+	 * Keeps the ints which are also in the given set.
+	 *
+	 * @param set
+	 */
+	public void and( BitmapIntSet set )
+	{
+		for ( int i = 0; i < words.length; i++ )
+		{
+			words[i] &= i < set.words.length ? set.words[i] : 0;
+		}
+		size = -1;
+	}
+
+	/**
+	 * Adds the ints of the given set.
+	 *
+	 * @param set
+	 */
+	public void or( BitmapIntSet set )
+	{
+		if ( set.words.length > words.length )
+			words = Arrays.copyOf( words, set.words.length );
+		for ( int i = 0; i < set.words.length; i++ )
+		{
+			words[i] |= set.words[i];
+		}
+		size = -1;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#iterator()
+	 */
+	public IOrderedIntSetIterator iterator( )
+	{
+		return new IOrderedIntSetIterator( ) {
+
+			private int next = nextSetBit( 0 );
+
+			public boolean hasNext( )
+			{
+				return next >= 0;
+			}
+
+			public int next( )
+			{
+				int result = next;
+				next = nextSetBit( result + 1 );
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * @param from
+	 * @return the least int of the set not less than from, or -1 if there is
+	 *         none
+	 */
+	private int nextSetBit( int from )
+	{
+		int index = from >>> 6;
+		if ( index >= words.length )
+			return -1;
+		long word = words[index] & ( -1L << from );
+		while ( word == 0 )
+		{
+			if ( ++index == words.length )
+				return -1;
+			word = words[index];
+		}
+		return ( index << 6 ) + Long.numberOfTrailingZeros( word );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#isEmpty()
+	 */
+	public boolean isEmpty( )
+	{
+		return size( ) == 0;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#size()
+	 */
+	public int size( )
+	{
+		if ( size < 0 )
+		{
+			size = 0;
+			for ( int i = 0; i < words.length; i++ )
+			{
+				size += Long.bitCount( words[i] );
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * The index of the values of a column, which keeps the distinct values in
+ * ascending order, each with the ascending rows of the value. The rows of the
+ * values which equal, precede or follow a key are found by binary search.
+ * <p>
+ * The values are either numbers compared as doubles, or strings compared by
+ * <code>String.compareTo</code>, as the filters compare them without a
+ * collator. The kind of the index is the kind of the first value. The rows of
+ * the nulls and of the values of the other kind are not indexed, they are
+ * returned by <code>getUnindexedRows</code>.
+ * <p>
+ * For the EQ, LT, LE, GE and GT filters the key is a value, for the BETWEEN
+ * filter a list of the two bounds, and for the IN filter a list of values.
+ */
+public class DataSetSortedIndex implements IDataSetIndex
+{
+
+	private static final int NONE = 0;
+	private static final int NUMBER = 1;
+	private static final int STRING = 2;
+
+	private int keyType;
+	private Comparable[] keys;
+	private int[][] keyRows;
+	private int[] unindexedRows;
+
+	/**
+	 * Creates the index of the values of a column.
+	 *
+	 * @param values
+	 *            the value of every row
+	 */
+	public DataSetSortedIndex( List values )
+	{
+		this.keyType = NONE;
+		Map<Comparable, RowList> rowsOfKeys = new TreeMap<Comparable, RowList>( );
+		RowList others = new RowList( );
+		int row = 0;
+		for ( Iterator it = values.iterator( ); it.hasNext( ); row++ )
+		{
+			Object value = it.next( );
+			if ( keyType == NONE )
+				keyType = getKeyType( value );
+			Comparable key = toKey( value, keyType );
+			if ( key == null )
+			{
+				others.add( row );
+				continue;
+			}
+			RowList rows = rowsOfKeys.get( key );
+			if ( rows == null )
+			{
+				rows = new RowList( );
+				rowsOfKeys.put( key, rows );
+			}
+			rows.add( row );
+		}
+
+		this.keys = new Comparable[rowsOfKeys.size( )];
+		this.keyRows = new int[keys.length][];
+		int i = 0;
+		for ( Map.Entry<Comparable, RowList> entry : rowsOfKeys.entrySet( ) )
+		{
+			keys[i] = entry.getKey( );
+			keyRows[i] = entry.getValue( ).toArray( );
+			i++;
+		}
+		this.unindexedRows = others.toArray( );
+	}
+
+	/**
+	 * Loads an index saved by <code>save</code>.
+	 *
+	 * @param dis
+	 * @throws IOException
+	 */
+	public DataSetSortedIndex( DataInputStream dis ) throws IOException
+	{
+		this.keyType = IOUtil.readInt( dis );
+		int keyCount = IOUtil.readInt( dis );
+		this.keys = new Comparable[keyCount];
+		this.keyRows = new int[keyCount][];
+		for ( int i = 0; i < keyCount; i++ )
+		{
+			if ( keyType == NUMBER )
+				keys[i] = Double.valueOf( IOUtil.readDouble( dis ) );
+			else
+				keys[i] = IOUtil.readString( dis );
+			keyRows[i] = readRows( dis );
+		}
+		this.unindexedRows = readRows( dis );
+	}
+
+	/**
+	 * @param dos
+	 * @throws IOException
+	 */
+	public void save( DataOutputStream dos ) throws IOException
+	{
+		IOUtil.writeInt( dos, keyType );
+		IOUtil.writeInt( dos, keys.length );
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			if ( keyType == NUMBER )
+				IOUtil.writeDouble( dos, ( (Double) keys[i] ).doubleValue( ) );
+			else
+				IOUtil.writeString( dos, (String) keys[i] );
+			writeRows( dos, keyRows[i] );
+		}
+		writeRows( dos, unindexedRows );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IDataSetIndex#getKeyIndex(java.lang.Object, int)
+	 */
+	public IOrderedIntSet getKeyIndex( Object key, int filterType )
+			throws DataException
+	{
+		BitmapIntSet result = new BitmapIntSet( );
+		switch ( filterType )
+		{
+			case IConditionalExpression.OP_EQ :
+				addRows( result, lowerBound( key ), upperBound( key ) );
+				break;
+			case IConditionalExpression.OP_LT :
+				addRows( result, 0, lowerBound( key ) );
+				break;
+			case IConditionalExpression.OP_LE :
+				addRows( result, 0, upperBound( key ) );
+				break;
+			case IConditionalExpression.OP_GE :
+				addRows( result, lowerBound( key ), keys.length );
+				break;
+			case IConditionalExpression.OP_GT :
+				addRows( result, upperBound( key ), keys.length );
+				break;
+			case IConditionalExpression.OP_BETWEEN :
+				List bounds = (List) key;
+				addRows( result,
+						lowerBound( bounds.get( 0 ) ),
+						upperBound( bounds.get( 1 ) ) );
+				break;
+			case IConditionalExpression.OP_IN :
+				for ( Iterator it = ( (List) key ).iterator( ); it.hasNext( ); )
+				{
+					Object eachKey = it.next( );
+					addRows( result,
+							lowerBound( eachKey ),
+							upperBound( eachKey ) );
+				}
+				break;
+			default :
+				throw new UnsupportedOperationException( );
+		}
+		return result;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IDataSetIndex#supportFilter(int)
+	 */
+	public boolean supportFilter( int filterType ) throws DataException
+	{
+		return filterType == IConditionalExpression.OP_EQ
+				|| filterType == IConditionalExpression.OP_LT
+				|| filterType == IConditionalExpression.OP_LE
+				|| filterType == IConditionalExpression.OP_GE
+				|| filterType == IConditionalExpression.OP_GT
+				|| filterType == IConditionalExpression.OP_BETWEEN
+				|| filterType == IConditionalExpression.OP_IN;
+	}
+
+	/**
+	 * @param key
+	 * @return whether the key can be compared with the values of the index
+	 */
+	public boolean supportKey( Object key )
+	{
+		if ( keyType == NONE )
+			return getKeyType( key ) != NONE;
+		return toKey( key, keyType ) != null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IDataSetIndex#getAllKeyValues()
+	 */
+	public Object[] getAllKeyValues( ) throws DataException
+	{
+		return keys.clone( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IDataSetIndex#getAllKeyRows()
+	 */
+	public IOrderedIntSet getAllKeyRows( ) throws DataException
+	{
+		BitmapIntSet result = new BitmapIntSet( );
+		addRows( result, 0, keys.length );
+		return result;
+	}
+
+	/**
+	 * @return the rows of which the values are null or not of the kind of the
+	 *         index
+	 */
+	public IOrderedIntSet getUnindexedRows( )
+	{
+		BitmapIntSet result = new BitmapIntSet( );
+		result.addAll( unindexedRows );
+		return result;
+	}
+
+	private void addRows( BitmapIntSet result, int from, int to )
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			result.addAll( keyRows[i] );
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the index of the first key not less than the given key
+	 */
+	private int lowerBound( Object key )
+	{
+		Comparable value = checkKey( key );
+		int low = 0;
+		int high = keys.length;
+		while ( low < high )
+		{
+			int mid = ( low + high ) >>> 1;
+			if ( keys[mid].compareTo( value ) < 0 )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @param key
+	 * @return the index of the first key greater than the given key
+	 */
+	private int upperBound( Object key )
+	{
+		Comparable value = checkKey( key );
+		int low = 0;
+		int high = keys.length;
+		while ( low < high )
+		{
+			int mid = ( low + high ) >>> 1;
+			if ( keys[mid].compareTo( value ) <= 0 )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private Comparable checkKey( Object key )
+	{
+		if ( keyType == NONE && getKeyType( key ) != NONE )
+			return null;
+		Comparable value = toKey( key, keyType );
+		if ( value == null )
+			throw new UnsupportedOperationException( );
+		return value;
+	}
+
+	private static int getKeyType( Object value )
+	{
+		if ( value instanceof String )
+			return STRING;
+		if ( toKey( value, NUMBER ) != null )
+			return NUMBER;
+		return NONE;
+	}
+
+	/**
+	 * The integral and floating numbers are compared as doubles, the longs and
+	 * big decimals are not, as they lose precision as doubles.
+	 *
+	 * @param value
+	 * @param keyType
+	 * @return the key of the value, or null if it is not of the kind
+	 */
+	private static Comparable toKey( Object value, int keyType )
+	{
+		if ( keyType == STRING && value instanceof String )
+			return (String) value;
+		if ( keyType == NUMBER
+				&& ( value instanceof Double || value instanceof Float
+						|| value instanceof Integer || value instanceof Short || value instanceof Byte ) )
+			return Double.valueOf( ( (Number) value ).doubleValue( ) );
+		return null;
+	}
+
+	private static int[] readRows( DataInputStream dis ) throws IOException
+	{
+		int[] rows = new int[IOUtil.readInt( dis )];
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			rows[i] = IOUtil.readInt( dis );
+		}
+		return rows;
+	}
+
+	private static void writeRows( DataOutputStream dos, int[] rows )
+			throws IOException
+	{
+		IOUtil.writeInt( dos, rows.length );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			IOUtil.writeInt( dos, rows[i] );
+		}
+	}
+
+	/**
+	 * A growing list of rows.
+	 */
+	private static class RowList
+	{
+
+		private int[] rows = new int[4];
+		private int count;
+
+		void add( int row )
+		{
+			if ( count == rows.length )
+				rows = Arrays.copyOf( rows, count * 2 );
+			rows[count++] = row;
+		}
+
+		int[] toArray( )
+		{
+			return Arrays.copyOf( rows, count );
+		}
+	}
+}
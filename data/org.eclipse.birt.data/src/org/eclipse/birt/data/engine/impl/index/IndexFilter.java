@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.data.ExpressionUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.IBaseExpression;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.api.ICollectionConditionalExpression;
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.IExpressionCollection;
+import org.eclipse.birt.data.engine.api.IFilterDefinition;
+import org.eclipse.birt.data.engine.api.IScriptExpression;
+import org.eclipse.birt.data.engine.api.querydefn.BaseExpression;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.expression.ExpressionCompilerUtil;
+
+/**
+ * A filter which compares a data set column with literal values, of which the
+ * rows can be found by the index of the column instead of evaluating the
+ * filter on every row. The operator is one of EQ, LT, LE, GE, GT, BETWEEN and
+ * IN.
+ */
+public class IndexFilter
+{
+
+	private static final Pattern NUMBER_LITERAL = Pattern.compile( "-?((0|[1-9]\\d*)(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?" ); //$NON-NLS-1$
+	private static final Object NOT_LITERAL = new Object( );
+	// row.__rownum, row["__rownum"], row._rownum, row[0] and dataSetRow[0]
+	private static final Pattern ROW_INDEX = Pattern.compile( "_rownum|\\b(row|dataSetRow)\\s*\\[\\s*0\\s*\\]" ); //$NON-NLS-1$
+
+	private String columnName;
+	private int dataType;
+	private int operator;
+	private List operands;
+
+	private IndexFilter( String columnName, int dataType, int operator,
+			List operands )
+	{
+		this.columnName = columnName;
+		this.dataType = dataType;
+		this.operator = operator;
+		this.operands = operands;
+	}
+
+	/**
+	 * Creates the index filter of a filter if the filter compares a column
+	 * with literal values.
+	 *
+	 * @param filter
+	 * @param bindings
+	 *            the bindings of the query if it is a query filter, or null if
+	 *            it is a data set filter
+	 * @param collator
+	 *            the collator the filters compare strings with, or null if
+	 *            they compare them by <code>String.compareTo</code>
+	 * @return the index filter, or null if the filter cannot use an index
+	 * @throws DataException
+	 */
+	public static IndexFilter newInstance( IFilterDefinition filter,
+			Map<String, IBinding> bindings, Comparator collator )
+			throws DataException
+	{
+		if ( !( filter.getExpression( ) instanceof IConditionalExpression ) )
+			return null;
+		IConditionalExpression expr = (IConditionalExpression) filter.getExpression( );
+		int operator = expr.getOperator( );
+		if ( expr.getHandle( ) != null
+				|| expr.getExpression( ) == null
+				|| !isIndexOperator( operator )
+				|| !isAnyType( expr.getExpression( ).getDataType( ) ) )
+			return null;
+
+		String columnName;
+		int dataType = DataType.ANY_TYPE;
+		try
+		{
+			String text = expr.getExpression( ).getText( );
+			if ( text == null
+					|| BaseExpression.constantId.equals( expr.getExpression( )
+							.getScriptId( ) ) )
+				return null;
+			columnName = ExpressionUtil.getColumnName( text );
+			String rowName = ExpressionUtil.getColumnBindingName( text );
+			if ( columnName == null && rowName != null )
+			{
+				if ( bindings == null )
+				{
+					// row["xxx"] of a data set filter is the data set column
+					columnName = rowName;
+				}
+				else
+				{
+					IBinding binding = bindings.get( rowName );
+					if ( binding == null
+							|| binding.getAggrFunction( ) != null
+							|| !( binding.getExpression( ) instanceof IScriptExpression ) )
+						return null;
+					IScriptExpression bindingExpr = (IScriptExpression) binding.getExpression( );
+					if ( bindingExpr.getText( ) == null
+							|| !isAnyType( bindingExpr.getDataType( ) ) )
+						return null;
+					columnName = ExpressionUtil.getColumnName( bindingExpr.getText( ) );
+					dataType = binding.getDataType( );
+				}
+			}
+		}
+		catch ( BirtException e )
+		{
+			return null;
+		}
+		if ( columnName == null )
+			return null;
+
+		List operands = new ArrayList( );
+		if ( operator == IConditionalExpression.OP_IN )
+		{
+			if ( expr.getOperand1( ) instanceof IExpressionCollection )
+			{
+				for ( Iterator it = ( (IExpressionCollection) expr.getOperand1( ) ).getExpressions( )
+						.iterator( ); it.hasNext( ); )
+				{
+					operands.add( getLiteralValue( (IBaseExpression) it.next( ) ) );
+				}
+			}
+			else
+			{
+				operands.add( getLiteralValue( expr.getOperand1( ) ) );
+			}
+		}
+		else
+		{
+			operands.add( getLiteralValue( expr.getOperand1( ) ) );
+			if ( operator == IConditionalExpression.OP_BETWEEN )
+				operands.add( getLiteralValue( expr.getOperand2( ) ) );
+		}
+		for ( int i = 0; i < operands.size( ); i++ )
+		{
+			Object operand = operands.get( i );
+			if ( !( operand instanceof Number || operand instanceof String ) )
+				return null;
+			// the IN filter compares strings without the collator
+			if ( operand instanceof String
+					&& collator != null
+					&& operator != IConditionalExpression.OP_IN )
+				return null;
+		}
+		return new IndexFilter( columnName, dataType, operator, operands );
+	}
+
+	/**
+	 * @return the name of the data set column
+	 */
+	public String getColumnName( )
+	{
+		return columnName;
+	}
+
+	/**
+	 * @return the operator of the filter
+	 */
+	public int getOperator( )
+	{
+		return operator;
+	}
+
+	/**
+	 * @return the literal values the column is compared with
+	 */
+	public List getOperands( )
+	{
+		return operands;
+	}
+
+	/**
+	 * The filter compares the values of the column converted to the data type
+	 * of the binding, which are the same values only if the conversion keeps
+	 * them.
+	 *
+	 * @param valueClass
+	 *            the class of the values of the column
+	 * @return whether the filter compares the values of the column as they are
+	 */
+	public boolean comparesValuesOf( Class valueClass )
+	{
+		if ( isAnyType( dataType ) )
+			return true;
+		return dataType == DataTypeUtil.toApiDataType( valueClass )
+				&& ( valueClass == Integer.class
+						|| valueClass == Double.class || valueClass == String.class );
+	}
+
+	/**
+	 * Selects the rows of the filter by the index of the column. The rows of
+	 * which the values are not indexed are always selected, as the filter is
+	 * still to be evaluated on them.
+	 *
+	 * @param index
+	 * @return the selected rows, or null if the index cannot select them
+	 * @throws DataException
+	 */
+	public BitmapIntSet selectRows( DataSetSortedIndex index )
+			throws DataException
+	{
+		for ( int i = 0; i < operands.size( ); i++ )
+		{
+			if ( !index.supportKey( operands.get( i ) ) )
+				return null;
+		}
+		Object key = operator == IConditionalExpression.OP_BETWEEN
+				|| operator == IConditionalExpression.OP_IN ? operands
+				: operands.get( 0 );
+		BitmapIntSet result = (BitmapIntSet) index.getKeyIndex( key, operator );
+		result.or( (BitmapIntSet) index.getUnindexedRows( ) );
+		return result;
+	}
+
+	/**
+	 * Tests whether an expression refers to the row index, directly or by the
+	 * bindings it refers to. The rows which the indexes leave out are never
+	 * fetched, so that such an expression would get the index of the row in
+	 * the selected rows instead of in the data set.
+	 *
+	 * @param expr
+	 * @param bindings
+	 *            the bindings the expression refers to as row["xxx"], or null
+	 *            if it refers to the data set columns only
+	 * @return whether the expression refers to the row index
+	 * @throws DataException
+	 */
+	public static boolean refersToRowIndex( IBaseExpression expr,
+			Map<String, IBinding> bindings ) throws DataException
+	{
+		return refersToRowIndex( expr, bindings, new HashSet<String>( ) );
+	}
+
+	private static boolean refersToRowIndex( IBaseExpression expr,
+			Map<String, IBinding> bindings, Set<String> visitedBindings )
+			throws DataException
+	{
+		if ( expr instanceof IScriptExpression )
+		{
+			String text = ( (IScriptExpression) expr ).getText( );
+			if ( text == null
+					|| BaseExpression.constantId.equals( ( (IScriptExpression) expr ).getScriptId( ) ) )
+				return false;
+			if ( ROW_INDEX.matcher( text ).find( ) )
+				return true;
+			if ( bindings == null )
+				return false;
+			List<String> names = ExpressionCompilerUtil.extractColumnExpression( expr,
+					ExpressionUtil.ROW_INDICATOR );
+			for ( String name : names )
+			{
+				IBinding binding = bindings.get( name );
+				if ( binding != null
+						&& visitedBindings.add( name )
+						&& refersToRowIndex( binding.getExpression( ),
+								bindings,
+								visitedBindings ) )
+					return true;
+			}
+			return false;
+		}
+		if ( expr instanceof IConditionalExpression )
+		{
+			IConditionalExpression condition = (IConditionalExpression) expr;
+			return refersToRowIndex( condition.getExpression( ),
+					bindings,
+					visitedBindings )
+					|| refersToRowIndex( condition.getOperand1( ),
+							bindings,
+							visitedBindings )
+					|| refersToRowIndex( condition.getOperand2( ),
+							bindings,
+							visitedBindings );
+		}
+		if ( expr instanceof IExpressionCollection )
+		{
+			for ( Iterator it = ( (IExpressionCollection) expr ).getExpressions( )
+					.iterator( ); it.hasNext( ); )
+			{
+				if ( refersToRowIndex( (IBaseExpression) it.next( ),
+						bindings,
+						visitedBindings ) )
+					return true;
+			}
+			return false;
+		}
+		if ( expr instanceof ICollectionConditionalExpression )
+		{
+			ICollectionConditionalExpression condition = (ICollectionConditionalExpression) expr;
+			for ( IScriptExpression operand : condition.getExpr( ) )
+			{
+				if ( refersToRowIndex( operand, bindings, visitedBindings ) )
+					return true;
+			}
+			for ( Collection<IScriptExpression> operands : condition.getOperand( ) )
+			{
+				for ( IScriptExpression operand : operands )
+				{
+					if ( refersToRowIndex( operand, bindings, visitedBindings ) )
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isIndexOperator( int operator )
+	{
+		return operator == IConditionalExpression.OP_EQ
+				|| operator == IConditionalExpression.OP_LT
+				|| operator == IConditionalExpression.OP_LE
+				|| operator == IConditionalExpression.OP_GE
+				|| operator == IConditionalExpression.OP_GT
+				|| operator == IConditionalExpression.OP_BETWEEN
+				|| operator == IConditionalExpression.OP_IN;
+	}
+
+	private static boolean isAnyType( int dataType )
+	{
+		return dataType == DataType.ANY_TYPE
+				|| dataType == DataType.UNKNOWN_TYPE
+				|| dataType == DataType.JAVA_OBJECT_TYPE;
+	}
+
+	/**
+	 * Gets the value of a constant expression, or of a script which is a
+	 * number or string literal, the same as it is evaluated.
+	 *
+	 * @param expr
+	 * @return the value, or NOT_LITERAL if it is not a literal
+	 */
+	private static Object getLiteralValue( IBaseExpression expr )
+	{
+		if ( !( expr instanceof IScriptExpression ) )
+			return NOT_LITERAL;
+		IScriptExpression scriptExpr = (IScriptExpression) expr;
+		Object value;
+		if ( BaseExpression.constantId.equals( scriptExpr.getScriptId( ) ) )
+		{
+			value = scriptExpr.getHandle( ) != null ? scriptExpr.getHandle( )
+					: scriptExpr.getText( );
+		}
+		else
+		{
+			String text = scriptExpr.getText( ) == null ? null
+					: scriptExpr.getText( ).trim( );
+			if ( text == null || text.length( ) == 0 )
+				return NOT_LITERAL;
+			if ( NUMBER_LITERAL.matcher( text ).matches( ) )
+			{
+				value = Double.valueOf( text );
+			}
+			else if ( text.length( ) >= 2
+					&& ( text.charAt( 0 ) == '"' || text.charAt( 0 ) == '\'' )
+					&& text.charAt( text.length( ) - 1 ) == text.charAt( 0 )
+					&& text.indexOf( '\\' ) < 0
+					&& text.indexOf( text.charAt( 0 ), 1 ) == text.length( ) - 1 )
+			{
+				value = text.substring( 1, text.length( ) - 1 );
+			}
+			else
+			{
+				return NOT_LITERAL;
+			}
+		}
+		try
+		{
+			return DataTypeUtil.convert( value, scriptExpr.getDataType( ) );
+		}
+		catch ( BirtException e )
+		{
+			return NOT_LITERAL;
+		}
+	}
+}
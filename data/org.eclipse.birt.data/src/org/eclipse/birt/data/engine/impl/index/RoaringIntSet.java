@@ -0,0 +1,601 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed ordered set of non-negative ints. The ints are grouped by
+ * their high 16 bits into chunks, each kept in a container of the low 16
+ * bits: a sorted array of chars if the chunk has at most 4096 ints, or a
+ * bitmap of 65536 bits otherwise. A sparse set takes 2 bytes an int, and a
+ * dense one 1 bit an int, while <code>and</code> and <code>or</code> work on
+ * the matching chunks only.
+ */
+public class RoaringIntSet implements IOrderedIntSet
+{
+
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORD_COUNT = 1024;
+
+	// the high 16 bits of the chunks in ascending order
+	private char[] keys;
+	private Container[] containers;
+	private int containerCount;
+
+	public RoaringIntSet( )
+	{
+		this.keys = new char[4];
+		this.containers = new Container[4];
+		this.containerCount = 0;
+	}
+
+	/**
+	 * @param value
+	 *            a non-negative int
+	 */
+	public void add( int value )
+	{
+		assert value >= 0;
+		char key = (char) ( value >>> 16 );
+		int index;
+		// the ints are mostly added in ascending order
+		if ( containerCount > 0 && keys[containerCount - 1] == key )
+			index = containerCount - 1;
+		else
+			index = binarySearch( key );
+		if ( index < 0 )
+		{
+			index = -index - 1;
+			insertContainer( index, key, new ArrayContainer( ) );
+		}
+		containers[index] = containers[index].add( (char) value );
+	}
+
+	/**
+	 * @param values
+	 *            non-negative ints
+	 */
+	public void addAll( int[] values )
+	{
+		for ( int i = 0; i < values.length; i++ )
+		{
+			add( values[i] );
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return whether the set contains the value
+	 */
+	public boolean contains( int value )
+	{
+		if ( value < 0 )
+			return false;
+		int index = binarySearch( (char) ( value >>> 16 ) );
+		return index >= 0 && containers[index].contains( (char) value );
+	}
+
+	/**
+	 * Keeps the ints which are also in the given set.
+	 *
+	 * @param set
+	 */
+	public void and( RoaringIntSet set )
+	{
+		int count = 0;
+		int j = 0;
+		for ( int i = 0; i < containerCount; i++ )
+		{
+			while ( j < set.containerCount && set.keys[j] < keys[i] )
+				j++;
+			if ( j == set.containerCount )
+				break;
+			if ( set.keys[j] != keys[i] )
+				continue;
+			Container container = containers[i].and( set.containers[j] );
+			if ( container.size( ) > 0 )
+			{
+				keys[count] = keys[i];
+				containers[count] = container;
+				count++;
+			}
+		}
+		Arrays.fill( containers, count, containerCount, null );
+		containerCount = count;
+	}
+
+	/**
+	 * Adds the ints of the given set.
+	 *
+	 * @param set
+	 */
+	public void or( RoaringIntSet set )
+	{
+		int i = 0;
+		for ( int j = 0; j < set.containerCount; j++ )
+		{
+			while ( i < containerCount && keys[i] < set.keys[j] )
+				i++;
+			if ( i < containerCount && keys[i] == set.keys[j] )
+				containers[i] = containers[i].or( set.containers[j] );
+			else
+				insertContainer( i, set.keys[j], set.containers[j].copy( ) );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#iterator()
+	 */
+	public IOrderedIntSetIterator iterator( )
+	{
+		return new IOrderedIntSetIterator( ) {
+
+			private int index = 0;
+			private int next = findNext( 0 );
+
+			public boolean hasNext( )
+			{
+				return next >= 0;
+			}
+
+			public int next( )
+			{
+				int result = next;
+				next = findNext( ( result & 0xFFFF ) + 1 );
+				return result;
+			}
+
+			/**
+			 * @param from
+			 *            the low 16 bits to start from in the current chunk
+			 * @return the next int, or -1 if there is none
+			 */
+			private int findNext( int from )
+			{
+				while ( index < containerCount )
+				{
+					int low = from > 0xFFFF ? -1
+							: containers[index].nextValue( from );
+					if ( low >= 0 )
+						return ( keys[index] << 16 ) | low;
+					index++;
+					from = 0;
+				}
+				return -1;
+			}
+		};
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#isEmpty()
+	 */
+	public boolean isEmpty( )
+	{
+		return containerCount == 0;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#size()
+	 */
+	public int size( )
+	{
+		int size = 0;
+		for ( int i = 0; i < containerCount; i++ )
+		{
+			size += containers[i].size( );
+		}
+		return size;
+	}
+
+	/**
+	 * @return the bytes which <code>valueOf</code> reads the set from
+	 */
+	public byte[] toByteArray( )
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream( );
+		DataOutputStream dos = new DataOutputStream( baos );
+		try
+		{
+			dos.writeInt( containerCount );
+			for ( int i = 0; i < containerCount; i++ )
+			{
+				dos.writeChar( keys[i] );
+				containers[i].write( dos );
+			}
+			dos.close( );
+		}
+		catch ( IOException e )
+		{
+			// not thrown by the byte array stream
+			throw new IllegalStateException( e.getMessage( ) );
+		}
+		return baos.toByteArray( );
+	}
+
+	/**
+	 * @param bytes
+	 *            the bytes of <code>toByteArray</code>
+	 * @return the set
+	 * @throws IOException
+	 */
+	public static RoaringIntSet valueOf( byte[] bytes ) throws IOException
+	{
+		DataInputStream dis = new DataInputStream( new ByteArrayInputStream( bytes ) );
+		RoaringIntSet result = new RoaringIntSet( );
+		int count = dis.readInt( );
+		result.keys = new char[Math.max( count, 1 )];
+		result.containers = new Container[result.keys.length];
+		for ( int i = 0; i < count; i++ )
+		{
+			result.keys[i] = dis.readChar( );
+			int size = dis.readInt( );
+			if ( size > ARRAY_MAX_SIZE )
+			{
+				long[] words = new long[BITMAP_WORD_COUNT];
+				for ( int j = 0; j < words.length; j++ )
+				{
+					words[j] = dis.readLong( );
+				}
+				result.containers[i] = new BitmapContainer( words, size );
+			}
+			else
+			{
+				char[] values = new char[size];
+				for ( int j = 0; j < size; j++ )
+				{
+					values[j] = dis.readChar( );
+				}
+				result.containers[i] = new ArrayContainer( values, size );
+			}
+		}
+		result.containerCount = count;
+		return result;
+	}
+
+	private int binarySearch( char key )
+	{
+		int low = 0;
+		int high = containerCount - 1;
+		while ( low <= high )
+		{
+			int mid = ( low + high ) >>> 1;
+			if ( keys[mid] < key )
+				low = mid + 1;
+			else if ( keys[mid] > key )
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -( low + 1 );
+	}
+
+	private void insertContainer( int index, char key, Container container )
+	{
+		if ( containerCount == keys.length )
+		{
+			keys = Arrays.copyOf( keys, containerCount * 2 );
+			containers = Arrays.copyOf( containers, containerCount * 2 );
+		}
+		System.arraycopy( keys, index, keys, index + 1, containerCount
+				- index );
+		System.arraycopy( containers,
+				index,
+				containers,
+				index + 1,
+				containerCount - index );
+		keys[index] = key;
+		containers[index] = container;
+		containerCount++;
+	}
+
+	/**
+	 * The low 16 bits of the ints of a chunk. The operations return the
+	 * container of the result, which is of the kind that suits its size.
+	 */
+	private static abstract class Container
+	{
+
+		abstract Container add( char value );
+
+		abstract boolean contains( char value );
+
+		abstract Container and( Container other );
+
+		abstract Container or( Container other );
+
+		abstract int size( );
+
+		/**
+		 * @param from
+		 * @return the least value not less than from, or -1 if there is none
+		 */
+		abstract int nextValue( int from );
+
+		abstract Container copy( );
+
+		abstract void write( DataOutputStream dos ) throws IOException;
+	}
+
+	private static class ArrayContainer extends Container
+	{
+
+		private char[] values;
+		private int size;
+
+		ArrayContainer( )
+		{
+			this( new char[4], 0 );
+		}
+
+		ArrayContainer( char[] values, int size )
+		{
+			this.values = values;
+			this.size = size;
+		}
+
+		Container add( char value )
+		{
+			int index;
+			if ( size == 0 || values[size - 1] < value )
+				index = size;
+			else
+			{
+				index = Arrays.binarySearch( values, 0, size, value );
+				if ( index >= 0 )
+					return this;
+				index = -index - 1;
+			}
+			if ( size == ARRAY_MAX_SIZE )
+				return toBitmap( ).add( value );
+			if ( size == values.length )
+				values = Arrays.copyOf( values, Math.min( size * 2,
+						ARRAY_MAX_SIZE ) );
+			System.arraycopy( values, index, values, index + 1, size - index );
+			values[index] = value;
+			size++;
+			return this;
+		}
+
+		boolean contains( char value )
+		{
+			return Arrays.binarySearch( values, 0, size, value ) >= 0;
+		}
+
+		Container and( Container other )
+		{
+			char[] result = new char[size];
+			int count = 0;
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				int j = 0;
+				for ( int i = 0; i < size && j < array.size; )
+				{
+					if ( values[i] < array.values[j] )
+						i++;
+					else if ( values[i] > array.values[j] )
+						j++;
+					else
+					{
+						result[count++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else
+			{
+				for ( int i = 0; i < size; i++ )
+				{
+					if ( other.contains( values[i] ) )
+						result[count++] = values[i];
+				}
+			}
+			return new ArrayContainer( result, count );
+		}
+
+		Container or( Container other )
+		{
+			if ( other instanceof BitmapContainer )
+				return other.or( this );
+			ArrayContainer array = (ArrayContainer) other;
+			char[] result = new char[size + array.size];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+			while ( i < size || j < array.size )
+			{
+				if ( j == array.size
+						|| ( i < size && values[i] < array.values[j] ) )
+					result[count++] = values[i++];
+				else if ( i == size || values[i] > array.values[j] )
+					result[count++] = array.values[j++];
+				else
+				{
+					result[count++] = values[i++];
+					j++;
+				}
+			}
+			ArrayContainer union = new ArrayContainer( result, count );
+			return count > ARRAY_MAX_SIZE ? union.toBitmap( ) : union;
+		}
+
+		int size( )
+		{
+			return size;
+		}
+
+		int nextValue( int from )
+		{
+			int index = Arrays.binarySearch( values, 0, size, (char) from );
+			if ( index < 0 )
+				index = -index - 1;
+			return index < size ? values[index] : -1;
+		}
+
+		Container copy( )
+		{
+			return new ArrayContainer( Arrays.copyOf( values, size ), size );
+		}
+
+		void write( DataOutputStream dos ) throws IOException
+		{
+			dos.writeInt( size );
+			for ( int i = 0; i < size; i++ )
+			{
+				dos.writeChar( values[i] );
+			}
+		}
+
+		private BitmapContainer toBitmap( )
+		{
+			long[] words = new long[BITMAP_WORD_COUNT];
+			for ( int i = 0; i < size; i++ )
+			{
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+			return new BitmapContainer( words, size );
+		}
+	}
+
+	private static class BitmapContainer extends Container
+	{
+
+		private long[] words;
+		private int size;
+
+		BitmapContainer( long[] words, int size )
+		{
+			this.words = words;
+			this.size = size;
+		}
+
+		Container add( char value )
+		{
+			long bit = 1L << value;
+			if ( ( words[value >>> 6] & bit ) == 0 )
+			{
+				words[value >>> 6] |= bit;
+				size++;
+			}
+			return this;
+		}
+
+		boolean contains( char value )
+		{
+			return ( words[value >>> 6] & ( 1L << value ) ) != 0;
+		}
+
+		Container and( Container other )
+		{
+			if ( other instanceof ArrayContainer )
+				return other.and( this );
+			long[] result = new long[BITMAP_WORD_COUNT];
+			int count = 0;
+			for ( int i = 0; i < BITMAP_WORD_COUNT; i++ )
+			{
+				result[i] = words[i] & ( (BitmapContainer) other ).words[i];
+				count += Long.bitCount( result[i] );
+			}
+			return toContainer( result, count );
+		}
+
+		Container or( Container other )
+		{
+			long[] result = words.clone( );
+			int count = size;
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				for ( int i = 0; i < array.size; i++ )
+				{
+					char value = array.values[i];
+					long bit = 1L << value;
+					if ( ( result[value >>> 6] & bit ) == 0 )
+					{
+						result[value >>> 6] |= bit;
+						count++;
+					}
+				}
+			}
+			else
+			{
+				count = 0;
+				for ( int i = 0; i < BITMAP_WORD_COUNT; i++ )
+				{
+					result[i] |= ( (BitmapContainer) other ).words[i];
+					count += Long.bitCount( result[i] );
+				}
+			}
+			return new BitmapContainer( result, count );
+		}
+
+		int size( )
+		{
+			return size;
+		}
+
+		int nextValue( int from )
+		{
+			int index = from >>> 6;
+			long word = words[index] & ( -1L << from );
+			while ( word == 0 )
+			{
+				if ( ++index == BITMAP_WORD_COUNT )
+					return -1;
+				word = words[index];
+			}
+			return ( index << 6 ) + Long.numberOfTrailingZeros( word );
+		}
+
+		Container copy( )
+		{
+			return new BitmapContainer( words.clone( ), size );
+		}
+
+		void write( DataOutputStream dos ) throws IOException
+		{
+			dos.writeInt( size );
+			for ( int i = 0; i < BITMAP_WORD_COUNT; i++ )
+			{
+				dos.writeLong( words[i] );
+			}
+		}
+
+		/**
+		 * @return an array container of the bits if they are few
+		 */
+		private static Container toContainer( long[] words, int size )
+		{
+			if ( size > ARRAY_MAX_SIZE )
+				return new BitmapContainer( words, size );
+			char[] values = new char[size];
+			int count = 0;
+			for ( int i = 0; i < BITMAP_WORD_COUNT; i++ )
+			{
+				long word = words[i];
+				while ( word != 0 )
+				{
+					values[count++] = (char) ( ( i << 6 ) + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer( values, size );
+		}
+	}
+}
@@ -15,7 +15,6 @@ import java.util.ArrayList;
 
 import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
 import org.eclipse.birt.data.engine.core.DataException;
-import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.executor.cache.CacheRequest;
 import org.eclipse.birt.data.engine.executor.cache.OdiAdapter;
 import org.eclipse.birt.data.engine.executor.cache.SmartCache;
@@ -377,29 +376,9 @@ public class BaseJointDataSetPopulator implements IDataSetPopulator
 	private IResultObject createResultObject( IResultObject primary,
 			IResultObject secondary ) throws DataException
 	{
-		Object[] fields = new Object[meta.getResultClass( ).getFieldCount( )];
-		for ( int i = 1; i <= fields.length; i++ )
-		{
-			IResultObject ri = null;
-
-			if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_LEFT )
-			{
-				if ( isPrimaryLeft( ) )
-					ri = primary;
-				else
-					ri = secondary;
-			}
-			else if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_RIGHT )
-			{
-				if ( isPrimaryLeft( ) )
-					ri = secondary;
-				else
-					ri = primary;
-			}
-
-			fields[i - 1] = ri == null ? null
-					: ri.getFieldValue( meta.getSourceIndex( i ) );
-		}
-		return new ResultObject( meta.getResultClass( ), fields );
+		if ( isPrimaryLeft( ) )
+			return JointDataSetUtil.createResultObject( meta, primary, secondary );
+		else
+			return JointDataSetUtil.createResultObject( meta, secondary, primary );
 	}
 }
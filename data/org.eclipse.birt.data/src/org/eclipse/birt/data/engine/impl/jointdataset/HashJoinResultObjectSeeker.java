@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.Date;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ResultSetCache;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * An implementation of IMatchResultObjectSeeker for equal join conditions.
+ * The rows of the secondary data set are kept in a hash table by their join
+ * key values, so that the matched rows of a primary row are found without
+ * sorting either data set.
+ *
+ * Values which are compared as equal get the same hash code. Values of
+ * different kinds, such as a string and a number, can also be compared as
+ * equal, so a primary row is compared with all the rows in the table if its
+ * key values are of other kinds than the keys in the table.
+ */
+public class HashJoinResultObjectSeeker implements IMatchResultObjectSeeker
+{
+	// kinds of key values
+	private static final int STRING_KIND = 1;
+	private static final int NUMBER_KIND = 2;
+	private static final int DATE_KIND = 4;
+	private static final int BOOLEAN_KIND = 8;
+	private static final int OTHER_KIND = 16;
+
+	// estimated memory size of one entry besides the row and key values
+	private static final int ENTRY_SIZE = 64;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private IJoinConditionMatcher matcher;
+	private boolean isSecondaryLeft;
+	private SizeOfUtil sizeOfUtil;
+
+	// first and last entry of each bucket, -1 if the bucket is empty
+	private int[] bucketHeads;
+	private int[] bucketTails;
+
+	// entries in the order they are added, chained in buckets
+	private int[] nextEntries;
+	private int[] hashes;
+	private Object[][] keyValues;
+	private IResultObject[] rows;
+	private boolean[] matched;
+	private int size;
+
+	// all the kinds of the key values at each key position
+	private int[] keyKinds;
+	private long memorySize;
+
+	// the primary row being matched
+	private int currentPrimaryIndex = -1;
+	private Object[] primaryKeyValues;
+	private int primaryHash;
+	private boolean compareAll;
+	private int cursor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param matcher
+	 * @param isSecondaryLeft
+	 *            whether the rows in the table are of the left data set
+	 */
+	public HashJoinResultObjectSeeker( IJoinConditionMatcher matcher,
+			boolean isSecondaryLeft )
+	{
+		this.matcher = matcher;
+		this.isSecondaryLeft = isSecondaryLeft;
+		this.bucketHeads = newBuckets( INITIAL_CAPACITY );
+		this.bucketTails = newBuckets( INITIAL_CAPACITY );
+		this.nextEntries = new int[INITIAL_CAPACITY];
+		this.hashes = new int[INITIAL_CAPACITY];
+		this.keyValues = new Object[INITIAL_CAPACITY][];
+		this.rows = new IResultObject[INITIAL_CAPACITY];
+		this.matched = new boolean[INITIAL_CAPACITY];
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IMatchResultObjectSeeker#setResultIterator(org.eclipse.birt.data.engine.odi.IResultIterator)
+	 */
+	public void setResultIterator( IResultIterator ri ) throws DataException
+	{
+		setResultClass( ri.getResultClass( ) );
+		ResultSetCache cache = ri.getResultSetCache( );
+		cache.reset( );
+		while ( cache.next( ) )
+			add( cache.getCurrentResult( ),
+					matcher.getCompareValue( isSecondaryLeft ) );
+	}
+
+	/**
+	 * Set the result class of the rows in the table, which is used to
+	 * estimate the memory size.
+	 *
+	 * @param resultClass
+	 * @throws DataException
+	 */
+	void setResultClass( IResultClass resultClass ) throws DataException
+	{
+		this.sizeOfUtil = new SizeOfUtil( resultClass );
+	}
+
+	/**
+	 * Add a row of the secondary data set to the table.
+	 *
+	 * @param row
+	 * @param values
+	 *            the join key values of the row
+	 * @throws DataException
+	 */
+	void add( IResultObject row, Object[] values ) throws DataException
+	{
+		if ( keyKinds == null )
+			keyKinds = new int[values.length];
+		addKinds( keyKinds, values );
+
+		if ( size == rows.length )
+			grow( );
+		if ( size >= bucketHeads.length * 3 / 4 )
+			rehash( bucketHeads.length * 2 );
+
+		int hash = hash( values );
+		hashes[size] = hash;
+		keyValues[size] = values;
+		rows[size] = row;
+		matched[size] = false;
+		link( size, hash );
+		size++;
+
+		memorySize += ENTRY_SIZE + SizeOfUtil.getArraySize( values.length );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			if ( values[i] != null )
+				memorySize += SizeOfUtil.sizeOf( values[i].getClass( ),
+						values[i] );
+		}
+		if ( sizeOfUtil != null )
+			memorySize += sizeOfUtil.sizeOf( row );
+	}
+
+	/*
+	 * The current row of the primary data set is matched with the rows in the
+	 * table, one row for each call.
+	 *
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IMatchResultObjectSeeker#getNextMatchedResultObject(int)
+	 */
+	public IResultObject getNextMatchedResultObject( int primaryIndex )
+			throws DataException
+	{
+		if ( primaryIndex != currentPrimaryIndex )
+		{
+			currentPrimaryIndex = primaryIndex;
+			primaryKeyValues = matcher.getCompareValue( !isSecondaryLeft );
+			compareAll = !isHashable( keyKinds, primaryKeyValues );
+			if ( compareAll )
+			{
+				cursor = 0;
+			}
+			else
+			{
+				primaryHash = hash( primaryKeyValues );
+				cursor = bucketHeads[indexFor( primaryHash,
+						bucketHeads.length )];
+			}
+		}
+
+		while ( cursor >= 0 && cursor < size )
+		{
+			int entry = cursor;
+			if ( compareAll )
+			{
+				cursor++;
+			}
+			else
+			{
+				cursor = nextEntries[entry];
+				if ( hashes[entry] != primaryHash )
+					continue;
+			}
+			if ( isMatched( entry ) )
+			{
+				matched[entry] = true;
+				return rows[entry];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param entry
+	 * @return whether the key values of an entry equal to the key values of
+	 *         the primary row
+	 * @throws DataException
+	 */
+	private boolean isMatched( int entry ) throws DataException
+	{
+		if ( isSecondaryLeft )
+			return matcher.compare( keyValues[entry], primaryKeyValues ) == 0;
+		return matcher.compare( primaryKeyValues, keyValues[entry] ) == 0;
+	}
+
+	/**
+	 * @return count of rows in the table
+	 */
+	int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * @return estimated memory size of the table
+	 */
+	long getMemorySize( )
+	{
+		return memorySize;
+	}
+
+	/**
+	 * @param entry
+	 * @return the row of an entry
+	 */
+	IResultObject getRow( int entry )
+	{
+		return rows[entry];
+	}
+
+	/**
+	 * @param entry
+	 * @return the hash code of the key values of an entry
+	 */
+	int getHash( int entry )
+	{
+		return hashes[entry];
+	}
+
+	/**
+	 * Find the next row which has not been matched by any primary row.
+	 *
+	 * @param fromEntry
+	 * @return the entry, or -1 if there is no more unmatched row
+	 */
+	int getNextUnmatchedEntry( int fromEntry )
+	{
+		for ( int i = fromEntry; i < size; i++ )
+		{
+			if ( !matched[i] )
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the kinds of the key values in the table
+	 */
+	int[] getKeyKinds( )
+	{
+		return keyKinds;
+	}
+
+	private void link( int entry, int hash )
+	{
+		int index = indexFor( hash, bucketHeads.length );
+		nextEntries[entry] = -1;
+		if ( bucketHeads[index] < 0 )
+			bucketHeads[index] = entry;
+		else
+			nextEntries[bucketTails[index]] = entry;
+		bucketTails[index] = entry;
+	}
+
+	private void rehash( int capacity )
+	{
+		bucketHeads = newBuckets( capacity );
+		bucketTails = newBuckets( capacity );
+		// relink in the order of entries, so that each bucket keeps the order
+		for ( int i = 0; i < size; i++ )
+			link( i, hashes[i] );
+	}
+
+	private void grow( )
+	{
+		int capacity = rows.length * 2;
+		int[] newNextEntries = new int[capacity];
+		System.arraycopy( nextEntries, 0, newNextEntries, 0, size );
+		nextEntries = newNextEntries;
+		int[] newHashes = new int[capacity];
+		System.arraycopy( hashes, 0, newHashes, 0, size );
+		hashes = newHashes;
+		Object[][] newKeyValues = new Object[capacity][];
+		System.arraycopy( keyValues, 0, newKeyValues, 0, size );
+		keyValues = newKeyValues;
+		IResultObject[] newRows = new IResultObject[capacity];
+		System.arraycopy( rows, 0, newRows, 0, size );
+		rows = newRows;
+		boolean[] newMatched = new boolean[capacity];
+		System.arraycopy( matched, 0, newMatched, 0, size );
+		matched = newMatched;
+	}
+
+	private static int[] newBuckets( int capacity )
+	{
+		int[] buckets = new int[capacity];
+		for ( int i = 0; i < capacity; i++ )
+			buckets[i] = -1;
+		return buckets;
+	}
+
+	private static int indexFor( int hash, int length )
+	{
+		hash ^= ( hash >>> 16 );
+		return hash & ( length - 1 );
+	}
+
+	/**
+	 * Compute the hash code of join key values. Numbers are hashed by their
+	 * double values and dates by their times, since numbers or dates of
+	 * different classes are compared as equal by their values.
+	 *
+	 * @param values
+	 * @return
+	 */
+	static int hash( Object[] values )
+	{
+		int result = 1;
+		for ( int i = 0; i < values.length; i++ )
+			result = 31 * result + hashValue( values[i] );
+		return result;
+	}
+
+	private static int hashValue( Object value )
+	{
+		if ( value == null )
+			return 0;
+		switch ( getKind( value ) )
+		{
+			case NUMBER_KIND :
+				double number = ( (Number) value ).doubleValue( );
+				if ( number == 0 )
+					return 0;
+				long bits = Double.doubleToLongBits( number );
+				return (int) ( bits ^ ( bits >>> 32 ) );
+			case DATE_KIND :
+				long time = ( (Date) value ).getTime( );
+				return (int) ( time ^ ( time >>> 32 ) );
+			case STRING_KIND :
+			case BOOLEAN_KIND :
+				return value.hashCode( );
+			default :
+				// other values are compared by their string values
+				return 0;
+		}
+	}
+
+	private static int getKind( Object value )
+	{
+		if ( value instanceof String )
+			return STRING_KIND;
+		if ( value instanceof Number )
+			return NUMBER_KIND;
+		if ( value instanceof Date )
+			return DATE_KIND;
+		if ( value instanceof Boolean )
+			return BOOLEAN_KIND;
+		return OTHER_KIND;
+	}
+
+	/**
+	 * Add the kinds of join key values.
+	 *
+	 * @param kinds
+	 * @param values
+	 */
+	static void addKinds( int[] kinds, Object[] values )
+	{
+		for ( int i = 0; i < values.length; i++ )
+		{
+			if ( values[i] != null )
+				kinds[i] |= getKind( values[i] );
+		}
+	}
+
+	/**
+	 * Return whether join key values can be matched by hash code with the
+	 * keys of the given kinds, which is true when the values at each position
+	 * are of the same kind.
+	 *
+	 * @param kinds
+	 *            null if no key has been added
+	 * @param values
+	 * @return
+	 */
+	static boolean isHashable( int[] kinds, Object[] values )
+	{
+		if ( kinds == null )
+			return true;
+		for ( int i = 0; i < values.length; i++ )
+		{
+			if ( values[i] != null && ( kinds[i] & ~getKind( values[i] ) ) != 0 )
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.BitSet;
+
+import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ResultSetCache;
+import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * An implementation of IDataSetPopulator which joins two data sets by a hash
+ * join, so that neither data set needs to be sorted. The data set with fewer
+ * rows is kept in a HashJoinResultObjectSeeker, and the rows of the other one
+ * are matched against it in their original order. Rows which are not matched
+ * are returned at last if the join type keeps them.
+ *
+ * If the table exceeds the memory limit, the rows of both data sets are
+ * divided into partitions by the hash codes of their join keys, and one table
+ * is built for each partition in turn. The data sets are read from their
+ * result set caches, which are kept on disk when they are large.
+ */
+public class HashJointDataSetPopulator implements IDataSetPopulator
+{
+	// the memory limit is exceeded by some partitions if the estimated
+	// count of partitions is just enough
+	private static final double PARTITION_FACTOR = 1.25;
+
+	private JointResultMetadata meta;
+	private IJoinConditionMatcher matcher;
+	private int joinType;
+	private int rowFetchLimit;
+	private long memoryLimit;
+
+	private IResultIterator left;
+	private IResultIterator right;
+
+	// the rows of the build data set are kept in the table, and the rows of
+	// the probe data set are matched with them
+	private boolean isBuildLeft;
+	private ResultSetCache buildCache;
+	private ResultSetCache probeCache;
+	private boolean keepUnmatchedBuild;
+	private boolean keepUnmatchedProbe;
+
+	private boolean beInitialized;
+	private int partitionCount;
+	private int partition;
+
+	// partition of each row, only used when there are several partitions.
+	// Probe rows of -1 have keys of other kinds than the build rows, and are
+	// matched in every partition.
+	private int[] buildPartitions;
+	private int[] probePartitions;
+	private int[] buildKeyKinds;
+	private BitSet matchedProbeRows;
+
+	private HashJoinResultObjectSeeker seeker;
+	private IResultObject probeRow;
+	private int probeIndex;
+	private boolean isProbeRowMatched;
+	private int unmatchedEntry;
+
+	private int rowCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param left
+	 * @param right
+	 * @param meta
+	 * @param matcher
+	 * @param joinType
+	 * @param rowFetchLimit
+	 * @param memoryLimit
+	 *            memory size which can be used by the hash table, 0 if there
+	 *            is no limit
+	 */
+	public HashJointDataSetPopulator( IResultIterator left,
+			IResultIterator right, JointResultMetadata meta,
+			IJoinConditionMatcher matcher, int joinType, int rowFetchLimit,
+			long memoryLimit )
+	{
+		this.left = left;
+		this.right = right;
+		this.meta = meta;
+		this.matcher = matcher;
+		this.joinType = joinType;
+		this.rowFetchLimit = rowFetchLimit;
+		this.memoryLimit = memoryLimit;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odi.IDataSetPopulator#next()
+	 */
+	public IResultObject next( ) throws DataException
+	{
+		if ( this.rowFetchLimit > 0 && this.rowCount >= this.rowFetchLimit )
+			return null;
+
+		if ( !beInitialized )
+		{
+			initialize( );
+			beInitialized = true;
+		}
+
+		IResultObject result = doNext( );
+		if ( result != null )
+			this.rowCount++;
+		return result;
+	}
+
+	/**
+	 * Choose the build data set by row count, and build the table.
+	 *
+	 * @throws DataException
+	 */
+	private void initialize( ) throws DataException
+	{
+		int leftCount = left.getResultSetCache( ).getCount( );
+		int rightCount = right.getResultSetCache( ).getCount( );
+		isBuildLeft = leftCount < rightCount;
+
+		boolean keepLeft = joinType == IJointDataSetDesign.LEFT_OUTER_JOIN
+				|| joinType == IJointDataSetDesign.FULL_OUTER_JOIN;
+		boolean keepRight = joinType == IJointDataSetDesign.RIGHT_OUTER_JOIN
+				|| joinType == IJointDataSetDesign.FULL_OUTER_JOIN;
+		keepUnmatchedBuild = isBuildLeft ? keepLeft : keepRight;
+		keepUnmatchedProbe = isBuildLeft ? keepRight : keepLeft;
+
+		buildCache = ( isBuildLeft ? left : right ).getResultSetCache( );
+		probeCache = ( isBuildLeft ? right : left ).getResultSetCache( );
+
+		buildTable( );
+		if ( partitionCount > 1 )
+		{
+			partitionProbeRows( );
+			startPartition( 0 );
+		}
+		else
+		{
+			probeCache.reset( );
+		}
+	}
+
+	/**
+	 * Build the table of all the build rows. If the memory limit is exceeded,
+	 * the table is dropped, and the partition of each build row is computed.
+	 *
+	 * @throws DataException
+	 */
+	private void buildTable( ) throws DataException
+	{
+		seeker = newSeeker( );
+		partitionCount = 1;
+
+		int[] hashes = null;
+		buildCache.reset( );
+		while ( buildCache.next( ) )
+		{
+			Object[] values = matcher.getCompareValue( isBuildLeft );
+			if ( hashes == null )
+			{
+				seeker.add( buildCache.getCurrentResult( ), values );
+				if ( memoryLimit > 0 && seeker.getMemorySize( ) > memoryLimit )
+				{
+					hashes = new int[buildCache.getCount( )];
+					for ( int i = 0; i < seeker.size( ); i++ )
+						hashes[i] = seeker.getHash( i );
+					buildKeyKinds = seeker.getKeyKinds( );
+					partitionCount = computePartitionCount( seeker );
+					seeker = null;
+				}
+			}
+			else
+			{
+				HashJoinResultObjectSeeker.addKinds( buildKeyKinds, values );
+				hashes[buildCache.getCurrentIndex( )] = HashJoinResultObjectSeeker.hash( values );
+			}
+		}
+
+		if ( hashes != null )
+		{
+			buildPartitions = hashes;
+			for ( int i = 0; i < hashes.length; i++ )
+				buildPartitions[i] = getPartition( hashes[i] );
+		}
+	}
+
+	/**
+	 * @param seeker
+	 *            the table which exceeds the memory limit
+	 * @return count of partitions estimated by the average memory size of rows
+	 * @throws DataException
+	 */
+	private int computePartitionCount( HashJoinResultObjectSeeker seeker )
+			throws DataException
+	{
+		double rowSize = (double) seeker.getMemorySize( ) / seeker.size( );
+		double totalSize = rowSize * buildCache.getCount( ) * PARTITION_FACTOR;
+		return Math.max( 2, (int) Math.ceil( totalSize / memoryLimit ) );
+	}
+
+	/**
+	 * @param hash
+	 * @return the partition of join key values of the hash code
+	 */
+	private int getPartition( int hash )
+	{
+		// the high bits of the mixed hash code are used, so that the rows of
+		// a partition still spread over the buckets of the table
+		long mixed = ( hash * 0x9E3779B9L ) & 0xFFFFFFFFL;
+		return (int) ( ( mixed * partitionCount ) >>> 32 );
+	}
+
+	/**
+	 * Compute the partition of each probe row.
+	 *
+	 * @throws DataException
+	 */
+	private void partitionProbeRows( ) throws DataException
+	{
+		probePartitions = new int[probeCache.getCount( )];
+		probeCache.reset( );
+		while ( probeCache.next( ) )
+		{
+			Object[] values = matcher.getCompareValue( !isBuildLeft );
+			int index = probeCache.getCurrentIndex( );
+			if ( HashJoinResultObjectSeeker.isHashable( buildKeyKinds, values ) )
+				probePartitions[index] = getPartition( HashJoinResultObjectSeeker.hash( values ) );
+			else
+				probePartitions[index] = -1;
+		}
+		matchedProbeRows = new BitSet( );
+	}
+
+	/**
+	 * Build the table of the build rows in a partition.
+	 *
+	 * @param partition
+	 * @throws DataException
+	 */
+	private void startPartition( int partition ) throws DataException
+	{
+		this.partition = partition;
+		this.unmatchedEntry = 0;
+		this.seeker = null;
+		if ( partition >= partitionCount )
+		{
+			// for the probe rows which are matched in every partition
+			probeCache.reset( );
+			return;
+		}
+
+		seeker = newSeeker( );
+		buildCache.reset( );
+		while ( buildCache.next( ) )
+		{
+			if ( buildPartitions[buildCache.getCurrentIndex( )] == partition )
+				seeker.add( buildCache.getCurrentResult( ),
+						matcher.getCompareValue( isBuildLeft ) );
+		}
+		probeCache.reset( );
+	}
+
+	/**
+	 * @return a new table for the build rows
+	 * @throws DataException
+	 */
+	private HashJoinResultObjectSeeker newSeeker( ) throws DataException
+	{
+		HashJoinResultObjectSeeker result = new HashJoinResultObjectSeeker( matcher,
+				isBuildLeft );
+		result.setResultClass( ( isBuildLeft ? left : right ).getResultClass( ) );
+		return result;
+	}
+
+	/**
+	 * @return the next joint row, or null if there is no more row
+	 * @throws DataException
+	 */
+	private IResultObject doNext( ) throws DataException
+	{
+		while ( partition < partitionCount )
+		{
+			if ( probeRow != null )
+			{
+				IResultObject buildRow = seeker.getNextMatchedResultObject( probeIndex );
+				if ( buildRow != null )
+				{
+					isProbeRowMatched = true;
+					if ( probePartitions != null
+							&& probePartitions[probeIndex] < 0 )
+						matchedProbeRows.set( probeIndex );
+					return createResultObject( probeRow, buildRow );
+				}
+
+				IResultObject unmatched = probeRow;
+				probeRow = null;
+				// probe rows matched in every partition are returned at last
+				if ( keepUnmatchedProbe
+						&& !isProbeRowMatched
+						&& ( probePartitions == null || probePartitions[probeIndex] >= 0 ) )
+					return createResultObject( unmatched, null );
+			}
+
+			if ( nextProbeRow( ) )
+				continue;
+
+			if ( keepUnmatchedBuild )
+			{
+				unmatchedEntry = seeker.getNextUnmatchedEntry( unmatchedEntry );
+				if ( unmatchedEntry >= 0 )
+					return createResultObject( null,
+							seeker.getRow( unmatchedEntry++ ) );
+			}
+			startPartition( partition + 1 );
+		}
+
+		if ( keepUnmatchedProbe && probePartitions != null )
+		{
+			while ( probeCache.next( ) )
+			{
+				int index = probeCache.getCurrentIndex( );
+				if ( probePartitions[index] < 0
+						&& !matchedProbeRows.get( index ) )
+					return createResultObject( probeCache.getCurrentResult( ),
+							null );
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Move to the next probe row of the current partition.
+	 *
+	 * @return false if there is no more probe row
+	 * @throws DataException
+	 */
+	private boolean nextProbeRow( ) throws DataException
+	{
+		while ( probeCache.next( ) )
+		{
+			int index = probeCache.getCurrentIndex( );
+			if ( probePartitions == null
+					|| probePartitions[index] == partition
+					|| probePartitions[index] < 0 )
+			{
+				probeRow = probeCache.getCurrentResult( );
+				probeIndex = index;
+				isProbeRowMatched = false;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create a joint row from a probe row and a build row.
+	 */
+	private IResultObject createResultObject( IResultObject probe,
+			IResultObject build ) throws DataException
+	{
+		if ( isBuildLeft )
+			return JointDataSetUtil.createResultObject( meta, build, probe );
+		return JointDataSetUtil.createResultObject( meta, probe, build );
+	}
+}
@@ -10,7 +10,12 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.impl.jointdataset;
 
+import java.util.List;
+
+import org.eclipse.birt.data.engine.api.IJoinCondition;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
 import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
 /**
@@ -55,4 +60,51 @@ public class JointDataSetUtil
 		return 0;
 		
 	}
+	
+	/**
+	 * Return whether all the join conditions are equal conditions.
+	 * 
+	 * @param joinConditions
+	 * @return
+	 */
+	public static boolean isEquiJoin( List joinConditions )
+	{
+		if ( joinConditions == null || joinConditions.isEmpty( ) )
+			return false;
+		for ( int i = 0; i < joinConditions.size( ); i++ )
+		{
+			if ( ( (IJoinCondition) joinConditions.get( i ) ).getOperator( ) != IJoinCondition.OP_EQ )
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Create a joint result object from a left row and a right row, either of
+	 * which can be null.
+	 * 
+	 * @param meta
+	 * @param left
+	 * @param right
+	 * @return
+	 * @throws DataException
+	 */
+	static IResultObject createResultObject( JointResultMetadata meta,
+			IResultObject left, IResultObject right ) throws DataException
+	{
+		Object[] fields = new Object[meta.getResultClass( ).getFieldCount( )];
+		for ( int i = 1; i <= fields.length; i++ )
+		{
+			IResultObject ri = null;
+
+			if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_LEFT )
+				ri = left;
+			else if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_RIGHT )
+				ri = right;
+
+			fields[i - 1] = ri == null ? null
+					: ri.getFieldValue( meta.getSourceIndex( i ) );
+		}
+		return new ResultObject( meta.getResultClass( ), fields );
+	}
 }
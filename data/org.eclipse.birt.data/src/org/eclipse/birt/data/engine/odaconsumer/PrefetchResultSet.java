@@ -0,0 +1,305 @@
+/*
+ *****************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *
+ ******************************************************************************
+ */
+
+package org.eclipse.birt.data.engine.odaconsumer;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.ThreadSecurity;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.IBlob;
+import org.eclipse.datatools.connectivity.oda.IClob;
+
+/**
+ * <code>PrefetchResultSet</code> fetches the rows of an ODA result set on a
+ * background thread, so that the latency of the data source overlaps with the
+ * processing of the rows already fetched. The rows are handed over in batches
+ * through a bounded buffer, so at most the given count of rows is fetched
+ * ahead of the consumer.
+ * <p>
+ * The driver result set is only used by the background thread once the first
+ * row is fetched; it is closed after the background thread stops.
+ */
+public class PrefetchResultSet extends ResultSet
+{
+
+	private static final int MAX_BATCH_SIZE = 64;
+
+	// the consumer checks whether the producer has stopped at this interval
+	private static final long POLL_MILLIS = 50;
+
+	private static final List<IResultObject> END = new ArrayList<IResultObject>( 0 );
+
+	private static ExecutorService executor = Executors.newCachedThreadPool( ThreadSecurity.createThreadFactory( "BIRT-OdaPrefetch" ) ); //$NON-NLS-1$
+
+	private int batchSize;
+	private BlockingQueue<List<IResultObject>> buffer;
+	private CountDownLatch producerDone;
+	private volatile boolean stopped;
+	private volatile DataException error;
+
+	private List<IResultObject> currentBatch;
+	private int currentIndex;
+	private int rowPosition;
+	private boolean finished;
+
+	/**
+	 * @param resultSet
+	 *            the result set whose rows are fetched in background
+	 * @param prefetchSize
+	 *            the maximum count of rows fetched ahead of the consumer
+	 * @throws DataException
+	 */
+	public PrefetchResultSet( ResultSet resultSet, int prefetchSize )
+			throws DataException
+	{
+		super( resultSet.getRuntimeResultSet( ), resultSet.getMetaData( ) );
+		assert prefetchSize > 0;
+		this.batchSize = Math.max( 1, Math.min( MAX_BATCH_SIZE, prefetchSize ) );
+		this.buffer = new ArrayBlockingQueue<List<IResultObject>>( Math.max( 1,
+				prefetchSize / batchSize ) );
+	}
+
+	/**
+	 * Whether the rows of a result set can be fetched in background. The
+	 * values of LOB columns are read from the current row of the driver, so
+	 * they are fetched by the consumer.
+	 *
+	 * @param resultSet
+	 * @return
+	 * @throws DataException
+	 */
+	public static boolean canPrefetch( ResultSet resultSet )
+			throws DataException
+	{
+		IResultClass resultClass = resultSet.getMetaData( );
+		for ( int i = 1; i <= resultClass.getFieldCount( ); i++ )
+		{
+			Class type = resultClass.getFieldValueClass( i );
+			if ( type == IBlob.class || type == IClob.class )
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odaconsumer.ResultSet#fetch()
+	 */
+	public IResultObject fetch( ) throws DataException
+	{
+		if ( finished )
+			return null;
+		if ( producerDone == null )
+			startProducer( );
+		if ( currentBatch == null || currentIndex >= currentBatch.size( ) )
+		{
+			currentBatch = takeBatch( );
+			currentIndex = 0;
+			if ( currentBatch == END )
+			{
+				finished = true;
+				if ( error != null && !stopped )
+					throw error;
+				return null;
+			}
+		}
+		rowPosition++;
+		return currentBatch.get( currentIndex++ );
+	}
+
+	private void startProducer( )
+	{
+		producerDone = new CountDownLatch( 1 );
+		final ClassLoader loader = getContextClassLoader( );
+		executor.execute( new Runnable( ) {
+
+			public void run( )
+			{
+				Thread thread = Thread.currentThread( );
+				ClassLoader oldLoader = thread.getContextClassLoader( );
+				thread.setContextClassLoader( loader );
+				try
+				{
+					produce( );
+				}
+				finally
+				{
+					thread.setContextClassLoader( oldLoader );
+					producerDone.countDown( );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Fetches the rows from the driver until the end of the result set, an
+	 * error or the consumer is stopped.
+	 */
+	private void produce( )
+	{
+		try
+		{
+			while ( !stopped )
+			{
+				List<IResultObject> batch = new ArrayList<IResultObject>( batchSize );
+				IResultObject row = null;
+				while ( batch.size( ) < batchSize
+						&& ( row = fetchFromDriver( ) ) != null )
+				{
+					batch.add( row );
+				}
+				if ( !batch.isEmpty( ) && !put( batch ) )
+					return;
+				if ( row == null )
+					break;
+			}
+		}
+		catch ( DataException e )
+		{
+			error = e;
+		}
+		catch ( RuntimeException e )
+		{
+			error = new DataException( e.getLocalizedMessage( ), e );
+		}
+		put( END );
+	}
+
+	private IResultObject fetchFromDriver( ) throws DataException
+	{
+		return super.fetch( );
+	}
+
+	/**
+	 * Waits for room in the buffer.
+	 *
+	 * @param batch
+	 * @return false if the consumer is stopped
+	 */
+	private boolean put( List<IResultObject> batch )
+	{
+		try
+		{
+			while ( !stopped )
+			{
+				if ( buffer.offer( batch, POLL_MILLIS, TimeUnit.MILLISECONDS ) )
+					return true;
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+		}
+		return false;
+	}
+
+	/**
+	 * Waits for the next batch of rows.
+	 *
+	 * @return the batch, or END if there are no more rows
+	 */
+	private List<IResultObject> takeBatch( )
+	{
+		try
+		{
+			while ( true )
+			{
+				List<IResultObject> batch = buffer.poll( POLL_MILLIS,
+						TimeUnit.MILLISECONDS );
+				if ( batch != null )
+					return batch;
+				if ( producerDone.getCount( ) == 0 )
+				{
+					// the last batch may be put before the producer stops
+					batch = buffer.poll( );
+					return batch == null ? END : batch;
+				}
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			return END;
+		}
+	}
+
+	/**
+	 * Stops fetching the rows in background, the rows which are not fetched
+	 * yet are not returned. It does not wait for the background thread, and
+	 * can be called by any thread.
+	 */
+	public void cancel( )
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Stops fetching the rows in background and waits for the background
+	 * thread, after which the driver result set is no longer used.
+	 */
+	public void stop( )
+	{
+		stopped = true;
+		if ( producerDone == null )
+			return;
+		buffer.clear( );
+		try
+		{
+			producerDone.await( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odaconsumer.ResultSet#getRowPosition()
+	 */
+	public int getRowPosition( ) throws DataException
+	{
+		return rowPosition;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.odaconsumer.ResultSet#close()
+	 */
+	public void close( ) throws DataException
+	{
+		stop( );
+		super.close( );
+	}
+
+	private static ClassLoader getContextClassLoader( )
+	{
+		return AccessController.doPrivileged( new PrivilegedAction<ClassLoader>( ) {
+
+			public ClassLoader run( )
+			{
+				return Thread.currentThread( ).getContextClassLoader( );
+			}
+		} );
+	}
+}
@@ -70,8 +70,9 @@ public interface IAggrInfo
 	public void setRound( int round );
 	
 	/**
-	 * Get the pass round.The pass round indicate in which round this aggregation
-	 * should be calculated.
+	 * Get the pass round.The pass round indicate in which pass over the result
+	 * set this aggregation starts to be calculated, the aggregations of the
+	 * same pass round are calculated together.
 	 * @return
 	 */
 	public int getRound( );
@@ -158,6 +158,14 @@ public interface IDataSourceQuery extends IQuery
      * @throws DataException	if query validation error(s) occur.
      */
     public IPreparedDSQuery prepare() throws DataException;
+
+	/**
+	 * Sets a rewritten query text, which is prepared instead of the original
+	 * one. The original query text is prepared if the rewritten one fails.
+	 * 
+	 * @param queryText
+	 */
+	public void setPushedDownQueryText( String queryText );
     
     /**
      * Class to hold hints for a result set field. For use with setResultHints method.
@@ -109,6 +109,7 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 	
 	public int maxDataObjectRows = -1;
 	public long memoryCacheSize = 0;
+	private int parallelism = 1;
 	
 	private IBindingValueFetcher fetcher;
 	private CubeQueryExecutor cubeQueryExecutor;
@@ -958,6 +959,7 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 				memoryCacheSize );
 		
 		aggregationCalculatorExecutor.setMaxDataObjectRows( maxDataObjectRows );
+		aggregationCalculatorExecutor.setSortParallelism( parallelism );
 		
 		return aggregationCalculatorExecutor.execute( stopSign );
 	}
@@ -1173,6 +1175,17 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 		this.memoryCacheSize = memoryCacheSize;
 	}
 	
+	/**
+	 * 
+	 * @param parallelism
+	 *            the count of threads which sort and aggregate the rows once
+	 *            they are read from the fact table
+	 */
+	public void setSortParallelism( int parallelism )
+	{
+		this.parallelism = parallelism;
+	}
+	
 	public void setAppContext( Map appContext )
 	{
 		this.appContext = appContext;
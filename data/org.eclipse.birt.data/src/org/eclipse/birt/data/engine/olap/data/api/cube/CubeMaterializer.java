@@ -234,6 +234,12 @@ public class CubeMaterializer
 			throw new DataException( ResourceConstants.MISSING_DIMENSION_IN_CUBE, name );
 		}
 		Cube cube = new Cube( name, documentManager );
+		if ( dataEngine instanceof DataEngineImpl )
+		{
+			cube.setParallelism( ( (DataEngineImpl) dataEngine ).getSession( )
+					.getEngineContext( )
+					.getCubeBuildParallelism( ) );
+		}
 		cube.create(factTableJointColumnNames, DimJointColumnNames, dimensions,
 				factTable, measureColumns, calculatedMeasure, measureAggrFunctionNames, cacheSize, stopSign);
 		cube.close( );
@@ -257,6 +263,9 @@ public class CubeMaterializer
 		String factTableName = cube.getFactTable( ).getName( );
 		saveDocObjToReportDocument( NamingUtil.getFactTableName( factTableName ), writer, stopSign );
 		saveDocObjToReportDocument( NamingUtil.getFTSUListName( factTableName ), writer, stopSign );
+		// the cubes built by the older versions have no segment statistics
+		if ( documentManager.exist( NamingUtil.getFTSUStatisticsName( factTableName ) ) )
+			saveDocObjToReportDocument( NamingUtil.getFTSUStatisticsName( factTableName ), writer, stopSign );
 		//save FTSU
 		IDocumentObject documentObject = documentManager.openDocumentObject( NamingUtil.getFTSUListName( factTableName ) );
 		try
@@ -265,6 +274,8 @@ public class CubeMaterializer
 			while ( FTSUName != null )
 			{
 				saveDocObjToReportDocument( FTSUName, writer, stopSign );
+				if ( documentManager.exist( NamingUtil.getFTSUIndexName( FTSUName ) ) )
+					saveDocObjToReportDocument( NamingUtil.getFTSUIndexName( FTSUName ), writer, stopSign );
 				FTSUName = documentObject.readString( );
 			}
 		}
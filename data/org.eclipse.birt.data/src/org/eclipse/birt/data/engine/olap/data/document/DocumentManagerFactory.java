@@ -141,4 +141,21 @@ public class DocumentManagerFactory
 	{
 		return FileDocumentManager.loadManager( dirName, managerName );
 	}
+	
+	/**
+	 * Loads the files saved by a file document manager into a read only
+	 * document manager, which maps the data file into memory. The mapping is
+	 * not released by closing the manager, but when it is garbage collected,
+	 * so on Windows the files cannot be rebuilt or deleted until then.
+	 * 
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static public IDocumentManager loadMappedFileDocumentManager( String dirName, String managerName ) throws DataException, IOException
+	{
+		return MappedFileDocumentManager.loadManager( dirName, managerName );
+	}
 }
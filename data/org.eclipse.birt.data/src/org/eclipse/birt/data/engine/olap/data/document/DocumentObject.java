@@ -121,6 +121,15 @@ public class DocumentObject implements IDocumentObject
 	{
 		return delegate.readInt( );
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentObject#readLong()
+	 */
+	public long readLong( ) throws IOException
+	{
+		return delegate.readLong( );
+	}
 	
 	/*
 	 * (non-Javadoc)
@@ -252,6 +261,15 @@ public class DocumentObject implements IDocumentObject
 		delegate.writeInt( value );
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentObject#writeLong(long)
+	 */
+	public void writeLong( long value ) throws IOException
+	{
+		delegate.writeLong( value );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentObject#writeString(java.lang.String)
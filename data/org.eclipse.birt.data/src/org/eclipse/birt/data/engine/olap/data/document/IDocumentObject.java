@@ -138,6 +138,20 @@ public interface IDocumentObject
 	 */
 	public int readInt( ) throws IOException;
 	
+	/**
+	 * 
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeLong( long value ) throws IOException;
+	
+	/**
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public long readLong( ) throws IOException;
+	
 	/**
 	 * 
 	 * @param diskObjectName
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+/**
+ * A read only implementation of the <tt>IDocumentManager</tt> interface, which
+ * opens the three files saved by <tt>FileDocumentManager</tt> and maps the
+ * data file into memory. The document objects read their blocks from the
+ * mapped regions without any system call, so that the cube data is shared in
+ * the page cache by all the sessions which query the same cube. The files are
+ * closed once they are mapped, and an instance is used by several threads at a
+ * time.
+ * <p>
+ * <b>Note:</b> <code>close</code> does not unmap the files, because Java has
+ * no safe way to release a mapping while a document object may still read
+ * it. A mapping is released only when its buffers are garbage collected.
+ * Until then the files stay locked on Windows, and the cube cannot be rebuilt
+ * or deleted there.
+ */
+
+public class MappedFileDocumentManager implements IDocumentManager
+{
+	// a multiple of the block size so that no block is split across regions
+	static final int REGION_SIZE = 1 << 30;
+
+	private ByteBuffer[] dataRegions = null;
+	private IntBuffer oat = null;
+	private Map<String, ObjectStructure> documentObjectMap = null;
+
+	/**
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static MappedFileDocumentManager loadManager( String dirName,
+			String managerName ) throws DataException, IOException
+	{
+		MappedFileDocumentManager manager = new MappedFileDocumentManager( );
+		manager.load( dirName, managerName );
+		return manager;
+	}
+
+	/**
+	 *
+	 */
+	private MappedFileDocumentManager( )
+	{
+	}
+
+	/**
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void load( String dirName, String managerName )
+			throws IOException, DataException
+	{
+		File objectFile = getFile( dirName, managerName, "obj" ); //$NON-NLS-1$
+		File oatFile = getFile( dirName, managerName, "Oat" ); //$NON-NLS-1$
+		File dataFile = getFile( dirName, managerName, "data" ); //$NON-NLS-1$
+
+		documentObjectMap = new HashMap<String, ObjectStructure>( );
+		DataInputStream objectStream = new DataInputStream( new BufferedInputStream( FileSecurity.createFileInputStream( objectFile ) ) );
+		try
+		{
+			while ( true )
+			{
+				ObjectStructure structure = new ObjectStructure( );
+				try
+				{
+					structure.length = objectStream.readLong( );
+					structure.firstBlock = objectStream.readInt( );
+					structure.name = objectStream.readUTF( );
+				}
+				catch ( EOFException e )
+				{
+					break;
+				}
+				if ( structure.firstBlock >= 0 )
+					documentObjectMap.put( structure.name, structure );
+			}
+		}
+		finally
+		{
+			objectStream.close( );
+		}
+
+		oat = map( oatFile ).get( 0 ).asIntBuffer( );
+		List<ByteBuffer> regions = map( dataFile );
+		dataRegions = regions.toArray( new ByteBuffer[regions.size( )] );
+	}
+
+	/**
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @param suffix
+	 * @return
+	 * @throws DataException
+	 */
+	private static File getFile( String dirName, String managerName,
+			String suffix ) throws DataException
+	{
+		File file = new File( dirName + File.separatorChar + managerName + suffix );
+		if ( !FileSecurity.fileExist( file ) )
+		{
+			throw new DataException( ResourceConstants.OLAPFILE_NOT_FOUND,
+					file.getAbsolutePath( ) );
+		}
+		return file;
+	}
+
+	/**
+	 * Maps the file into read only regions of <code>REGION_SIZE</code> bytes.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static List<ByteBuffer> map( File file ) throws IOException
+	{
+		List<ByteBuffer> regions = new ArrayList<ByteBuffer>( );
+		RandomAccessFile randomAccessFile = FileSecurity.createRandomAccessFile( file,
+				"r" ); //$NON-NLS-1$
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel( );
+			long length = channel.size( );
+			long offset = 0;
+			do
+			{
+				long size = Math.min( REGION_SIZE, length - offset );
+				regions.add( channel.map( FileChannel.MapMode.READ_ONLY,
+						offset,
+						size ) );
+				offset += size;
+			}
+			while ( offset < length );
+		}
+		finally
+		{
+			randomAccessFile.close( );
+		}
+		return regions;
+	}
+
+	/**
+	 * Drops the references to the mapped buffers, so that no more document
+	 * object is opened. The files stay mapped until the buffers of this
+	 * manager and of its document objects are garbage collected.
+	 */
+	public void close( ) throws IOException
+	{
+		dataRegions = null;
+		oat = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#createDocumentObject(java.lang.String)
+	 */
+	public IDocumentObject createDocumentObject( String documentObjectName )
+			throws IOException
+	{
+		throw new UnsupportedOperationException( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#exist(java.lang.String)
+	 */
+	public boolean exist( String documentObjectName )
+	{
+		return documentObjectMap.get( documentObjectName ) != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#openDocumentObject(java.lang.String)
+	 */
+	public IDocumentObject openDocumentObject( String documentObjectName )
+			throws IOException
+	{
+		ObjectStructure objectStructure = documentObjectMap.get( documentObjectName );
+		if ( objectStructure == null )
+		{
+			return null;
+		}
+		if ( dataRegions == null )
+		{
+			throw new IOException( "The document manager is closed!" ); //$NON-NLS-1$
+		}
+		int blockCount = (int) ( ( objectStructure.length - 1 ) / IObjectAllocTable.BLOCK_SIZE ) + 1;
+		int[] blocks = new int[Math.max( blockCount, 1 )];
+		int blockNumber = objectStructure.firstBlock;
+		for ( int i = 0; i < blocks.length; i++ )
+		{
+			blocks[i] = blockNumber;
+			blockNumber = oat.get( blockNumber );
+		}
+		return new DocumentObject( new RandomDataAccessObject( new MappedRandomAccessObject( dataRegions,
+				blocks,
+				objectStructure.length ) ) );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#flush()
+	 */
+	public void flush( ) throws IOException
+	{
+	}
+
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A read only implementation of the <tt>IRandomAccessObject</tt> interface,
+ * which reads the blocks of a document object directly from the memory mapped
+ * regions of the data file. The reads are neither system calls nor copies to
+ * an intermediate buffer. The regions are duplicated, so that every instance
+ * has its own buffer positions and the instances opened on the same file are
+ * used by several threads at a time.
+ */
+
+public class MappedRandomAccessObject implements IRandomAccessObject
+{
+	private ByteBuffer[] regions;
+	private int[] blocks;
+	private long length;
+	private long position;
+
+	/**
+	 *
+	 * @param regions
+	 *            the mapped regions of the data file, of
+	 *            <code>MappedFileDocumentManager.REGION_SIZE</code> bytes
+	 *            except the last one
+	 * @param blocks
+	 *            the blocks of the object in the data file
+	 * @param length
+	 */
+	MappedRandomAccessObject( ByteBuffer[] regions, int[] blocks, long length )
+	{
+		this.regions = new ByteBuffer[regions.length];
+		for ( int i = 0; i < regions.length; i++ )
+		{
+			this.regions[i] = regions[i].duplicate( );
+		}
+		this.blocks = blocks;
+		this.length = length;
+		this.position = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#close()
+	 */
+	public void close( ) throws IOException
+	{
+		regions = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#getFilePointer()
+	 */
+	public long getFilePointer( ) throws IOException
+	{
+		return position;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#length()
+	 */
+	public long length( ) throws IOException
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[], int, int)
+	 */
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 )
+		{
+			return 0;
+		}
+		if ( position >= length )
+		{
+			return -1;
+		}
+		len = (int) Math.min( length - position, len );
+		int readSize = 0;
+		while ( readSize < len )
+		{
+			int posInBlock = (int) ( position % IObjectAllocTable.BLOCK_SIZE );
+			int size = Math.min( IObjectAllocTable.BLOCK_SIZE - posInBlock, len
+					- readSize );
+			ByteBuffer region = seekRegion( posInBlock );
+			region.get( b, off + readSize, size );
+			position += size;
+			readSize += size;
+		}
+		return readSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[])
+	 */
+	public int read( byte[] b ) throws IOException
+	{
+		return read( b, 0, b.length );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read()
+	 */
+	public int read( ) throws IOException
+	{
+		if ( position >= length )
+		{
+			return -1;
+		}
+		ByteBuffer region = seekRegion( (int) ( position % IObjectAllocTable.BLOCK_SIZE ) );
+		position++;
+		return region.get( ) & 0xff;
+	}
+
+	/**
+	 * Sets the position of the region which has the current position of this
+	 * object. A block is never split across two regions.
+	 *
+	 * @param posInBlock
+	 * @return the region
+	 * @throws IOException
+	 */
+	private ByteBuffer seekRegion( int posInBlock ) throws IOException
+	{
+		if ( regions == null )
+		{
+			throw new IOException( "The object is closed!" ); //$NON-NLS-1$
+		}
+		long dataFilePosition = (long) blocks[(int) ( position / IObjectAllocTable.BLOCK_SIZE )]
+				* IObjectAllocTable.BLOCK_SIZE + posInBlock;
+		ByteBuffer region = regions[(int) ( dataFilePosition / MappedFileDocumentManager.REGION_SIZE )];
+		region.position( (int) ( dataFilePosition % MappedFileDocumentManager.REGION_SIZE ) );
+		return region;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#seek(long)
+	 */
+	public void seek( long pos ) throws IOException
+	{
+		this.position = pos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#setLength(long)
+	 */
+	public void setLength( long newLength ) throws IOException
+	{
+		throw new UnsupportedOperationException( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#write(byte[], int, int)
+	 */
+	public void write( byte[] b, int off, int len ) throws IOException
+	{
+		throw new UnsupportedOperationException( "This is a read only object!" ); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#flush()
+	 */
+	public void flush( ) throws IOException
+	{
+	}
+
+}
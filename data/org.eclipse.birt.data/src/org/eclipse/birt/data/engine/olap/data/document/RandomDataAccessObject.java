@@ -11,9 +11,14 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.olap.data.document;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.UTFDataFormatException;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -784,14 +789,36 @@ public class RandomDataAccessObject implements IRandomDataAccessObject
 
 	public Object readObject( ) throws IOException
 	{
-		// TODO Auto-generated method stub
-		return null;
+		byte[] bytes = readBytes( ).bytesValue( );
+		final ClassLoader loader = org.eclipse.birt.data.engine.impl.DataEngineSession.getCurrentClassLoader( );
+		ObjectInputStream oo = new ObjectInputStream(
+					new ByteArrayInputStream( bytes ) ) {
+				protected Class resolveClass( ObjectStreamClass desc )
+						throws IOException, ClassNotFoundException
+				{
+					return Class.forName( desc.getName( ), false,
+							loader );
+				}
+			};
+		Object obValue = null;
+		try
+		{
+			obValue = oo.readObject( );
+		}
+		catch ( ClassNotFoundException e )
+		{
+			logger.log( Level.WARNING, "Failed to read object", e ); //$NON-NLS-1$
+		}
+		return obValue;
 	}
 
 	public void writeObject( Object o ) throws IOException
 	{
-		// TODO Auto-generated method stub
-		
+		ByteArrayOutputStream buff = new ByteArrayOutputStream( );
+		ObjectOutputStream oo = new ObjectOutputStream( buff );
+		oo.writeObject( o );
+		oo.close( );
+		writeBytes( new Bytes( buff.toByteArray( ) ) );
 	}
 
 }
@@ -25,6 +25,8 @@ public class NamingUtil
 	private static final String HIERARCHY_OFFSET = OLAP_PREFIX + "hierarchy_offset_";
 	private static final String FACT_TABLE = OLAP_PREFIX + "fact_table_";
 	private static final String FTSU_LIST = OLAP_PREFIX + "ftsu_list_";
+	private static final String FTSU_STATISTICS = OLAP_PREFIX + "ftsu_statistics_";
+	private static final String FTSU_INDEX = OLAP_PREFIX + "ftsu_index_";
 	private static final String AGGREGATION_RS_DOC = OLAP_PREFIX + "rs_doc_";
 
 	public static final String DERIVED_MEASURE_PREFIX = "_${DERIVED_MEASURE}$_";
@@ -139,6 +141,26 @@ public class NamingUtil
 		return FTSU_LIST + factTableName;
 	}
 	
+	/**
+	 * 
+	 * @param factTableName
+	 * @return the name of the document of the segment statistics
+	 */
+	public static String getFTSUStatisticsName( String factTableName )
+	{
+		return FTSU_STATISTICS + factTableName;
+	}
+	
+	/**
+	 * 
+	 * @param FTSUName
+	 * @return the name of the document of the bitmap index of a segment
+	 */
+	public static String getFTSUIndexName( String FTSUName )
+	{
+		return FTSU_INDEX + FTSUName;
+	}
+	
 	/**
 	 * 
 	 * @param ID
@@ -17,14 +17,20 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.TempPathManager;
 import org.eclipse.birt.data.engine.executor.ComparatorUtil;
 import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+import org.eclipse.birt.data.engine.executor.cache.disk.SortTaskExecutor;
 import org.eclipse.birt.data.engine.i18n.DataResourceHandle;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.StopSign;
@@ -74,6 +80,7 @@ public class AggregationExecutor
 	public Row4Aggregation[] aggregationRow;
 	private AggregationFunctionDefinition simpleFunc;
 	private boolean existReferenceDate = false;
+	private int parallelism = 1;
 	
 	private static String[] simpleFuncNames = new String[]{
 		"SUM",
@@ -282,36 +289,31 @@ public class AggregationExecutor
 	public IAggregationResultSet[] execute( StopSign stopSign )
 			throws IOException, DataException
 	{
-		populateSortedFactRows( stopSign );
-		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+		SortTaskExecutor executor = SortTaskExecutor.newInstance( parallelism,
+				"BIRT-CubeAggregation" ); //$NON-NLS-1$
+		try
 		{
-			DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
-			int[] calculatorIndexs = new int[sortedFactRows.length];
-			int pos = 0;
-			for ( int j = 0; j < calculatorIndexs.length; j++ )
+			populateSortedFactRows( stopSign, executor );
+			if ( executor != null
+					&& allSortedFactRows.size( ) > 1
+					&& canCalculateInParallel( ) )
 			{
-				if ( sortedFactRows[j] == diskSortedStackWrapper )
-				{
-					calculatorIndexs[pos] = j;
-					pos++;
-				}
+				calculateInParallel( executor, stopSign );
 			}
-			while ( diskSortedStackWrapper.pop( ) != null
-					&& !stopSign.isStopped( ) )
+			else
 			{
-				Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
-				for ( int j = 0; j < pos; j++ )
+				for ( int i = 0; i < allSortedFactRows.size( ); i++ )
 				{
-//					aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
-//							levelIndex[calculatorIndexs[j]].length / 2 ) );
-					if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
-					{
-						timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
-					}
-					aggregationCalculators[calculatorIndexs[j]].onRow( row );
+					calculate( (DiskSortedStackWrapper) allSortedFactRows.get( i ),
+							stopSign );
 				}
 			}
 		}
+		finally
+		{
+			if ( executor != null )
+				executor.shutdown( );
+		}
 		IAggregationResultSet[] resultSets = 
 			new IAggregationResultSet[aggregationCalculators.length];
 		boolean needPopulateMissingAggrResultSetRow = false;
@@ -343,6 +345,141 @@ public class AggregationExecutor
 		return resultSets;
 	}
 	
+	/**
+	 * Feeds the sorted rows of a stack to the calculators of the aggregations
+	 * which the stack is sorted for.
+	 * 
+	 * @param diskSortedStackWrapper
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void calculate( DiskSortedStackWrapper diskSortedStackWrapper,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		int[] calculatorIndexs = new int[sortedFactRows.length];
+		int pos = 0;
+		for ( int j = 0; j < calculatorIndexs.length; j++ )
+		{
+			if ( sortedFactRows[j] == diskSortedStackWrapper )
+			{
+				calculatorIndexs[pos] = j;
+				pos++;
+			}
+		}
+		while ( diskSortedStackWrapper.pop( ) != null
+				&& !stopSign.isStopped( ) )
+		{
+			Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
+			for ( int j = 0; j < pos; j++ )
+			{
+//				aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
+//						levelIndex[calculatorIndexs[j]].length / 2 ) );
+				if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
+				{
+					timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
+				}
+				aggregationCalculators[calculatorIndexs[j]].onRow( row );
+			}
+		}
+	}
+	
+	/**
+	 * The stacks have separate calculators, so they are calculated by the
+	 * threads of the executor at the same time. The rows of each stack are
+	 * still fed to its calculators in their sorted order, so that the running
+	 * functions get the same results as in one thread.
+	 * 
+	 * @param executor
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void calculateInParallel( SortTaskExecutor executor,
+			final StopSign stopSign ) throws IOException, DataException
+	{
+		// the disk arrays created by the tasks are closed and placed with the
+		// ones of the calling thread
+		final CloseListenerManager closeListener = DataEngineThreadLocal.getInstance( )
+				.getCloseListener( );
+		final TempPathManager pathManager = DataEngineThreadLocal.getInstance( )
+				.getPathManager( );
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+		{
+			final DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
+			// a task does not wait for the other tasks of the executor
+			diskSortedStackWrapper.getDiskSortedStack( ).setSortExecutor( null );
+			futures.add( executor.submit( new Callable<Object>( ) {
+
+				public Object call( ) throws Exception
+				{
+					DataEngineThreadLocal.getInstance( )
+							.setCloseListener( closeListener );
+					DataEngineThreadLocal.getInstance( )
+							.setPathManager( pathManager );
+					try
+					{
+						calculate( diskSortedStackWrapper, stopSign );
+					}
+					finally
+					{
+						DataEngineThreadLocal.getInstance( )
+								.removeCloseListener( );
+						DataEngineThreadLocal.getInstance( )
+								.removeTempPathManger( );
+					}
+					return null;
+				}
+			} ) );
+		}
+		try
+		{
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				SortTaskExecutor.waitFor( futures.get( i ) );
+			}
+		}
+		finally
+		{
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				futures.get( i ).cancel( true );
+			}
+		}
+	}
+	
+	/**
+	 * The script filters and the time functions use the scope and the
+	 * dimension readers of the calling thread.
+	 * 
+	 * @return whether the aggregations can be calculated by other threads
+	 * @throws DataException
+	 */
+	private boolean canCalculateInParallel( ) throws DataException
+	{
+		for ( int i = 0; i < aggregationCalculators.length; i++ )
+		{
+			if ( timeFunctionCalculator[i].existTimeFunction( ) )
+			{
+				return false;
+			}
+			AggregationFunctionDefinition[] aggrFunc = aggregationCalculators[i].aggregation.getAggregationFunctions( );
+			if ( aggrFunc == null )
+				continue;
+			for ( int j = 0; j < aggrFunc.length; j++ )
+			{
+				if ( aggrFunc[j].getFilterEvalHelper( ) != null
+						|| aggrFunc[j].getTimeFunction( ) != null
+						|| aggrFunc[j].getTimeFunctionFilter( ) != null )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
 	private void populateEdgeMember( List<Member[]> edgeMember, IAggregationResultSet rs ) throws IOException
 	{
 		for ( int i = 0; i < rs.length( ); i++ )
@@ -678,13 +815,20 @@ public class AggregationExecutor
 	 * @throws IOException
 	 * @throws BirtException
 	 */
-	private void populateSortedFactRows( StopSign stopSign ) throws IOException,
-			DataException
+	private void populateSortedFactRows( StopSign stopSign,
+			SortTaskExecutor executor ) throws IOException, DataException
 	{
 //		Row4AggregationPopulator aggregationRowPopulator = new Row4AggregationPopulator( dimesionResultIterators,
 //				facttableRowIterator, parameterColIndexs );
 
 		prepareSortedStacks( );
+		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+		{
+			// the buffers of the stacks are sorted by the threads of the
+			// executor when they are full
+			( (DiskSortedStackWrapper) allSortedFactRows.get( i ) ).getDiskSortedStack( )
+					.setSortExecutor( executor );
+		}
 		int measureCount = dataSet4Aggregation.getMetaInfo( ).getMeasureInfos( ).length;
 		int factRowCount = 0;
 		if( this.aggregationRow == null )
@@ -1100,6 +1244,23 @@ public class AggregationExecutor
 		return maxDataObjectRows;
 	}
 	
+	/**
+	 * Sets the count of threads which sort the buffers of the stacks and
+	 * calculate the stacks. The fact table is still scanned by the calling
+	 * thread: the data set is a single cursor over the segments of the fact
+	 * table which moves the dimension iterators along with it, the members
+	 * are read by one dimension reader with its caches, and the rows of the
+	 * same members are merged only when they are consecutive. Each stack has
+	 * its own calculators, so that no partial result is to be merged.
+	 * 
+	 * @param parallelism
+	 *            the count of threads which sort and aggregate the rows
+	 */
+	public void setSortParallelism( int parallelism )
+	{
+		this.parallelism = parallelism;
+	}
+	
 	public void setMemoryCacheSize( long memoryCacheSize )
 	{
 		this.memoryCacheSize = memoryCacheSize;
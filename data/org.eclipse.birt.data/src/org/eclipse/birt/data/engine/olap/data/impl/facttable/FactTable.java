@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.olap.data.impl.facttable;
 
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
@@ -32,6 +33,7 @@ public class FactTable
 	
 	private IDocumentManager documentManager;
 	private CombinedPositionContructor combinedPositionCalculator;
+	private Map<String, SegmentStatistics> segmentStatistics;
 	private static Logger logger = Logger.getLogger( FactTable.class.getName( ) );
 	
 	/**
@@ -194,6 +196,30 @@ public class FactTable
 		return -1;
 	}
 
+	/**
+	 * 
+	 * @param segmentStatistics
+	 *            the statistics of the segments by the FTSU document name
+	 */
+	void setSegmentStatistics( Map<String, SegmentStatistics> segmentStatistics )
+	{
+		this.segmentStatistics = segmentStatistics;
+	}
+	
+	/**
+	 * 
+	 * @param FTSUDocName
+	 * @return the statistics of the segment, or null if they are unknown
+	 */
+	public SegmentStatistics getSegmentStatistics( String FTSUDocName )
+	{
+		if ( segmentStatistics == null )
+		{
+			return null;
+		}
+		return segmentStatistics.get( FTSUDocName );
+	}
+
 	/**
 	 * 
 	 * @return
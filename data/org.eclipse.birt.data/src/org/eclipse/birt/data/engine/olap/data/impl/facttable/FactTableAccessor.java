@@ -22,14 +22,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.TempPathManager;
 import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+import org.eclipse.birt.data.engine.executor.cache.disk.SortTaskExecutor;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.StopSign;
 import org.eclipse.birt.data.engine.olap.data.api.ILevel;
@@ -62,6 +68,7 @@ public class FactTableAccessor
 	private IDocumentManager documentManager =null;
 	private static Logger logger = Logger.getLogger( FactTableAccessor.class.getName( ) );
 	private long memoryCacheSize = 0;
+	private int parallelism = 1;
 	
 	public FactTableAccessor( IDocumentManager documentManager )
 	{
@@ -88,6 +95,35 @@ public class FactTableAccessor
 			IDatasetIterator iterator, Dimension[] dimensions,
 			String[] measureColumnName, Map calculatedMeasure, String[] measureColumnAggregations, StopSign stopSign )
 			throws BirtException, IOException
+	{
+		SortTaskExecutor executor = SortTaskExecutor.newInstance( parallelism,
+				"BIRT-CubeBuild" ); //$NON-NLS-1$
+		try
+		{
+			return saveFactTable( factTableName,
+					factTableJointColumnNames,
+					DimJointColumnNames,
+					iterator,
+					dimensions,
+					measureColumnName,
+					calculatedMeasure,
+					measureColumnAggregations,
+					executor,
+					stopSign );
+		}
+		finally
+		{
+			if ( executor != null )
+				executor.shutdown( );
+		}
+	}
+
+	private FactTable saveFactTable( String factTableName,
+			String[][] factTableJointColumnNames, String[][] DimJointColumnNames, 
+			IDatasetIterator iterator, Dimension[] dimensions,
+			String[] measureColumnName, Map calculatedMeasure, String[] measureColumnAggregations,
+			SortTaskExecutor executor, StopSign stopSign )
+			throws BirtException, IOException
 	{
 		FacttableRowContainer sortedFactTableRows = null;
 		if ( measureColumnAggregations == null || measureColumnAggregations.length == 0)
@@ -95,6 +131,7 @@ public class FactTableAccessor
 			sortedFactTableRows = populateSortedFacttableRowsWithoutAggregationCalculation( factTableJointColumnNames,
 					iterator,
 					measureColumnName,
+					executor,
 					stopSign );
 		}
 		else
@@ -103,6 +140,7 @@ public class FactTableAccessor
 					iterator,
 					measureColumnName,
 					measureColumnAggregations,
+					executor,
 					stopSign );
 		}
 		int segmentCount = getSegmentCount( sortedFactTableRows.size( ) );
@@ -121,62 +159,67 @@ public class FactTableAccessor
 				segmentCount );
 		
 		int[][][] columnIndex = getColumnIndex( DimJointColumnNames, dimensions );
-		DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
-		for ( int i = 0; i < dimensionSeekers.length; i++ )
-		{
-			dimensionSeekers[i] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[i],
-					dimensions[i].getAllRows( stopSign ) ) );
-		}
+		DimensionPositionSeeker[] dimensionSeekers = createDimensionPositionSeekers( columnIndex,
+				dimensions,
+				executor,
+				stopSign );
 		
-		int[] dimensionPosition = new int[dimensions.length];
 		DocumentObjectCache documentObjectManager = new DocumentObjectCache( documentManager, (long) ( memoryCacheSize* 0.25 ) );
 		CombinedPositionContructor combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
 		
 		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager, factTableName );
-		FactTableRow currentRow = sortedFactTableRows.pop( );
+		// the positions of a batch of rows are found in parallel, and the rows
+		// are written in their sorted order
+		PositionedRows batch = new PositionedRows( subDimensions,
+				combinedPositionCalculator );
+		batch.pop( sortedFactTableRows );
 		boolean invalidDimensionKey = false;
 		int invalidRowNumber = 0;
-		while ( currentRow != null && !stopSign.isStopped( ) )
-		{			
-			invalidDimensionKey = false;
-			for ( int i = 0; i < dimensionPosition.length; i++ )
+		while ( batch.rowCount > 0 && !stopSign.isStopped( ) )
+		{
+			batch.findPositions( dimensionSeekers, executor );
+			for ( int r = 0; r < batch.rowCount; r++ )
 			{
-				dimensionPosition[i] = dimensionSeekers[i].find( currentRow.getDimensionKeys()[i] );
-				if ( dimensionPosition[i] < 0 )
+				FactTableRow currentRow = batch.rows[r];
+				int[] dimensionPosition = batch.dimensionPositions[r];
+				invalidDimensionKey = false;
+				for ( int i = 0; i < dimensionPosition.length; i++ )
 				{
-					invalidDimensionKey = true;
-					logger.fine( "The fact table of cube " 
-							+ factTableName + 
-							" has an invalid data row where the value of dimension key " + 
-							Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
-							currentRow.getDimensionKeys()[i].toString( ) + 
-							" which however does not exist in dimension "+ 
-							dimensions[i].getName( ) +"." );
+					if ( dimensionPosition[i] < 0 )
+					{
+						invalidDimensionKey = true;
+						logger.fine( "The fact table of cube " 
+								+ factTableName + 
+								" has an invalid data row where the value of dimension key " + 
+								Arrays.toString( factTableJointColumnNames[i] ) + " is " + 
+								currentRow.getDimensionKeys()[i].toString( ) + 
+								" which however does not exist in dimension "+ 
+								dimensions[i].getName( ) +"." );
+					}
+				}
+				if( invalidDimensionKey )
+				{
+					invalidRowNumber ++;
+					continue;
+				}
+				String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
+						NamingUtil.getFactTableName( factTableName ),
+						batch.subDimensionIndexes[r] );
+				saveHelper.add( FTSUDocName,
+						batch.subDimensionIndexes[r],
+						dimensionPosition,
+						currentRow.getMeasures( ) );
+				
+				IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
+				documentObject.writeBytes( new Bytes( batch.combinedPositions[r] ) );
+				for( int i=0;i<measureInfo.length;i++)
+				{
+					DocumentObjectUtil.writeValue( documentObject,
+							measureInfo[i].getDataType(),
+							currentRow.getMeasures()[i] );
 				}
 			}
-			if( invalidDimensionKey )
-			{
-				currentRow = sortedFactTableRows.pop( );
-				invalidRowNumber ++;
-				continue;
-			}
-			int[] subDimensionIndex = getSubDimensionIndex( dimensionPosition,
-					subDimensions );
-			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
-					NamingUtil.getFactTableName( factTableName ),
-					subDimensionIndex );
-			saveHelper.add( FTSUDocName );
-			
-			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
-			documentObject.writeBytes( new Bytes( combinedPositionCalculator.
-					calculateCombinedPosition( subDimensionIndex, dimensionPosition ).toByteArray( ) ) );
-			for( int i=0;i<measureInfo.length;i++)
-			{
-				DocumentObjectUtil.writeValue( documentObject,
-						measureInfo[i].getDataType(),
-						currentRow.getMeasures()[i] );
-			}
-			currentRow = sortedFactTableRows.pop( );
+			batch.pop( sortedFactTableRows );
 		}
 		saveHelper.save( );
 		if( invalidRowNumber > 0 )
@@ -187,28 +230,81 @@ public class FactTableAccessor
 				+ "invalid rows where the value of dimension key does not exist in dimension.");
 		}
 		documentObjectManager.closeAll( );
+		saveSegmentBitmapIndexes( saveHelper,
+				subDimensions,
+				combinedPositionCalculator,
+				measureInfo,
+				stopSign );
 		documentManager.flush( );
-		return new FactTable( factTableName,
+		FactTable factTable = new FactTable( factTableName,
 				documentManager,
 				dimensionInfo,
 				measureInfo,
 				calMeasureInfo,
 				segmentCount,
 				subDimensions);
+		factTable.setSegmentStatistics( saveHelper.getStatistics( ) );
+		return factTable;
 		
 	}
 
+	/**
+	 * Builds the bitmap index of every segment by a scan of the segment, after
+	 * all the rows are written, so that only the index of one segment is in
+	 * memory at a time.
+	 * 
+	 * @param saveHelper
+	 * @param subDimensions
+	 * @param combinedPositionCalculator
+	 * @param measureInfo
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void saveSegmentBitmapIndexes( FTSUNameSaveHelper saveHelper,
+			DimensionDivision[] subDimensions,
+			CombinedPositionContructor combinedPositionCalculator,
+			MeasureInfo[] measureInfo, StopSign stopSign ) throws IOException,
+			DataException
+	{
+		Iterator<Entry<String, int[]>> it = saveHelper.getSubDimensionIndexes( )
+				.entrySet( )
+				.iterator( );
+		while ( it.hasNext( ) && !stopSign.isStopped( ) )
+		{
+			Entry<String, int[]> entry = it.next( );
+			IDocumentObject segment = documentManager.openDocumentObject( entry.getKey( ) );
+			SegmentBitmapIndex index;
+			try
+			{
+				index = SegmentBitmapIndex.build( segment,
+						entry.getValue( ),
+						subDimensions,
+						combinedPositionCalculator,
+						measureInfo );
+			}
+			finally
+			{
+				segment.close( );
+			}
+			IDocumentObject indexObject = documentManager.createDocumentObject( NamingUtil.getFTSUIndexName( entry.getKey( ) ) );
+			index.save( indexObject );
+			indexObject.close( );
+		}
+	}
+
 	private FacttableRowContainer populatedSortedFacttableRowsWithAggregationCalculation(
 			String[][] factTableJointColumnNames, IDatasetIterator iterator,
 			String[] measureColumnName, String[] measureColumnAggregations,
-			StopSign stopSign ) throws BirtException, IOException,
-			DataException
+			SortTaskExecutor executor, StopSign stopSign )
+			throws BirtException, IOException, DataException
 	{
 		FacttableRowContainer sortedFactTableRows;
 		DiskSortedStack sortedRows = getSortedFactTableRows( iterator,
 				factTableJointColumnNames,
 				measureColumnName,
 				false,
+				executor,
 				stopSign );
 		
 		final StructureDiskArray aggregatedRows = new StructureDiskArray( FactTableRow.getCreator( ) );
@@ -264,14 +360,15 @@ public class FactTableAccessor
 
 	private FacttableRowContainer populateSortedFacttableRowsWithoutAggregationCalculation(
 			String[][] factTableJointColumnNames, IDatasetIterator iterator,
-			String[] measureColumnName, StopSign stopSign )
-			throws BirtException, IOException
+			String[] measureColumnName, SortTaskExecutor executor,
+			StopSign stopSign ) throws BirtException, IOException
 	{
 		FacttableRowContainer sortedFactTableRows;
 		final DiskSortedStack facttableRows = getSortedFactTableRows( iterator,
 				factTableJointColumnNames,
 				measureColumnName,
 				false,
+				executor,
 				stopSign );
 
 		sortedFactTableRows = new FacttableRowContainer( ) {
@@ -351,6 +448,92 @@ public class FactTableAccessor
 		return columnIndex;
 	}
 	
+	/**
+	 * Creates the position seekers of the dimensions. The rows of the
+	 * dimensions are read in turn, as they are in the same document, and then
+	 * the keys of each dimension are sorted by a thread of the executor.
+	 * 
+	 * @param columnIndex
+	 * @param dimensions
+	 * @param executor
+	 * @param stopSign
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static DimensionPositionSeeker[] createDimensionPositionSeekers(
+			final int[][][] columnIndex, Dimension[] dimensions,
+			SortTaskExecutor executor, StopSign stopSign ) throws IOException,
+			DataException
+	{
+		final DimensionPositionSeeker[] dimensionSeekers = new DimensionPositionSeeker[dimensions.length];
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		for ( int i = 0; i < dimensionSeekers.length; i++ )
+		{
+			final IDiskArray dimensionRows = dimensions[i].getAllRows( stopSign );
+			if ( executor == null )
+			{
+				dimensionSeekers[i] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[i],
+						dimensionRows ) );
+				continue;
+			}
+			final int index = i;
+			futures.add( submit( executor, new Callable<Object>( ) {
+
+				public Object call( ) throws IOException
+				{
+					dimensionSeekers[index] = new DimensionPositionSeeker( getDimCombinatedKey( columnIndex[index],
+							dimensionRows ) );
+					return null;
+				}
+			} ) );
+		}
+		for ( int i = 0; i < futures.size( ); i++ )
+		{
+			SortTaskExecutor.waitFor( futures.get( i ) );
+		}
+		return dimensionSeekers;
+	}
+	
+	/**
+	 * Submits a task which shares the close listener and the temporary path
+	 * of the calling thread, so that the disk arrays created by the task are
+	 * closed and placed with the ones of the calling thread.
+	 * 
+	 * @param executor
+	 * @param task
+	 * @return
+	 */
+	private static Future<Object> submit( SortTaskExecutor executor,
+			final Callable<Object> task )
+	{
+		final CloseListenerManager closeListener = DataEngineThreadLocal.getInstance( )
+				.getCloseListener( );
+		final TempPathManager pathManager = DataEngineThreadLocal.getInstance( )
+				.getPathManager( );
+		return executor.submit( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				DataEngineThreadLocal.getInstance( )
+						.setCloseListener( closeListener );
+				DataEngineThreadLocal.getInstance( )
+						.setPathManager( pathManager );
+				try
+				{
+					return task.call( );
+				}
+				finally
+				{
+					DataEngineThreadLocal.getInstance( )
+							.removeCloseListener( );
+					DataEngineThreadLocal.getInstance( )
+							.removeTempPathManger( );
+				}
+			}
+		} );
+	}
+	
 	/**
 	 * 
 	 * @param strArray
@@ -529,6 +712,18 @@ public class FactTableAccessor
 		this.memoryCacheSize = memoryCacheSize;
 	}
 
+	/**
+	 * Set the count of threads which sort the fact table rows and find their
+	 * dimension positions. The rows are written in the same order whatever
+	 * the count is, so the saved fact table is the same.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism( int parallelism )
+	{
+		this.parallelism = parallelism;
+	}
+
 	private static int getObjectSize( int[] dataType) {
 		int size = 0;
 		for( int i = 0; i < dataType.length; i++ )
@@ -545,13 +740,16 @@ public class FactTableAccessor
 	 * @param iterator
 	 * @param keyColumnNames
 	 * @param measureColumnNames
+	 * @param executor
+	 *            the executor which sorts the rows, or null
 	 * @param stopSign
 	 * @return
 	 * @throws BirtException
 	 * @throws IOException
 	 */
 	private DiskSortedStack getSortedFactTableRows( IDatasetIterator iterator,
-			String[][] keyColumnNames, String[] measureColumnNames, boolean forceRemoveDuplicate, StopSign stopSign )
+			String[][] keyColumnNames, String[] measureColumnNames, boolean forceRemoveDuplicate,
+			SortTaskExecutor executor, StopSign stopSign )
 			throws BirtException, IOException
 	{
 		DiskSortedStack result = null;
@@ -571,6 +769,7 @@ public class FactTableAccessor
 					FactTableRow.getCreator( ) );
 			result.setUseMemoryOnly( true );
 		}
+		result.setSortExecutor( executor );
 
 		int[][] levelKeyColumnIndex = new int[keyColumnNames.length][];
 		int[] measureColumnIndex = new int[measureColumnNames.length];
@@ -748,13 +947,16 @@ public class FactTableAccessor
 		DimensionDivision[] subDimensions = calculateDimensionDivision( dimensionMemberCount,
 				segmentNumber );
 		documentObject.close( );
-		return new FactTable( factTableName,
+		FactTable factTable = new FactTable( factTableName,
 				documentManager,
 				dimensionInfo,
 				measureInfo,
 				calMeasureInfo,
 				segmentNumber,
 				subDimensions ); 
+		factTable.setSegmentStatistics( FTSUNameSaveHelper.loadStatistics( documentManager,
+				factTableName ) );
+		return factTable;
 	}
 	
 	/**
@@ -806,6 +1008,121 @@ public class FactTableAccessor
 		}
 	}
 
+	/**
+	 * A batch of the sorted fact table rows, with the dimension positions and
+	 * the combined positions of the rows. The positions of the ranges of the
+	 * rows are found by the threads of the executor.
+	 */
+	private static class PositionedRows
+	{
+		private static final int BATCH_SIZE = 8192;
+		// a range smaller than this is done by one thread
+		private static final int MIN_RANGE_SIZE = 1024;
+
+		private DimensionDivision[] subDimensions;
+		private CombinedPositionContructor combinedPositionCalculator;
+		private boolean end = false;
+
+		FactTableRow[] rows = new FactTableRow[BATCH_SIZE];
+		int rowCount = 0;
+		int[][] dimensionPositions = new int[BATCH_SIZE][];
+		int[][] subDimensionIndexes = new int[BATCH_SIZE][];
+		byte[][] combinedPositions = new byte[BATCH_SIZE][];
+
+		PositionedRows( DimensionDivision[] subDimensions,
+				CombinedPositionContructor combinedPositionCalculator )
+		{
+			this.subDimensions = subDimensions;
+			this.combinedPositionCalculator = combinedPositionCalculator;
+		}
+
+		/**
+		 * Pops the next batch of rows.
+		 * 
+		 * @param container
+		 * @throws IOException
+		 */
+		void pop( FacttableRowContainer container ) throws IOException
+		{
+			rowCount = 0;
+			while ( !end && rowCount < rows.length )
+			{
+				FactTableRow row = container.pop( );
+				if ( row == null )
+					end = true;
+				else
+					rows[rowCount++] = row;
+			}
+			Arrays.fill( rows, rowCount, rows.length, null );
+		}
+
+		/**
+		 * Finds the positions of the rows. A position of a dimension is
+		 * negative if the key is not in the dimension.
+		 * 
+		 * @param dimensionSeekers
+		 * @param executor
+		 * @throws IOException
+		 * @throws DataException
+		 */
+		void findPositions( final DimensionPositionSeeker[] dimensionSeekers,
+				SortTaskExecutor executor ) throws IOException, DataException
+		{
+			int rangeCount = executor == null ? 1
+					: Math.min( executor.getParallelism( ), rowCount
+							/ MIN_RANGE_SIZE );
+			if ( rangeCount < 2 )
+			{
+				findPositions( dimensionSeekers, 0, rowCount );
+				return;
+			}
+			List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+			for ( int i = 0; i < rangeCount; i++ )
+			{
+				final int from = rowCount * i / rangeCount;
+				final int to = rowCount * ( i + 1 ) / rangeCount;
+				futures.add( submit( executor, new Callable<Object>( ) {
+
+					public Object call( ) throws IOException
+					{
+						findPositions( dimensionSeekers, from, to );
+						return null;
+					}
+				} ) );
+			}
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				SortTaskExecutor.waitFor( futures.get( i ) );
+			}
+		}
+
+		private void findPositions( DimensionPositionSeeker[] dimensionSeekers,
+				int from, int to ) throws IOException
+		{
+			for ( int r = from; r < to; r++ )
+			{
+				int[] dimensionPosition = new int[dimensionSeekers.length];
+				boolean valid = true;
+				for ( int i = 0; i < dimensionPosition.length; i++ )
+				{
+					dimensionPosition[i] = dimensionSeekers[i].find( rows[r].getDimensionKeys( )[i] );
+					if ( dimensionPosition[i] < 0 )
+						valid = false;
+				}
+				dimensionPositions[r] = dimensionPosition;
+				subDimensionIndexes[r] = null;
+				combinedPositions[r] = null;
+				if ( valid )
+				{
+					subDimensionIndexes[r] = getSubDimensionIndex( dimensionPosition,
+							subDimensions );
+					combinedPositions[r] = combinedPositionCalculator.calculateCombinedPosition( subDimensionIndexes[r],
+							dimensionPosition )
+							.toByteArray( );
+				}
+			}
+		}
+	}
 }
 
 interface FacttableRowContainer
@@ -820,7 +1137,8 @@ interface FacttableRowContainer
  */
 class FTSUNameSaveHelper
 {
-	private HashMap map;
+	private HashMap<String, SegmentStatistics> map;
+	private HashMap<String, int[]> subDimensionIndexes;
 	private IDocumentManager documentManager; 
 	private String factTableName;
 	
@@ -833,22 +1151,54 @@ class FTSUNameSaveHelper
 	{
 		this.documentManager = documentManager;
 		this.factTableName = factTableName;
-		this.map = new HashMap( );
+		this.map = new HashMap<String, SegmentStatistics>( );
+		this.subDimensionIndexes = new HashMap<String, int[]>( );
 	}
 	
 	/**
+	 * Adds a row of a segment to the statistics of the segment.
 	 * 
 	 * @param name
+	 * @param subDimensionIndex
+	 * @param dimensionPositions
+	 * @param measures
 	 */
-	void add( String name )
+	void add( String name, int[] subDimensionIndex, int[] dimensionPositions,
+			Object[] measures )
 	{
-		if ( !map.containsKey( name ) )
+		SegmentStatistics statistics = map.get( name );
+		if ( statistics == null )
 		{
-			map.put( name, null );
+			subDimensionIndexes.put( name, subDimensionIndex );
+			statistics = new SegmentStatistics( dimensionPositions.length,
+					measures.length );
+			map.put( name, statistics );
 		}
+		statistics.addRow( dimensionPositions, measures );
+	}
+	
+	/**
+	 * 
+	 * @return the statistics of the segments by the FTSU document name
+	 */
+	Map<String, SegmentStatistics> getStatistics( )
+	{
+		return map;
+	}
+	
+	/**
+	 * 
+	 * @return the sub dimension indexes of the segments by the FTSU document
+	 *         name
+	 */
+	Map<String, int[]> getSubDimensionIndexes( )
+	{
+		return subDimensionIndexes;
 	}
 	
 	/**
+	 * Saves the names of the segments, and the statistics of them in another
+	 * document so that the name list keeps its format.
 	 * 
 	 * @throws IOException
 	 */
@@ -856,12 +1206,58 @@ class FTSUNameSaveHelper
 	{
 		IDocumentObject FTSUNameSave = documentManager.createDocumentObject( NamingUtil.getFTSUListName( factTableName ) );
 		
-		Iterator nameIterator = map.keySet( ).iterator( );
+		Iterator<String> nameIterator = map.keySet( ).iterator( );
 		while ( nameIterator.hasNext( ) )
 		{
-			FTSUNameSave.writeString( (String)nameIterator.next( ) );
+			FTSUNameSave.writeString( nameIterator.next( ) );
 		}
 		FTSUNameSave.close( );
+		
+		IDocumentObject statisticsSave = documentManager.createDocumentObject( NamingUtil.getFTSUStatisticsName( factTableName ) );
+		statisticsSave.writeInt( map.size( ) );
+		Iterator<Map.Entry<String, SegmentStatistics>> it = map.entrySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<String, SegmentStatistics> entry = it.next( );
+			statisticsSave.writeString( entry.getKey( ) );
+			entry.getValue( ).save( statisticsSave );
+		}
+		statisticsSave.close( );
+	}
+	
+	/**
+	 * 
+	 * @param documentManager
+	 * @param factTableName
+	 * @return the saved statistics of the segments, or null if the fact table
+	 *         has none
+	 * @throws IOException
+	 */
+	static Map<String, SegmentStatistics> loadStatistics(
+			IDocumentManager documentManager, String factTableName )
+			throws IOException
+	{
+		String name = NamingUtil.getFTSUStatisticsName( factTableName );
+		if ( !documentManager.exist( name ) )
+		{
+			return null;
+		}
+		IDocumentObject documentObject = documentManager.openDocumentObject( name );
+		Map<String, SegmentStatistics> result = new HashMap<String, SegmentStatistics>( );
+		try
+		{
+			int count = documentObject.readInt( );
+			for ( int i = 0; i < count; i++ )
+			{
+				String FTSUName = documentObject.readString( );
+				result.put( FTSUName, SegmentStatistics.load( documentObject ) );
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+		return result;
 	}
 }
 
@@ -1040,7 +1436,7 @@ class DimensionDivider
 		 * @return
 		 * @throws IOException
 		 */
-		private int traverseFind( DimensionKey key ) throws IOException
+		private synchronized int traverseFind( DimensionKey key ) throws IOException
 		{
 			for ( int i = position; i < diskMemberArray.size( ); i++ )
 			{
@@ -22,6 +22,8 @@ import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.impl.index.IOrderedIntSetIterator;
+import org.eclipse.birt.data.engine.impl.index.RoaringIntSet;
 import org.eclipse.birt.data.engine.olap.data.api.IComputedMeasureHelper;
 import org.eclipse.birt.data.engine.olap.data.api.IDimensionResultIterator;
 import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
@@ -88,6 +90,10 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private boolean lastFilterResult;
 	private boolean isDuplicatedRow;
 	
+	private SegmentBitmapIndex currentSegmentIndex;
+	private IOrderedIntSetIterator selectedRows;	//null if all the rows are read
+	private int currentRow;
+	
 	/**
 	 * 
 	 * @param factTable
@@ -236,7 +242,12 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				{
 					return false;
 				}
+				if ( selectedRows != null && !skipToSelectedRow( ) )
+				{
+					break;
+				}
 				Bytes combinedDimensionPosition = currentSegment.readBytes( );
+				currentRow++;
 				if( this.lastCombinedDimensionPosition == null )
 				{
 					this.lastCombinedDimensionPosition = combinedDimensionPosition;
@@ -519,11 +530,6 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				continue;
 			}
 			
-			if( currentSegment != null )
-				currentSegment.close( );
-			
-			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
-			
 			for ( int i = 0; i < dimensionIndex.length; i++ )
 			{
 				if ( dimensionIndex[i] != -1 )
@@ -539,11 +545,163 @@ public class FactTableRowIterator implements IFactTableRowIterator
 					}
 				}
 			}
+			if ( !mayContainSelectedRows( FTSUDocName ) )
+			{
+				continue;
+			}
+			SegmentBitmapIndex segmentIndex = loadSegmentIndex( FTSUDocName );
+			RoaringIntSet rows = null;
+			if ( segmentIndex != null )
+			{
+				rows = getSelectedRows( segmentIndex );
+				if ( rows.isEmpty( ) )
+				{
+					continue;
+				}
+			}
+			
+			if( currentSegment != null )
+				currentSegment.close( );
+			
+			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
+			currentSegmentIndex = segmentIndex;
+			selectedRows = rows == null ? null : rows.iterator( );
+			currentRow = 0;
+			
 			break;
 		}
 		return true;
 	}
 
+	/**
+	 * Skips the rows before the next selected row of the segment, seeking to
+	 * the block of the row if it is not the current one.
+	 * 
+	 * @return false if there is no more selected row in the segment
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private boolean skipToSelectedRow( ) throws IOException, DataException
+	{
+		if ( !selectedRows.hasNext( ) )
+		{
+			return false;
+		}
+		int row = selectedRows.next( );
+		if ( row == currentRow )
+		{
+			return true;
+		}
+		// the skipped rows are not compared with the next one
+		this.lastCombinedDimensionPosition = null;
+		int blockStartRow = currentSegmentIndex.getBlockStartRow( row );
+		if ( blockStartRow > currentRow )
+		{
+			currentSegment.seek( currentSegmentIndex.getBlockOffset( row ) );
+			currentRow = blockStartRow;
+		}
+		while ( currentRow < row )
+		{
+			currentSegment.readBytes( );
+			if ( !skipMeasure( ) )
+			{
+				return false;
+			}
+			currentRow++;
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param FTSUDocName
+	 * @return the bitmap index of the segment, or null if no dimension is
+	 *         selected or the segment has no index
+	 * @throws IOException
+	 */
+	private SegmentBitmapIndex loadSegmentIndex( String FTSUDocName )
+			throws IOException
+	{
+		boolean selected = false;
+		for ( int i = 0; i < dimensionIndex.length; i++ )
+		{
+			selected = selected || dimensionIndex[i] != -1;
+		}
+		String indexName = NamingUtil.getFTSUIndexName( FTSUDocName );
+		if ( !selected || !factTable.getDocumentManager( ).exist( indexName ) )
+		{
+			return null;
+		}
+		IDocumentObject documentObject = factTable.getDocumentManager( )
+				.openDocumentObject( indexName );
+		try
+		{
+			return SegmentBitmapIndex.load( documentObject );
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 * 
+	 * @param segmentIndex
+	 * @return the rows of the segment which refer to the selected positions
+	 *         of all the selected dimensions
+	 */
+	private RoaringIntSet getSelectedRows( SegmentBitmapIndex segmentIndex )
+	{
+		RoaringIntSet result = null;
+		for ( int i = 0; i < dimensionIndex.length; i++ )
+		{
+			if ( dimensionIndex[i] == -1 )
+			{
+				continue;
+			}
+			RoaringIntSet rows = segmentIndex.getRows( i,
+					selectedPosOfCurSegment[i] );
+			if ( result == null )
+			{
+				result = rows;
+			}
+			else
+			{
+				result.and( rows );
+			}
+			if ( result.isEmpty( ) )
+			{
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A segment whose range of the positions of a dimension has none of the
+	 * selected positions has no selected row, and is not read.
+	 * 
+	 * @param FTSUDocName
+	 * @return
+	 */
+	private boolean mayContainSelectedRows( String FTSUDocName )
+	{
+		SegmentStatistics statistics = factTable.getSegmentStatistics( FTSUDocName );
+		if ( statistics == null )
+		{
+			return true;
+		}
+		for ( int i = 0; i < dimensionIndex.length; i++ )
+		{
+			if ( dimensionIndex[i] != -1
+					&& !statistics.mayContain( i, selectedPosOfCurSegment[i] ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.impl.facttable.IFactTableRowIterator#getDimensionCount()
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.index.RoaringIntSet;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivider.CombinedPositionContructor;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+
+/**
+ * The bitmap index of a fact table segment, which maps the position of every
+ * dimension member to the rows of the segment that refer to it. The rows
+ * selected by several dimensions are the <code>and</code> of the rows of the
+ * dimensions, each the <code>or</code> of the rows of the selected positions,
+ * so that they are known before any row of the segment is read. The offsets
+ * of every block of rows let the reader seek to the selected rows.
+ */
+public class SegmentBitmapIndex
+{
+
+	static final int ROW_BLOCK_SIZE = 64;
+
+	// the first position of the sub dimension of each dimension
+	private int[] startPositions;
+	// the rows of each position of each dimension, null if there is none
+	private RoaringIntSet[][] rowsOfPositions;
+	private int rowCount;
+	private long[] blockOffsets;
+
+	private SegmentBitmapIndex( int[] startPositions,
+			RoaringIntSet[][] rowsOfPositions, int rowCount, long[] blockOffsets )
+	{
+		this.startPositions = startPositions;
+		this.rowsOfPositions = rowsOfPositions;
+		this.rowCount = rowCount;
+		this.blockOffsets = blockOffsets;
+	}
+
+	/**
+	 * Builds the index by a scan of the segment.
+	 *
+	 * @param segment
+	 * @param subDimensionIndex
+	 * @param subDimensions
+	 * @param combinedPositionCalculator
+	 * @param measureInfo
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	static SegmentBitmapIndex build( IDocumentObject segment,
+			int[] subDimensionIndex, DimensionDivision[] subDimensions,
+			CombinedPositionContructor combinedPositionCalculator,
+			MeasureInfo[] measureInfo ) throws IOException, DataException
+	{
+		int[] startPositions = new int[subDimensions.length];
+		RoaringIntSet[][] rowsOfPositions = new RoaringIntSet[subDimensions.length][];
+		for ( int i = 0; i < subDimensions.length; i++ )
+		{
+			DimensionDivision.IntRange range = subDimensions[i].getRanges( )[subDimensionIndex[i]];
+			startPositions[i] = range.start;
+			rowsOfPositions[i] = new RoaringIntSet[range.end - range.start + 1];
+		}
+
+		long[] blockOffsets = new long[16];
+		int row = 0;
+		segment.seek( 0 );
+		long length = segment.length( );
+		while ( segment.getFilePointer( ) < length )
+		{
+			if ( row % ROW_BLOCK_SIZE == 0 )
+			{
+				int block = row / ROW_BLOCK_SIZE;
+				if ( block == blockOffsets.length )
+				{
+					long[] offsets = new long[block * 2];
+					System.arraycopy( blockOffsets, 0, offsets, 0, block );
+					blockOffsets = offsets;
+				}
+				blockOffsets[block] = segment.getFilePointer( );
+			}
+			int[] positions = combinedPositionCalculator.calculateDimensionPosition( subDimensionIndex,
+					segment.readBytes( ).bytesValue( ) );
+			for ( int i = 0; i < measureInfo.length; i++ )
+			{
+				DocumentObjectUtil.readValue( segment,
+						measureInfo[i].getDataType( ) );
+			}
+			for ( int i = 0; i < positions.length; i++ )
+			{
+				int index = positions[i] - startPositions[i];
+				if ( rowsOfPositions[i][index] == null )
+					rowsOfPositions[i][index] = new RoaringIntSet( );
+				rowsOfPositions[i][index].add( row );
+			}
+			row++;
+		}
+		int blockCount = ( row + ROW_BLOCK_SIZE - 1 ) / ROW_BLOCK_SIZE;
+		long[] offsets = new long[blockCount];
+		System.arraycopy( blockOffsets, 0, offsets, 0, blockCount );
+		return new SegmentBitmapIndex( startPositions,
+				rowsOfPositions,
+				row,
+				offsets );
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @throws IOException
+	 */
+	void save( IDocumentObject documentObject ) throws IOException
+	{
+		documentObject.writeInt( rowCount );
+		documentObject.writeInt( blockOffsets.length );
+		for ( int i = 0; i < blockOffsets.length; i++ )
+		{
+			documentObject.writeLong( blockOffsets[i] );
+		}
+		documentObject.writeInt( startPositions.length );
+		for ( int i = 0; i < startPositions.length; i++ )
+		{
+			documentObject.writeInt( startPositions[i] );
+			documentObject.writeInt( rowsOfPositions[i].length );
+			int count = 0;
+			for ( int j = 0; j < rowsOfPositions[i].length; j++ )
+			{
+				if ( rowsOfPositions[i][j] != null )
+					count++;
+			}
+			documentObject.writeInt( count );
+			for ( int j = 0; j < rowsOfPositions[i].length; j++ )
+			{
+				if ( rowsOfPositions[i][j] != null )
+				{
+					documentObject.writeInt( j );
+					documentObject.writeBytes( new Bytes( rowsOfPositions[i][j].toByteArray( ) ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @return the index saved by <code>save</code>
+	 * @throws IOException
+	 */
+	static SegmentBitmapIndex load( IDocumentObject documentObject )
+			throws IOException
+	{
+		int rowCount = documentObject.readInt( );
+		long[] blockOffsets = new long[documentObject.readInt( )];
+		for ( int i = 0; i < blockOffsets.length; i++ )
+		{
+			blockOffsets[i] = documentObject.readLong( );
+		}
+		int[] startPositions = new int[documentObject.readInt( )];
+		RoaringIntSet[][] rowsOfPositions = new RoaringIntSet[startPositions.length][];
+		for ( int i = 0; i < startPositions.length; i++ )
+		{
+			startPositions[i] = documentObject.readInt( );
+			rowsOfPositions[i] = new RoaringIntSet[documentObject.readInt( )];
+			int count = documentObject.readInt( );
+			for ( int j = 0; j < count; j++ )
+			{
+				int index = documentObject.readInt( );
+				rowsOfPositions[i][index] = RoaringIntSet.valueOf( documentObject.readBytes( )
+						.bytesValue( ) );
+			}
+		}
+		return new SegmentBitmapIndex( startPositions,
+				rowsOfPositions,
+				rowCount,
+				blockOffsets );
+	}
+
+	/**
+	 *
+	 * @param dimensionIndex
+	 * @param positions
+	 *            the selected positions of the dimension
+	 * @return the rows of the segment which refer to any of the positions
+	 */
+	public RoaringIntSet getRows( int dimensionIndex, int[] positions )
+	{
+		RoaringIntSet result = new RoaringIntSet( );
+		RoaringIntSet[] rows = rowsOfPositions[dimensionIndex];
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			int index = positions[i] - startPositions[dimensionIndex];
+			if ( index >= 0 && index < rows.length && rows[index] != null )
+				result.or( rows[index] );
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return the count of the rows of the segment
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return the first row of the block of the row
+	 */
+	int getBlockStartRow( int row )
+	{
+		return row - row % ROW_BLOCK_SIZE;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return the offset in the segment of the block of the row
+	 */
+	long getBlockOffset( int row )
+	{
+		return blockOffsets[row / ROW_BLOCK_SIZE];
+	}
+}
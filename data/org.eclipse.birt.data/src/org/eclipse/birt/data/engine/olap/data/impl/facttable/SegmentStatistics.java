@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+
+/**
+ * The zone map of a fact table segment: the count of the rows, the least and
+ * the greatest position of each dimension, and the least and the greatest
+ * value of each numeric measure. A segment is skipped by the fact table row
+ * iterator if none of the selected positions of a dimension is in the range
+ * of the segment.
+ */
+public class SegmentStatistics
+{
+
+	private int rowCount;
+	private int[] minPositions;
+	private int[] maxPositions;
+	// the measures without a numeric value have NaN
+	private double[] minMeasures;
+	private double[] maxMeasures;
+
+	/**
+	 * @param dimensionCount
+	 * @param measureCount
+	 */
+	SegmentStatistics( int dimensionCount, int measureCount )
+	{
+		this.minPositions = new int[dimensionCount];
+		this.maxPositions = new int[dimensionCount];
+		Arrays.fill( minPositions, Integer.MAX_VALUE );
+		Arrays.fill( maxPositions, Integer.MIN_VALUE );
+		this.minMeasures = new double[measureCount];
+		this.maxMeasures = new double[measureCount];
+		Arrays.fill( minMeasures, Double.NaN );
+		Arrays.fill( maxMeasures, Double.NaN );
+	}
+
+	/**
+	 * Adds a row of the segment.
+	 *
+	 * @param dimensionPositions
+	 * @param measures
+	 */
+	void addRow( int[] dimensionPositions, Object[] measures )
+	{
+		rowCount++;
+		for ( int i = 0; i < minPositions.length; i++ )
+		{
+			minPositions[i] = Math.min( minPositions[i], dimensionPositions[i] );
+			maxPositions[i] = Math.max( maxPositions[i], dimensionPositions[i] );
+		}
+		for ( int i = 0; i < minMeasures.length; i++ )
+		{
+			if ( !( measures[i] instanceof Number ) )
+				continue;
+			double value = ( (Number) measures[i] ).doubleValue( );
+			if ( Double.isNaN( value ) )
+				continue;
+			if ( Double.isNaN( minMeasures[i] ) || value < minMeasures[i] )
+				minMeasures[i] = value;
+			if ( Double.isNaN( maxMeasures[i] ) || value > maxMeasures[i] )
+				maxMeasures[i] = value;
+		}
+	}
+
+	/**
+	 * @return the count of the rows of the segment
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @param dimensionIndex
+	 * @return the least position of the dimension in the segment
+	 */
+	public int getMinPosition( int dimensionIndex )
+	{
+		return minPositions[dimensionIndex];
+	}
+
+	/**
+	 * @param dimensionIndex
+	 * @return the greatest position of the dimension in the segment
+	 */
+	public int getMaxPosition( int dimensionIndex )
+	{
+		return maxPositions[dimensionIndex];
+	}
+
+	/**
+	 * @param measureIndex
+	 * @return the least value of the measure in the segment, or null if the
+	 *         measure has no numeric value
+	 */
+	public Double getMinMeasure( int measureIndex )
+	{
+		return Double.isNaN( minMeasures[measureIndex] ) ? null
+				: Double.valueOf( minMeasures[measureIndex] );
+	}
+
+	/**
+	 * @param measureIndex
+	 * @return the greatest value of the measure in the segment, or null if the
+	 *         measure has no numeric value
+	 */
+	public Double getMaxMeasure( int measureIndex )
+	{
+		return Double.isNaN( maxMeasures[measureIndex] ) ? null
+				: Double.valueOf( maxMeasures[measureIndex] );
+	}
+
+	/**
+	 * @param dimensionIndex
+	 * @param selectedPositions
+	 *            the selected positions of the dimension in ascending order
+	 * @return whether any of the positions is in the range of the segment
+	 */
+	public boolean mayContain( int dimensionIndex, int[] selectedPositions )
+	{
+		int index = Arrays.binarySearch( selectedPositions,
+				minPositions[dimensionIndex] );
+		if ( index >= 0 )
+			return true;
+		index = -index - 1;
+		return index < selectedPositions.length
+				&& selectedPositions[index] <= maxPositions[dimensionIndex];
+	}
+
+	/**
+	 * @param documentObject
+	 * @throws IOException
+	 */
+	void save( IDocumentObject documentObject ) throws IOException
+	{
+		documentObject.writeInt( rowCount );
+		documentObject.writeInt( minPositions.length );
+		documentObject.writeInt( minMeasures.length );
+		for ( int i = 0; i < minPositions.length; i++ )
+		{
+			documentObject.writeInt( minPositions[i] );
+			documentObject.writeInt( maxPositions[i] );
+		}
+		for ( int i = 0; i < minMeasures.length; i++ )
+		{
+			documentObject.writeDouble( minMeasures[i] );
+			documentObject.writeDouble( maxMeasures[i] );
+		}
+	}
+
+	/**
+	 * @param documentObject
+	 * @return the statistics saved by <code>save</code>
+	 * @throws IOException
+	 */
+	static SegmentStatistics load( IDocumentObject documentObject )
+			throws IOException
+	{
+		int rowCount = documentObject.readInt( );
+		int dimensionCount = documentObject.readInt( );
+		int measureCount = documentObject.readInt( );
+		SegmentStatistics result = new SegmentStatistics( dimensionCount,
+				measureCount );
+		result.rowCount = rowCount;
+		for ( int i = 0; i < dimensionCount; i++ )
+		{
+			result.minPositions[i] = documentObject.readInt( );
+			result.maxPositions[i] = documentObject.readInt( );
+		}
+		for ( int i = 0; i < measureCount; i++ )
+		{
+			result.minMeasures[i] = documentObject.readDouble( );
+			result.maxMeasures[i] = documentObject.readDouble( );
+		}
+		return result;
+	}
+}
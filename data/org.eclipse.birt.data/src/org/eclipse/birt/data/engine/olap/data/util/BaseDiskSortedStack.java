@@ -17,6 +17,9 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.disk.SortTaskExecutor;
+
 /**
  * A disk stack. This util class can be used to sort a arry.
  */
@@ -39,6 +42,7 @@ public class BaseDiskSortedStack
 	private int size = 0;
 	private IStructureCreator creator;
 	private boolean useMemoryOnly = false;
+	private SortTaskExecutor sortExecutor = null;
 
 	/**
 	 * 
@@ -101,6 +105,17 @@ public class BaseDiskSortedStack
 		this.useMemoryOnly = useMemoryOnly;
 	}
 	
+	/**
+	 * Sorts the buffer by the threads of the executor. The result is the same
+	 * as the sort in the calling thread.
+	 * 
+	 * @param sortExecutor
+	 */
+	public void setSortExecutor( SortTaskExecutor sortExecutor )
+	{
+		this.sortExecutor = sortExecutor;
+	}
+	
 	/**
 	 * 
 	 * @param isAscending
@@ -212,9 +227,9 @@ public class BaseDiskSortedStack
 	 * @param self,
 	 *            which needs to be sorted
 	 */
-	private void sort( Object[] objectArray )
+	private void sort( Object[] objectArray ) throws IOException
 	{
-		Arrays.sort( objectArray, comparator );
+		sort( objectArray, 0, objectArray.length );
 	}
 	
 	/**
@@ -222,10 +237,26 @@ public class BaseDiskSortedStack
 	 * @param objectArray
 	 * @param fromIndex
 	 * @param toIndex
+	 * @throws IOException
 	 */
 	private void sort( Object[] objectArray, int fromIndex, int toIndex )
+			throws IOException
 	{
-		Arrays.sort( objectArray, fromIndex, toIndex, comparator );
+		if ( sortExecutor == null || fromIndex != 0 )
+		{
+			Arrays.sort( objectArray, fromIndex, toIndex, comparator );
+			return;
+		}
+		try
+		{
+			sortExecutor.sort( objectArray, toIndex, comparator );
+		}
+		catch ( DataException e )
+		{
+			IOException ex = new IOException( e.getLocalizedMessage( ) );
+			ex.initCause( e );
+			throw ex;
+		}
 	}
 	
 	/**
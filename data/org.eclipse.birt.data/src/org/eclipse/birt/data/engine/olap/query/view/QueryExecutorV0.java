@@ -119,6 +119,9 @@ public class QueryExecutorV0 implements IQueryExecutor
 		cubeQueryExecutorHelper.setMemoryCacheSize( CacheUtil.computeMemoryBufferSize( view.getAppContext( ) ) );
 		cubeQueryExecutorHelper.setAppContext( view.getAppContext( ));
 		cubeQueryExecutorHelper.setMaxDataObjectRows( CacheUtil.getMaxRows( view.getAppContext( ) ) );
+		cubeQueryExecutorHelper.setSortParallelism( executor.getSession( )
+				.getEngineContext( )
+				.getCubeQuerySortParallelism( ) );
 		
 		cubeQueryExecutorHelper.addJSFilter( executor.getDimensionFilterEvalHelpers( ) );
 		cubeQueryExecutorHelper.addSimpleLevelFilter( executor.getdimensionSimpleFilter( ) );
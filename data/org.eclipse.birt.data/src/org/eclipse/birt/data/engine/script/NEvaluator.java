@@ -1,5 +1,7 @@
 package org.eclipse.birt.data.engine.script;
 
+import java.util.Arrays;
+
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
@@ -8,6 +10,7 @@ import org.eclipse.birt.data.engine.api.IConditionalExpression;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
 import org.eclipse.birt.data.engine.api.script.BaseNEvaluator;
 import org.eclipse.birt.data.engine.cache.BasicCachedArray;
+import org.eclipse.birt.data.engine.cache.TopNSelector;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
@@ -23,6 +26,9 @@ public abstract class NEvaluator extends BaseNEvaluator
 {
 	private BasicCachedArray valueList; 
 	private BasicCachedArray rowIdList;
+	// the top/bottom rows are selected by a heap if N is not too large
+	private TopNSelector selector;
+	private int[] selectedRowIds;
 	private int firstPassRowNumberCounter = 0;
 	private int secondPassRowNumberCounter = 0;
 	private int qualifiedRowCounter = 0;
@@ -174,6 +180,18 @@ public abstract class NEvaluator extends BaseNEvaluator
 	private boolean doFirstPass( Object value ) throws DataException
 	{
 		firstPassRowNumberCounter++;
+		if ( N <= TopNSelector.MAX_SIZE )
+		{
+			if ( selector == null )
+			{
+				selector = newSelector( N );
+			}
+			if ( value != null )
+			{
+				selector.add( value, firstPassRowNumberCounter );
+			}
+			return true;
+		}
 		if ( valueList == null )
 		{
 			valueList = new BasicCachedArray( tempDir, N );
@@ -187,6 +205,43 @@ public abstract class NEvaluator extends BaseNEvaluator
 		return true;
 	}
 
+	/**
+	 * The values are selected in the same order as they are populated into
+	 * the value list, the rows of equal values are selected by row order.
+	 * 
+	 * @param N
+	 * @return
+	 */
+	private TopNSelector newSelector( int N )
+	{
+		return new TopNSelector( N ) {
+
+			protected boolean isBefore( Object value1, int rowIndex1,
+					Object value2, int rowIndex2 ) throws DataException
+			{
+				if ( isBeforeValue( value1, value2 ) )
+					return true;
+				if ( isBeforeValue( value2, value1 ) )
+					return false;
+				return rowIndex1 < rowIndex2;
+			}
+		};
+	}
+
+	private boolean isBeforeValue( Object value1, Object value2 )
+			throws DataException
+	{
+		try
+		{
+			return DataTypeUtil.toBoolean( doCompare( value1, value2 ) )
+					.booleanValue( );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+	}
+
 	/**
 	 * @param value
 	 * @param N
@@ -245,7 +300,22 @@ public abstract class NEvaluator extends BaseNEvaluator
 		else
 			this.secondPassRowNumberCounter = this.filterPassController.getSecondPassRowCount();
 		
-		if ( qualifiedRowCounter < N )
+		if ( qualifiedRowCounter < N && selector != null )
+		{
+			if ( selectedRowIds == null )
+			{
+				selectedRowIds = selector.getRowIndexes( );
+			}
+			if ( Arrays.binarySearch( selectedRowIds,
+					secondPassRowNumberCounter ) >= 0 )
+			{
+				qualifiedRowCounter++;
+				reset( );
+				return true;
+			}
+			return false;
+		}
+		else if ( qualifiedRowCounter < N )
 		{
 			for ( int i = 0; i < N; i++ )
 			{
@@ -293,6 +363,8 @@ public abstract class NEvaluator extends BaseNEvaluator
 		qualifiedRowCounter = 0;
 		rowIdList = null;
 		valueList = null;
+		selector = null;
+		selectedRowIds = null;
 		N = -1;
 	}
 	protected abstract Object doCompare( Object value1, Object value2 ) throws DataException;
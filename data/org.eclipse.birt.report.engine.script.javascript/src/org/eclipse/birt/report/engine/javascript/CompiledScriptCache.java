@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.javascript;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+/**
+ * A cache of compiled scripts shared by the script engines of the process, so
+ * that the scripts of a report which is run again and again are compiled only
+ * once. A compiled script keeps no scope, and can be executed by several
+ * contexts at the same time.
+ * <p>
+ * The scripts are keyed by the source, id, line number and security domain,
+ * and by the settings of the context which change the compiled code. The
+ * application class loader of the context is a part of the key too, as the
+ * classes of a compiled script are defined by a loader of which it is the
+ * parent, so that the engines of different applications never share a script.
+ * The key holds the loader weakly, but a cached compiled class keeps its
+ * loader until it is removed from the cache. The least
+ * recently used scripts are removed if there are more scripts than the maximum
+ * size, which is set by the system property
+ * <code>org.eclipse.birt.report.engine.javascript.cacheSize</code>. A size of
+ * 0 disables the cache.
+ */
+public class CompiledScriptCache
+{
+
+	public static final String CACHE_SIZE_PROPERTY = "org.eclipse.birt.report.engine.javascript.cacheSize"; //$NON-NLS-1$
+
+	private static final int DEFAULT_CACHE_SIZE = 2000;
+
+	/**
+	 * longer scripts are not kept, they are rarely shared by reports
+	 */
+	private static final int MAX_SOURCE_LENGTH = 16 * 1024;
+
+	private static CompiledScriptCache instance = new CompiledScriptCache( getDefaultSize( ) );
+
+	private LinkedHashMap<ScriptKey, Script> scripts = new LinkedHashMap<ScriptKey, Script>( 16,
+			0.75f,
+			true );
+	private int maxSize;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	CompiledScriptCache( int maxSize )
+	{
+		this.maxSize = Math.max( 0, maxSize );
+	}
+
+	/**
+	 * @return the cache shared by the process
+	 */
+	public static CompiledScriptCache getInstance( )
+	{
+		return instance;
+	}
+
+	private static int getDefaultSize( )
+	{
+		try
+		{
+			return Integer.getInteger( CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE )
+					.intValue( );
+		}
+		catch ( SecurityException e )
+		{
+			return DEFAULT_CACHE_SIZE;
+		}
+	}
+
+	/**
+	 * Creates the key of a script compiled by a context.
+	 *
+	 * @param cx
+	 * @param source
+	 * @param id
+	 * @param lineNumber
+	 * @param securityDomain
+	 * @return the key, or null if the script is not cached
+	 */
+	ScriptKey createKey( Context cx, String source, String id,
+			int lineNumber, Object securityDomain )
+	{
+		if ( source == null || source.length( ) > MAX_SOURCE_LENGTH )
+			return null;
+		return new ScriptKey( source,
+				id,
+				lineNumber,
+				securityDomain,
+				cx.getOptimizationLevel( ),
+				cx.getLanguageVersion( ),
+				cx.isGeneratingDebug( ),
+				cx.getApplicationClassLoader( ) );
+	}
+
+	/**
+	 * @param key
+	 * @return the compiled script, or null if it is not cached
+	 */
+	synchronized Script get( ScriptKey key )
+	{
+		if ( maxSize == 0 )
+			return null;
+		Script script = scripts.get( key );
+		if ( script != null )
+			hitCount++;
+		else
+			missCount++;
+		return script;
+	}
+
+	/**
+	 * Caches a compiled script. If the script has been cached by another
+	 * engine in the meanwhile, the cached one is kept.
+	 *
+	 * @param key
+	 * @param script
+	 * @return the cached script
+	 */
+	synchronized Script put( ScriptKey key, Script script )
+	{
+		if ( maxSize == 0 )
+			return script;
+		Script cached = scripts.get( key );
+		if ( cached != null )
+			return cached;
+		scripts.put( key, script );
+		trim( );
+		return script;
+	}
+
+	private void trim( )
+	{
+		Iterator<ScriptKey> keys = scripts.keySet( ).iterator( );
+		while ( scripts.size( ) > maxSize && keys.hasNext( ) )
+		{
+			keys.next( );
+			keys.remove( );
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Sets the maximum count of cached scripts.
+	 *
+	 * @param maxSize
+	 *            the maximum count, 0 to disable the cache
+	 */
+	public synchronized void setMaxSize( int maxSize )
+	{
+		this.maxSize = Math.max( 0, maxSize );
+		trim( );
+	}
+
+	public synchronized int getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return the count of cached scripts
+	 */
+	public synchronized int size( )
+	{
+		return scripts.size( );
+	}
+
+	/**
+	 * @return the count of scripts which are found in the cache
+	 */
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return the count of scripts which are compiled as they are not found
+	 */
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	/**
+	 * @return the count of scripts which are removed to keep the size
+	 */
+	public synchronized long getEvictionCount( )
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Removes all the cached scripts and resets the counts.
+	 */
+	public synchronized void clear( )
+	{
+		scripts.clear( );
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+	}
+
+	/**
+	 * The key of a compiled script.
+	 */
+	static final class ScriptKey
+	{
+
+		private String source;
+		private String id;
+		private int lineNumber;
+		private Object securityDomain;
+		private int optimizationLevel;
+		private int languageVersion;
+		private boolean generatingDebug;
+		private WeakReference<ClassLoader> applicationClassLoader;
+		private int hashCode;
+
+		ScriptKey( String source, String id, int lineNumber,
+				Object securityDomain, int optimizationLevel,
+				int languageVersion, boolean generatingDebug,
+				ClassLoader applicationClassLoader )
+		{
+			this.source = source;
+			this.id = id;
+			this.lineNumber = lineNumber;
+			this.securityDomain = securityDomain;
+			this.optimizationLevel = optimizationLevel;
+			this.languageVersion = languageVersion;
+			this.generatingDebug = generatingDebug;
+			this.applicationClassLoader = new WeakReference<ClassLoader>( applicationClassLoader );
+
+			int hash = source.hashCode( );
+			hash = hash * 31 + ( id == null ? 0 : id.hashCode( ) );
+			hash = hash * 31 + lineNumber;
+			hash = hash * 31
+					+ ( securityDomain == null ? 0 : securityDomain.hashCode( ) );
+			hash = hash * 31 + optimizationLevel;
+			this.hashCode = hash * 31
+					+ System.identityHashCode( applicationClassLoader );
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( this == obj )
+				return true;
+			if ( !( obj instanceof ScriptKey ) )
+				return false;
+			ScriptKey key = (ScriptKey) obj;
+			return hashCode == key.hashCode
+					&& lineNumber == key.lineNumber
+					&& optimizationLevel == key.optimizationLevel
+					&& languageVersion == key.languageVersion
+					&& generatingDebug == key.generatingDebug
+					&& getApplicationClassLoader( ) == key.getApplicationClassLoader( )
+					&& source.equals( key.source )
+					&& ( id == null ? key.id == null : id.equals( key.id ) )
+					&& ( securityDomain == null ? key.securityDomain == null
+							: securityDomain.equals( key.securityDomain ) );
+		}
+
+		/**
+		 * @return the application class loader, or null if it has been
+		 *         garbage collected
+		 */
+		private ClassLoader getApplicationClassLoader( )
+		{
+			return applicationClassLoader.get( );
+		}
+	}
+}
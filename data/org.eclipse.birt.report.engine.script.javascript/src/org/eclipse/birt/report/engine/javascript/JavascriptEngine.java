@@ -11,12 +11,14 @@
 
 package org.eclipse.birt.report.engine.javascript;
 
+import java.lang.ref.WeakReference;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -58,6 +60,13 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 
 	private static Script cachedScript;
 
+	/**
+	 * the decorations of the application class loaders which cannot load
+	 * Rhino, reused so that the engines of an application share the compiled
+	 * scripts
+	 */
+	private static Map<ClassLoader, WeakReference<ClassLoader>> decoratedLoaders = new WeakHashMap<ClassLoader, WeakReference<ClassLoader>>( );
+
 	/**
 	 * the JavaScript Context
 	 */
@@ -232,15 +241,27 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 	public CompiledJavascript compile( ScriptContext scriptContext,
 			final String id, final int lineNumber, final String script ) throws BirtException
 	{
-		Script scriptObject = AccessController
-				.doPrivileged( new PrivilegedAction<Script>( ) {
+		final Object securityDomain = ScriptUtil.getSecurityDomain( id );
+		CompiledScriptCache cache = CompiledScriptCache.getInstance( );
+		CompiledScriptCache.ScriptKey key = cache.createKey( context, script,
+				id, lineNumber, securityDomain );
+		Script scriptObject = key == null ? null : cache.get( key );
+		if ( scriptObject == null )
+		{
+			scriptObject = AccessController
+					.doPrivileged( new PrivilegedAction<Script>( ) {
 
-					public Script run( )
-					{
-						return context.compileString( script, id, lineNumber,
-								ScriptUtil.getSecurityDomain( id ) );
-					}
-				} );
+						public Script run( )
+						{
+							return context.compileString( script, id,
+									lineNumber, securityDomain );
+						}
+					} );
+			if ( key != null )
+			{
+				scriptObject = cache.put( key, scriptObject );
+			}
+		}
 		return new CompiledJavascript( id, lineNumber, script, scriptObject );
 	}
 
@@ -333,19 +354,35 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		}
 		catch ( ClassNotFoundException e )
 		{
-			loader = AccessController
-					.doPrivileged( new PrivilegedAction<ClassLoader>( ) {
-
-						public ClassLoader run( )
-						{
-							return new RhinoClassLoaderDecoration( appLoader,
-									JavascriptEngine.class.getClassLoader( ) );
-						}
-					} );
+			loader = getDecoratedLoader( appLoader );
 		}
 		context.setApplicationClassLoader( loader );
 	}
 
+	private static ClassLoader getDecoratedLoader( final ClassLoader appLoader )
+	{
+		synchronized ( decoratedLoaders )
+		{
+			WeakReference<ClassLoader> reference = decoratedLoaders.get( appLoader );
+			ClassLoader loader = reference == null ? null : reference.get( );
+			if ( loader == null )
+			{
+				loader = AccessController
+						.doPrivileged( new PrivilegedAction<ClassLoader>( ) {
+
+							public ClassLoader run( )
+							{
+								return new RhinoClassLoaderDecoration( appLoader,
+										JavascriptEngine.class.getClassLoader( ) );
+							}
+						} );
+				decoratedLoaders.put( appLoader,
+						new WeakReference<ClassLoader>( loader ) );
+			}
+			return loader;
+		}
+	}
+
 	private static class RhinoClassLoaderDecoration extends ClassLoader
 	{
 
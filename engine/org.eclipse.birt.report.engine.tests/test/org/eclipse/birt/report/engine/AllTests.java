@@ -35,6 +35,7 @@ public class AllTests
 		// 136 testcases generated by AllTests.testLists
 		suite.addTestSuite( org.eclipse.birt.report.engine.api.impl.LoggerSettingTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.adapter.ExpressionUtilTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.adapter.ModelDteApiAdapterTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.api.document.DocumentIRTransferTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.api.document.ReportDocumentTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.api.impl.DataExtractionTaskTest.class );
@@ -146,6 +147,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.report.engine.ir.TableGroupTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.ir.TableItemTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.ir.TextItemTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.engine.javascript.CompiledScriptCacheTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.layout.content.BlockStackingExecutorTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.layout.content.ListContainerExecutorTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.engine.layout.emitter.util.BackgroundImageLayoutTest.class );
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.adapter;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.IOdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.script.IOptionalEventHandler;
+import org.eclipse.birt.report.engine.executor.ExecutionContext;
+import org.eclipse.birt.report.engine.script.internal.DataSourceScriptExecutor;
+import org.eclipse.birt.report.model.api.DesignConfig;
+import org.eclipse.birt.report.model.api.DesignEngine;
+import org.eclipse.birt.report.model.api.ElementFactory;
+import org.eclipse.birt.report.model.api.OdaDataSetHandle;
+import org.eclipse.birt.report.model.api.OdaDataSourceHandle;
+import org.eclipse.birt.report.model.api.SessionHandle;
+
+import com.ibm.icu.util.ULocale;
+
+/**
+ * Tests the event handlers the adapter sets on data sets and data sources,
+ * which decide whether a data set may be prefetched.
+ */
+public class ModelDteApiAdapterTest extends TestCase
+{
+
+	private ElementFactory factory;
+
+	private ExecutionContext context;
+
+	public void setUp( )
+	{
+		SessionHandle sessionHandle = new DesignEngine( new DesignConfig( ) )
+				.newSessionHandle( ULocale.ENGLISH );
+		factory = new ElementFactory( sessionHandle.createDesign( )
+				.getModule( ) );
+		context = new ExecutionContext( );
+	}
+
+	public void testDataSetWithoutHandlers( ) throws BirtException
+	{
+		OdaDataSetHandle handle = factory.newOdaDataSet( "set", null ); //$NON-NLS-1$
+		assertFalse( hasHandlers( handle ) );
+
+		// a script of comments only does nothing
+		handle.setBeforeOpen( "// nothing to do" ); //$NON-NLS-1$
+		assertFalse( hasHandlers( handle ) );
+	}
+
+	public void testDataSetWithHandlers( ) throws BirtException
+	{
+		OdaDataSetHandle handle = factory.newOdaDataSet( "set", null ); //$NON-NLS-1$
+		handle.setBeforeOpen( "this.queryText = \"select 1\";" ); //$NON-NLS-1$
+		assertTrue( hasHandlers( handle ) );
+
+		handle = factory.newOdaDataSet( "set2", null ); //$NON-NLS-1$
+		handle.setOnFetch( "row[\"x\"] = 1;" ); //$NON-NLS-1$
+		assertTrue( hasHandlers( handle ) );
+
+		handle = factory.newOdaDataSet( "set3", null ); //$NON-NLS-1$
+		handle.setEventHandlerClass( "org.example.DataSetHandler" ); //$NON-NLS-1$
+		assertTrue( hasHandlers( handle ) );
+	}
+
+	public void testDataSource( ) throws BirtException
+	{
+		OdaDataSourceHandle handle = factory.newOdaDataSource( "source", null ); //$NON-NLS-1$
+		assertFalse( ( (IOptionalEventHandler) new DataSourceScriptExecutor( handle,
+				context ) ).hasHandlers( ) );
+
+		handle.setBeforeOpen( "this.setExtensionProperty(\"user\", \"a\");" ); //$NON-NLS-1$
+		assertTrue( ( (IOptionalEventHandler) new DataSourceScriptExecutor( handle,
+				context ) ).hasHandlers( ) );
+	}
+
+	private boolean hasHandlers( OdaDataSetHandle handle )
+			throws BirtException
+	{
+		IOdaDataSetDesign design = new ModelDteApiAdapter( ).newOdaDataSet( handle,
+				new OdaDataSetDesign( handle.getName( ) ),
+				context );
+		assertTrue( design.getEventHandler( ) instanceof IOptionalEventHandler );
+		return ( (IOptionalEventHandler) design.getEventHandler( ) ).hasHandlers( );
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.javascript;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.ScriptContext;
+
+/**
+ * Test the compiled scripts shared by the script engines.
+ */
+public class CompiledScriptCacheTest extends TestCase
+{
+
+	private CompiledScriptCache cache = CompiledScriptCache.getInstance( );
+	private int maxSize;
+	private ScriptContext scriptContext;
+
+	protected void setUp( ) throws Exception
+	{
+		maxSize = cache.getMaxSize( );
+		cache.setMaxSize( 10 );
+		cache.clear( );
+		scriptContext = new ScriptContext( );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		scriptContext.close( );
+		cache.clear( );
+		cache.setMaxSize( maxSize );
+	}
+
+	public void testHit( ) throws Exception
+	{
+		JavascriptEngine engine = createEngine( );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		engine.close( );
+		assertEquals( 1, cache.size( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+
+		// another engine of the same application
+		engine = createEngine( );
+		CompiledJavascript script = (CompiledJavascript) engine.compile( scriptContext,
+				"id",
+				1,
+				"1 + 1" );
+		assertEquals( 2, cache.getHitCount( ) );
+		assertEquals( Double.valueOf( 2 ),
+				Double.valueOf( ( (Number) engine.evaluate( scriptContext,
+						script ) ).doubleValue( ) ) );
+		engine.close( );
+	}
+
+	public void testMiss( ) throws Exception
+	{
+		JavascriptEngine engine = createEngine( );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		engine.compile( scriptContext, "id", 1, "1 + 2" );
+		engine.compile( scriptContext, "other", 1, "1 + 1" );
+		engine.compile( scriptContext, "id", 2, "1 + 1" );
+		engine.close( );
+		assertEquals( 4, cache.size( ) );
+		assertEquals( 4, cache.getMissCount( ) );
+		assertEquals( 0, cache.getHitCount( ) );
+	}
+
+	public void testEviction( ) throws Exception
+	{
+		cache.setMaxSize( 2 );
+		JavascriptEngine engine = createEngine( );
+		engine.compile( scriptContext, "id", 1, "1" );
+		engine.compile( scriptContext, "id", 1, "2" );
+		// the least recently used script is "2"
+		engine.compile( scriptContext, "id", 1, "1" );
+		engine.compile( scriptContext, "id", 1, "3" );
+		assertEquals( 2, cache.size( ) );
+		assertEquals( 1, cache.getEvictionCount( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+
+		engine.compile( scriptContext, "id", 1, "1" );
+		assertEquals( 2, cache.getHitCount( ) );
+		engine.compile( scriptContext, "id", 1, "2" );
+		assertEquals( 2, cache.getHitCount( ) );
+		assertEquals( 2, cache.getEvictionCount( ) );
+
+		cache.setMaxSize( 0 );
+		assertEquals( 0, cache.size( ) );
+		engine.compile( scriptContext, "id", 1, "1" );
+		assertEquals( 0, cache.size( ) );
+		engine.close( );
+	}
+
+	public void testApplicationClassLoader( ) throws Exception
+	{
+		ClassLoader loader1 = new URLClassLoader( new URL[0],
+				getClass( ).getClassLoader( ) );
+		ClassLoader loader2 = new URLClassLoader( new URL[0],
+				getClass( ).getClassLoader( ) );
+
+		JavascriptEngine engine = createEngine( );
+		engine.setApplicationClassLoader( loader1 );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		engine.setApplicationClassLoader( loader2 );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		assertEquals( 2, cache.size( ) );
+		assertEquals( 0, cache.getHitCount( ) );
+		engine.setApplicationClassLoader( loader1 );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		assertEquals( 1, cache.getHitCount( ) );
+		engine.close( );
+	}
+
+	public void testDecoratedClassLoader( ) throws Exception
+	{
+		// a loader which cannot load Rhino is decorated by the engine
+		ClassLoader loader = new URLClassLoader( new URL[0], null );
+
+		JavascriptEngine engine = createEngine( );
+		engine.setApplicationClassLoader( loader );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		engine.close( );
+		engine = createEngine( );
+		engine.setApplicationClassLoader( loader );
+		engine.compile( scriptContext, "id", 1, "1 + 1" );
+		engine.close( );
+		assertEquals( 1, cache.size( ) );
+		assertEquals( 1, cache.getHitCount( ) );
+	}
+
+	private JavascriptEngine createEngine( ) throws BirtException
+	{
+		return (JavascriptEngine) new JavascriptEngineFactory( ).createScriptEngine( );
+	}
+}
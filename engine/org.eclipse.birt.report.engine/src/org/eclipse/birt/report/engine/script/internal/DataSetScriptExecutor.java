@@ -17,6 +17,7 @@ import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.api.script.IBaseDataSetEventHandler;
 import org.eclipse.birt.data.engine.api.script.IDataRow;
 import org.eclipse.birt.data.engine.api.script.IDataSetInstanceHandle;
+import org.eclipse.birt.data.engine.api.script.IOptionalEventHandler;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.api.script.eventhandler.IDataSetEventHandler;
@@ -30,7 +31,8 @@ import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Scriptable;
 
 public class DataSetScriptExecutor extends DtEScriptExecutor implements
-		IBaseDataSetEventHandler
+		IBaseDataSetEventHandler,
+		IOptionalEventHandler
 {
 
 	private static final String ON_FETCH = "onFetch";
@@ -70,6 +72,19 @@ public class DataSetScriptExecutor extends DtEScriptExecutor implements
 		onFetchMethodID = ModuleUtil.getScriptUID( dataSetHandle.getPropertyHandle( ISimpleDataSetModel.ON_FETCH_METHOD ) );
 	}
 
+	/*
+	 * @see org.eclipse.birt.data.engine.api.script.IOptionalEventHandler#hasHandlers()
+	 */
+	public boolean hasHandlers( )
+	{
+		return className != null
+				|| !useBeforeOpenEventHandler
+				|| !useAfterOpenEventHandler
+				|| !useOnFetchEventHandler
+				|| !useBeforeCloseEventHandler
+				|| !useAfterCloseEventHandler;
+	}
+
 	protected void initEventHandler( )
 	{
 		if ( className != null && !flag )
@@ -13,6 +13,7 @@ package org.eclipse.birt.report.engine.script.internal;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.api.script.IBaseDataSourceEventHandler;
 import org.eclipse.birt.data.engine.api.script.IDataSourceInstanceHandle;
+import org.eclipse.birt.data.engine.api.script.IOptionalEventHandler;
 import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.api.script.eventhandler.IDataSourceEventHandler;
 import org.eclipse.birt.report.engine.api.script.eventhandler.IScriptedDataSetEventHandler;
@@ -24,7 +25,8 @@ import org.eclipse.birt.report.model.elements.interfaces.IDataSourceModel;
 import org.mozilla.javascript.Scriptable;
 
 public class DataSourceScriptExecutor extends DtEScriptExecutor implements
-		IBaseDataSourceEventHandler
+		IBaseDataSourceEventHandler,
+		IOptionalEventHandler
 {
 
 	protected DataSourceHandle dataSourceHandle;
@@ -57,6 +59,18 @@ public class DataSourceScriptExecutor extends DtEScriptExecutor implements
 		afterCloseMethodID = ModuleUtil.getScriptUID( dataSourceHandle.getPropertyHandle( IDataSourceModel.AFTER_CLOSE_METHOD ) );
 	}
 
+	/*
+	 * @see org.eclipse.birt.data.engine.api.script.IOptionalEventHandler#hasHandlers()
+	 */
+	public boolean hasHandlers( )
+	{
+		return className != null
+				|| !useBeforeOpenEventHandler
+				|| !useAfterOpenEventHandler
+				|| !useBeforeCloseEventHandler
+				|| !useAfterCloseEventHandler;
+	}
+
 	protected void initEventHandler( )
 	{
 		if ( className != null && !flag )
@@ -71,6 +71,16 @@ public class ScriptDataSetScriptExecutor extends DataSetScriptExecutor
 
 	}
 
+	/*
+	 * A scripted data set is opened, fetched and closed by its handlers.
+	 * 
+	 * @see org.eclipse.birt.report.engine.script.internal.DataSetScriptExecutor#hasHandlers()
+	 */
+	public boolean hasHandlers( )
+	{
+		return true;
+	}
+
 	protected void initEventHandler(  )
 	{
 		super.initEventHandler(  );
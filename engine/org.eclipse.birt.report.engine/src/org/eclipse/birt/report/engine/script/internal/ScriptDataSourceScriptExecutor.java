@@ -37,6 +37,16 @@ public class ScriptDataSourceScriptExecutor extends DataSourceScriptExecutor
 		super( dataSourceHandle, context );
 	}
 
+	/*
+	 * A scripted data source is opened and closed by its handlers.
+	 * 
+	 * @see org.eclipse.birt.report.engine.script.internal.DataSourceScriptExecutor#hasHandlers()
+	 */
+	public boolean hasHandlers( )
+	{
+		return true;
+	}
+
 	protected void initEventHandler(  )
 	{
 		super.initEventHandler( );